@@ -40,6 +40,10 @@ android {
             )
         }
     }
+    buildFeatures {
+        // BuildConfig.DEBUG gates the debugging intent extras.
+        buildConfig = true
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
@@ -2,113 +2,194 @@
 #include <opencv2/opencv.hpp>
 #include <cstring>
 #include <android/log.h>
+#include <cstdint>
+#include <new>
+
+// Everything one NativeEdgeContext owns. A context is used by one thread at
+// a time (the Java side serializes calls), so nothing here is shared or locked.
+struct EdgeContext {
+    int low = 100, high = 200;
+    // Edge stats cost an extra pass over the frame; 0 skips it.
+    int diagnosticsEvery = 0;
+    // Backing stores, each grown to the largest frame seen; smaller frames
+    // use a header over the start. edgeStore holds the packed path's byte
+    // map, arrayIn/arrayOut the copies of Java arrays, dxStore/dyStore the
+    // 16-bit gradients Canny is run on.
+    cv::Mat edgeStore, arrayIn, arrayOut, dxStore, dyStore;
+    int64_t frames = 0;
+    int64_t allocations = 0;
+    int64_t lastEdgePixels = -1;
+
+    cv::Mat view(cv::Mat& store, int width, int height, int type) {
+        size_t needed = (size_t)width * height;
+        if (store.empty() || store.total() < needed) {
+            store.create(1, (int)needed, type);
+            ++allocations;
+        }
+        return cv::Mat(height, width, type, store.data);
+    }
+
+    cv::Mat edgeMap(int width, int height) { return view(edgeStore, width, height, CV_8UC1); }
+};
+
+static EdgeContext* fromHandle(jlong handle) { return reinterpret_cast<EdgeContext*>(handle); }
+
+static int packedSize(int width, int height) { return ((width + 7) >> 3) * height; }
+
+// One row of 0/255 pixels to bits, pixel x in bit (x & 7): the Java
+// EdgePacking layout that the renderer's shader unpacks.
+static void packRow(const unsigned char* src, int width, unsigned char* dst) {
+    int x = 0;
+    for (; x + 8 <= width; x += 8) {
+        *dst++ = (unsigned char)((src[x] & 1) | (src[x + 1] & 1) << 1 | (src[x + 2] & 1) << 2
+                | (src[x + 3] & 1) << 3 | (src[x + 4] & 1) << 4 | (src[x + 5] & 1) << 5
+                | (src[x + 6] & 1) << 6 | (src[x + 7] & 1) << 7);
+    }
+    if (x < width) {
+        unsigned char b = 0;
+        for (int k = 0; x < width; ++x, ++k) b |= (src[x] & 1) << k;
+        *dst = b;
+    }
+}
+
+// Canny over a luma plane. `y` may be strided (yRowStride >= width). `output`
+// is written in place: width*height bytes, or packedSize() bytes with
+// `packed`. Mode selection lives in the Java FramePipeline; this is just one
+// of its stages.
+static void cannyLuma(EdgeContext& ctx, const unsigned char* y, int yRowStride, int width, int height,
+                      bool packed, unsigned char* output) {
+    cv::Mat gray(height, width, CV_8UC1, (void*)y, (size_t)yRowStride);
+    // Both targets already have the right size/type, so Canny writes in
+    // place; packed output goes through the context's byte map first.
+    cv::Mat out = packed ? ctx.edgeMap(width, height) : cv::Mat(height, width, CV_8UC1, output);
+    // The gradients are what cv::Canny(image, ...) would compute itself, into
+    // the context's Mats instead of fresh ones each frame.
+    cv::Mat dx = ctx.view(ctx.dxStore, width, height, CV_16SC1);
+    cv::Mat dy = ctx.view(ctx.dyStore, width, height, CV_16SC1);
+    cv::Sobel(gray, dx, CV_16S, 1, 0, 3, 1, 0, cv::BORDER_REPLICATE);
+    cv::Sobel(gray, dy, CV_16S, 0, 1, 3, 1, 0, cv::BORDER_REPLICATE);
+    cv::Canny(dx, dy, out, ctx.low, ctx.high);
+    if (packed) {
+        int rowBytes = (width + 7) >> 3;
+        for (int row = 0; row < height; ++row) packRow(out.ptr<unsigned char>(row), width, output + row * rowBytes);
+    }
 
-static int gMode = 0;
+    ++ctx.frames;
+    if (ctx.diagnosticsEvery > 0 && ctx.frames % ctx.diagnosticsEvery == 0) {
+        // Canny output is 0 or 255, so the edge count is the whole story.
+        int total = width * height;
+        int nonZero = cv::countNonZero(out);
+        ctx.lastEdgePixels = nonZero;
+        __android_log_print(ANDROID_LOG_INFO, "EdgeViewer", "canny stats: %dx%d edges=%d (%.1f%%)",
+                            width, height, nonZero, total > 0 ? 100.0f * nonZero / total : 0.0f);
+    }
+}
 
 extern "C"
 JNIEXPORT jint JNICALL
-Java_com_example_edgeviewer_MainActivity_testOpenCV(JNIEnv* env, jobject) {
+Java_com_example_edgedetectionapp_MainActivity_testOpenCV(JNIEnv* env, jobject) {
     cv::Mat m = cv::Mat::eye(3, 3, CV_8UC1);
     return m.rows;
 }
 
 extern "C"
 JNIEXPORT jstring JNICALL
-Java_com_example_edgeviewer_MainActivity_nativeHello(JNIEnv* env, jobject) {
+Java_com_example_edgedetectionapp_MainActivity_nativeHello(JNIEnv* env, jobject) {
     return env->NewStringUTF("EdgeViewer JNI ready");
 }
 
+extern "C"
+JNIEXPORT jlong JNICALL
+Java_com_example_edgedetectionapp_NativeEdgeContext_nativeCreate(JNIEnv*, jclass) {
+    return reinterpret_cast<jlong>(new (std::nothrow) EdgeContext());
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_example_edgedetectionapp_NativeEdgeContext_nativeDestroy(JNIEnv*, jclass, jlong handle) {
+    delete fromHandle(handle);
+}
+
 extern "C"
 JNIEXPORT void JNICALL
-Java_com_example_edgeviewer_MainActivity_setViewerMode(JNIEnv*, jobject, jint mode) {
-    gMode = (mode == 1) ? 1 : 0;
+Java_com_example_edgedetectionapp_NativeEdgeContext_nativeConfigure(
+        JNIEnv*, jclass, jlong handle, jint low, jint high, jint diagnosticsEvery) {
+    EdgeContext* ctx = fromHandle(handle);
+    ctx->low = low;
+    ctx->high = high;
+    ctx->diagnosticsEvery = diagnosticsEvery;
 }
 
+// Order matches NativeEdgeContext.STAT_*.
 extern "C"
 JNIEXPORT void JNICALL
-Java_com_example_edgeviewer_MainActivity_processFrame(
+Java_com_example_edgedetectionapp_NativeEdgeContext_nativeStats(JNIEnv* env, jclass, jlong handle, jlongArray out) {
+    EdgeContext* ctx = fromHandle(handle);
+    jlong stats[3] = {ctx->frames, ctx->allocations, ctx->lastEdgePixels};
+    env->SetLongArrayRegion(out, 0, 3, stats);
+}
+
+extern "C"
+JNIEXPORT jboolean JNICALL
+Java_com_example_edgedetectionapp_NativeEdgeContext_nativeCannyArray(
         JNIEnv* env,
-        jobject,
+        jclass,
+        jlong handle,
         jbyteArray inputArray,
         jint width,
         jint height,
+        jboolean packed,
         jbyteArray outputArray) {
 
-    __android_log_print(ANDROID_LOG_DEBUG, "EdgeViewer", "processFrame called w=%d h=%d mode=%d", width, height, gMode);
-
-    jbyte* input = env->GetByteArrayElements(inputArray, nullptr);
-    jbyte* output = env->GetByteArrayElements(outputArray, nullptr);
-
-    // Validate input length to catch packing issues early
-    jsize inLen = env->GetArrayLength(inputArray);
-    jsize expected = width * height + (width * height) / 2;
-    if (inLen < expected) {
-        __android_log_print(ANDROID_LOG_WARN, "EdgeViewer", "inputArray length %d < expected NV21 size %d", inLen, expected);
-    }
-
-    cv::Mat yuv(height + height / 2, width, CV_8UC1, (unsigned char*)input);
-    cv::Mat bgr;
-    cv::cvtColor(yuv, bgr, cv::COLOR_YUV2BGR_NV21);
-
-    cv::Mat finalOut;
-
-    if (gMode == 0) {
-        cv::Mat edges;
-        cv::Canny(bgr, edges, 100, 200);
-        cv::resize(edges, finalOut, cv::Size(width, height), 0, 0, cv::INTER_NEAREST);
-    } else {
-        cv::Mat gray;
-        cv::cvtColor(bgr, gray, cv::COLOR_BGR2GRAY);
-        cv::resize(gray, finalOut, cv::Size(width, height), 0, 0, cv::INTER_NEAREST);
+    jlong needed = (jlong)width * height;
+    jlong outNeeded = packed ? packedSize(width, height) : needed;
+    if (env->GetArrayLength(inputArray) < needed || env->GetArrayLength(outputArray) < outNeeded) {
+        __android_log_print(ANDROID_LOG_WARN, "EdgeViewer", "cannyArray: arrays too small for %dx%d", width, height);
+        return JNI_FALSE;
     }
 
-    // Ensure continuous single-channel output before copying
-    cv::Mat outCont;
-    if (finalOut.isContinuous() && finalOut.type() == CV_8UC1) {
-        outCont = finalOut;
-    } else {
-        finalOut.convertTo(outCont, CV_8UC1);
-        if (!outCont.isContinuous()) outCont = outCont.clone();
-    }
-
-    size_t copyBytes = (size_t)width * (size_t)height;
+    // Copy through the context's buffers rather than pinning the arrays:
+    // a critical section held across Canny would stall the GC for the
+    // whole frame. Callers that can should use the direct-buffer entry point.
+    EdgeContext& ctx = *fromHandle(handle);
+    cv::Mat input = ctx.view(ctx.arrayIn, width, height, CV_8UC1);
+    cv::Mat output = ctx.view(ctx.arrayOut, (int)outNeeded, 1, CV_8UC1);
+    env->GetByteArrayRegion(inputArray, 0, (jsize)needed, reinterpret_cast<jbyte*>(input.data));
+    cannyLuma(ctx, input.data, width, width, height, packed == JNI_TRUE, output.data);
+    env->SetByteArrayRegion(outputArray, 0, (jsize)outNeeded, reinterpret_cast<const jbyte*>(output.data));
+    return JNI_TRUE;
+}
 
-    // If the processed image is nearly empty (few non-zero pixels), fall back to
-    // copying the raw Y plane from the NV21 input. This helps diagnose whether
-    // the processing stage or the input packing is at fault for horizontal bands.
-    int total = width * height;
-    int nonZero = 0;
-    const unsigned char* d = outCont.data;
-    for (int i = 0; i < total; ++i) {
-        if (d[i] != 0) nonZero++;
-    }
-    float nonZeroPct = (total>0)?(100.0f * nonZero / total):0.0f;
-    if (nonZeroPct < 2.0f) {
-        __android_log_print(ANDROID_LOG_WARN, "EdgeViewer", "processed image almost empty (%.2f%%); falling back to copying Y plane", nonZeroPct);
-        // Input is NV21: Y plane is first width*height bytes
-        memcpy(output, input, copyBytes);
-    } else {
-        memcpy(output, outCont.data, copyBytes);
+// Zero-copy entry point: the strided Y plane and the output are direct
+// buffers wrapped in cv::Mat headers, so Java never packs or copies them.
+extern "C"
+JNIEXPORT jboolean JNICALL
+Java_com_example_edgedetectionapp_NativeEdgeContext_nativeCannyPlanes(
+        JNIEnv* env,
+        jclass,
+        jlong handle,
+        jobject yBuffer,
+        jint yRowStride,
+        jint width,
+        jint height,
+        jboolean packed,
+        jobject outputBuffer) {
+
+    auto* y = static_cast<unsigned char*>(env->GetDirectBufferAddress(yBuffer));
+    auto* output = static_cast<unsigned char*>(env->GetDirectBufferAddress(outputBuffer));
+    if (y == nullptr || output == nullptr || yRowStride < width) {
+        __android_log_print(ANDROID_LOG_WARN, "EdgeViewer", "cannyPlanes: bad Y/output buffer (stride=%d width=%d)", yRowStride, width);
+        return JNI_FALSE;
     }
 
-    // Lightweight diagnostics: log min/max and non-zero ratio every 30 frames
-    static int frameCounter = 0;
-    frameCounter++;
-    if ((frameCounter % 10) == 0) {
-        int total = width * height;
-        int nonZero = 0;
-        int minV = 255, maxV = 0;
-        const unsigned char* d = finalOut.data;
-        for (int i = 0; i < total; ++i) {
-            int v = d[i];
-            if (v != 0) nonZero++;
-            if (v < minV) minV = v;
-            if (v > maxV) maxV = v;
-        }
-        float ratio = (total>0)?(100.0f * nonZero / total):0.0f;
-        __android_log_print(ANDROID_LOG_INFO, "EdgeViewer", "processFrame stats: min=%d max=%d nonZero=%.1f%%", minV, maxV, ratio);
+    jlong yCap = env->GetDirectBufferCapacity(yBuffer);
+    jlong yNeeded = (jlong)yRowStride * (height - 1) + width;
+    jlong outNeeded = packed ? packedSize(width, height) : (jlong)width * height;
+    if (yCap < yNeeded || env->GetDirectBufferCapacity(outputBuffer) < outNeeded) {
+        __android_log_print(ANDROID_LOG_WARN, "EdgeViewer", "cannyPlanes: capacity too small for %dx%d", width, height);
+        return JNI_FALSE;
     }
 
-    env->ReleaseByteArrayElements(outputArray, output, 0);
-    env->ReleaseByteArrayElements(inputArray, input, JNI_ABORT);
+    cannyLuma(*fromHandle(handle), y, yRowStride, width, height, packed == JNI_TRUE, output);
+    return JNI_TRUE;
 }
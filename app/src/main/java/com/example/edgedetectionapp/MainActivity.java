@@ -5,6 +5,7 @@ import android.graphics.ImageFormat;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.FrameLayout;
 import android.widget.TextView;
@@ -25,26 +26,115 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import com.example.edgedetectionapp.frame.AsyncFrameRecorder;
+import com.example.edgedetectionapp.frame.BufferPool;
+import com.example.edgedetectionapp.frame.FrameRecorder;
+import com.example.edgedetectionapp.frame.FrameSource;
+import com.example.edgedetectionapp.frame.Nv21Packer;
+import com.example.edgedetectionapp.frame.ReplaySource;
 import com.example.edgedetectionapp.gl.EdgeGLSurfaceView;
+import com.example.edgedetectionapp.exec.FrameJob;
+import com.example.edgedetectionapp.exec.SessionScheduler;
+import com.example.edgedetectionapp.exec.StagedExecutor;
+import com.example.edgedetectionapp.exec.StreamSession;
+import com.example.edgedetectionapp.gl.EdgeRenderer;
+import com.example.edgedetectionapp.metrics.FrameMetrics;
+import com.example.edgedetectionapp.metrics.FrameTrace;
+import com.example.edgedetectionapp.proc.FrameProcessor;
+import com.example.edgedetectionapp.proc.FramePipeline;
+import com.example.edgedetectionapp.proc.FrameStages;
+import com.example.edgedetectionapp.proc.LumaPyramid;
+import com.example.edgedetectionapp.proc.ResolutionController;
+import com.example.edgedetectionapp.proc.RoiPipeline;
+import com.example.edgedetectionapp.stream.EdgeStreamServer;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class MainActivity extends AppCompatActivity {
-    static { System.loadLibrary("edgeviewer"); }
+    // adb shell am start -n com.example.edgeviewer/com.example.edgedetectionapp.MainActivity --ez record true
+    // records camera frames to the app's external files dir; --es replay <path>
+    // plays a recording instead of opening the camera (--ez replay_max_speed true
+    // to ignore the recorded timing; several comma-separated paths replay
+    // together, the first one on screen). --ei stream_port 8080 serves
+    // processed frames to the web viewer at ws://<device>:8080/stream;
+    // --ez vector_edges true shows (and streams) edges as traced polylines.
+    // --es roi x,y,w,h[;x,y,w,h...] processes only those rectangles of the
+    // camera frame and zooms the view to them (not for polylines, and region
+    // frames are not streamed). The activity is exported, so record, replay
+    // and stream_port are only honoured by debug builds.
+    public static final String EXTRA_RECORD = "record";
+    public static final String EXTRA_REPLAY = "replay";
+    public static final String EXTRA_REPLAY_MAX_SPEED = "replay_max_speed";
+    public static final String EXTRA_STREAM_PORT = "stream_port";
+    public static final String EXTRA_VECTOR_EDGES = "vector_edges";
+    public static final String EXTRA_ROI = "roi";
+    private static final long MAX_RECORDING_BYTES = 1L << 30;
+    // Frames that may wait for the disk before new ones are left out.
+    private static final int RECORDER_SLOTS = 4;
 
     private native String nativeHello();
     private native int testOpenCV();
-    private native void processFrame(byte[] input, int width, int height, byte[] output);
-    private native void setViewerMode(int mode);
 
-    private int viewerMode = 0;
+    // Lane stage lists: 0 packed edges, 1 gray, 2 edge polylines.
+    private static final int MODE_EDGES = 0, MODE_GRAY = 1, MODE_CONTOURS = 2;
+    private static final String[] MODE_NAMES = {"Edges", "Gray", "Contours"};
+    private static final int[] NO_REGIONS = new int[0];
+    private volatile int viewerMode = MODE_EDGES;
+    // Set by the mode toggle; frame threads apply it before the next frame so
+    // the output format never changes under a frame being sized.
+    private volatile boolean modeChanged = false;
     private final Handler handler = new Handler(Looper.getMainLooper());
     private EdgeGLSurfaceView glView;
     private byte[] outputBuffer;
-    // Temporary debug: when true, send a Java-generated checkerboard to the renderer
-    private static final boolean DEBUG_CHECKER = false;
+    private final FrameMetrics metrics = new FrameMetrics();
+    // Loads libedgeviewer and warms up the analyzer's lane off the main
+    // thread. Without the library (or the OpenCV it links against) lanes use
+    // the pure-Java Canny stage instead.
+    private final Startup startup = new Startup(metrics);
+    // The analyzer's own lane, set by the warm-up; frame threads wait for it.
+    // Executor workers and sessions each get one more.
+    private volatile FramePipeline pipeline;
+    private volatile Lane analyzerLane;
+    // Regions of interest from EXTRA_ROI, in camera pixels; set before any lane exists.
+    private int[] rois = NO_REGIONS;
+    private final List<Lane> lanes = new CopyOnWriteArrayList<>();
+    // Set when the device has cores to spare: the analyzer only copies Y and
+    // closes the image, and workers process frames in parallel.
+    private volatile StagedExecutor executor;
+    // Drops to 1/2 or 1/4 resolution when processing overruns a 30 fps frame;
+    // the renderer scales the smaller edge map back up to the view.
+    private final ResolutionController resolution = new ResolutionController(33_000_000L);
+    // Analyzer-thread scratch buffers, recycled through the pool so the
+    // steady state allocates nothing.
+    private final BufferPool bufferPool = new BufferPool();
+    private ByteBuffer rotateScratch;
+    private byte[] nv21Array;
+    private boolean useDirectPath = true;
+    // Incremented by the analyzer and every replay thread.
+    private final AtomicLong analyzedFrames = new AtomicLong();
+    private final StringBuilder overlay = new StringBuilder();
+    // Analyzer-thread only once set; null when not recording. Frames are
+    // written on the recorder's own thread, so disk I/O never counts
+    // against the frame budget the resolution controller measures.
+    private AsyncFrameRecorder recorder;
+    private final List<Thread> replayThreads = new CopyOnWriteArrayList<>();
+    private volatile boolean replaying;
+    // Set when several recordings replay at once, one session per feed.
+    private volatile SessionScheduler sessionScheduler;
+    private final ExecutorService analyzerExecutor = Executors.newSingleThreadExecutor();
+    // Null unless streaming; frames are offered to it after processing.
+    private volatile EdgeStreamServer streamServer;
 
     private final ActivityResultLauncher<String> permissionLauncher =
             registerForActivityResult(new ActivityResultContracts.RequestPermission(), granted -> {
@@ -64,35 +154,418 @@ public class MainActivity extends AppCompatActivity {
         });
 
         glView = new EdgeGLSurfaceView(this);
+        // Rotate with the texture transform; frames then always take the
+        // zero-copy beginFrame/commitFrame path.
+        glView.setRotationMode(EdgeRenderer.ROTATE_GPU);
+        glView.setMetrics(metrics);
         FrameLayout glContainer = findViewById(R.id.glContainer);
         glContainer.addView(glView);
 
+        int edgeMode = getIntent().getBooleanExtra(EXTRA_VECTOR_EDGES, false) ? MODE_CONTOURS : MODE_EDGES;
         ToggleButton toggle = findViewById(R.id.toggleMode);
-        toggle.setOnCheckedChangeListener((btn, checked) -> {
-            viewerMode = checked ? 0 : 1;
-            setViewerMode(viewerMode);
-        });
-        setViewerMode(viewerMode);
+        toggle.setOnCheckedChangeListener((btn, checked) -> applyViewerMode(checked ? edgeMode : MODE_GRAY));
+        applyViewerMode(edgeMode);
 
         TextView tv = findViewById(R.id.message);
         handler.post(new Runnable() {
             @Override public void run() {
                 if (tv != null && glView != null) {
-                    tv.setText(String.format("Mode: %s | FPS: %.1f",
-                            (viewerMode==0?"Edges":"Gray"), glView.getFps()));
+                    overlay.setLength(0);
+                    overlay.append(String.format(Locale.US, "Mode: %s | FPS: %.1f | Res: 1/%d",
+                            MODE_NAMES[viewerMode], glView.getFps(), resolution.factor()));
+                    overlay.append('\n');
+                    metrics.appendPercentiles(overlay, FrameMetrics.PROCESS).append(" | ");
+                    metrics.appendPercentiles(overlay, FrameMetrics.UPLOAD).append('\n');
+                    metrics.appendPercentiles(overlay, FrameMetrics.CAPTURE_TO_DISPLAY);
+                    overlay.append(" | dropped ").append(metrics.dropped(FrameMetrics.DROP_ANALYZER))
+                            .append('/').append(metrics.dropped(FrameMetrics.DROP_OVERWRITTEN));
+                    if (FrameTrace.isEnabled()) overlay.append(" | trace");
+                    tv.setText(overlay);
                 }
                 handler.postDelayed(this, 500);
             }
         });
+        // Long-press the overlay to toggle sampled per-frame logging.
+        if (tv != null) tv.setOnLongClickListener(v -> {
+            setTracing(!FrameTrace.isEnabled());
+            return true;
+        });
+
+        rois = parseRois(getIntent().getStringExtra(EXTRA_ROI));
+        startup.start("edgeviewer", this::warmUp);
 
+        int streamPort = BuildConfig.DEBUG ? getIntent().getIntExtra(EXTRA_STREAM_PORT, -1) : -1;
+        if (streamPort >= 0) startStreaming(streamPort);
+
+        String replay = BuildConfig.DEBUG ? getIntent().getStringExtra(EXTRA_REPLAY) : null;
+        if (replay != null) {
+            String[] paths = replay.split(",");
+            boolean realTime = !getIntent().getBooleanExtra(EXTRA_REPLAY_MAX_SPEED, false);
+            if (paths.length == 1) startReplay(new File(paths[0]), realTime);
+            else startReplaySessions(paths, realTime);
+        } else {
+            if (BuildConfig.DEBUG && getIntent().getBooleanExtra(EXTRA_RECORD, false)) startRecording();
+            permissionLauncher.launch(Manifest.permission.CAMERA);
+        }
+    }
+
+    // Startup thread: JNI checks, then the analyzer's lane. It is published
+    // only after its synthetic frame, so nothing reconfigures it meanwhile,
+    // but published even if the warm-up fails.
+    private void warmUp(boolean nativeAvailable) {
+        if (nativeAvailable) {
+            try {
+                Log.i("EdgeViewer", "OpenCV test rows=" + testOpenCV());
+                Log.i("EdgeViewer", nativeHello());
+            } catch (Throwable t) {
+                Log.e("EdgeViewer", "JNI test failed", t);
+            }
+        }
+        Lane lane = new Lane(nativeAvailable, rois);
+        try {
+            // Destroyed already: publish the lane for release, skip the frame.
+            if (!startup.cancelled()) lane.warmUp(640, 480);
+        } finally {
+            lanes.add(lane);
+            analyzerLane = lane;
+            pipeline = lane.pipeline;
+            // Frame threads apply the current mode before their first frame.
+            modeChanged = true;
+        }
+    }
+
+    // "x,y,w,h;x,y,w,h..." -> quadruples; anything malformed disables regions.
+    private static int[] parseRois(String spec) {
+        if (spec == null || spec.trim().isEmpty()) return NO_REGIONS;
+        String[] rects = spec.split(";");
+        int[] xywh = new int[rects.length * 4];
         try {
-            Log.i("EdgeViewer", "OpenCV test rows=" + testOpenCV());
-            Log.i("EdgeViewer", nativeHello());
-        } catch (Throwable t) {
-            Log.e("EdgeViewer", "JNI test failed", t);
+            for (int i = 0; i < rects.length; i++) {
+                String[] v = rects[i].split(",");
+                if (v.length != 4) throw new NumberFormatException(rects[i]);
+                for (int j = 0; j < 4; j++) xywh[i * 4 + j] = Integer.parseInt(v[j].trim());
+                if (xywh[i * 4] < 0 || xywh[i * 4 + 1] < 0 || xywh[i * 4 + 2] <= 0 || xywh[i * 4 + 3] <= 0)
+                    throw new NumberFormatException(rects[i]);
+            }
+        } catch (NumberFormatException e) {
+            Log.w("EdgeViewer", "ignoring bad " + EXTRA_ROI + " \"" + spec + "\"", e);
+            return NO_REGIONS;
+        }
+        return xywh;
+    }
+
+    private void startRecording() {
+        File dir = getExternalFilesDir(null);
+        File file = new File(dir != null ? dir : getFilesDir(), "capture-" + System.currentTimeMillis() + ".edgerec");
+        try {
+            recorder = new AsyncFrameRecorder(new FrameRecorder(file, MAX_RECORDING_BYTES), RECORDER_SLOTS);
+            Log.i("EdgeViewer", "recording frames to " + file);
+        } catch (IOException e) {
+            Log.e("EdgeViewer", "cannot record to " + file, e);
+        }
+    }
+
+    // Binding may touch the network stack, so do it off the main thread.
+    private void startStreaming(int port) {
+        new Thread(() -> {
+            try {
+                EdgeStreamServer server = new EdgeStreamServer(port);
+                server.start();
+                streamServer = server;
+                Log.i("EdgeViewer", "streaming frames on port " + server.port());
+            } catch (IOException e) {
+                Log.e("EdgeViewer", "cannot stream on port " + port, e);
+            }
+        }, "stream-start").start();
+    }
+
+    /**
+     * Feeds a recording through the same processing paths as the camera,
+     * either at the recorded pace or as fast as the pipeline takes frames.
+     */
+    private void startReplay(File file, boolean realTime) {
+        startExecutor();
+        startFeed(file, realTime, this::replayFrame, null);
+    }
+
+    /**
+     * Replays several recordings at once, each as its own StreamSession with
+     * its own lane, sharing one worker pool. The first feed is shown (and
+     * streamed); the others are processed and their stats logged at the end.
+     */
+    private void startReplaySessions(String[] paths, boolean realTime) {
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        sessionScheduler = new SessionScheduler(workers, paths.length);
+        for (int i = 0; i < paths.length; i++) {
+            File file = new File(paths[i].trim());
+            StreamSession.Sink sink = i == 0 ? (s, job) -> showFrame(job) : (s, job) -> { };
+            StreamSession session = sessionScheduler.open(file.getName(), lazyLane(), sink);
+            startFeed(file, realTime, f -> {
+                analyzedFrames.incrementAndGet();
+                if (modeChanged) {
+                    modeChanged = false;
+                    applyStages();
+                }
+                session.submit(f, System.nanoTime());
+            }, session);
+        }
+    }
+
+    // One thread per recording, so each keeps its own recorded pace.
+    private void startFeed(File file, boolean realTime, Consumer<FrameSource.Frame> consumer, StreamSession session) {
+        replaying = true;
+        Thread t = new Thread(() -> {
+            FrameSource.Frame frame = new FrameSource.Frame();
+            try (ReplaySource src = new ReplaySource(file, realTime)) {
+                while (replaying && src.next(frame)) consumer.accept(frame);
+                Log.i("EdgeViewer", "replay of " + file.getName() + " finished after " + src.frames() + " frames");
+                if (session != null) logSession(session);
+            } catch (IOException e) {
+                Log.e("EdgeViewer", "replay of " + file + " failed", e);
+            }
+        }, "replay-" + file.getName());
+        replayThreads.add(t);
+        t.start();
+    }
+
+    private static void logSession(StreamSession session) {
+        StringBuilder sb = new StringBuilder(session.name()).append(": processed ").append(session.processed())
+                .append(", overwritten ").append(session.dropped()).append(", ");
+        session.metrics().appendPercentiles(sb, FrameMetrics.PROCESS);
+        Log.i("EdgeViewer", sb.toString());
+    }
+
+    private void replayFrame(FrameSource.Frame f) {
+        startup.awaitWarm();
+        analyzedFrames.incrementAndGet();
+        if (modeChanged) {
+            modeChanged = false;
+            applyStages();
         }
+        long captureNs = System.nanoTime();
+        StagedExecutor ex = executor;
+        if (ex != null) {
+            ex.submit(f.y, f.yRowStride, f.width, f.height, f.rotation, captureNs);
+            return;
+        }
+        glView.setCaptureTime(captureNs);
+        if (!processPlaneDirect(f.y, f.yRowStride, f.width, f.height, f.rotation, captureNs, null))
+            metrics.countDrop(FrameMetrics.DROP_ANALYZER);
+    }
+
+    /** Stage latencies and drop counts for the camera-to-screen path. */
+    public FrameMetrics getMetrics() { return metrics; }
 
-        permissionLauncher.launch(Manifest.permission.CAMERA);
+    private void setTracing(boolean on) {
+        FrameTrace.setEnabled(on);
+        for (Lane lane : lanes) lane.traceNative(on);
+    }
+
+    // Main thread; the next frame thread to see modeChanged rebuilds its lanes.
+    private void applyViewerMode(int mode) {
+        viewerMode = mode;
+        modeChanged = true;
+    }
+
+    // Frame threads only: the analyzer or replay thread (mode change) and the
+    // analyzer or executor sink (resolution change). Both values are re-read
+    // here so the last call always wins.
+    private synchronized void applyStages() {
+        for (Lane lane : lanes) lane.apply(viewerMode, resolution.level());
+    }
+
+    /**
+     * A pipeline plus its stage lists for every (mode, resolution level)
+     * pair, built once so switching allocates nothing. Stages keep per-frame
+     * state, so each thread that processes frames gets its own lane. With
+     * regions of interest the same stages also run through a RoiPipeline.
+     * Frames go through the lane's LumaPyramid, so every mode and resolution
+     * level reads its scale from one set of buffers.
+     */
+    private static final class Lane {
+        final FramePipeline pipeline;
+        final LumaPyramid pyramid = new LumaPyramid();
+        final FrameProcessor[][][] stages;
+        private final RoiPipeline roi;
+        private volatile int mode = MODE_EDGES;
+        // Null on the Java engine; owns this lane's native context otherwise.
+        private final NativeCanny nativeCanny;
+
+        Lane(boolean nativeAvailable, int[] rois) {
+            nativeCanny = nativeAvailable ? new NativeCanny(100, 200) : null;
+            if (nativeCanny != null) traceNative(FrameTrace.isEnabled());
+            FrameProcessor edgeStage = nativeCanny != null ? nativeCanny : FrameStages.canny(100, 200);
+            int levels = ResolutionController.levelCount();
+            stages = new FrameProcessor[3][levels][];
+            for (int level = 0; level < levels; level++) {
+                int factor = ResolutionController.factorOf(level);
+                // Edges travel 1 bit per pixel; the renderer unpacks them in its shader.
+                stages[0][level] = new FramePipeline.Builder().downscale(factor).add(edgeStage).pack().stages();
+                stages[1][level] = new FramePipeline.Builder().downscale(factor).grayscale().stages();
+                stages[2][level] = new FramePipeline.Builder().downscale(factor).add(edgeStage).contours(1.5f, 8).stages();
+            }
+            pipeline = new FramePipeline(stages[0][0]);
+            roi = new RoiPipeline(stages[0][0]);
+            roi.setRois(rois);
+        }
+
+        void apply(int mode, int level) {
+            this.mode = mode;
+            pipeline.setStages(stages[mode][level]);
+            // Polylines have no regions: contours always cover the whole frame.
+            if (mode != MODE_CONTOURS) roi.setStages(stages[mode][level]);
+        }
+
+        /** The region pipeline if regions are set and the mode allows them, else null. */
+        RoiPipeline regions() { return mode != MODE_CONTOURS && roi.hasRois() ? roi : null; }
+
+        // Runs a synthetic frame through every mode at full resolution, the
+        // way the camera path does (direct buffers, strided plane, pyramid),
+        // so the first real frame finds OpenCV initialized and the stages
+        // compiled. Leaves the pipeline on mode 0.
+        void warmUp(int width, int height) {
+            ByteBuffer y = ByteBuffer.allocateDirect(width * height);
+            for (int row = 0; row < height; row++)
+                for (int x = 0; x < width; x++) y.put(((x >> 5) + (row >> 5) & 1) == 0 ? (byte) 40 : (byte) 200);
+            y.clear();
+            ByteBuffer out = ByteBuffer.allocateDirect(width * height);
+            pyramid.setFrame(y, width, width, height);
+            for (FrameProcessor[][] mode : stages) {
+                pipeline.setStages(mode[0]);
+                pipeline.processPyramid(pyramid, out);
+            }
+            pipeline.setStages(stages[0][0]);
+        }
+
+        // Processor for pooled jobs (executor workers, stream sessions).
+        boolean process(FrameJob job) {
+            RoiPipeline r = regions();
+            if (r != null) {
+                r.processFrame(job.input, job.width, job.height, job.ensureOutput(r.outputBytes(job.width, job.height)));
+                job.outWidth = r.lastOutputWidth();
+                job.outHeight = r.lastOutputHeight();
+                job.outFormat = r.lastOutputFormat();
+                job.setRegions(r.lastRegions(), r.lastRegionCount());
+                return true;
+            }
+            job.regionCount = 0;
+            // Sized for full resolution; the plan may shrink it.
+            pyramid.setFrame(job.input, job.width, job.height);
+            pipeline.processPyramid(pyramid, ByteBuffer.wrap(job.ensureOutput(job.width * job.height)));
+            job.outWidth = pipeline.lastOutputWidth();
+            job.outHeight = pipeline.lastOutputHeight();
+            job.outFormat = pipeline.lastOutputFormat();
+            return true;
+        }
+
+        void traceNative(boolean on) {
+            if (nativeCanny != null) nativeCanny.context().setDiagnostics(on ? FrameTrace.interval() : 0);
+        }
+
+        // Only once no thread will process through this lane again.
+        void close() {
+            if (nativeCanny != null) nativeCanny.close();
+        }
+    }
+
+    private StagedExecutor createExecutor(int workers) {
+        StagedExecutor ex = new StagedExecutor(workers, 2, StagedExecutor.DROP_OLDEST,
+                worker -> lazyLane(), this::showFrame);   // in sequence order, one frame at a time
+        ex.setMetrics(metrics);
+        return ex;
+    }
+
+    // Created on the processing thread at its first frame, so building the
+    // lane (which waits for the native library) never blocks the main thread.
+    private StagedExecutor.Processor lazyLane() {
+        return new StagedExecutor.Processor() {
+            private Lane lane;
+
+            @Override public boolean process(FrameJob job) {
+                if (lane == null) {
+                    lane = new Lane(startup.awaitNative(), rois);
+                    lanes.add(lane);
+                    applyStages();
+                }
+                return lane.process(job);
+            }
+        };
+    }
+
+    // Renders (and streams) a processed job; never called concurrently.
+    private void showFrame(FrameJob job) {
+        startup.frameProcessed();
+        if (resolution.onFrame(job.processNs)) applyStages();
+        glView.setInputFormat(job.outFormat);
+        glView.setRegions(job.regions, job.regionCount);
+        glView.setFrameInfo(job.outWidth, job.outHeight, job.rotation);
+        glView.setCaptureTime(job.captureNs);
+        glView.updateFrame(job.output, job.outWidth, job.outHeight);
+        EdgeStreamServer stream = streamServer;
+        if (stream != null && job.regionCount == 0) {
+            stream.publish(job.output, job.outFormat, job.outWidth, job.outHeight, job.rotation, job.captureNs);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        replaying = false;
+        // Joining replays, draining workers and freeing native state can all
+        // wait on frames in flight or on the warm-up; none of that may block
+        // the main thread.
+        startup.release(this::releaseProcessing);
+    }
+
+    // Startup thread, after the warm-up has finished or been skipped.
+    private void releaseProcessing() {
+        for (Thread replay : replayThreads) {
+            try {
+                replay.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        SessionScheduler scheduler = sessionScheduler;
+        sessionScheduler = null;
+        if (scheduler != null) {
+            try {
+                scheduler.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        StagedExecutor ex = executor;
+        executor = null;
+        if (ex != null) {
+            try {
+                ex.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Let an in-flight analyzer frame finish before freeing native state.
+        analyzerExecutor.execute(this::stopRecording);
+        analyzerExecutor.shutdown();
+        try {
+            analyzerExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Lane lane : lanes) lane.close();
+        EdgeStreamServer stream = streamServer;
+        streamServer = null;
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void startExecutor() {
+        int workers = Math.min(4, Runtime.getRuntime().availableProcessors() - 2);
+        if (workers >= 2 && executor == null) executor = createExecutor(workers);
     }
 
     private void startCamera() {
@@ -112,10 +585,8 @@ public class MainActivity extends AppCompatActivity {
                     .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                     .build();
 
-                analysis.setAnalyzer(
-                        Executors.newSingleThreadExecutor(),
-                        this::analyzeFrame
-                );
+                startExecutor();
+                analysis.setAnalyzer(analyzerExecutor, this::analyzeFrame);
 
                 CameraSelector selector = CameraSelector.DEFAULT_BACK_CAMERA;
                 cameraProvider.unbindAll();
@@ -130,20 +601,181 @@ public class MainActivity extends AppCompatActivity {
     private void analyzeFrame(ImageProxy proxy) {
         int format = proxy.getFormat();
         if (format != ImageFormat.YUV_420_888 && format != ImageFormat.NV21) {
+            metrics.countDrop(FrameMetrics.DROP_ANALYZER);
             proxy.close();
             return;
         }
+        startup.awaitWarm();
+        analyzedFrames.incrementAndGet();
+        if (modeChanged) {
+            modeChanged = false;
+            applyStages();
+        }
+        long captureNs = captureNanoTime(proxy.getImageInfo().getTimestamp());
 
         int rotation = proxy.getImageInfo().getRotationDegrees();
         int width = proxy.getWidth();
         int height = proxy.getHeight();
+        if (recorder != null) record(proxy, captureNs, width, height, rotation);
+
+        StagedExecutor ex = executor;
+        if (ex != null) {
+            // Copy Y out and give the image back to CameraX straight away;
+            // the workers take it from here.
+            ImageProxy.PlaneProxy y = proxy.getPlanes()[0];
+            ex.submit(y.getBuffer(), y.getRowStride(), width, height, rotation, captureNs);
+            proxy.close();
+            return;
+        }
+
+        glView.setCaptureTime(captureNs);
+        if (useDirectPath) {
+            try {
+                ImageProxy.PlaneProxy y = proxy.getPlanes()[0];
+                if (processPlaneDirect(y.getBuffer(), y.getRowStride(), width, height, rotation, captureNs, proxy)) {
+                    return;
+                }
+            } catch (UnsatisfiedLinkError e) {
+                Log.w("EdgeViewer", "cannyPlanes unavailable; falling back to byte[] path", e);
+            }
+            useDirectPath = false;
+        }
+        analyzeFrameArray(proxy, width, height, rotation, captureNs);
+    }
+
+    // Queues the untouched planes for the recorder's writer thread.
+    private void record(ImageProxy proxy, long captureNs, int width, int height, int rotation) {
+        ImageProxy.PlaneProxy[] planes = proxy.getPlanes();
+        try {
+            boolean kept;
+            if (planes.length == 3) {
+                kept = recorder.record(captureNs, width, height, rotation,
+                        planes[0].getBuffer(), planes[0].getRowStride(),
+                        planes[1].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                        planes[2].getBuffer(), planes[2].getRowStride(), planes[2].getPixelStride());
+            } else {
+                kept = recorder.record(captureNs, width, height, rotation,
+                        planes[0].getBuffer(), planes[0].getRowStride());
+            }
+            if (kept) return;
+            Log.i("EdgeViewer", "recording full after " + recorder.frames() + " frames");
+        } catch (IOException e) {
+            Log.e("EdgeViewer", "recording failed", e);
+        }
+        stopRecording();
+    }
+
+    // Analyzer thread: flushes what is queued and closes the file.
+    private void stopRecording() {
+        if (recorder == null) return;
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            Log.e("EdgeViewer", "recording failed", e);
+        }
+        Log.i("EdgeViewer", "recorded " + recorder.frames() + " frames, left out " + recorder.dropped());
+        recorder = null;
+    }
+
+    // Camera timestamps come from the sensor clock, which is elapsedRealtime
+    // on most devices and the monotonic clock on some. Map either onto
+    // System.nanoTime(); if neither looks plausible use "now".
+    private static long captureNanoTime(long sensorTimestamp) {
+        long now = System.nanoTime();
+        long age = SystemClock.elapsedRealtimeNanos() - sensorTimestamp;
+        if (age >= 0 && age < 1_000_000_000L) return now - age;
+        age = now - sensorTimestamp;
+        if (age >= 0 && age < 1_000_000_000L) return sensorTimestamp;
+        return now;
+    }
+
+    /**
+     * Direct-buffer path: the pipeline reads the strided Y plane (the first
+     * plane of both NV21 and YUV_420_888) and writes into a direct buffer that
+     * the renderer uploads without copying. U/V are never touched. The camera
+     * image, if any, is closed as soon as the plane has been read.
+     */
+    private boolean processPlaneDirect(ByteBuffer yPlane, int yRowStride, int width, int height, int rotation,
+                                       long captureNs, ImageProxy proxy) {
+        RoiPipeline roi = analyzerLane.regions();
+        if (roi != null) return processRegionsDirect(roi, yPlane, yRowStride, width, height, rotation, proxy);
+        int outW = pipeline.outputWidth(width);
+        int outH = pipeline.outputHeight(height);
+        // Without CPU rotation the pipeline writes straight into the
+        // renderer's next frame slot; otherwise into scratch that the renderer
+        // rotates into the slot.
+        glView.setInputFormat(pipeline.outputFormat());
+        glView.setRegions(NO_REGIONS, 0);
+        glView.setFrameInfo(outW, outH, rotation);
+        boolean zeroCopy = !glView.isRotatingInput();
+        long t0 = System.nanoTime();
+        ByteBuffer out;
+        if (zeroCopy) {
+            out = glView.beginFrame();
+        } else {
+            rotateScratch = bufferPool.ensure(rotateScratch, pipeline.outputBytes(width, height));
+            out = rotateScratch;
+        }
+        long t1 = System.nanoTime();
+        metrics.record(FrameMetrics.ACQUIRE, t1 - t0);
+
+        LumaPyramid pyramid = analyzerLane.pyramid;
+        if (!pyramid.setFrame(yPlane, yRowStride, width, height) || !pipeline.processPyramid(pyramid, out))
+            return false;
+        long processNs = System.nanoTime() - t1;
+        metrics.record(FrameMetrics.PROCESS, processNs);
+        if (resolution.onFrame(processNs)) applyStages();
+
+        if (proxy != null) proxy.close();
+        EdgeStreamServer stream = streamServer;
+        if (stream != null) stream.publish(out, pipeline.lastOutputFormat(), outW, outH, rotation, captureNs);
+        startup.frameProcessed();
+        if (zeroCopy) glView.commitFrame();
+        else glView.updateFrame(out, outW, outH);
+        return true;
+    }
+
+    /**
+     * Region-of-interest variant of the direct path: only the regions, plus
+     * the halo the stages need, are cropped from the plane and processed,
+     * straight into the renderer's slot, which uploads just those blocks.
+     * Region frames never rotate on the CPU, and are not streamed.
+     */
+    private boolean processRegionsDirect(RoiPipeline roi, ByteBuffer yPlane, int yRowStride, int width, int height,
+                                         int rotation, ImageProxy proxy) {
+        int count = roi.layout(width, height);
+        glView.setInputFormat(roi.outputFormat());
+        glView.setRegions(roi.lastRegions(), count);
+        glView.setFrameInfo(roi.lastOutputWidth(), roi.lastOutputHeight(), rotation);
+        long t0 = System.nanoTime();
+        ByteBuffer out = glView.beginFrame();
+        long t1 = System.nanoTime();
+        metrics.record(FrameMetrics.ACQUIRE, t1 - t0);
+        if (!roi.processPlanes(yPlane, yRowStride, width, height, out)) return false;
+        long processNs = System.nanoTime() - t1;
+        metrics.record(FrameMetrics.PROCESS, processNs);
+        if (resolution.onFrame(processNs)) applyStages();
+
+        if (proxy != null) proxy.close();
+        startup.frameProcessed();
+        glView.commitFrame();
+        return true;
+    }
+
+    // Original byte[] path, kept as a fallback when the direct entry point is unavailable.
+    private void analyzeFrameArray(ImageProxy proxy, int width, int height, int rotation, long captureNs) {
+        int format = proxy.getFormat();
 
         // Prepare NV21 buffer (Y + VU) size
-        byte[] nv21 = new byte[width * height + (width * height) / 2];
+        long t0 = System.nanoTime();
+        int nv21Size = Nv21Packer.nv21Size(width, height);
+        if (nv21Array == null || nv21Array.length != nv21Size) nv21Array = new byte[nv21Size];
+        byte[] nv21 = nv21Array;
 
         // Log plane info for debugging horizontal-line artifacts
         int planeCount = proxy.getPlanes().length;
-        android.util.Log.d("EdgeViewer", "analyzeFrame format=" + format + " planes=" + planeCount + " expectedNV21Bytes=" + nv21.length);
+        boolean trace = FrameTrace.sampled(analyzedFrames.get());
+        if (trace) Log.d("EdgeViewer", "analyzeFrame format=" + format + " planes=" + planeCount + " expectedNV21Bytes=" + nv21.length);
 
         // If the ImageProxy has a single plane, copy the full buffer directly.
         // Do NOT assume ImageFormat.NV21 implies plane layout; rely on planes.length.
@@ -156,7 +788,7 @@ public class MainActivity extends AppCompatActivity {
                 // Zero-fill remainder just in case
                 for (int i = toCopy; i < nv21.length; i++) nv21[i] = 0;
             }
-            android.util.Log.d("EdgeViewer", "single-plane copy size=" + toCopy);
+            if (trace) Log.d("EdgeViewer", "single-plane copy size=" + toCopy);
         } else {
             // Robust conversion from YUV_420_888 planes to NV21 (packed VU)
             ImageProxy.PlaneProxy yPlane = proxy.getPlanes()[0];
@@ -173,36 +805,12 @@ public class MainActivity extends AppCompatActivity {
             final int uPixelStride = uPlane.getPixelStride();
             final int vPixelStride = vPlane.getPixelStride();
 
-                // Debug: log strides and plane buffer sizes to help diagnose horizontal line issues
-                android.util.Log.d("EdgeViewer", "Y stride=" + yRowStride + " U stride=" + uRowStride + " V stride=" + vRowStride + " U pixStride=" + uPixelStride + " V pixStride=" + vPixelStride
+            // Debug: log strides and plane buffer sizes to help diagnose horizontal line issues
+            if (trace) Log.d("EdgeViewer", "Y stride=" + yRowStride + " U stride=" + uRowStride + " V stride=" + vRowStride + " U pixStride=" + uPixelStride + " V pixStride=" + vPixelStride
                     + " yBuf=" + yBuf.remaining() + " uBuf=" + uBuf.remaining() + " vBuf=" + vBuf.remaining());
 
-            // Copy Y plane: handle potential row padding
-            for (int row = 0; row < height; row++) {
-                int yRowStart = row * yRowStride;
-                int dstRowStart = row * width;
-                for (int col = 0; col < width; col++) {
-                    nv21[dstRowStart + col] = yBuf.get(yRowStart + col);
-                }
-            }
-
-            // Interleave VU (NV21) from U and V planes
-            int chromaHeight = height / 2;
-            int chromaWidth = width / 2;
-            int pos = width * height;
-            for (int row = 0; row < chromaHeight; row++) {
-                int uRowStart = row * uRowStride;
-                int vRowStart = row * vRowStride;
-                for (int col = 0; col < chromaWidth; col++) {
-                    int uIndex = uRowStart + col * uPixelStride;
-                    int vIndex = vRowStart + col * vPixelStride;
-                    byte u = uBuf.get(uIndex);
-                    byte v = vBuf.get(vIndex);
-                    // NV21 expects V then U
-                    nv21[pos++] = v;
-                    nv21[pos++] = u;
-                }
-            }
+            Nv21Packer.pack(yBuf, yRowStride, uBuf, uRowStride, uPixelStride,
+                    vBuf, vRowStride, vPixelStride, width, height, nv21);
         }
 
         // Final sanity check: log if we didn't produce expected NV21 length
@@ -210,28 +818,30 @@ public class MainActivity extends AppCompatActivity {
             android.util.Log.w("EdgeViewer", "nv21 length mismatch: " + nv21.length + " expected=" + (width * height + (width * height) / 2));
         }
 
-        if (outputBuffer == null || outputBuffer.length != width * height)
-            outputBuffer = new byte[width * height];
+        long t1 = System.nanoTime();
+        metrics.record(FrameMetrics.REPACK, t1 - t0);
 
-        if (DEBUG_CHECKER) {
-            // generate an 8x8 checkerboard for quick visual verification
-            int block = Math.max(8, Math.min(width, height) / 16);
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int v = (((y / block) + (x / block)) & 1) == 0 ? 255 : 0;
-                    outputBuffer[y * width + x] = (byte) v;
-                }
-            }
-        } else {
-            processFrame(nv21, width, height, outputBuffer);
-        }
+        int outW = pipeline.outputWidth(width);
+        int outH = pipeline.outputHeight(height);
+        if (outputBuffer == null || outputBuffer.length != outW * outH)
+            outputBuffer = new byte[outW * outH];
 
+        pipeline.processFrame(nv21, width, height, outputBuffer);
+        long processNs = System.nanoTime() - t1;
+        metrics.record(FrameMetrics.PROCESS, processNs);
+        if (resolution.onFrame(processNs)) applyStages();
 
-        runOnUiThread(() -> {
-            glView.setFrameInfo(width, height, rotation);
-            glView.updateFrame(outputBuffer, width, height);
-        });
 
         proxy.close();
+        // The renderer copies into its own frame slot, so outputBuffer can be
+        // reused for the next frame straight away.
+        // The fallback always processes whole frames.
+        glView.setInputFormat(pipeline.lastOutputFormat());
+        glView.setRegions(NO_REGIONS, 0);
+        glView.setFrameInfo(outW, outH, rotation);
+        glView.updateFrame(outputBuffer, outW, outH);
+        EdgeStreamServer stream = streamServer;
+        if (stream != null) stream.publish(outputBuffer, pipeline.lastOutputFormat(), outW, outH, rotation, captureNs);
+        startup.frameProcessed();
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
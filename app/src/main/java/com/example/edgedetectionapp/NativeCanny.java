@@ -0,0 +1,53 @@
+package com.example.edgedetectionapp;
+
+import com.example.edgedetectionapp.proc.FrameProcessor;
+import com.example.edgedetectionapp.proc.Scratch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * OpenCV Canny as a pipeline stage. Only usable once MainActivity has loaded
+ * libedgeviewer. As the sole stage it reads the camera's Y plane in place.
+ * Followed by a pack stage it fuses into a variant that packs to 1 bit per
+ * pixel on the native side.
+ *
+ * Each instance owns a {@link NativeEdgeContext} (its packed variant shares
+ * it), so give every processing thread its own stage and close it when the
+ * thread is done.
+ */
+final class NativeCanny implements FrameProcessor, FrameProcessor.Direct, AutoCloseable {
+    private final NativeEdgeContext context;
+    private final boolean packed;
+    private NativeCanny packedTwin;
+
+    NativeCanny(int low, int high) { this(new NativeEdgeContext(low, high), false); }
+
+    private NativeCanny(NativeEdgeContext context, boolean packed) {
+        this.context = context;
+        this.packed = packed;
+    }
+
+    NativeEdgeContext context() { return context; }
+
+    @Override public int outputFormat(int inputFormat) { return packed ? FORMAT_PACKED : FORMAT_BINARY; }
+
+    // cv::Canny runs Sobel and non-maximum suppression without a pre-blur.
+    @Override public int halo() { return 2 + HYSTERESIS_MARGIN; }
+
+    @Override public FrameProcessor fuse(FrameProcessor next) {
+        if (packed || next.outputFormat(FORMAT_BINARY) != FORMAT_PACKED) return null;
+        if (packedTwin == null) packedTwin = new NativeCanny(context, true);
+        return packedTwin;
+    }
+
+    @Override public void process(byte[] in, int width, int height, byte[] out, Scratch scratch) {
+        if (!context.cannyArray(in, width, height, packed, out))
+            throw new IllegalArgumentException("cannyArray rejected " + width + "x" + height);
+    }
+
+    @Override public boolean processPlanes(ByteBuffer y, int yRowStride, int width, int height, ByteBuffer out) {
+        return context.cannyPlanes(y, yRowStride, width, height, packed, out);
+    }
+
+    @Override public void close() { context.close(); }
+}
@@ -0,0 +1,89 @@
+package com.example.edgedetectionapp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Owns one native edge-detection context: thresholds, diagnostics settings,
+ * counters and the working buffers, which are sized for the largest frame
+ * seen and reused after that. Contexts share nothing, so threads that each
+ * use their own can run in parallel.
+ *
+ * Setters only record the new values; the next frame pushes them to the
+ * native side, so they are cheap to call from the UI thread. Frame calls
+ * and close() are serialized, and a closed context rejects frames instead
+ * of touching freed memory.
+ */
+final class NativeEdgeContext implements AutoCloseable {
+    /** Indices into {@link #readStats(long[])}. */
+    static final int STAT_FRAMES = 0, STAT_ALLOCATIONS = 1, STAT_EDGE_PIXELS = 2, STAT_COUNT = 3;
+
+    private long handle;
+    private volatile int low, high, diagnosticsEvery;
+    private volatile boolean dirty = true;
+
+    NativeEdgeContext(int low, int high) {
+        this.low = low;
+        this.high = high;
+        handle = nativeCreate();
+        if (handle == 0) throw new IllegalStateException("native edge context allocation failed");
+    }
+
+    void setThresholds(int low, int high) {
+        this.low = low;
+        this.high = high;
+        dirty = true;
+    }
+
+    /** Logs edge stats every {@code everyNFrames} frames; 0 turns the extra pass off (default). */
+    void setDiagnostics(int everyNFrames) {
+        if (everyNFrames < 0) throw new IllegalArgumentException("everyNFrames must be >= 0");
+        diagnosticsEvery = everyNFrames;
+        dirty = true;
+    }
+
+    // Both return false if the context is closed or the native side rejected
+    // the buffers (not direct / too small).
+    synchronized boolean cannyPlanes(ByteBuffer y, int yRowStride, int width, int height,
+                                     boolean packed, ByteBuffer output) {
+        return configured() && nativeCannyPlanes(handle, y, yRowStride, width, height, packed, output);
+    }
+
+    synchronized boolean cannyArray(byte[] input, int width, int height, boolean packed, byte[] output) {
+        return configured() && nativeCannyArray(handle, input, width, height, packed, output);
+    }
+
+    /**
+     * Copies the counters into {@code out} (STAT_COUNT entries): frames
+     * processed, workspace allocations, and edge pixels in the last
+     * diagnosed frame (-1 before the first).
+     */
+    synchronized void readStats(long[] out) {
+        if (out.length < STAT_COUNT) throw new IllegalArgumentException("need " + STAT_COUNT + " slots");
+        if (handle != 0) nativeStats(handle, out);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (handle == 0) return;
+        nativeDestroy(handle);
+        handle = 0;
+    }
+
+    private boolean configured() {
+        if (handle == 0) return false;
+        if (dirty) {
+            dirty = false;
+            nativeConfigure(handle, low, high, diagnosticsEvery);
+        }
+        return true;
+    }
+
+    private static native long nativeCreate();
+    private static native void nativeDestroy(long handle);
+    private static native void nativeConfigure(long handle, int low, int high, int diagnosticsEvery);
+    private static native void nativeStats(long handle, long[] out);
+    private static native boolean nativeCannyPlanes(long handle, ByteBuffer y, int yRowStride, int width, int height,
+                                                    boolean packed, ByteBuffer output);
+    private static native boolean nativeCannyArray(long handle, byte[] input, int width, int height,
+                                                   boolean packed, byte[] output);
+}
@@ -0,0 +1,135 @@
+package com.example.edgedetectionapp;
+
+import android.util.Log;
+
+import com.example.edgedetectionapp.metrics.FrameMetrics;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Cold-start work kept off the main thread and off the first frame: loading
+ * the native library (and the OpenCV it links against), then a warm-up task,
+ * typically a synthetic frame through a freshly built pipeline so OpenCV's
+ * lazy init, the first Canny call and the JIT are paid for before the camera
+ * delivers anything. Both run in order on one background thread; threads
+ * that need their results wait for them instead of doing the work again.
+ *
+ * Time to first processed frame is measured from construction, which should
+ * be as early as possible (an activity field), and lands in FrameMetrics.
+ *
+ * Teardown goes through {@link #release}, which never blocks: state the
+ * warm-up may still be using is freed on the startup thread once it is done.
+ */
+final class Startup {
+    interface WarmUp {
+        /** Runs on the startup thread once the library load has been attempted. */
+        void run(boolean nativeAvailable) throws Exception;
+    }
+
+    private static final String TAG = "EdgeViewer";
+
+    private final FrameMetrics metrics;
+    private final long createdNs = System.nanoTime();
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private final CountDownLatch warm = new CountDownLatch(1);
+    private volatile boolean nativeAvailable;
+    // Nanoseconds since construction; -1 until reached.
+    private volatile long loadedNs = -1, warmNs = -1;
+    private volatile boolean cancelled;
+    // Guarded by this.
+    private boolean finished;
+    private Runnable release;
+
+    Startup(FrameMetrics metrics) { this.metrics = metrics; }
+
+    void start(String library, WarmUp warmUp) {
+        Thread t = new Thread(() -> {
+            try {
+                try {
+                    System.loadLibrary(library);
+                    nativeAvailable = true;
+                } catch (UnsatisfiedLinkError e) {
+                    Log.w(TAG, library + " native library unavailable; using Java edge engine", e);
+                }
+                loadedNs = System.nanoTime() - createdNs;
+                loaded.countDown();
+                if (!cancelled) warmUp.run(nativeAvailable);
+            } catch (Throwable e) {
+                // A failed warm-up only costs the first frame its speed.
+                Log.e(TAG, "warm-up failed", e);
+            } finally {
+                loaded.countDown();
+                warmNs = System.nanoTime() - createdNs;
+                warm.countDown();
+            }
+            Runnable r;
+            synchronized (this) {
+                finished = true;
+                r = release;
+            }
+            if (r != null) runRelease(r);
+        }, "startup");
+        t.start();
+    }
+
+    /** Waits for the library load; true if it loaded. */
+    boolean awaitNative() {
+        await(loaded);
+        return nativeAvailable;
+    }
+
+    /** Waits for the warm-up task to finish (or fail). */
+    void awaitWarm() { await(warm); }
+
+    /** True once release() was called; the warm-up may skip what is left. */
+    boolean cancelled() { return cancelled; }
+
+    /**
+     * Flags the warm-up as cancelled and runs {@code release} after it,
+     * on the startup thread, or on a new thread if the warm-up has already
+     * finished. Returns at once, so it is safe from onDestroy().
+     */
+    void release(Runnable release) {
+        cancelled = true;
+        synchronized (this) {
+            if (!finished) {
+                this.release = release;
+                return;
+            }
+        }
+        new Thread(() -> runRelease(release), "startup-release").start();
+    }
+
+    private static void runRelease(Runnable release) {
+        try {
+            release.run();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "release failed", e);
+        }
+    }
+
+    /**
+     * Call after every processed frame; the first call records time to
+     * first frame in FrameMetrics and logs it next to the startup phases.
+     */
+    void frameProcessed() {
+        long ns = System.nanoTime() - createdNs;
+        if (!metrics.recordFirstFrame(ns)) return;
+        Log.i(TAG, String.format(Locale.US, "first frame after %.1f ms (library %.1f ms, warm-up done %.1f ms)",
+                ns / 1e6, loadedNs / 1e6, warmNs / 1e6));
+    }
+
+    private static void await(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
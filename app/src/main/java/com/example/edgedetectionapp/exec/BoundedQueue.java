@@ -0,0 +1,81 @@
+package com.example.edgedetectionapp.exec;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer/multi-consumer queue (array ring with a
+ * per-cell sequence, after Vyukov). offer() and poll() never block and never
+ * allocate; they fail instead of waiting when the queue is full or empty.
+ */
+public final class BoundedQueue<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+    // seqs[i] == pos: cell free for the producer at pos;
+    // seqs[i] == pos + 1: cell filled for the consumer at pos.
+    private final AtomicLongArray seqs;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /** Capacity is rounded up to a power of two. */
+    public BoundedQueue(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        mask = size - 1;
+        items = new AtomicReferenceArray<>(size);
+        seqs = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) seqs.set(i, i);
+    }
+
+    public int capacity() { return mask + 1; }
+
+    public boolean offer(T item) {
+        if (item == null) throw new NullPointerException();
+        long pos = tail.get();
+        while (true) {
+            int i = (int) pos & mask;
+            long diff = seqs.get(i) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items.set(i, item);
+                    seqs.set(i, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    public T poll() {
+        long pos = head.get();
+        while (true) {
+            int i = (int) pos & mask;
+            long diff = seqs.get(i) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    T item = items.get(i);
+                    items.set(i, null);
+                    seqs.set(i, pos + mask + 1);
+                    return item;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /** Approximate under concurrent use. */
+    public int size() {
+        long n = tail.get() - head.get();
+        return n < 0 ? 0 : (int) Math.min(n, mask + 1);
+    }
+}
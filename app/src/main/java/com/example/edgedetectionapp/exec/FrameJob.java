@@ -0,0 +1,58 @@
+package com.example.edgedetectionapp.exec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A frame travelling through {@link StagedExecutor} or a {@link StreamSession}.
+ * Jobs are pooled and reused; stages own a job only between taking it from a
+ * queue and handing it on, so the fields are plain.
+ */
+public final class FrameJob {
+    public long sequence;
+    public int width, height, rotation;
+    public long captureNs;
+    /** Packed luma, width*height bytes, copied out of the camera buffer. */
+    public byte[] input = new byte[0];
+    public byte[] output = new byte[0];
+    public int outWidth, outHeight;
+    /** FrameProcessor.FORMAT_* of {@link #output}, set by the processor. */
+    public int outFormat;
+    /** Regions of interest in {@link #output}, as in FrameSlot; 0 for a full frame. */
+    public int[] regions = new int[0];
+    public int regionCount;
+    /** Time the processor took, filled in by the executor. */
+    public long processNs;
+    /** Caller context passed to submit(), e.g. where the result goes. */
+    public Object tag;
+
+    /** Makes {@link #output} hold at least {@code bytes}, reusing it when possible. */
+    public byte[] ensureOutput(int bytes) {
+        if (output.length < bytes) output = new byte[bytes];
+        return output;
+    }
+
+    /** Copies {@code count} regions (x, y, width, height each) into {@link #regions}. */
+    public void setRegions(int[] rects, int count) {
+        if (regions.length < count * 4) regions = new int[count * 4];
+        System.arraycopy(rects, 0, regions, 0, count * 4);
+        regionCount = count;
+    }
+
+    byte[] ensureInput(int bytes) {
+        if (input.length < bytes) input = new byte[bytes];
+        return input;
+    }
+
+    // Copies the visible part of a strided luma plane into input, row by row.
+    void copyLuma(ByteBuffer y, int yRowStride, int width, int height) {
+        byte[] in = ensureInput(width * height);
+        ByteBuffer src = y.duplicate();
+        src.clear();
+        for (int row = 0; row < height; row++) {
+            src.position(row * yRowStride);
+            src.get(in, row * width, width);
+        }
+        this.width = width;
+        this.height = height;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.edgedetectionapp.exec;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs any number of {@link StreamSession}s on one fixed pool of workers.
+ *
+ * Sessions with a frame waiting sit in a FIFO run queue, each at most once.
+ * A worker takes the session at the head, processes its waiting frame and,
+ * if a newer frame has arrived meanwhile, puts the session back at the tail.
+ * The time slice is one frame: every ready session gets a turn before any
+ * gets a second one, whatever the feeds' frame rates, so a fast feed cannot
+ * starve a slow one. With more ready sessions than workers, each feed runs
+ * at roughly workers / sessions of its solo rate and sheds the rest as
+ * overwritten frames.
+ *
+ * Idle workers sleep on a semaphore holding one permit per queued session,
+ * so a ready session wakes one worker and an idle pool costs nothing.
+ */
+public final class SessionScheduler {
+    private final int maxSessions;
+    // Closed sessions can linger in the queue until a worker pops them, so
+    // it has room for two generations.
+    private final BoundedQueue<StreamSession> runQueue;
+    private final Semaphore work = new Semaphore(0);
+    private final List<StreamSession> sessions = new CopyOnWriteArrayList<>();
+    private final Thread[] workers;
+    private volatile boolean running = true;
+
+    public SessionScheduler(int workerCount, int maxSessions) {
+        if (workerCount < 1 || maxSessions < 1) throw new IllegalArgumentException("need >= 1 worker and session");
+        this.maxSessions = maxSessions;
+        runQueue = new BoundedQueue<>(maxSessions * 2);
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::work, "session-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Adds a feed. {@code processor} fills job.output/outWidth/outHeight and
+     * is only ever called for this session, one frame at a time.
+     */
+    public synchronized StreamSession open(String name, StagedExecutor.Processor processor, StreamSession.Sink sink) {
+        if (!running) throw new IllegalStateException("scheduler is shut down");
+        if (sessions.size() >= maxSessions) throw new IllegalStateException("already " + maxSessions + " sessions");
+        StreamSession s = new StreamSession(name, this, processor, sink);
+        sessions.add(s);
+        return s;
+    }
+
+    public List<StreamSession> sessions() { return Collections.unmodifiableList(sessions); }
+
+    public int workerCount() { return workers.length; }
+
+    void remove(StreamSession s) { sessions.remove(s); }
+
+    void ready(StreamSession s) {
+        if (s.isClosed() || !s.queued.compareAndSet(false, true)) return;
+        if (!runQueue.offer(s)) {
+            // Full of closed sessions still waiting to be popped. Leave the
+            // session unqueued so its next submit() tries again.
+            s.queued.set(false);
+            return;
+        }
+        work.release();
+    }
+
+    private void work() {
+        while (true) {
+            work.acquireUninterruptibly();
+            if (!running) return;
+            StreamSession s = runQueue.poll();
+            if (s == null) continue;
+            s.runOnce();
+            // A frame submitted during runOnce() found queued still set and
+            // left it to us: go to the back of the line for it.
+            s.queued.set(false);
+            if (s.hasWaiting()) ready(s);
+        }
+    }
+
+    /** Closes every session and stops the workers; waiting frames are discarded. */
+    public void shutdown() throws InterruptedException {
+        synchronized (this) {
+            running = false;
+        }
+        for (StreamSession s : sessions) s.close();
+        // Each worker takes at most one more permit before it sees running.
+        work.release(workers.length);
+        for (Thread w : workers) w.join();
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.edgedetectionapp.exec;
+
+import com.example.edgedetectionapp.metrics.FrameMetrics;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Three-stage frame pipeline: ingest, N process workers, in-order publish.
+ *
+ * submit() runs on the camera thread. It copies the Y plane into a pooled
+ * {@link FrameJob}, stamps it with a sequence number and returns, so the
+ * caller can close the camera image right away. Workers take jobs from a
+ * bounded lock-free queue and process them in parallel. Finished jobs go into
+ * a reorder ring, and the {@link Sink} receives them strictly in sequence
+ * order on whichever worker completes the next expected frame. Dropped and
+ * failed frames leave a tombstone so delivery skips them instead of waiting.
+ *
+ * The job pool bounds memory and latency: at most queueCapacity + workers
+ * frames are in flight. When it runs out, the drop policy decides:
+ * DROP_OLDEST discards the oldest frame still waiting for a worker,
+ * DROP_NEWEST discards the incoming frame, and BLOCK makes submit() wait.
+ *
+ * Idle workers sleep on a semaphore that submit() releases once per frame,
+ * so each frame wakes at most one worker and an idle executor costs nothing.
+ */
+public final class StagedExecutor {
+    public static final int DROP_OLDEST = 0;
+    public static final int DROP_NEWEST = 1;
+    public static final int BLOCK = 2;
+
+    /** Processes one job; called concurrently from different workers, each with its own instance. */
+    public interface Processor {
+        /** Fills job.output/outWidth/outHeight; false drops the frame. */
+        boolean process(FrameJob job);
+    }
+
+    public interface ProcessorFactory {
+        Processor create(int worker);
+    }
+
+    /**
+     * Receives frames in sequence order, one call at a time. Must not keep
+     * the job after returning. A RuntimeException counts the frame as failed
+     * and delivery carries on.
+     */
+    public interface Sink {
+        void deliver(FrameJob job);
+    }
+
+    private static final long BLOCK_PARK_NS = 100_000L;
+
+    private final int dropPolicy;
+    private final Sink sink;
+    private final BoundedQueue<FrameJob> free;
+    private final BoundedQueue<FrameJob> pending;
+    // One permit per frame offered to pending. A frame DROP_OLDEST takes back
+    // leaves its permit behind, which only costs a worker an empty poll.
+    private final Semaphore work = new Semaphore(0);
+    private final AtomicReferenceArray<FrameJob> done;
+    private final AtomicLongArray doneSeq;
+    private final int doneMask;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile long nextDelivery = 0;   // written only while draining
+    private long nextSeq = 0;                 // submit thread only
+    private final Thread[] workers;
+    private volatile boolean running = true;
+    private volatile FrameMetrics metrics;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    public StagedExecutor(int workerCount, int queueCapacity, int dropPolicy,
+                          ProcessorFactory factory, Sink sink) {
+        if (workerCount < 1 || queueCapacity < 1) throw new IllegalArgumentException("need >= 1 worker and queue slot");
+        if (dropPolicy < DROP_OLDEST || dropPolicy > BLOCK) throw new IllegalArgumentException("bad drop policy " + dropPolicy);
+        this.dropPolicy = dropPolicy;
+        this.sink = sink;
+        int jobs = queueCapacity + workerCount;
+        free = new BoundedQueue<>(jobs);
+        pending = new BoundedQueue<>(jobs);
+        for (int i = 0; i < jobs; i++) free.offer(new FrameJob());
+        // Room for every live job plus tombstones of frames dropped while an
+        // older frame is still being processed.
+        int ring = Integer.highestOneBit(jobs * 4 - 1) << 1;
+        done = new AtomicReferenceArray<>(ring);
+        doneSeq = new AtomicLongArray(ring);
+        for (int i = 0; i < ring; i++) doneSeq.set(i, -1);
+        doneMask = ring - 1;
+
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            Processor p = factory.create(i);
+            workers[i] = new Thread(() -> work(p), "frame-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /** ACQUIRE, REPACK and PROCESS timings plus queue drops go here; null disables them. */
+    public void setMetrics(FrameMetrics metrics) { this.metrics = metrics; }
+
+    /**
+     * Copies a strided luma plane into the pipeline. Only call from one
+     * thread. Returns false if the frame was dropped; either way the plane
+     * is no longer referenced when this returns.
+     */
+    public boolean submit(ByteBuffer y, int yRowStride, int width, int height, int rotation, long captureNs) {
+        return submit(y, yRowStride, width, height, rotation, captureNs, null);
+    }
+
+    /** Same as above; {@code tag} travels with the frame as {@link FrameJob#tag}. */
+    public boolean submit(ByteBuffer y, int yRowStride, int width, int height, int rotation, long captureNs,
+                          Object tag) {
+        FrameMetrics m = metrics;
+        long t0 = System.nanoTime();
+        FrameJob job = acquireJob();
+        if (job == null) {
+            countDrop(m);
+            return false;
+        }
+        long t1 = System.nanoTime();
+        job.copyLuma(y, yRowStride, width, height);
+        job.rotation = rotation;
+        job.captureNs = captureNs;
+        job.tag = tag;
+        job.sequence = nextSeq++;
+        pending.offer(job);   // cannot fail: it holds every job
+        work.release();
+        if (m != null) {
+            m.record(FrameMetrics.ACQUIRE, t1 - t0);
+            m.record(FrameMetrics.REPACK, System.nanoTime() - t1);
+        }
+        return true;
+    }
+
+    private FrameJob acquireJob() {
+        while (true) {
+            // Never let undelivered sequence numbers outrun the reorder ring.
+            if (nextSeq - nextDelivery <= doneMask) {
+                FrameJob job = free.poll();
+                if (job != null) return job;
+                if (dropPolicy == DROP_OLDEST) {
+                    job = pending.poll();
+                    if (job != null) {
+                        countDrop(metrics);
+                        complete(job.sequence, null);
+                        return job;
+                    }
+                }
+            }
+            if (dropPolicy != BLOCK || !running) return null;
+            LockSupport.parkNanos(BLOCK_PARK_NS);
+        }
+    }
+
+    private void work(Processor p) {
+        while (true) {
+            work.acquireUninterruptibly();
+            if (!running) return;
+            FrameJob job = pending.poll();
+            if (job == null) continue;
+            long t0 = System.nanoTime();
+            boolean ok;
+            try {
+                ok = p.process(job);
+            } catch (RuntimeException e) {
+                ok = false;
+            }
+            job.processNs = System.nanoTime() - t0;
+            FrameMetrics m = metrics;
+            if (m != null) m.record(FrameMetrics.PROCESS, job.processNs);
+            if (ok) {
+                complete(job.sequence, job);
+            } else {
+                failed.incrementAndGet();
+                long seq = job.sequence;
+                job.tag = null;
+                free.offer(job);
+                complete(seq, null);
+            }
+        }
+    }
+
+    // Parks a finished job (or a null tombstone) in the reorder ring and
+    // delivers whatever is now contiguous.
+    private void complete(long seq, FrameJob job) {
+        int i = (int) seq & doneMask;
+        done.set(i, job);
+        doneSeq.set(i, seq);
+        while (true) {
+            if (!draining.compareAndSet(false, true)) return;
+            try {
+                long next = nextDelivery;
+                while (doneSeq.get((int) next & doneMask) == next) {
+                    FrameJob j = done.getAndSet((int) next & doneMask, null);
+                    nextDelivery = ++next;
+                    if (j != null) {
+                        // A throwing sink must not take the worker down with
+                        // it: drain() would wait forever for its frames.
+                        try {
+                            sink.deliver(j);
+                            delivered.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                        } finally {
+                            j.tag = null;
+                            free.offer(j);
+                        }
+                    }
+                }
+            } finally {
+                draining.set(false);
+            }
+            // Another thread may have completed the next frame while we were
+            // releasing the flag; it gave up on the CAS, so check again.
+            long next = nextDelivery;
+            if (doneSeq.get((int) next & doneMask) != next) return;
+        }
+    }
+
+    private void countDrop(FrameMetrics m) {
+        dropped.incrementAndGet();
+        if (m != null) m.countDrop(FrameMetrics.DROP_QUEUE_FULL);
+    }
+
+    public long dropped() { return dropped.get(); }
+
+    public long failed() { return failed.get(); }
+
+    public long delivered() { return delivered.get(); }
+
+    /**
+     * Waits until every frame submitted so far has been delivered, dropped
+     * or failed. Call from the submitting thread.
+     */
+    public void drain() throws InterruptedException {
+        while (nextDelivery < nextSeq) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            LockSupport.parkNanos(BLOCK_PARK_NS);
+        }
+    }
+
+    /** Stops the workers; frames still queued are discarded. */
+    public void shutdown() throws InterruptedException {
+        running = false;
+        // Each worker takes at most one more permit before it sees running.
+        work.release(workers.length);
+        for (Thread w : workers) w.join();
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.edgedetectionapp.exec;
+
+import com.example.edgedetectionapp.frame.FrameSource;
+import com.example.edgedetectionapp.metrics.FrameMetrics;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One feed (a camera, a replayed recording) processed on a shared
+ * {@link SessionScheduler}. Each session has its own processor, frame
+ * buffers, metrics and sink, so feeds share no per-frame state.
+ *
+ * submit() copies the luma plane into the session and returns. Only the
+ * newest unprocessed frame is kept: one that arrives while an older frame is
+ * still waiting replaces it (counted as DROP_OVERWRITTEN), so a feed that
+ * outruns its share of the pool loses frames rather than gaining latency.
+ * A session is processed by at most one worker at a time, so its processor
+ * and sink need no locking of their own.
+ */
+public final class StreamSession {
+    /**
+     * Receives each processed frame on a worker thread. Must not keep the
+     * job after returning. A RuntimeException counts the frame as failed.
+     */
+    public interface Sink {
+        void deliver(StreamSession session, FrameJob job);
+    }
+
+    private final String name;
+    private final SessionScheduler scheduler;
+    private final StagedExecutor.Processor processor;
+    private final Sink sink;
+    private final FrameMetrics metrics = new FrameMetrics();
+    // One being filled, one waiting, one being processed.
+    private final BoundedQueue<FrameJob> free = new BoundedQueue<>(3);
+    private final AtomicReference<FrameJob> waiting = new AtomicReference<>();
+    // True while the session is in the scheduler's run queue or being run.
+    final AtomicBoolean queued = new AtomicBoolean();
+    private volatile boolean closed;
+    private long nextSeq;   // submit thread only
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    StreamSession(String name, SessionScheduler scheduler, StagedExecutor.Processor processor, Sink sink) {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.processor = processor;
+        this.sink = sink;
+        for (int i = 0; i < 3; i++) free.offer(new FrameJob());
+    }
+
+    public String name() { return name; }
+
+    /** ACQUIRE, REPACK and PROCESS timings and overwritten frames of this feed alone. */
+    public FrameMetrics metrics() { return metrics; }
+
+    /**
+     * Copies a strided luma plane into the session. Call from one thread per
+     * session. Returns false once the session is closed; either way the
+     * plane is no longer referenced when this returns.
+     */
+    public boolean submit(ByteBuffer y, int yRowStride, int width, int height, int rotation, long captureNs) {
+        if (closed) return false;
+        long t0 = System.nanoTime();
+        FrameJob job = free.poll();
+        if (job == null) return false;   // only when submit() races itself
+        long t1 = System.nanoTime();
+        job.copyLuma(y, yRowStride, width, height);
+        job.rotation = rotation;
+        job.captureNs = captureNs;
+        job.sequence = nextSeq++;
+        FrameJob old = waiting.getAndSet(job);
+        if (old != null) {
+            dropped.incrementAndGet();
+            metrics.countDrop(FrameMetrics.DROP_OVERWRITTEN);
+            free.offer(old);
+        }
+        metrics.record(FrameMetrics.ACQUIRE, t1 - t0);
+        metrics.record(FrameMetrics.REPACK, System.nanoTime() - t1);
+        scheduler.ready(this);
+        return true;
+    }
+
+    /** Submits the luma plane of a {@link FrameSource} frame. */
+    public boolean submit(FrameSource.Frame f, long captureNs) {
+        return submit(f.y, f.yRowStride, f.width, f.height, f.rotation, captureNs);
+    }
+
+    public long processed() { return processed.get(); }
+
+    public long failed() { return failed.get(); }
+
+    /** Frames replaced by a newer one before a worker got to them. */
+    public long dropped() { return dropped.get(); }
+
+    public boolean isClosed() { return closed; }
+
+    /**
+     * Detaches the session from its scheduler and discards a waiting frame.
+     * A frame already being processed may still reach the sink.
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        scheduler.remove(this);
+        FrameJob job = waiting.getAndSet(null);
+        if (job != null) free.offer(job);
+    }
+
+    boolean hasWaiting() { return !closed && waiting.get() != null; }
+
+    // Worker side: processes the waiting frame, if any.
+    void runOnce() {
+        FrameJob job = waiting.getAndSet(null);
+        if (job == null) return;
+        if (!closed) {
+            long t0 = System.nanoTime();
+            boolean ok;
+            try {
+                ok = processor.process(job);
+            } catch (RuntimeException e) {
+                ok = false;
+            }
+            job.processNs = System.nanoTime() - t0;
+            metrics.record(FrameMetrics.PROCESS, job.processNs);
+            if (ok) {
+                // As in StagedExecutor: a throwing sink must not kill the
+                // worker, or this session's job and queued flag with it.
+                try {
+                    sink.deliver(this, job);
+                    processed.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                }
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+        job.tag = null;
+        free.offer(job);
+    }
+}
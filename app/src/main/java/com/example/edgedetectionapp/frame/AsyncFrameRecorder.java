@@ -0,0 +1,159 @@
+package com.example.edgedetectionapp.frame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a {@link FrameRecorder} on its own writer thread, so disk I/O stays
+ * off the camera thread and out of the frame time that ResolutionController
+ * measures. record() copies the planes into one of a few pooled direct
+ * buffers and queues it. When the writer is behind and no buffer is free,
+ * the frame is left out of the recording instead of waited for.
+ */
+public final class AsyncFrameRecorder implements Closeable {
+    private static final class Slot {
+        ByteBuffer data = ByteBuffer.allocateDirect(0);
+        long timestampNs;
+        int width, height, rotation, planes;
+        final int[] rowStride = new int[3], pixelStride = new int[3], length = new int[3];
+    }
+
+    private static final Slot STOP = new Slot();
+
+    private final FrameRecorder recorder;
+    private final BlockingQueue<Slot> free, queued;
+    private final Thread writer;
+    private final AtomicLong dropped = new AtomicLong();
+    // Writer thread only.
+    private final ByteBuffer[] planes = new ByteBuffer[3];
+    private volatile boolean full;
+    private volatile IOException failure;
+    private volatile int frames;
+    private boolean closed;
+
+    /** Takes ownership of {@code recorder}; {@code slots} frames may wait for the disk. */
+    public AsyncFrameRecorder(FrameRecorder recorder, int slots) {
+        this.recorder = recorder;
+        free = new ArrayBlockingQueue<>(slots);
+        queued = new ArrayBlockingQueue<>(slots + 1);
+        for (int i = 0; i < slots; i++) free.add(new Slot());
+        writer = new Thread(this::writeLoop, "recorder");
+        writer.start();
+    }
+
+    /** Luma-only frame. */
+    public boolean record(long timestampNs, int width, int height, int rotation,
+                          ByteBuffer y, int yRowStride) throws IOException {
+        return record(timestampNs, width, height, rotation, y, yRowStride, null, 0, 0, null, 0, 0);
+    }
+
+    /**
+     * Queues one frame, as {@link FrameRecorder#record}; plane positions and
+     * limits are left as they were. Returns false once the size limit is
+     * reached, and throws if an earlier write failed.
+     */
+    public boolean record(long timestampNs, int width, int height, int rotation,
+                          ByteBuffer y, int yRowStride,
+                          ByteBuffer u, int uRowStride, int uPixelStride,
+                          ByteBuffer v, int vRowStride, int vPixelStride) throws IOException {
+        IOException e = failure;
+        if (e != null) throw new IOException("recording failed", e);
+        if (full) return false;
+        Slot s = free.poll();
+        if (s == null) {
+            dropped.incrementAndGet();
+            return true;
+        }
+        s.planes = u == null ? 1 : 3;
+        int bytes = y.remaining() + (s.planes == 3 ? u.remaining() + v.remaining() : 0);
+        if (s.data.capacity() < bytes) s.data = ByteBuffer.allocateDirect(bytes);
+        s.data.clear();
+        put(s, 0, y, yRowStride, 1);
+        if (s.planes == 3) {
+            put(s, 1, u, uRowStride, uPixelStride);
+            put(s, 2, v, vRowStride, vPixelStride);
+        }
+        s.timestampNs = timestampNs;
+        s.width = width;
+        s.height = height;
+        s.rotation = rotation;
+        queued.add(s);
+        return true;
+    }
+
+    private static void put(Slot s, int plane, ByteBuffer src, int rowStride, int pixelStride) {
+        s.rowStride[plane] = rowStride;
+        s.pixelStride[plane] = pixelStride;
+        s.length[plane] = src.remaining();
+        s.data.put(src.duplicate());
+    }
+
+    /** Frames written to the file so far. */
+    public int frames() { return frames; }
+
+    /** Frames left out because the writer was behind. */
+    public long dropped() { return dropped.get(); }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Slot s = queued.take();
+                if (s == STOP) break;
+                try {
+                    if (!full && failure == null) write(s);
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    free.add(s);
+                }
+            }
+        } catch (InterruptedException e) {
+            // close() is waiting for us; stop here.
+        } finally {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+    }
+
+    private void write(Slot s) throws IOException {
+        ByteBuffer[] p = planes;
+        p[1] = p[2] = null;
+        int offset = 0;
+        for (int i = 0; i < s.planes; i++) {
+            p[i] = s.data.duplicate();
+            p[i].limit(offset + s.length[i]).position(offset);
+            offset += s.length[i];
+        }
+        boolean kept = recorder.record(s.timestampNs, s.width, s.height, s.rotation,
+                p[0], s.rowStride[0], p[1], s.rowStride[1], s.pixelStride[1], p[2], s.rowStride[2], s.pixelStride[2]);
+        if (kept) frames = recorder.frames();
+        else full = true;
+    }
+
+    /** Writes what is queued, closes the file and waits for the writer to finish. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        queued.add(STOP);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        IOException e = failure;
+        if (e != null) throw e;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.edgedetectionapp.frame;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Size-keyed pool of direct ByteBuffers. Buffers are only allocated when no
+ * free buffer of the requested capacity exists, so a pipeline that keeps
+ * acquiring and releasing the same sizes stops allocating after warm-up.
+ *
+ * Buckets live in plain arrays (no boxed keys) so acquire/release never
+ * allocate themselves. Calls are synchronized; they happen on size changes
+ * and hand-offs, not per pixel.
+ */
+public final class BufferPool {
+    private static final int MAX_SIZES = 8;
+
+    private final int maxPerSize;
+    private final int[] sizes = new int[MAX_SIZES];
+    private final ByteBuffer[][] free = new ByteBuffer[MAX_SIZES][];
+    private final int[] freeCount = new int[MAX_SIZES];
+    private int bucketCount = 0;
+    private long allocations = 0;
+
+    public BufferPool() { this(4); }
+
+    public BufferPool(int maxPerSize) {
+        if (maxPerSize < 1) throw new IllegalArgumentException("maxPerSize must be >= 1");
+        this.maxPerSize = maxPerSize;
+    }
+
+    /** Returns a cleared direct buffer with exactly {@code capacity} bytes. */
+    public synchronized ByteBuffer acquire(int capacity) {
+        int b = bucket(capacity, false);
+        if (b >= 0 && freeCount[b] > 0) {
+            ByteBuffer buf = free[b][--freeCount[b]];
+            free[b][freeCount[b]] = null;
+            buf.clear();
+            return buf;
+        }
+        allocations++;
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /** Returns a buffer to the pool; extra buffers beyond the per-size cap are dropped. */
+    public synchronized void release(ByteBuffer buf) {
+        if (buf == null || !buf.isDirect()) return;
+        int b = bucket(buf.capacity(), true);
+        if (b < 0 || freeCount[b] >= maxPerSize) return;
+        free[b][freeCount[b]++] = buf;
+    }
+
+    /**
+     * Convenience for resizable holders: keeps {@code current} if it is big
+     * enough, so a frame that shrinks (a region, a lower resolution) does not
+     * trade buffers. Either way the result is cleared with its limit at
+     * {@code capacity}; size the data by limit(), not capacity().
+     */
+    public ByteBuffer ensure(ByteBuffer current, int capacity) {
+        if (current != null && current.capacity() >= capacity) {
+            current.clear().limit(capacity);
+            return current;
+        }
+        release(current);
+        return acquire(capacity);
+    }
+
+    /** Total number of buffers this pool has allocated. */
+    public synchronized long allocations() { return allocations; }
+
+    private int bucket(int capacity, boolean create) {
+        for (int i = 0; i < bucketCount; i++) {
+            if (sizes[i] == capacity) return i;
+        }
+        if (!create) return -1;
+        int slot;
+        if (bucketCount < MAX_SIZES) {
+            slot = bucketCount++;
+        } else {
+            // Too many distinct sizes (e.g. repeated resolution changes):
+            // recycle the bucket holding the fewest buffers.
+            slot = 0;
+            for (int i = 1; i < MAX_SIZES; i++) if (freeCount[i] < freeCount[slot]) slot = i;
+        }
+        sizes[slot] = capacity;
+        free[slot] = new ByteBuffer[maxPerSize];
+        freeCount[slot] = 0;
+        return slot;
+    }
+}
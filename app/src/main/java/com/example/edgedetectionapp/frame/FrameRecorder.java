@@ -0,0 +1,112 @@
+package com.example.edgedetectionapp.frame;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends raw camera frames to a file for later replay with {@link ReplaySource}.
+ *
+ * Layout, little-endian: a 16-byte file header (magic, version, creation
+ * time in ms), then one record per frame:
+ *
+ *   int   recordBytes     bytes that follow this field
+ *   long  timestampNs
+ *   int   width, height, rotation, planeCount (1 = Y only, 3 = Y, U, V)
+ *   per plane: int rowStride, pixelStride, length
+ *   plane data, in plane order, exactly as the camera laid it out
+ *
+ * Records are self-delimiting and written with one gathering write, so a
+ * recording cut short by a crash only loses its last, partial record. Plane
+ * buffers go to the channel as they are: no packing or copy on the camera
+ * thread.
+ */
+public final class FrameRecorder implements Closeable {
+    static final int MAGIC = 0x52474445;   // "EDGR" read little-endian
+    static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 16;
+    static final int RECORD_FIXED_BYTES = 4 + 8 + 4 * 4;
+    static final int PLANE_BYTES = 3 * 4;
+
+    private final FileOutputStream stream;
+    private final FileChannel channel;
+    private final long maxBytes;
+    private final ByteBuffer header =
+            ByteBuffer.allocateDirect(RECORD_FIXED_BYTES + 3 * PLANE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer[] gather = new ByteBuffer[4];
+    private long written;
+    private int frames;
+
+    /** Starts a new recording; record() turns into a no-op once the file reaches {@code maxBytes}. */
+    public FrameRecorder(File file, long maxBytes) throws IOException {
+        this.maxBytes = maxBytes;
+        stream = new FileOutputStream(file);
+        channel = stream.getChannel();
+        ByteBuffer h = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        h.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).flip();
+        while (h.hasRemaining()) written += channel.write(h);
+    }
+
+    /** Luma-only frame. */
+    public boolean record(long timestampNs, int width, int height, int rotation,
+                          ByteBuffer y, int yRowStride) throws IOException {
+        return record(timestampNs, width, height, rotation, y, yRowStride, null, 0, 0, null, 0, 0);
+    }
+
+    /**
+     * Appends one frame; each plane is written from its position to its
+     * limit, which are left as they were. Returns false once the size limit
+     * is reached.
+     */
+    public boolean record(long timestampNs, int width, int height, int rotation,
+                          ByteBuffer y, int yRowStride,
+                          ByteBuffer u, int uRowStride, int uPixelStride,
+                          ByteBuffer v, int vRowStride, int vPixelStride) throws IOException {
+        int planes = u == null ? 1 : 3;
+        long data = y.remaining() + (planes == 3 ? (long) u.remaining() + v.remaining() : 0);
+        long bytes = RECORD_FIXED_BYTES + (long) planes * PLANE_BYTES + data;
+        if (written + bytes > maxBytes) return false;
+
+        header.clear();
+        header.putInt((int) (bytes - 4)).putLong(timestampNs)
+                .putInt(width).putInt(height).putInt(rotation).putInt(planes);
+        header.putInt(yRowStride).putInt(1).putInt(y.remaining());
+        if (planes == 3) {
+            header.putInt(uRowStride).putInt(uPixelStride).putInt(u.remaining());
+            header.putInt(vRowStride).putInt(vPixelStride).putInt(v.remaining());
+        }
+        header.flip();
+        gather[0] = header;
+        gather[1] = y;
+        gather[2] = u;
+        gather[3] = v;
+        int yPos = y.position();
+        int uPos = planes == 3 ? u.position() : 0;
+        int vPos = planes == 3 ? v.position() : 0;
+        try {
+            long left = bytes;
+            while (left > 0) left -= channel.write(gather, 0, planes + 1);
+        } finally {
+            y.position(yPos);
+            if (planes == 3) {
+                u.position(uPos);
+                v.position(vPos);
+            }
+            gather[1] = gather[2] = gather[3] = null;
+        }
+        written += bytes;
+        frames++;
+        return true;
+    }
+
+    public long bytesWritten() { return written; }
+
+    public int frames() { return frames; }
+
+    @Override
+    public void close() throws IOException { stream.close(); }
+}
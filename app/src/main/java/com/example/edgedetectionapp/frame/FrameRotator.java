@@ -0,0 +1,129 @@
+package com.example.edgedetectionapp.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Rotates single-channel frames clockwise by 0/90/180/270 degrees into a
+ * packed destination (row stride = rotated width).
+ *
+ * 90/270 are cache-blocked transposes over TILE x TILE blocks, so neither
+ * side is walked column-major across the whole frame. Direct buffers are
+ * moved in and out of on-heap scratch arrays with one bulk copy each, since
+ * per-pixel ByteBuffer access is what made the old loops slow. Scratch
+ * arrays belong to the instance: use one rotator per thread; after the first
+ * frame at a given size nothing is allocated.
+ */
+public final class FrameRotator {
+    public static final int TILE = 32;
+
+    private byte[] srcScratch = new byte[0];
+    private byte[] dstScratch = new byte[0];
+
+    public static int rotatedWidth(int width, int height, int rotation) {
+        return (rotation % 180) != 0 ? height : width;
+    }
+
+    public static int rotatedHeight(int width, int height, int rotation) {
+        return (rotation % 180) != 0 ? width : height;
+    }
+
+    /**
+     * @param src       source pixels, {@code srcStride} bytes per row
+     * @param rotation  clockwise degrees, one of 0/90/180/270
+     * @param dst       receives rotatedWidth*rotatedHeight packed bytes;
+     *                  positions and limits of both buffers are left as they were
+     */
+    public void rotate(ByteBuffer src, int srcStride, int width, int height, int rotation, ByteBuffer dst) {
+        checkRotation(rotation);
+        int n = width * height;
+        if (dst.capacity() < n) throw new IllegalArgumentException("dst too small");
+        int srcLen = srcStride * (height - 1) + width;
+
+        if (rotation == 0) {
+            // Plain row copies; no need to stage through arrays.
+            ByteBuffer s = src.duplicate();
+            ByteBuffer d = dst.duplicate();
+            d.clear();
+            for (int y = 0; y < height; y++) {
+                s.limit(y * srcStride + width).position(y * srcStride);
+                d.put(s);
+            }
+            return;
+        }
+
+        byte[] in;
+        int inOff;
+        if (src.hasArray()) {
+            in = src.array();
+            inOff = src.arrayOffset();
+        } else {
+            if (srcScratch.length < srcLen) srcScratch = new byte[srcLen];
+            ByteBuffer s = src.duplicate();
+            s.clear();
+            s.get(srcScratch, 0, srcLen);
+            in = srcScratch;
+            inOff = 0;
+        }
+
+        if (dst.hasArray()) {
+            rotate(in, inOff, srcStride, width, height, rotation, dst.array(), dst.arrayOffset());
+        } else {
+            if (dstScratch.length < n) dstScratch = new byte[n];
+            rotate(in, inOff, srcStride, width, height, rotation, dstScratch, 0);
+            ByteBuffer d = dst.duplicate();
+            d.clear();
+            d.put(dstScratch, 0, n);
+        }
+    }
+
+    /** Array form: {@code src} rows start at {@code srcOff + y*srcStride}; dst is packed from {@code dstOff}. */
+    public static void rotate(byte[] src, int srcOff, int srcStride, int w, int h, int rotation,
+                              byte[] dst, int dstOff) {
+        switch (rotation) {
+            case 0:
+                for (int y = 0; y < h; y++)
+                    System.arraycopy(src, srcOff + y * srcStride, dst, dstOff + y * w, w);
+                break;
+            case 180:
+                for (int y = 0; y < h; y++) {
+                    int s = srcOff + y * srcStride;
+                    int d = dstOff + (h - 1 - y) * w + (w - 1);
+                    for (int x = 0; x < w; x++) dst[d - x] = src[s + x];
+                }
+                break;
+            case 90:
+                // dst(x', y') = src(x, y) with x' = h-1-y, y' = x; dst width = h
+                for (int y0 = 0; y0 < h; y0 += TILE) {
+                    int y1 = Math.min(h, y0 + TILE);
+                    for (int x0 = 0; x0 < w; x0 += TILE) {
+                        int x1 = Math.min(w, x0 + TILE);
+                        for (int x = x0; x < x1; x++) {
+                            int d = dstOff + x * h + (h - 1);
+                            for (int y = y0; y < y1; y++) dst[d - y] = src[srcOff + y * srcStride + x];
+                        }
+                    }
+                }
+                break;
+            case 270:
+                // dst(x', y') = src(x, y) with x' = y, y' = w-1-x; dst width = h
+                for (int y0 = 0; y0 < h; y0 += TILE) {
+                    int y1 = Math.min(h, y0 + TILE);
+                    for (int x0 = 0; x0 < w; x0 += TILE) {
+                        int x1 = Math.min(w, x0 + TILE);
+                        for (int x = x0; x < x1; x++) {
+                            int d = dstOff + (w - 1 - x) * h;
+                            for (int y = y0; y < y1; y++) dst[d + y] = src[srcOff + y * srcStride + x];
+                        }
+                    }
+                }
+                break;
+            default:
+                checkRotation(rotation);
+        }
+    }
+
+    private static void checkRotation(int rotation) {
+        if (rotation != 0 && rotation != 90 && rotation != 180 && rotation != 270)
+            throw new IllegalArgumentException("rotation must be 0/90/180/270: " + rotation);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.edgedetectionapp.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One frame's worth of single-channel pixels plus the metadata needed to
+ * display it. Slots are recycled, so fields are plain and mutable; ownership
+ * is handed between threads by {@link TripleBuffer}.
+ */
+public final class FrameSlot {
+    public ByteBuffer data;
+    public int width;
+    public int height;
+    public int rotation;
+    public long sequence;
+    public long timestampNs;
+    /** 1 bit per pixel (rows padded to whole bytes) instead of 1 byte. */
+    public boolean packed;
+    /** Edge polylines in their wire form instead of pixels; width/height are the frame's. */
+    public boolean vector;
+    /**
+     * When regionCount > 0, data holds only these rectangles of the frame
+     * (x, y, width, height each, in pixels), back to back in order; the rest
+     * of the frame is blank.
+     */
+    public int[] regions = new int[0];
+    public int regionCount;
+
+    /**
+     * Makes sure {@link #data} holds at least {@code bytes}, reusing it when
+     * possible; its limit marks the frame's {@code bytes}.
+     */
+    public ByteBuffer ensureCapacity(BufferPool pool, int bytes) {
+        data = pool.ensure(data, bytes);
+        return data;
+    }
+}
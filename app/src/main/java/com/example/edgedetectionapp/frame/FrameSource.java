@@ -0,0 +1,24 @@
+package com.example.edgedetectionapp.frame;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/** Pull-style source of YUV_420_888 frames, e.g. a recording being replayed. */
+public interface FrameSource extends Closeable {
+    /** Fills {@code frame} with the next frame; false at the end. Plane buffers stay valid until the next call. */
+    boolean next(Frame frame) throws IOException;
+
+    /**
+     * One frame as the camera delivered it: strided planes, rotation and the
+     * capture timestamp. u and v are null for luma-only frames.
+     */
+    final class Frame {
+        public int width, height, rotation;
+        public long timestampNs;
+        public ByteBuffer y, u, v;
+        public int yRowStride;
+        public int uRowStride, uPixelStride;
+        public int vRowStride, vPixelStride;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.edgedetectionapp.frame;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only access to a file through a sliding memory mapping. Frames are
+ * handed out as slices of the mapping, so reading them costs page faults
+ * rather than copies, and files past 2 GB work since only a window is mapped.
+ */
+public final class MappedWindow implements Closeable {
+    private static final long WINDOW = 64L << 20;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer map;
+    private long mapStart, mapEnd;
+
+    public MappedWindow(File file) throws IOException {
+        raf = new RandomAccessFile(file, "r");
+        channel = raf.getChannel();
+        size = channel.size();
+    }
+
+    public long size() { return size; }
+
+    /** {@code length} bytes at {@code offset}, indexed from 0. Stays valid after the window moves on. */
+    public ByteBuffer slice(long offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new EOFException("need " + length + " bytes at " + offset + ", file has " + size);
+        }
+        if (map == null || offset < mapStart || offset + length > mapEnd) {
+            long len = Math.min(size - offset, Math.max(WINDOW, length));
+            map = channel.map(FileChannel.MapMode.READ_ONLY, offset, len);
+            mapStart = offset;
+            mapEnd = offset + len;
+        }
+        ByteBuffer b = map.duplicate();
+        int pos = (int) (offset - mapStart);
+        b.limit(pos + length).position(pos);
+        return b.slice();
+    }
+
+    @Override
+    public void close() throws IOException {
+        map = null;
+        raf.close();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.edgedetectionapp.frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs strided YUV_420_888 planes into NV21 (Y followed by interleaved VU).
+ * Luma rows are moved with bulk copies; only the half-size chroma planes are
+ * walked per sample, since their pixel stride can be anything.
+ */
+public final class Nv21Packer {
+    private Nv21Packer() {}
+
+    public static int nv21Size(int width, int height) {
+        return width * height + (width * height) / 2;
+    }
+
+    /** Copies the visible part of a strided luma plane into a tightly packed array. */
+    public static void copyLuma(ByteBuffer y, int yRowStride, int width, int height, byte[] dst) {
+        ByteBuffer src = y.duplicate();
+        for (int row = 0; row < height; row++) {
+            src.position(row * yRowStride);
+            src.get(dst, row * width, width);
+        }
+    }
+
+    public static void pack(ByteBuffer y, int yRowStride,
+                            ByteBuffer u, int uRowStride, int uPixelStride,
+                            ByteBuffer v, int vRowStride, int vPixelStride,
+                            int width, int height, byte[] dst) {
+        copyLuma(y, yRowStride, width, height, dst);
+
+        int chromaHeight = height / 2;
+        int chromaWidth = width / 2;
+        int pos = width * height;
+        for (int row = 0; row < chromaHeight; row++) {
+            int uRowStart = row * uRowStride;
+            int vRowStart = row * vRowStride;
+            for (int col = 0; col < chromaWidth; col++) {
+                // NV21 expects V then U
+                dst[pos++] = v.get(vRowStart + col * vPixelStride);
+                dst[pos++] = u.get(uRowStart + col * uPixelStride);
+            }
+        }
+    }
+
+    /** Same as {@link #pack(ByteBuffer, int, ByteBuffer, int, int, ByteBuffer, int, int, int, int, byte[])} into a buffer. */
+    public static void pack(ByteBuffer y, int yRowStride,
+                            ByteBuffer u, int uRowStride, int uPixelStride,
+                            ByteBuffer v, int vRowStride, int vPixelStride,
+                            int width, int height, ByteBuffer dst) {
+        dst.clear();
+        ByteBuffer src = y.duplicate();
+        for (int row = 0; row < height; row++) {
+            int start = row * yRowStride;
+            src.limit(start + width);
+            src.position(start);
+            dst.put(src);
+        }
+
+        int chromaHeight = height / 2;
+        int chromaWidth = width / 2;
+        for (int row = 0; row < chromaHeight; row++) {
+            int uRowStart = row * uRowStride;
+            int vRowStart = row * vRowStride;
+            for (int col = 0; col < chromaWidth; col++) {
+                dst.put(v.get(vRowStart + col * vPixelStride));
+                dst.put(u.get(uRowStart + col * uPixelStride));
+            }
+        }
+        dst.clear();
+    }
+}
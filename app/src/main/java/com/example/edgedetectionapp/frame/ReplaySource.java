@@ -0,0 +1,102 @@
+package com.example.edgedetectionapp.frame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays back a {@link FrameRecorder} file. The file is memory-mapped and
+ * frames come out as views of the mapping, so replay copies nothing. In real
+ * time mode next() waits until the frame's recorded offset from the first
+ * frame has elapsed; otherwise frames come as fast as they are asked for.
+ * A partial record at the end (recording interrupted) ends the replay.
+ */
+public final class ReplaySource implements FrameSource {
+    private final MappedWindow file;
+    private final boolean realTime;
+    private long pos = FrameRecorder.FILE_HEADER_BYTES;
+    private long firstTimestampNs, startNs;
+    private int frames;
+
+    public ReplaySource(File recording, boolean realTime) throws IOException {
+        file = new MappedWindow(recording);
+        this.realTime = realTime;
+        try {
+            ByteBuffer h = file.slice(0, FrameRecorder.FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (h.getInt(0) != FrameRecorder.MAGIC) throw new IOException(recording + " is not a frame recording");
+            if (h.getInt(4) != FrameRecorder.VERSION) throw new IOException("unsupported recording version " + h.getInt(4));
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean next(Frame f) throws IOException {
+        long left = file.size() - pos;
+        if (left < FrameRecorder.RECORD_FIXED_BYTES) return false;
+        ByteBuffer h = file.slice(pos, (int) Math.min(left, FrameRecorder.RECORD_FIXED_BYTES
+                + 3 * FrameRecorder.PLANE_BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+        long end = pos + 4 + (h.getInt(0) & 0xFFFFFFFFL);
+        if (end > file.size()) return false;
+        int planes = h.getInt(24);
+        long data = pos + FrameRecorder.RECORD_FIXED_BYTES + (long) planes * FrameRecorder.PLANE_BYTES;
+        if ((planes != 1 && planes != 3) || data > end) throw new IOException("corrupt record at offset " + pos);
+        f.timestampNs = h.getLong(4);
+        f.width = h.getInt(12);
+        f.height = h.getInt(16);
+        f.rotation = h.getInt(20);
+        int p = FrameRecorder.RECORD_FIXED_BYTES;
+        f.yRowStride = h.getInt(p);
+        int yLen = h.getInt(p + 8);
+        f.y = file.slice(data, yLen);
+        data += yLen;
+        if (planes == 3) {
+            f.uRowStride = h.getInt(p + 12);
+            f.uPixelStride = h.getInt(p + 16);
+            int uLen = h.getInt(p + 20);
+            f.vRowStride = h.getInt(p + 24);
+            f.vPixelStride = h.getInt(p + 28);
+            int vLen = h.getInt(p + 32);
+            f.u = file.slice(data, uLen);
+            f.v = file.slice(data + uLen, vLen);
+            data += uLen + vLen;
+        } else {
+            f.u = f.v = null;
+        }
+        if (data != end) throw new IOException("corrupt record at offset " + pos);
+        pos = end;
+
+        if (realTime) pace(f.timestampNs);
+        frames++;
+        return true;
+    }
+
+    private void pace(long timestampNs) {
+        long now = System.nanoTime();
+        if (frames == 0) {
+            firstTimestampNs = timestampNs;
+            startNs = now;
+            return;
+        }
+        long due = startNs + (timestampNs - firstTimestampNs);
+        while (now < due) {
+            LockSupport.parkNanos(due - now);
+            now = System.nanoTime();
+        }
+    }
+
+    /** Starts again from the first frame; real-time pacing restarts too. */
+    public void rewind() {
+        pos = FrameRecorder.FILE_HEADER_BYTES;
+        frames = 0;
+    }
+
+    /** Frames returned since the start or the last rewind. */
+    public int frames() { return frames; }
+
+    @Override
+    public void close() throws IOException { file.close(); }
+}
@@ -0,0 +1,58 @@
+package com.example.edgedetectionapp.frame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free single-producer/single-consumer triple buffer.
+ *
+ * The producer fills {@link #back()} and calls {@link #publish()}; the
+ * consumer calls {@link #acquire()} and reads {@link #front()}. The two sides
+ * never see the same slot at the same time, the producer never waits, and the
+ * consumer always gets the most recently published slot (older ones are
+ * overwritten, not queued).
+ */
+public final class TripleBuffer<T> {
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final Object[] slots;
+    // Index of the slot in the middle, plus FRESH when it holds an unread publish.
+    private final AtomicInteger middle = new AtomicInteger(2);
+    private int back = 0;   // producer-owned
+    private int front = 1;  // consumer-owned
+
+    public TripleBuffer(T a, T b, T c) {
+        slots = new Object[] {a, b, c};
+    }
+
+    /** Producer: the slot to write the next frame into. */
+    @SuppressWarnings("unchecked")
+    public T back() { return (T) slots[back]; }
+
+    /**
+     * Producer: makes the back slot visible to the consumer and takes a free one.
+     * @return true if this replaced a publish the consumer never acquired (a dropped frame).
+     */
+    public boolean publish() {
+        int prev = middle.getAndSet(back | FRESH);
+        back = prev & INDEX_MASK;
+        return (prev & FRESH) != 0;
+    }
+
+    /**
+     * Consumer: swaps in the latest published slot, if any.
+     * @return true if {@link #front()} changed since the previous call.
+     */
+    public boolean acquire() {
+        if ((middle.get() & FRESH) == 0) return false;
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    /** Consumer: the slot most recently acquired. */
+    @SuppressWarnings("unchecked")
+    public T front() { return (T) slots[front]; }
+
+    /** True if a publish happened that the consumer has not acquired yet. */
+    public boolean hasFresh() { return (middle.get() & FRESH) != 0; }
+}
@@ -4,22 +4,51 @@ import android.content.Context;
 import android.opengl.GLSurfaceView;
 import android.util.Log;
 
+import com.example.edgedetectionapp.metrics.FrameMetrics;
+import com.example.edgedetectionapp.metrics.FrameTrace;
+
+import java.nio.ByteBuffer;
+
 public class EdgeGLSurfaceView extends GLSurfaceView {
     private final EdgeRenderer renderer;
+    private long updates = 0;
     public EdgeGLSurfaceView(Context context) {
         super(context);
         setEGLContextClientVersion(2);
         renderer = new EdgeRenderer();
         setRenderer(renderer);
-        setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+        // Draw only when a new frame is committed (requestRender below), not on every vsync.
+        setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
     }
     public void updateFrame(byte[] data, int w, int h) {
-        Log.d("GLView", "updateFrame: " + data.length + " bytes " + w + "x" + h);
+        if (FrameTrace.sampled(++updates))
+            Log.d("GLView", "updateFrame: " + data.length + " bytes " + w + "x" + h);
         renderer.updateFrame(data, w, h);
         requestRender();
     }
+    public void updateFrame(ByteBuffer data, int w, int h) {
+        renderer.updateFrame(data, w, h);
+        requestRender();
+    }
+    /** Zero-copy submission, see {@link EdgeRenderer#beginFrame()}. */
+    public ByteBuffer beginFrame() { return renderer.beginFrame(); }
+    public void commitFrame() {
+        renderer.commitFrame();
+        requestRender();
+    }
+    /** EdgeRenderer.ROTATE_CPU or ROTATE_GPU; see {@link EdgeRenderer#setRotationMode(int)}. */
+    public void setRotationMode(int mode) { renderer.setRotationMode(mode); }
+    public boolean isRotatingInput() { return renderer.isRotatingInput(); }
     public void setFrameInfo(int w, int h, int rotationDeg) {
         renderer.setFrameInfo(w, h, rotationDeg);
     }
+    /** Frames are 1-bit packed edge maps; call before setFrameInfo. */
+    public void setPackedInput(boolean packed) { renderer.setPackedInput(packed); }
+    /** FrameProcessor format of the frames; see {@link EdgeRenderer#setInputFormat(int)}. Call before setFrameInfo. */
+    public void setInputFormat(int format) { renderer.setInputFormat(format); }
+    /** Regions of interest in the frames; see {@link EdgeRenderer#setRegions}. Call before setFrameInfo. */
+    public void setRegions(int[] rects, int count) { renderer.setRegions(rects, count); }
     public float getFps() { return renderer.getFps(); }
+    public void setMetrics(FrameMetrics metrics) { renderer.setMetrics(metrics); }
+    public void setCaptureTime(long nanoTime) { renderer.setCaptureTime(nanoTime); }
 }
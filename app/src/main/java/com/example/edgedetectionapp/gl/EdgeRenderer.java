@@ -5,40 +5,111 @@ import android.opengl.GLSurfaceView;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.util.concurrent.atomic.AtomicReference;
+import java.nio.ShortBuffer;
+
+import com.example.edgedetectionapp.frame.BufferPool;
+import com.example.edgedetectionapp.frame.FrameRotator;
+import com.example.edgedetectionapp.frame.FrameSlot;
+import com.example.edgedetectionapp.frame.TripleBuffer;
+import com.example.edgedetectionapp.metrics.FrameMetrics;
+import com.example.edgedetectionapp.proc.EdgePacking;
+import com.example.edgedetectionapp.proc.EdgePolylines;
+import com.example.edgedetectionapp.proc.FrameProcessor;
 
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
 public class EdgeRenderer implements GLSurfaceView.Renderer {
+    public static final int ROTATE_CPU = 0;
+    public static final int ROTATE_GPU = 1;
+
     private static final float[] VERT = {
             -1f,-1f, 0f,0f,
              1f,-1f, 1f,0f,
             -1f, 1f, 0f,1f,
              1f, 1f, 1f,1f
     };
+    private final float[] texXform = new float[9];
+    private final float[] texXformScratch = new float[9];
     private FloatBuffer vb;
-    private int prog, aPos, aTex, uTex, uTexXform, uScale;
+    private int prog, aPos, aTex, uTex, uTexXform, uScale, uPacked;
+    private int lineProg, aPoint, uFrame, uInv, uLineScale;
+    private final float[] invXform = new float[9];
+    // GL thread: the vector frame last turned into line vertices.
+    private final EdgePolylines lines = new EdgePolylines();
+    private ShortBuffer lineVerts;
+    private int lineVertCount;
+    private long lineSequence = -1;
     private int[] tex = new int[1];
     private int surfaceW, surfaceH;
-    private int frameW = 0, frameH = 0, rotationDeg = 0;
+    // GL thread: dimensions of the frame currently on screen.
+    private int frameW = 0, frameH = 0;
+    // Producer thread: orientation/size of the frames being submitted.
+    private int rotationDeg = 0;
     private int uploadFrameW = 0, uploadFrameH = 0;
     private boolean rotateInput = false;
-    private boolean verticalFlip = false;
-    private final AtomicReference<byte[]> latest = new AtomicReference<>(null);
-    private ByteBuffer grayBuf, rgbaBuf;
-    private boolean initialized = false;
+    private boolean packedInput = false;
+    private boolean vectorInput = false;
+    // Producer thread: regions of interest of the frames being submitted.
+    private int[] regions = new int[0];
+    private int regionCount = 0;
+    private volatile int rotationMode = ROTATE_CPU;
+    private final FrameRotator rotator = new FrameRotator();
+    private volatile boolean verticalFlip = false;
+    // Producer writes frames.back(), GL thread reads frames.front(); the triple
+    // buffer keeps them apart so uploads never see a half-written frame.
+    private final BufferPool pool = new BufferPool();
+    private final TripleBuffer<FrameSlot> frames =
+            new TripleBuffer<>(new FrameSlot(), new FrameSlot(), new FrameSlot());
+    private long sequence = 0;
+    // GL thread: what is currently in tex[0].
+    private final UploadTracker uploads = new UploadTracker();
+    // GL thread: zeros, uploaded to blank the texture around regions.
+    private ByteBuffer blank;
     private long lastNs = 0;
     private int frameCount = 0;
     private float fps = 0f;
+    private long copiedBytes = 0;
+    private volatile FrameMetrics metrics;
+    private long captureNs = 0;   // producer-side, for the next commit
+
+    private final int[] status = new int[1];
 
-    private static int loadShader(int type, String src) {
+    // Compile and link failures would otherwise only show up as a black
+    // view; fail on the GL thread with the driver's log instead.
+    private int loadShader(int type, String src) {
         int s = GLES20.glCreateShader(type);
         GLES20.glShaderSource(s, src);
         GLES20.glCompileShader(s);
+        GLES20.glGetShaderiv(s, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            String log = GLES20.glGetShaderInfoLog(s);
+            GLES20.glDeleteShader(s);
+            throw new IllegalStateException((type == GLES20.GL_VERTEX_SHADER ? "vertex" : "fragment")
+                    + " shader failed to compile: " + log);
+        }
         return s;
     }
 
+    private int linkProgram(String vertexSrc, String fragmentSrc) {
+        int vs = loadShader(GLES20.GL_VERTEX_SHADER, vertexSrc);
+        int fs = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSrc);
+        int p = GLES20.glCreateProgram();
+        GLES20.glAttachShader(p, vs);
+        GLES20.glAttachShader(p, fs);
+        GLES20.glLinkProgram(p);
+        // Linked programs keep their own copy; the shaders go once detached.
+        GLES20.glDeleteShader(vs);
+        GLES20.glDeleteShader(fs);
+        GLES20.glGetProgramiv(p, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            String log = GLES20.glGetProgramInfoLog(p);
+            GLES20.glDeleteProgram(p);
+            throw new IllegalStateException("program failed to link: " + log);
+        }
+        return p;
+    }
+
     private static final String VERT_SRC =
             "attribute vec2 aPos;" +
             "attribute vec2 aTex;" +
@@ -46,12 +117,42 @@ public class EdgeRenderer implements GLSurfaceView.Renderer {
             "varying vec2 vTex;" +
             "void main(){vTex=aTex;gl_Position=vec4(aPos*uScale,0.0,1.0);}";
 
-            private static final String FRAG_SRC =
-                "precision mediump float;" +
-                "varying vec2 vTex;" +
-                "uniform sampler2D uTex;" +
-                "uniform mat3 uTexXform;" +
-                "void main(){vec3 t=uTexXform*vec3(vTex,1.0);float g=texture2D(uTex,t.xy).r;gl_FragColor=vec4(g,g,g,1.0);}";
+    // Packed frames are uploaded one byte per 8 pixels. uPacked holds the
+    // frame width in pixels and the texture width in bytes (x == 0 for plain
+    // luma); the shader picks the byte and shifts out the pixel's bit. Pixel
+    // indices at 4K need more than mediump's 10-bit mantissa.
+    private static final String FRAG_SRC =
+            "#ifdef GL_FRAGMENT_PRECISION_HIGH\n" +
+            "precision highp float;\n" +
+            "#else\n" +
+            "precision mediump float;\n" +
+            "#endif\n" +
+            "varying vec2 vTex;" +
+            "uniform sampler2D uTex;" +
+            "uniform mat3 uTexXform;" +
+            "uniform vec2 uPacked;" +
+            "void main(){vec3 t=uTexXform*vec3(vTex,1.0);float g;" +
+            "if(uPacked.x>0.0){" +
+            "float px=min(floor(t.x*uPacked.x),uPacked.x-1.0);float bx=floor(px/8.0);" +
+            "float b=floor(texture2D(uTex,vec2((bx+0.5)/uPacked.y,t.y)).r*255.0+0.5);" +
+            "g=mod(floor(b/exp2(px-bx*8.0)),2.0);" +
+            "}else{g=texture2D(uTex,t.xy).r;}" +
+            "gl_FragColor=vec4(g,g,g,1.0);}";
+
+    // Vector edges: aPoint is a pixel of the unrotated frame. Its texel
+    // centre goes through the inverse of uTexXform to land where the
+    // texture path would have shown that pixel.
+    private static final String LINE_VERT_SRC =
+            "attribute vec2 aPoint;" +
+            "uniform vec2 uFrame;" +
+            "uniform mat3 uInv;" +
+            "uniform vec2 uScale;" +
+            "void main(){vec3 v=uInv*vec3((aPoint+0.5)/uFrame,1.0);" +
+            "gl_Position=vec4((v.xy*2.0-1.0)*uScale,0.0,1.0);}";
+
+    private static final String LINE_FRAG_SRC =
+            "precision mediump float;" +
+            "void main(){gl_FragColor=vec4(1.0);}";
 
     public EdgeRenderer() {
         vb = ByteBuffer.allocateDirect(VERT.length*4).order(ByteOrder.nativeOrder()).asFloatBuffer();
@@ -59,73 +160,150 @@ public class EdgeRenderer implements GLSurfaceView.Renderer {
     }
 
     public void updateFrame(byte[] data, int w, int h) {
+        updateFrame(ByteBuffer.wrap(data), w, h);
+    }
+
+    /**
+     * Copies (and rotates if needed) a frame into the next free slot and
+     * publishes it. Producers that can write the slot directly should use
+     * {@link #beginFrame()}/{@link #commitFrame()} instead.
+     */
+    public void updateFrame(ByteBuffer data, int w, int h) {
         int srcW = w, srcH = h;
+        long t0 = System.nanoTime();
+        int bytes = uploadBytes();
+        ByteBuffer grayBuf = frames.back().ensureCapacity(pool, bytes);
+        // Polylines fill only as much of the slot as their header says.
+        if (vectorInput) bytes = Math.min(bytes, EdgePolylines.encodedLength(data));
         if (rotateInput) {
-            // We pre-rotate into the grayBuf so the uploaded texture is already
+            // We pre-rotate into the slot so the uploaded texture is already
             // oriented landscape; uploadFrameW/uploadFrameH are swapped dims.
-            if (grayBuf == null || grayBuf.capacity() < uploadFrameW * uploadFrameH)
-                grayBuf = ByteBuffer.allocateDirect(uploadFrameW * uploadFrameH);
+            rotator.rotate(data, srcW, srcW, srcH, rotationDeg, grayBuf);
+        } else {
+            ByteBuffer src = data.duplicate();
+            src.position(0).limit(bytes);
+            grayBuf.put(src);
             grayBuf.position(0);
+        }
+        copiedBytes += bytes;
+        FrameMetrics m = metrics;
+        if (m != null) m.record(FrameMetrics.ROTATE, System.nanoTime() - t0);
+        commitFrame();
+    }
 
-            if (rotationDeg == 90) {
-                // rotate 90 CW: dst(x',y') = src(x,y) -> x' = srcH-1 - y; y' = x
-                for (int y = 0; y < srcH; y++) {
-                    for (int x = 0; x < srcW; x++) {
-                        int srcIdx = y * srcW + x;
-                        int dstX = srcH - 1 - y;
-                        int dstY = x;
-                        int dstIdx = dstY * uploadFrameW + dstX;
-                        grayBuf.put(dstIdx, data[srcIdx]);
-                    }
-                }
-            } else if (rotationDeg == 270) {
-                // rotate 270 CW (or 90 CCW): dstX = y; dstY = srcW-1 - x
-                for (int y = 0; y < srcH; y++) {
-                    for (int x = 0; x < srcW; x++) {
-                        int srcIdx = y * srcW + x;
-                        int dstX = y;
-                        int dstY = srcW - 1 - x;
-                        int dstIdx = dstY * uploadFrameW + dstX;
-                        grayBuf.put(dstIdx, data[srcIdx]);
-                    }
-                }
-            } else if (rotationDeg == 180) {
-                for (int y = 0; y < srcH; y++) {
-                    for (int x = 0; x < srcW; x++) {
-                        int srcIdx = y * srcW + x;
-                        int dstX = srcW - 1 - x;
-                        int dstY = srcH - 1 - y;
-                        int dstIdx = dstY * uploadFrameW + dstX;
-                        grayBuf.put(dstIdx, data[srcIdx]);
-                    }
-                }
+    /**
+     * Zero-copy submission: returns the next free slot's buffer so the
+     * producer can write the processed frame straight into it. Only valid
+     * when {@link #isRotatingInput()} is false (the slot is upload-sized).
+     */
+    public ByteBuffer beginFrame() {
+        return frames.back().ensureCapacity(pool, uploadBytes());
+    }
+
+    private int uploadBytes() {
+        if (vectorInput) return Math.max(uploadFrameW * uploadFrameH, EdgePolylines.HEADER_BYTES);
+        if (regionCount > 0) {
+            int bytes = 0;
+            for (int i = 0; i < regionCount; i++) {
+                int w = regions[i * 4 + 2], h = regions[i * 4 + 3];
+                bytes += packedInput ? EdgePacking.packedSize(w, h) : w * h;
             }
+            return bytes;
+        }
+        if (packedInput) return EdgePacking.packedSize(uploadFrameW, uploadFrameH);
+        return uploadFrameW * uploadFrameH;
+    }
 
-            grayBuf.position(0);
-            latest.set(data);
-        } else {
-            if (grayBuf == null || grayBuf.capacity() < srcW * srcH)
-                grayBuf = ByteBuffer.allocateDirect(srcW * srcH);
-            grayBuf.position(0);
-            grayBuf.put(data, 0, srcW * srcH);
-            grayBuf.position(0);
-            latest.set(data);
+    /** Publishes the slot filled after {@link #beginFrame()} to the GL thread. */
+    public void commitFrame() {
+        FrameSlot slot = frames.back();
+        slot.width = uploadFrameW;
+        slot.height = uploadFrameH;
+        // Whatever rotation was not applied on the CPU is left to uTexXform.
+        slot.rotation = rotateInput ? 0 : rotationDeg;
+        slot.packed = packedInput;
+        slot.vector = vectorInput;
+        if (slot.regions.length < regionCount * 4) slot.regions = new int[regionCount * 4];
+        System.arraycopy(regions, 0, slot.regions, 0, regionCount * 4);
+        slot.regionCount = regionCount;
+        slot.sequence = ++sequence;
+        slot.timestampNs = captureNs != 0 ? captureNs : System.nanoTime();
+        captureNs = 0;
+        slot.data.position(0);
+        if (frames.publish()) {
+            FrameMetrics m = metrics;
+            if (m != null) m.countDrop(FrameMetrics.DROP_OVERWRITTEN);
         }
     }
 
+    /**
+     * System.nanoTime() at which the next committed frame was captured; used
+     * for the capture-to-display histogram. Without it the commit time is used.
+     */
+    public void setCaptureTime(long nanoTime) { captureNs = nanoTime; }
+
+    /** Stage timings (rotate, upload, draw, capture-to-display) and drops go here; null disables them. */
+    public void setMetrics(FrameMetrics metrics) { this.metrics = metrics; }
+
+    /** True if submitted frames are rotated on the CPU (and so must go through updateFrame). */
+    public boolean isRotatingInput() { return rotateInput; }
+
+    // Bytes copied into frame slots by updateFrame so far; beginFrame/commitFrame adds nothing.
+    long getCopiedBytes() { return copiedBytes; }
+
+    /**
+     * ROTATE_CPU pre-rotates 90/270 frames into the upload buffer;
+     * ROTATE_GPU uploads frames as captured and rotates them with the texture
+     * transform, so no CPU pass runs at all. Applies from the next
+     * {@link #setFrameInfo}.
+     */
+    public void setRotationMode(int mode) { rotationMode = mode; }
+
+    /**
+     * Whether frames from now on are 1-bit packed edge maps ({@link EdgePacking}
+     * layout), unpacked in the shader. Packed frames are never rotated on the
+     * CPU. Applies from the next {@link #setFrameInfo}.
+     */
+    public void setPackedInput(boolean packed) {
+        packedInput = packed;
+        vectorInput = false;
+    }
+
+    /**
+     * Sets what frames from now on hold, as a FrameProcessor format:
+     * FORMAT_PACKED as for {@link #setPackedInput}, FORMAT_POLYLINES for
+     * {@link EdgePolylines} drawn as GL lines, anything else for one byte
+     * per pixel. Vector frames are never rotated on the CPU either. Applies
+     * from the next {@link #setFrameInfo}.
+     */
+    public void setInputFormat(int format) {
+        packedInput = format == FrameProcessor.FORMAT_PACKED;
+        vectorInput = format == FrameProcessor.FORMAT_POLYLINES;
+    }
+
+    /**
+     * Frames from now on hold only these rectangles of the frame (x, y,
+     * width, height each, in pixels of the unrotated frame), back to back in
+     * order, as RoiPipeline writes them; count 0 goes back to whole frames.
+     * Each region is uploaded with its own sub-rectangle update and the view
+     * zooms to their bounding box. Region frames are never rotated on the
+     * CPU. Call before {@link #setFrameInfo}.
+     */
+    public void setRegions(int[] rects, int count) {
+        if (regions.length < count * 4) regions = new int[count * 4];
+        System.arraycopy(rects, 0, regions, 0, count * 4);
+        regionCount = count;
+    }
 
     public void setFrameInfo(int w, int h, int rot) {
         rotationDeg = ((rot%360)+360)%360;
         // Determine whether we need to pre-rotate the input so uploaded texture
         // is always landscape. If rotation is 90 or 270, swap dims for upload.
-        rotateInput = (rotationDeg % 180) != 0;
+        // 180 never needs a CPU pass: the texture transform handles it.
+        rotateInput = rotationMode == ROTATE_CPU && !packedInput && !vectorInput && regionCount == 0
+                && (rotationDeg % 180) != 0;
         uploadFrameW = rotateInput ? h : w;
         uploadFrameH = rotateInput ? w : h;
-        frameW = uploadFrameW; frameH = uploadFrameH;
-
-        if (rgbaBuf == null || rgbaBuf.capacity() < uploadFrameW * uploadFrameH * 4)
-            rgbaBuf = ByteBuffer.allocateDirect(uploadFrameW * uploadFrameH * 4).order(ByteOrder.nativeOrder());
-        initialized = false;
     }
 
     public float getFps() { return fps; }
@@ -133,17 +311,18 @@ public class EdgeRenderer implements GLSurfaceView.Renderer {
     public void setVerticalFlip(boolean flip) { this.verticalFlip = flip; }
 
     @Override public void onSurfaceCreated(GL10 gl, EGLConfig config) {
-        int vs = loadShader(GLES20.GL_VERTEX_SHADER, VERT_SRC);
-        int fs = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAG_SRC);
-        prog = GLES20.glCreateProgram();
-        GLES20.glAttachShader(prog, vs);
-        GLES20.glAttachShader(prog, fs);
-        GLES20.glLinkProgram(prog);
+        prog = linkProgram(VERT_SRC, FRAG_SRC);
         aPos = GLES20.glGetAttribLocation(prog,"aPos");
         aTex = GLES20.glGetAttribLocation(prog,"aTex");
         uTex = GLES20.glGetUniformLocation(prog,"uTex");
         uTexXform = GLES20.glGetUniformLocation(prog,"uTexXform");
         uScale = GLES20.glGetUniformLocation(prog,"uScale");
+        uPacked = GLES20.glGetUniformLocation(prog,"uPacked");
+        lineProg = linkProgram(LINE_VERT_SRC, LINE_FRAG_SRC);
+        aPoint = GLES20.glGetAttribLocation(lineProg,"aPoint");
+        uFrame = GLES20.glGetUniformLocation(lineProg,"uFrame");
+        uInv = GLES20.glGetUniformLocation(lineProg,"uInv");
+        uLineScale = GLES20.glGetUniformLocation(lineProg,"uScale");
         GLES20.glGenTextures(1, tex, 0);
         GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, tex[0]);
         // Use NEAREST filtering to avoid linear interpolation artifacts when the
@@ -154,6 +333,41 @@ public class EdgeRenderer implements GLSurfaceView.Renderer {
         GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
         GLES20.glBindTexture(GLES20.GL_TEXTURE_2D,0);
         GLES20.glClearColor(0f,0f,0f,1f);
+        // Fresh context: whatever we uploaded before is gone.
+        uploads.invalidate();
+        lineSequence = -1;
+        prewarm();
+    }
+
+    // Drivers often finish compiling a program at its first draw. Draw each
+    // one now, scaled to nothing, so the first real frame does not pay.
+    private void prewarm() {
+        TexTransform.build(0, false, texXformScratch, texXform);
+        GLES20.glUseProgram(prog);
+        GLES20.glUniform1i(uTex, 0);
+        GLES20.glUniform2f(uScale, 0f, 0f);
+        GLES20.glUniform2f(uPacked, 0f, 1f);
+        GLES20.glUniformMatrix3fv(uTexXform, 1, false, texXform, 0);
+        vb.position(0);
+        GLES20.glEnableVertexAttribArray(aPos);
+        GLES20.glVertexAttribPointer(aPos, 2, GLES20.GL_FLOAT, false, 4 * 4, vb);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(aPos);
+
+        if (lineVerts == null) {
+            lineVerts = ByteBuffer.allocateDirect(4096 * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        }
+        lineVerts.clear();
+        lineVerts.put((short) 0).put((short) 0).put((short) 1).put((short) 1).position(0);
+        GLES20.glUseProgram(lineProg);
+        GLES20.glUniform2f(uFrame, 1f, 1f);
+        GLES20.glUniform2f(uLineScale, 0f, 0f);
+        GLES20.glUniformMatrix3fv(uInv, 1, false, texXform, 0);
+        GLES20.glEnableVertexAttribArray(aPoint);
+        GLES20.glVertexAttribPointer(aPoint, 2, GLES20.GL_UNSIGNED_SHORT, false, 0, lineVerts);
+        GLES20.glDrawArrays(GLES20.GL_LINES, 0, 2);
+        GLES20.glDisableVertexAttribArray(aPoint);
+        GLES20.glUseProgram(0);
     }
 
     @Override public void onSurfaceChanged(GL10 gl, int w, int h) {
@@ -163,57 +377,82 @@ public class EdgeRenderer implements GLSurfaceView.Renderer {
 
     @Override public void onDrawFrame(GL10 gl) {
         GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        boolean fresh = frames.acquire();
+        FrameSlot frame = frames.front();
+        if (frame.data == null) return;
+        frameW = frame.width; frameH = frame.height;
         if (frameW<=0||frameH<=0) return;
-        byte[] data = latest.get();
-        if (data!=null && data.length>=frameW*frameH) {
-            rgbaBuf.position(0);
-            for (int i = 0; i < frameW * frameH; i++) {
-                byte g = data[i];
-                rgbaBuf.put(g).put(g).put(g).put((byte)255);
+        // Region frames show the regions' bounding box, not the whole frame.
+        int boxX = 0, boxY = 0, boxW = frameW, boxH = frameH;
+        if (frame.regionCount > 0 && !frame.vector) {
+            int[] r = frame.regions;
+            int x0 = frameW, y0 = frameH, x1 = 0, y1 = 0;
+            for (int i = 0; i < frame.regionCount * 4; i += 4) {
+                x0 = Math.min(x0, r[i]);
+                y0 = Math.min(y0, r[i + 1]);
+                x1 = Math.max(x1, r[i] + r[i + 2]);
+                y1 = Math.max(y1, r[i + 1] + r[i + 3]);
             }
-            rgbaBuf.position(0);
+            boxX = x0; boxY = y0; boxW = x1 - x0; boxH = y1 - y0;
         }
+        // On-screen size once the remaining (GPU) rotation is applied.
+        boolean swap = (frame.rotation % 180) != 0;
+        int displayW = swap ? boxH : boxW;
+        int displayH = swap ? boxW : boxH;
+        ByteBuffer grayBuf = frame.data;
+        int texW = frame.packed ? EdgePacking.rowBytes(frameW) : frameW;
 
         float sx=1f,sy=1f;
-        // Always treat the frame as landscape (no rotation applied) to avoid
-        // sampling/transform artifacts when the texture is flipped.
-        if (surfaceW>0&&surfaceH>0&&frameW>0&&frameH>0) {
-            float frameAspect = (frameW/(float)frameH); // fixed landscape aspect
+        // Fit the frame's on-screen (post-rotation) aspect into the surface.
+        if (surfaceW>0&&surfaceH>0&&displayW>0&&displayH>0) {
+            float frameAspect = (displayW/(float)displayH);
             float surfAspect = surfaceW/(float)surfaceH;
             if (frameAspect>surfAspect) sy=surfAspect/frameAspect;
             else sx=frameAspect/surfAspect;
         }
 
-        float[] M;
-        if (rotationDeg == 180) {
-            M = new float[] {-1f,0f,1f, 0f,-1f,1f, 0f,0f,1f};
-        } else {
-            M = new float[] {1f,0f,0f, 0f,1f,0f, 0f,0f,1f};
+        FrameMetrics m = metrics;
+        if (frame.vector) {
+            drawLines(frame, sx, sy, fresh, m);
+            return;
         }
 
-        // If vertical flip requested, pre-multiply by V = [1,0,0; 0,-1,1; 0,0,1]
-        if (verticalFlip) {
-            float[] V = new float[] {1f,0f,0f, 0f,-1f,1f, 0f,0f,1f};
-            M = mul3(V, M);
-        }
+        TexTransform.buildCropped(frame.rotation, verticalFlip, boxX / (float) frameW, boxY / (float) frameH,
+                boxW / (float) frameW, boxH / (float) frameH, texXformScratch, texXform);
 
         GLES20.glUseProgram(prog);
         GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
         GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, tex[0]);
         GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
-        if (grayBuf != null && grayBuf.capacity() >= frameW * frameH) {
-            grayBuf.position(0);
-            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_LUMINANCE, frameW, frameH, 0,
-                    GLES20.GL_LUMINANCE, GLES20.GL_UNSIGNED_BYTE, grayBuf);
-        } else if (rgbaBuf != null && rgbaBuf.capacity() >= frameW * frameH * 4) {
-            rgbaBuf.position(0);
-            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, frameW, frameH, 0,
-                    GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, rgbaBuf);
+        long t0 = System.nanoTime();
+        if (frame.regionCount > 0) {
+            uploadRegions(frame, texW);
+        } else if (grayBuf.limit() >= texW * frameH) {
+            switch (uploads.plan(frame.sequence, texW, frameH)) {
+                case UploadTracker.ALLOCATE:
+                    grayBuf.position(0);
+                    GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_LUMINANCE, texW, frameH, 0,
+                            GLES20.GL_LUMINANCE, GLES20.GL_UNSIGNED_BYTE, grayBuf);
+                    uploads.uploaded(frame.sequence, texW, frameH);
+                    break;
+                case UploadTracker.SUB_IMAGE:
+                    // Same size: overwrite the existing storage instead of reallocating it.
+                    grayBuf.position(0);
+                    GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, texW, frameH,
+                            GLES20.GL_LUMINANCE, GLES20.GL_UNSIGNED_BYTE, grayBuf);
+                    uploads.uploaded(frame.sequence, texW, frameH);
+                    break;
+                default:
+                    // Redraw of a frame that is already in the texture.
+                    break;
+            }
         }
+        long t1 = System.nanoTime();
         GLES20.glUniform1i(uTex,0);
         GLES20.glUniform2f(uScale,sx,sy);
+        GLES20.glUniform2f(uPacked, frame.packed ? frameW : 0f, texW);
         // Always apply computed texture transform so rotation is preserved.
-        GLES20.glUniformMatrix3fv(uTexXform,1,false,M,0);
+        GLES20.glUniformMatrix3fv(uTexXform,1,false,texXform,0);
 
         vb.position(0);
         GLES20.glEnableVertexAttribArray(aPos);
@@ -226,7 +465,90 @@ public class EdgeRenderer implements GLSurfaceView.Renderer {
         GLES20.glDisableVertexAttribArray(aTex);
         GLES20.glBindTexture(GLES20.GL_TEXTURE_2D,0);
 
+        finishFrame(frame, fresh, m, t0, t1);
+    }
+
+    // Region frames: the texture keeps the whole frame's size and is blanked
+    // whenever the layout changes; after that only the regions are uploaded,
+    // each from its block of the slot. Packed regions start on whole bytes.
+    private void uploadRegions(FrameSlot frame, int texW) {
+        int plan = uploads.plan(frame.sequence, texW, frame.height);
+        if (plan == UploadTracker.SKIP) return;
+        if (plan == UploadTracker.ALLOCATE || !uploads.sameRegions(frame.regions, frame.regionCount)) {
+            int bytes = texW * frame.height;
+            if (blank == null || blank.capacity() < bytes) blank = ByteBuffer.allocateDirect(bytes);
+            blank.position(0);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_LUMINANCE, texW, frame.height, 0,
+                    GLES20.GL_LUMINANCE, GLES20.GL_UNSIGNED_BYTE, blank);
+        }
+        ByteBuffer data = frame.data;
+        int[] r = frame.regions;
+        int offset = 0;
+        for (int i = 0; i < frame.regionCount * 4; i += 4) {
+            int x = frame.packed ? r[i] / 8 : r[i];
+            int w = frame.packed ? EdgePacking.rowBytes(r[i + 2]) : r[i + 2];
+            int h = r[i + 3];
+            if (offset + w * h > data.limit()) break;
+            data.position(offset);
+            GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, x, r[i + 1], w, h,
+                    GLES20.GL_LUMINANCE, GLES20.GL_UNSIGNED_BYTE, data);
+            offset += w * h;
+        }
+        data.position(0);
+        uploads.uploaded(frame.sequence, texW, frame.height, frame.regions, frame.regionCount);
+    }
+
+    // Decodes a vector frame into GL_LINES vertex pairs (once per frame,
+    // reusing the buffer) and draws them over the cleared surface.
+    private void drawLines(FrameSlot frame, float sx, float sy, boolean fresh, FrameMetrics m) {
+        long t0 = System.nanoTime();
+        if (frame.sequence != lineSequence) {
+            lineSequence = frame.sequence;
+            lineVertCount = 0;
+            try {
+                lines.decode(frame.data, frame.data.limit());
+            } catch (IllegalArgumentException e) {
+                lines.reset(frame.width, frame.height);
+            }
+            int shorts = lines.segmentCount() * 4;
+            if (lineVerts == null || lineVerts.capacity() < shorts) {
+                lineVerts = ByteBuffer.allocateDirect(Math.max(shorts, 4096) * 2)
+                        .order(ByteOrder.nativeOrder()).asShortBuffer();
+            }
+            lineVerts.clear();
+            for (int i = 0, p = 0; i < lines.count(); i++) {
+                int end = p + lines.length(i);
+                for (p++; p < end; p++) {
+                    lineVerts.put((short) lines.x(p - 1)).put((short) lines.y(p - 1));
+                    lineVerts.put((short) lines.x(p)).put((short) lines.y(p));
+                }
+            }
+            lineVertCount = lineVerts.position() / 2;
+        }
+        long t1 = System.nanoTime();
+        TexTransform.buildInverse(frame.rotation, verticalFlip, texXformScratch, invXform);
+        GLES20.glUseProgram(lineProg);
+        GLES20.glUniform2f(uFrame, frame.width, frame.height);
+        GLES20.glUniform2f(uLineScale, sx, sy);
+        GLES20.glUniformMatrix3fv(uInv, 1, false, invXform, 0);
+        if (lineVertCount > 0) {
+            lineVerts.position(0);
+            GLES20.glEnableVertexAttribArray(aPoint);
+            GLES20.glVertexAttribPointer(aPoint, 2, GLES20.GL_UNSIGNED_SHORT, false, 0, lineVerts);
+            GLES20.glDrawArrays(GLES20.GL_LINES, 0, lineVertCount);
+            GLES20.glDisableVertexAttribArray(aPoint);
+        }
+        finishFrame(frame, fresh, m, t0, t1);
+    }
+
+    private void finishFrame(FrameSlot frame, boolean fresh, FrameMetrics m, long t0, long t1) {
         long now=System.nanoTime();
+        if (m != null) {
+            // CPU-side cost only: GL calls queue work, they do not wait for the GPU.
+            if (fresh) m.record(FrameMetrics.UPLOAD, t1 - t0);
+            m.record(FrameMetrics.DRAW, now - t1);
+            if (fresh) m.record(FrameMetrics.CAPTURE_TO_DISPLAY, now - frame.timestampNs);
+        }
         if (lastNs==0) lastNs=now;
         frameCount++;
         if (now-lastNs>=1_000_000_000L) {
@@ -235,19 +557,4 @@ public class EdgeRenderer implements GLSurfaceView.Renderer {
             lastNs=now;
         }
     }
-
-    // Multiply 3x3 matrices A*B (row-major arrays)
-    private float[] mul3(float[] A, float[] B) {
-        float[] R = new float[9];
-        for (int r = 0; r < 3; r++) {
-            for (int c = 0; c < 3; c++) {
-                float v = 0f;
-                for (int k = 0; k < 3; k++) {
-                    v += A[r*3 + k] * B[k*3 + c];
-                }
-                R[r*3 + c] = v;
-            }
-        }
-        return R;
-    }
 }
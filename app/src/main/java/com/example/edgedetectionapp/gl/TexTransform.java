@@ -0,0 +1,100 @@
+package com.example.edgedetectionapp.gl;
+
+/**
+ * Texture-coordinate transforms for the uTexXform uniform. Matrices are
+ * built row-major (as read in the comments) and transposed on the way out,
+ * because glUniformMatrix3fv on GLES2 only accepts column-major data.
+ */
+final class TexTransform {
+    // Sample the source at (u, v) for an output texel at (u, v) rotated
+    // clockwise: 90 -> (v, 1-u), 180 -> (1-u, 1-v), 270 -> (1-v, u). These
+    // match FrameRotator, so the GPU and CPU paths show the same image.
+    static final float[] IDENTITY = {1f,0f,0f, 0f,1f,0f, 0f,0f,1f};
+    static final float[] ROT_90   = {0f,1f,0f, -1f,0f,1f, 0f,0f,1f};
+    static final float[] ROT_180  = {-1f,0f,1f, 0f,-1f,1f, 0f,0f,1f};
+    static final float[] ROT_270  = {0f,-1f,1f, 1f,0f,0f, 0f,0f,1f};
+    // Vertical flip: (u, v) -> (u, 1-v)
+    static final float[] V_FLIP   = {1f,0f,0f, 0f,-1f,1f, 0f,0f,1f};
+
+    private TexTransform() {}
+
+    static float[] forRotation(int rotationDeg) {
+        switch (rotationDeg) {
+            case 90: return ROT_90;
+            case 180: return ROT_180;
+            case 270: return ROT_270;
+            default: return IDENTITY;
+        }
+    }
+
+    /**
+     * Writes the column-major uniform for sampling a texture stored with
+     * {@code rotationDeg} still to be applied, optionally flipped vertically.
+     * {@code scratch} must hold 9 floats.
+     */
+    static void build(int rotationDeg, boolean verticalFlip, float[] scratch, float[] outColumnMajor) {
+        transpose(matrix(rotationDeg, verticalFlip, scratch), outColumnMajor);
+    }
+
+    /**
+     * {@link #build} followed by a zoom into the texture rectangle at (x, y)
+     * of size w x h, in 0..1 texture coordinates, so the drawn quad shows
+     * only that part of the texture.
+     */
+    static void buildCropped(int rotationDeg, boolean verticalFlip, float x, float y, float w, float h,
+                             float[] scratch, float[] outColumnMajor) {
+        float[] m = matrix(rotationDeg, verticalFlip, scratch);
+        // C * M with C = [w 0 x; 0 h y; 0 0 1]; M's last row is always 0 0 1.
+        for (int c = 0; c < 3; c++) {
+            outColumnMajor[c * 3] = w * m[c] + (c == 2 ? x : 0f);
+            outColumnMajor[c * 3 + 1] = h * m[3 + c] + (c == 2 ? y : 0f);
+            outColumnMajor[c * 3 + 2] = m[6 + c];
+        }
+    }
+
+    /**
+     * The inverse of {@link #build}: maps a texture coordinate to where it
+     * lands on screen (0..1 across the drawn quad). Vector edges are drawn
+     * with it so they line up with what the texture path would show.
+     */
+    static void buildInverse(int rotationDeg, boolean verticalFlip, float[] scratch, float[] outColumnMajor) {
+        float[] m = matrix(rotationDeg, verticalFlip, scratch);
+        // Rotations and flips are affine with a +-1 determinant.
+        float a = m[0], b = m[1], c = m[2], d = m[3], e = m[4], f = m[5];
+        float det = a * e - b * d;
+        float[] inv = {
+                e / det, -b / det, (b * f - c * e) / det,
+                -d / det, a / det, (c * d - a * f) / det,
+                0f, 0f, 1f};
+        transpose(inv, outColumnMajor);
+    }
+
+    private static float[] matrix(int rotationDeg, boolean verticalFlip, float[] scratch) {
+        float[] m = forRotation(rotationDeg);
+        if (verticalFlip) {
+            // flip the output first, then rotate: M = R * V
+            mul3(m, V_FLIP, scratch);
+            m = scratch;
+        }
+        return m;
+    }
+
+    private static void transpose(float[] rowMajor, float[] outColumnMajor) {
+        for (int r = 0; r < 3; r++)
+            for (int c = 0; c < 3; c++)
+                outColumnMajor[c * 3 + r] = rowMajor[r * 3 + c];
+    }
+
+    // Multiply 3x3 matrices A*B (row-major arrays) into R
+    static void mul3(float[] A, float[] B, float[] R) {
+        for (int r = 0; r < 3; r++) {
+            for (int c = 0; c < 3; c++) {
+                float v = 0f;
+                for (int k = 0; k < 3; k++) {
+                    v += A[r*3 + k] * B[k*3 + c];
+                }
+                R[r*3 + c] = v;
+            }
+        }
+    }
+}
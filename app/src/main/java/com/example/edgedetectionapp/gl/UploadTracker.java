@@ -0,0 +1,59 @@
+package com.example.edgedetectionapp.gl;
+
+/**
+ * Decides, per draw, what the renderer has to do with the texture. Storage
+ * is (re)allocated only when the frame size changes, pixels are re-uploaded
+ * only when the frame sequence advances, and redraws of an unchanged frame
+ * touch no texture memory at all. Kept free of GL calls so it can be tested
+ * on the JVM.
+ */
+final class UploadTracker {
+    static final int SKIP = 0;
+    static final int SUB_IMAGE = 1;
+    static final int ALLOCATE = 2;
+
+    private int texW = -1, texH = -1;
+    private long uploadedSeq = -1;
+    // Regions of interest the texture holds; 0 after a full-frame upload.
+    private int[] regions = new int[0];
+    private int regionCount = 0;
+
+    int plan(long sequence, int width, int height) {
+        if (width != texW || height != texH) return ALLOCATE;
+        if (sequence != uploadedSeq) return SUB_IMAGE;
+        return SKIP;
+    }
+
+    void uploaded(long sequence, int width, int height) {
+        uploaded(sequence, width, height, regions, 0);
+    }
+
+    /** A frame of only these regions (x, y, width, height each) was uploaded. */
+    void uploaded(long sequence, int width, int height, int[] rects, int count) {
+        texW = width;
+        texH = height;
+        uploadedSeq = sequence;
+        if (regions.length < count * 4) regions = new int[count * 4];
+        System.arraycopy(rects, 0, regions, 0, count * 4);
+        regionCount = count;
+    }
+
+    /**
+     * True if the last upload had exactly these regions; anything else means
+     * the texture still shows texels outside them and must be blanked first.
+     */
+    boolean sameRegions(int[] rects, int count) {
+        if (count != regionCount) return false;
+        for (int i = 0; i < count * 4; i++) {
+            if (rects[i] != regions[i]) return false;
+        }
+        return true;
+    }
+
+    /** The GL context (and with it the texture) is gone; next frame must allocate. */
+    void invalidate() {
+        texW = texH = -1;
+        uploadedSeq = -1;
+        regionCount = 0;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.edgedetectionapp.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-stage latency histograms and drop counters for the camera-to-screen
+ * path. Producers time a stage with two System.nanoTime() calls and
+ * {@link #record}; nothing on the recording side allocates.
+ */
+public final class FrameMetrics {
+    /** Getting a buffer to process into (renderer slot or scratch). */
+    public static final int ACQUIRE = 0;
+    /** Packing camera planes into a contiguous frame. */
+    public static final int REPACK = 1;
+    /** Running the processing pipeline. */
+    public static final int PROCESS = 2;
+    /** Rotating or copying a frame into a renderer slot. */
+    public static final int ROTATE = 3;
+    /** Texture upload on the GL thread. */
+    public static final int UPLOAD = 4;
+    /** Issuing the draw on the GL thread. */
+    public static final int DRAW = 5;
+    /** From capture to the draw call that first shows the frame. */
+    public static final int CAPTURE_TO_DISPLAY = 6;
+    public static final int STAGE_COUNT = 7;
+
+    /** The analyzer gave up on a frame (unsupported format, rejected buffers). */
+    public static final int DROP_ANALYZER = 0;
+    /** A processed frame was replaced by a newer one before it was drawn. */
+    public static final int DROP_OVERWRITTEN = 1;
+    /** The staged executor had no free job and its drop policy discarded a frame. */
+    public static final int DROP_QUEUE_FULL = 2;
+    public static final int DROP_REASONS = 3;
+
+    private static final String[] STAGE_NAMES =
+            {"acquire", "repack", "process", "rotate", "upload", "draw", "capture->display"};
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[STAGE_COUNT];
+    private final AtomicLong[] drops = new AtomicLong[DROP_REASONS];
+    // Once per start, so reset() leaves it alone.
+    private final AtomicLong firstFrameNs = new AtomicLong(-1);
+
+    public FrameMetrics() {
+        for (int i = 0; i < STAGE_COUNT; i++) stages[i] = new LatencyHistogram();
+        for (int i = 0; i < DROP_REASONS; i++) drops[i] = new AtomicLong();
+    }
+
+    public void record(int stage, long nanos) { stages[stage].record(nanos); }
+
+    public LatencyHistogram histogram(int stage) { return stages[stage]; }
+
+    public void countDrop(int reason) { drops[reason].incrementAndGet(); }
+
+    public long dropped(int reason) { return drops[reason].get(); }
+
+    public static String stageName(int stage) { return STAGE_NAMES[stage]; }
+
+    /** Time from startup to the first processed frame; only the first call counts, and returns true. */
+    public boolean recordFirstFrame(long nanos) { return firstFrameNs.compareAndSet(-1, nanos); }
+
+    /** See {@link #recordFirstFrame}; -1 until a frame has been processed. */
+    public long firstFrameNanos() { return firstFrameNs.get(); }
+
+    /** Appends "name p50/p95/p99 ms" for one stage. */
+    public StringBuilder appendPercentiles(StringBuilder sb, int stage) {
+        LatencyHistogram h = stages[stage];
+        sb.append(STAGE_NAMES[stage]).append(' ');
+        if (h.count() == 0) return sb.append('-');
+        return sb.append(String.format(Locale.US, "%.1f/%.1f/%.1f ms",
+                h.percentileNanos(50) / 1e6, h.percentileNanos(95) / 1e6, h.percentileNanos(99) / 1e6));
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : stages) h.reset();
+        for (AtomicLong d : drops) d.set(0);
+    }
+}
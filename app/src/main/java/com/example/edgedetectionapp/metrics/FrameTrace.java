@@ -0,0 +1,30 @@
+package com.example.edgedetectionapp.metrics;
+
+/**
+ * Global switch for per-frame debug logging. Call sites guard their log
+ * statement with {@link #sampled(long)}, so when tracing is off (the
+ * default) no message is built at all, and when it is on only every Nth
+ * frame is logged.
+ */
+public final class FrameTrace {
+    private static volatile boolean enabled = false;
+    private static volatile int interval = 30;
+
+    private FrameTrace() {}
+
+    public static void setEnabled(boolean on) { enabled = on; }
+
+    public static boolean isEnabled() { return enabled; }
+
+    /** Log one frame in {@code every}. */
+    public static void setInterval(int every) {
+        if (every < 1) throw new IllegalArgumentException("interval must be >= 1");
+        interval = every;
+    }
+
+    public static int interval() { return interval; }
+
+    public static boolean sampled(long frame) {
+        return enabled && frame % interval == 0;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.edgedetectionapp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket latency histogram with microsecond resolution. Buckets are
+ * log-linear (eight per power of two), so any reported percentile is within
+ * 12.5% of the true value from about 8 us up to about an hour.
+ *
+ * Recording is lock-free and allocation-free and may happen on any thread;
+ * readers see a slightly moving but never torn picture.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final long MAX_US = (1L << 32) - 1;
+    static final int BUCKETS = (31 - SUB_BITS + 2) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumUs = new AtomicLong();
+    private final AtomicLong maxNs = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        long us = Math.min(nanos / 1000, MAX_US);
+        counts.incrementAndGet(bucket(us));
+        count.incrementAndGet();
+        sumUs.addAndGet(us);
+        long max;
+        while (nanos > (max = maxNs.get()) && !maxNs.compareAndSet(max, nanos)) { }
+    }
+
+    static int bucket(long us) {
+        if (us < SUB) return (int) us;
+        int e = 63 - Long.numberOfLeadingZeros(us);
+        int sub = (int) (us >>> (e - SUB_BITS)) & (SUB - 1);
+        return (e - SUB_BITS + 1) * SUB + sub;
+    }
+
+    // Largest microsecond value that lands in bucket b.
+    static long upperBoundUs(int b) {
+        if (b < SUB) return b;
+        int e = b / SUB + SUB_BITS - 1;
+        long width = 1L << (e - SUB_BITS);
+        return ((long) (SUB + b % SUB) << (e - SUB_BITS)) + width - 1;
+    }
+
+    public long count() { return count.get(); }
+
+    public long maxNanos() { return maxNs.get(); }
+
+    public long meanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : sumUs.get() * 1000 / n;
+    }
+
+    /**
+     * Upper edge of the bucket holding the given percentile (0..100), in
+     * nanoseconds; 0 when nothing was recorded.
+     */
+    public long percentileNanos(double percentile) {
+        long total = 0;
+        for (int b = 0; b < BUCKETS; b++) total += counts.get(b);
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) return upperBoundUs(b) * 1000;
+        }
+        return upperBoundUs(BUCKETS - 1) * 1000;
+    }
+
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++) counts.set(b, 0);
+        count.set(0);
+        sumUs.set(0);
+        maxNs.set(0);
+    }
+}
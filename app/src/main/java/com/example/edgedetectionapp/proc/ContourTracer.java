@@ -0,0 +1,195 @@
+package com.example.edgedetectionapp.proc;
+
+import java.util.Arrays;
+
+/**
+ * Turns a binary edge map into {@link EdgePolylines}.
+ *
+ * Edge pixels are followed as 8-connected chains: from each unvisited edge
+ * pixel in raster order the tracer walks one way and then the other,
+ * preferring straight neighbours over diagonal ones, so a chain started in
+ * the middle of a curve still comes out as one polyline. Junctions end a
+ * chain and the remaining branches become chains of their own. Each chain
+ * is then simplified with Douglas-Peucker: points closer than the tolerance
+ * to the line through their neighbours are dropped, so straight runs shrink
+ * to their endpoints.
+ *
+ * Working arrays are kept between frames; one tracer per thread.
+ */
+public final class ContourTracer {
+    // Straight neighbours first, then diagonals.
+    private static final int[] DX = {1, 0, -1, 0, 1, -1, -1, 1};
+    private static final int[] DY = {0, 1, 0, -1, 1, 1, -1, -1};
+
+    private final float tolerance;
+    private final int minPixels;
+    private boolean truncated;
+
+    private byte[] visited = new byte[0];
+    // Chain pixels as x,y pairs; the backward half is collected separately.
+    private int[] chain = new int[1024];
+    private int[] back = new int[1024];
+    private boolean[] keep = new boolean[512];
+    private int[] stack = new int[256];
+
+    /**
+     * @param tolerance Douglas-Peucker tolerance in pixels; 0 only drops
+     *                  points that lie exactly on a straight run.
+     * @param minPixels chains with fewer edge pixels are treated as noise.
+     */
+    public ContourTracer(float tolerance, int minPixels) {
+        if (tolerance < 0) throw new IllegalArgumentException("tolerance must be >= 0");
+        this.tolerance = tolerance;
+        this.minPixels = Math.max(2, minPixels);
+    }
+
+    /** True if the last trace stopped early because the size limit was reached. */
+    public boolean truncated() { return truncated; }
+
+    /**
+     * Traces every non-zero pixel of {@code binary} into {@code out}. Stops
+     * adding polylines once the wire form would exceed {@code maxEncodedBytes}.
+     */
+    public void trace(byte[] binary, int width, int height, EdgePolylines out, int maxEncodedBytes) {
+        out.reset(width, height);
+        truncated = false;
+        int n = width * height;
+        if (visited.length < n) visited = new byte[n];
+        Arrays.fill(visited, 0, n, (byte) 0);
+        int budgetPoints = 0, budgetLines = 0;
+        for (int start = 0; start < n; start++) {
+            if (binary[start] == 0 || visited[start] != 0) continue;
+            visited[start] = 1;
+            int sx = start % width, sy = start / width;
+            int fwd = walk(binary, width, height, sx, sy, true);
+            int bwd = walk(binary, width, height, sx, sy, false);
+            int pixels = 1 + fwd + bwd;
+            if (pixels < minPixels) continue;
+            int len = assemble(sx, sy, fwd, bwd);
+            int kept = simplify(len);
+            // Longer than the wire form allows: split, repeating the joint.
+            int pieces = (kept - 2) / (EdgePolylines.MAX_POINTS - 1) + 1;
+            if (EdgePolylines.encodedSize(budgetLines + pieces, budgetPoints + kept + pieces - 1) > maxEncodedBytes) {
+                truncated = true;
+                return;
+            }
+            budgetLines += pieces;
+            budgetPoints += kept + pieces - 1;
+            emit(len, out);
+        }
+    }
+
+    // Follows unvisited edge neighbours from (x, y), marking them, into
+    // chain (forward) or back (backward). Returns the number of pixels added.
+    private int walk(byte[] binary, int width, int height, int x, int y, boolean forward) {
+        int steps = 0;
+        while (true) {
+            int next = -1;
+            for (int d = 0; d < 8 && next < 0; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height) continue;
+                int i = ny * width + nx;
+                if (binary[i] != 0 && visited[i] == 0) next = i;
+            }
+            if (next < 0) return steps;
+            visited[next] = 1;
+            x = next % width;
+            y = next / width;
+            if (forward) {
+                // chain[0..1] is left for the start pixel.
+                int at = 2 + steps * 2;
+                if (chain.length < at + 2) chain = Arrays.copyOf(chain, chain.length * 2);
+                chain[at] = x;
+                chain[at + 1] = y;
+            } else {
+                int at = steps * 2;
+                if (back.length < at + 2) back = Arrays.copyOf(back, back.length * 2);
+                back[at] = x;
+                back[at + 1] = y;
+            }
+            steps++;
+        }
+    }
+
+    // Lays the chain out end to end in chain[]: reversed backward half, the
+    // start pixel, then the forward half. Returns the point count.
+    private int assemble(int sx, int sy, int fwd, int bwd) {
+        int len = 1 + fwd + bwd;
+        if (chain.length < len * 2) chain = Arrays.copyOf(chain, len * 2);
+        // Forward points sit at chain[2..]; shift them past the backward half.
+        System.arraycopy(chain, 2, chain, (bwd + 1) * 2, fwd * 2);
+        for (int i = 0; i < bwd; i++) {
+            chain[i * 2] = back[(bwd - 1 - i) * 2];
+            chain[i * 2 + 1] = back[(bwd - 1 - i) * 2 + 1];
+        }
+        chain[bwd * 2] = sx;
+        chain[bwd * 2 + 1] = sy;
+        return len;
+    }
+
+    // Douglas-Peucker over chain[0..len), iterative. Marks keep[] and
+    // returns how many points survive.
+    private int simplify(int len) {
+        if (keep.length < len) keep = new boolean[Math.max(len, keep.length * 2)];
+        Arrays.fill(keep, 0, len, false);
+        keep[0] = keep[len - 1] = true;
+        int kept = len > 1 ? 2 : 1;
+        float tol2 = tolerance * tolerance;
+        int sp = 0;
+        stack = push(stack, sp, 0, len - 1);
+        sp += 2;
+        while (sp > 0) {
+            int last = stack[--sp], first = stack[--sp];
+            if (last - first < 2) continue;
+            int ax = chain[first * 2], ay = chain[first * 2 + 1];
+            int bx = chain[last * 2], by = chain[last * 2 + 1];
+            long dx = bx - ax, dy = by - ay;
+            long seg2 = dx * dx + dy * dy;
+            float worst = -1f;
+            int worstAt = -1;
+            for (int i = first + 1; i < last; i++) {
+                long px = chain[i * 2] - ax, py = chain[i * 2 + 1] - ay;
+                // Squared distance to the line (or to the point, for a closed loop).
+                float d2 = seg2 == 0 ? (float) (px * px + py * py)
+                        : (float) (dx * py - dy * px) * (dx * py - dy * px) / seg2;
+                if (d2 > worst) {
+                    worst = d2;
+                    worstAt = i;
+                }
+            }
+            if (worst > tol2) {
+                keep[worstAt] = true;
+                kept++;
+                stack = push(stack, sp, first, worstAt);
+                sp += 2;
+                stack = push(stack, sp, worstAt, last);
+                sp += 2;
+            }
+        }
+        return kept;
+    }
+
+    private static int[] push(int[] stack, int sp, int a, int b) {
+        if (stack.length < sp + 2) stack = Arrays.copyOf(stack, stack.length * 2);
+        stack[sp] = a;
+        stack[sp + 1] = b;
+        return stack;
+    }
+
+    private void emit(int len, EdgePolylines out) {
+        out.begin();
+        int inLine = 0;
+        for (int i = 0; i < len; i++) {
+            if (!keep[i]) continue;
+            if (inLine == EdgePolylines.MAX_POINTS) {
+                out.end();
+                out.begin();
+                out.add(out.x(out.pointCount() - 1), out.y(out.pointCount() - 1));
+                inLine = 1;
+            }
+            out.add(chain[i * 2], chain[i * 2 + 1]);
+            inLine++;
+        }
+        out.end();
+    }
+}
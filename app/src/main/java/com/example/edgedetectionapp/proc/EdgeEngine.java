@@ -0,0 +1,480 @@
+package com.example.edgedetectionapp.proc;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Pure-Java Canny edge detector used when libedgeviewer/OpenCV is not
+ * available. Same contract as the native processFrame/processPlanes: luma in,
+ * one byte per pixel out (255 = edge, or the luma itself in gray mode).
+ *
+ * The frame is split into horizontal strips that run on a ForkJoin pool. Each
+ * kernel is its own phase (horizontal blur, vertical blur, Sobel, non-maximum
+ * suppression), so a strip reads its halo rows from the previous phase's
+ * complete output and the result is identical for any strip count.
+ * Hysteresis follows edges across the whole frame and runs last, on one
+ * thread. All working arrays are kept between frames; the steady state does
+ * not allocate.
+ *
+ * In incremental mode (for mostly static scenes) the frame is compared with
+ * the previous one in {@link #TILE}x{@link #TILE} tiles. Only changed tiles
+ * plus the halo each kernel needs are recomputed; the rest of the
+ * intermediate maps are reused. Hysteresis still runs over the whole frame,
+ * because an edge may connect through a changed tile to a distant one. With a
+ * change threshold of 0 the output is identical to a full recompute.
+ */
+public final class EdgeEngine {
+    public static final int MODE_EDGES = 0;
+    public static final int MODE_GRAY = 1;
+
+    // Pixel classes after non-maximum suppression.
+    static final byte NONE = 0;
+    static final byte WEAK = 1;
+    static final byte STRONG = 2;
+
+    private static final int MIN_STRIP_ROWS = 16;
+    private static final int PHASE_BLUR_H = 0;
+    private static final int PHASE_BLUR_V = 1;
+    private static final int PHASE_SOBEL = 2;
+    private static final int PHASE_NMS = 3;
+    private static final int PHASE_COUNT = 4;
+    // How far each phase's output reaches beyond a changed input region:
+    // blur 2 (horizontal pass only in x), Sobel +1, NMS +1.
+    private static final int[] HALO_X = {2, 2, 3, 4};
+    private static final int[] HALO_Y = {0, 2, 3, 4};
+
+    /** Tile edge length for change detection in incremental mode. */
+    public static final int TILE = 32;
+
+    private final ForkJoinPool pool;
+    private volatile int mode = MODE_EDGES;
+    private volatile int lowThreshold = 100;
+    private volatile int highThreshold = 200;
+    private volatile boolean incremental = false;
+    private volatile int changeThreshold = 0;
+
+    private int width, height;
+    // Per-frame inputs, set before the root task is invoked.
+    private byte[] src;
+    private int srcOffset, srcStride;
+    private byte[] dst;
+
+    private byte[] luma;      // packed copy of a ByteBuffer input
+    private byte[] out;       // byte-per-pixel result for ByteBuffer and packed outputs
+    private short[] hblur;    // horizontal 1-4-6-4-1 sums
+    private byte[] blurred;
+    private short[] mag;      // |gx| + |gy|
+    private byte[] dir;       // 0 = horizontal, 1 = 45deg, 2 = vertical, 3 = 135deg
+    private byte[] cls;       // NONE / WEAK / STRONG
+    private int[] stack;
+    private Strip[] strips = new Strip[0];
+    private int stripCount;
+
+    // Incremental mode: the input the cached maps were computed from, and the
+    // changed regions of the current frame as {x0, x1, y0, y1} spans.
+    private byte[] prev;
+    private boolean cacheValid;
+    private int cachedLow, cachedHigh;
+    private int[] spans = new int[0];
+    private int spanCount;
+    private boolean partial;
+    private int changedTiles, tileCount;
+    private final Root root = new Root();
+
+    public EdgeEngine() { this(ForkJoinPool.commonPool()); }
+
+    public EdgeEngine(ForkJoinPool pool) { this.pool = pool; }
+
+    public void setMode(int mode) { this.mode = (mode == MODE_GRAY) ? MODE_GRAY : MODE_EDGES; }
+
+    public int getMode() { return mode; }
+
+    /** Hysteresis thresholds on the L1 gradient magnitude; defaults match the native Canny(100, 200). */
+    public void setThresholds(int low, int high) {
+        if (low < 0 || high < low) throw new IllegalArgumentException("need 0 <= low <= high");
+        lowThreshold = low;
+        highThreshold = high;
+    }
+
+    /**
+     * Enables tile-based incremental processing. A tile counts as changed
+     * when the sum of absolute differences against the previous frame exceeds
+     * {@code tileSadThreshold}. 0 recomputes on any change and keeps the output
+     * exact. Larger values ignore sensor noise at the cost of reusing slightly
+     * stale edges.
+     */
+    public void setIncremental(boolean enabled, int tileSadThreshold) {
+        if (tileSadThreshold < 0) throw new IllegalArgumentException("threshold must be >= 0");
+        changeThreshold = tileSadThreshold;
+        incremental = enabled;
+    }
+
+    /** Tiles recomputed for the last frame; equals {@link #tileCount()} after a full pass. */
+    public int changedTiles() { return changedTiles; }
+
+    public int tileCount() { return tileCount; }
+
+    /** Same contract as MainActivity.processFrame: NV21 (or plain luma) in, width*height out. */
+    public void processFrame(byte[] input, int width, int height, byte[] output) {
+        run(input, 0, width, width, height, output);
+    }
+
+    /**
+     * Processes a strided luma plane. Returns false if the buffers are too
+     * small, mirroring the native processPlanes.
+     */
+    public boolean processPlanes(ByteBuffer y, int yRowStride, int width, int height, ByteBuffer output) {
+        if (yRowStride < width || y.capacity() < yRowStride * (height - 1) + width
+                || output.capacity() < width * height) {
+            return false;
+        }
+        ensureSize(width, height);
+        ByteBuffer in = y.duplicate();
+        in.clear();
+        for (int row = 0; row < height; row++) {
+            in.position(row * yRowStride);
+            in.get(luma, row * width, width);
+        }
+        run(luma, 0, width, width, height, this.out);
+        ByteBuffer o = output.duplicate();
+        o.clear();
+        o.put(this.out, 0, width * height);
+        return true;
+    }
+
+    /**
+     * Like processFrame, but the edge map comes out 1 bit per pixel in the
+     * {@link EdgePacking} layout. Edges mode only.
+     */
+    public void processFramePacked(byte[] input, int width, int height, byte[] packed) {
+        if (mode == MODE_GRAY) throw new IllegalStateException("packed output needs edges mode");
+        ensureSize(width, height);
+        run(input, 0, width, width, height, this.out);
+        EdgePacking.pack(this.out, width, height, packed);
+    }
+
+    /** Strided-plane version of {@link #processFramePacked}; false if the buffers are too small. */
+    public boolean processPlanesPacked(ByteBuffer y, int yRowStride, int width, int height, ByteBuffer packed) {
+        if (mode == MODE_GRAY) throw new IllegalStateException("packed output needs edges mode");
+        if (yRowStride < width || y.capacity() < yRowStride * (height - 1) + width
+                || packed.capacity() < EdgePacking.packedSize(width, height)) {
+            return false;
+        }
+        ensureSize(width, height);
+        ByteBuffer in = y.duplicate();
+        in.clear();
+        for (int row = 0; row < height; row++) {
+            in.position(row * yRowStride);
+            in.get(luma, row * width, width);
+        }
+        run(luma, 0, width, width, height, this.out);
+        EdgePacking.pack(this.out, width, height, packed);
+        return true;
+    }
+
+    private void run(byte[] input, int offset, int stride, int width, int height, byte[] output) {
+        if (mode == MODE_GRAY) {
+            for (int row = 0; row < height; row++)
+                System.arraycopy(input, offset + row * stride, output, row * width, width);
+            cacheValid = false;
+            return;
+        }
+        ensureSize(width, height);
+        src = input;
+        srcOffset = offset;
+        srcStride = stride;
+        dst = output;
+
+        boolean inc = incremental;
+        int low = lowThreshold, high = highThreshold;
+        if (inc && cacheValid && low == cachedLow && high == cachedHigh) {
+            changedTiles = findChangedTiles(changeThreshold);
+        } else {
+            changedTiles = tileCount;
+        }
+        // Past half the tiles, spans and halos cost more than the plain strip pass.
+        partial = changedTiles * 2 <= tileCount;
+        if (partial) {
+            if (spanCount > 0) {
+                root.reinitialize();
+                pool.invoke(root);
+            } else {
+                hysteresis();
+            }
+        } else {
+            root.reinitialize();
+            pool.invoke(root);
+            if (inc) {
+                for (int row = 0; row < height; row++)
+                    System.arraycopy(input, offset + row * stride, prev, row * width, width);
+            }
+        }
+        cacheValid = inc;
+        cachedLow = low;
+        cachedHigh = high;
+        src = null;
+        dst = null;
+    }
+
+    // Compares the input with prev tile by tile, copies changed tiles into
+    // prev and merges horizontally adjacent changed tiles into spans.
+    private int findChangedTiles(int threshold) {
+        final int w = width, h = height;
+        final byte[] in = src, old = prev;
+        int changed = 0;
+        spanCount = 0;
+        for (int ty = 0; ty < h; ty += TILE) {
+            int ty1 = Math.min(ty + TILE, h);
+            int open = -1;
+            for (int tx = 0; tx < w; tx += TILE) {
+                int tx1 = Math.min(tx + TILE, w);
+                int sad = 0;
+                for (int y = ty; y < ty1 && sad <= threshold; y++) {
+                    int s = srcOffset + y * srcStride, o = y * w;
+                    for (int x = tx; x < tx1; x++) {
+                        int d = (in[s + x] & 0xFF) - (old[o + x] & 0xFF);
+                        sad += d < 0 ? -d : d;
+                    }
+                }
+                if (sad > threshold) {
+                    changed++;
+                    for (int y = ty; y < ty1; y++)
+                        System.arraycopy(in, srcOffset + y * srcStride + tx, old, y * w + tx, tx1 - tx);
+                    if (open < 0) open = tx;
+                } else if (open >= 0) {
+                    addSpan(open, tx, ty, ty1);
+                    open = -1;
+                }
+            }
+            if (open >= 0) addSpan(open, w, ty, ty1);
+        }
+        return changed;
+    }
+
+    private void addSpan(int x0, int x1, int y0, int y1) {
+        int i = spanCount++ * 4;
+        spans[i] = x0;
+        spans[i + 1] = x1;
+        spans[i + 2] = y0;
+        spans[i + 3] = y1;
+    }
+
+    private void ensureSize(int w, int h) {
+        if (w == width && h == height && blurred != null) return;
+        width = w;
+        height = h;
+        int n = w * h;
+        // Arrays only grow, so frames of alternating sizes (regions of
+        // interest) reuse them.
+        if (blurred == null || blurred.length < n) {
+            luma = new byte[n];
+            out = new byte[n];
+            hblur = new short[n];
+            blurred = new byte[n];
+            mag = new short[n];
+            dir = new byte[n];
+            cls = new byte[n];
+            stack = new int[n];
+            prev = new byte[n];
+        }
+        cacheValid = false;
+        tileCount = ((w + TILE - 1) / TILE) * ((h + TILE - 1) / TILE);
+        if (spans.length < tileCount * 4) spans = new int[tileCount * 4];
+        spanCount = 0;
+
+        int maxStrips = Math.max(1, h / MIN_STRIP_ROWS);
+        int count = Math.max(1, Math.min(maxStrips, pool.getParallelism() * 4));
+        // Like the arrays, strip tasks are kept and only re-ranged.
+        if (strips.length < count) {
+            Strip[] grown = Arrays.copyOf(strips, count);
+            for (int i = strips.length; i < count; i++) grown[i] = new Strip();
+            strips = grown;
+        }
+        for (int i = 0; i < count; i++) {
+            strips[i].y0 = h * i / count;
+            strips[i].y1 = h * (i + 1) / count;
+        }
+        stripCount = count;
+    }
+
+    // ---- kernels, each over the rectangle [x0, x1) x [y0, y1) ------------
+
+    private void runPhase(int phase, int x0, int x1, int y0, int y1) {
+        switch (phase) {
+            case PHASE_BLUR_H: blurHorizontal(x0, x1, y0, y1); break;
+            case PHASE_BLUR_V: blurVertical(x0, x1, y0, y1); break;
+            case PHASE_SOBEL: sobel(x0, x1, y0, y1); break;
+            default: suppress(x0, x1, y0, y1); break;
+        }
+    }
+
+    private void blurHorizontal(int x0, int x1, int y0, int y1) {
+        final int w = width;
+        for (int y = y0; y < y1; y++) {
+            int s = srcOffset + y * srcStride;
+            int d = y * w;
+            for (int x = x0; x < x1; x++) {
+                int xm2 = x < 2 ? 0 : x - 2;
+                int xm1 = x < 1 ? 0 : x - 1;
+                int xp1 = x + 1 >= w ? w - 1 : x + 1;
+                int xp2 = x + 2 >= w ? w - 1 : x + 2;
+                hblur[d + x] = (short) ((src[s + xm2] & 0xFF) + 4 * (src[s + xm1] & 0xFF)
+                        + 6 * (src[s + x] & 0xFF) + 4 * (src[s + xp1] & 0xFF) + (src[s + xp2] & 0xFF));
+            }
+        }
+    }
+
+    private void blurVertical(int x0, int x1, int y0, int y1) {
+        final int w = width, h = height;
+        for (int y = y0; y < y1; y++) {
+            int r0 = (y < 2 ? 0 : y - 2) * w;
+            int r1 = (y < 1 ? 0 : y - 1) * w;
+            int r2 = y * w;
+            int r3 = (y + 1 >= h ? h - 1 : y + 1) * w;
+            int r4 = (y + 2 >= h ? h - 1 : y + 2) * w;
+            for (int x = x0; x < x1; x++) {
+                int v = hblur[r0 + x] + 4 * hblur[r1 + x] + 6 * hblur[r2 + x]
+                        + 4 * hblur[r3 + x] + hblur[r4 + x];
+                blurred[r2 + x] = (byte) ((v + 128) >> 8);
+            }
+        }
+    }
+
+    private void sobel(int x0, int x1, int y0, int y1) {
+        final int w = width, h = height;
+        final byte[] b = blurred;
+        for (int y = y0; y < y1; y++) {
+            int up = (y < 1 ? 0 : y - 1) * w;
+            int mid = y * w;
+            int dn = (y + 1 >= h ? h - 1 : y + 1) * w;
+            for (int x = x0; x < x1; x++) {
+                int xl = x < 1 ? 0 : x - 1;
+                int xr = x + 1 >= w ? w - 1 : x + 1;
+                int gx = (b[up + xr] & 0xFF) + 2 * (b[mid + xr] & 0xFF) + (b[dn + xr] & 0xFF)
+                        - (b[up + xl] & 0xFF) - 2 * (b[mid + xl] & 0xFF) - (b[dn + xl] & 0xFF);
+                int gy = (b[dn + xl] & 0xFF) + 2 * (b[dn + x] & 0xFF) + (b[dn + xr] & 0xFF)
+                        - (b[up + xl] & 0xFF) - 2 * (b[up + x] & 0xFF) - (b[up + xr] & 0xFF);
+                int ax = gx < 0 ? -gx : gx;
+                int ay = gy < 0 ? -gy : gy;
+                mag[mid + x] = (short) (ax + ay);
+                dir[mid + x] = direction(gx, gy, ax, ay);
+            }
+        }
+    }
+
+    // Quantizes the gradient direction the same way OpenCV's Canny does
+    // (tan(22.5deg) ~= 13573 / 2^15).
+    private static byte direction(int gx, int gy, int ax, int ay) {
+        int tg22x = ax * 13573;
+        int y15 = ay << 15;
+        if (y15 < tg22x) return 0;
+        int tg67x = tg22x + (ax << 16);
+        if (y15 > tg67x) return 2;
+        return (byte) (((gx ^ gy) < 0) ? 3 : 1);
+    }
+
+    private void suppress(int x0, int x1, int y0, int y1) {
+        final int w = width, h = height;
+        final int low = lowThreshold, high = highThreshold;
+        for (int y = y0; y < y1; y++) {
+            int row = y * w;
+            for (int x = x0; x < x1; x++) {
+                int i = row + x;
+                int m = mag[i];
+                if (m <= low || x == 0 || y == 0 || x == w - 1 || y == h - 1) {
+                    cls[i] = NONE;
+                    continue;
+                }
+                int a, b;
+                switch (dir[i]) {
+                    case 0: a = mag[i - 1]; b = mag[i + 1]; break;
+                    case 2: a = mag[i - w]; b = mag[i + w]; break;
+                    case 1: a = mag[i - w - 1]; b = mag[i + w + 1]; break;
+                    default: a = mag[i - w + 1]; b = mag[i + w - 1]; break;
+                }
+                if (m > a && m >= b) {
+                    cls[i] = m > high ? STRONG : WEAK;
+                } else {
+                    cls[i] = NONE;
+                }
+            }
+        }
+    }
+
+    private void hysteresis() {
+        final int w = width, n = width * height;
+        final byte[] o = dst;
+        Arrays.fill(o, 0, n, (byte) 0);
+        int sp = 0;
+        for (int i = 0; i < n; i++) {
+            if (cls[i] != STRONG || o[i] != 0) continue;
+            o[i] = (byte) 255;
+            stack[sp++] = i;
+            while (sp > 0) {
+                int p = stack[--sp];
+                // suppress() leaves the outer border NONE, so all 8 neighbours of
+                // a marked pixel are in bounds.
+                sp = follow(p - w - 1, o, sp);
+                sp = follow(p - w, o, sp);
+                sp = follow(p - w + 1, o, sp);
+                sp = follow(p - 1, o, sp);
+                sp = follow(p + 1, o, sp);
+                sp = follow(p + w - 1, o, sp);
+                sp = follow(p + w, o, sp);
+                sp = follow(p + w + 1, o, sp);
+            }
+        }
+    }
+
+    private int follow(int q, byte[] o, int sp) {
+        if (cls[q] != NONE && o[q] == 0) {
+            o[q] = (byte) 255;
+            stack[sp++] = q;
+        }
+        return sp;
+    }
+
+    // ---- ForkJoin plumbing (task objects are reused across frames) -------
+
+    @SuppressWarnings("serial")
+    private final class Strip extends RecursiveAction {
+        int y0, y1;
+        int phase;
+
+        @Override protected void compute() {
+            if (!partial) {
+                runPhase(phase, 0, width, y0, y1);
+                return;
+            }
+            // Each changed span grown by this phase's halo, clipped to the strip.
+            final int hx = HALO_X[phase], hy = HALO_Y[phase];
+            for (int i = 0, n = spanCount * 4; i < n; i += 4) {
+                int ry0 = Math.max(spans[i + 2] - hy, y0);
+                int ry1 = Math.min(spans[i + 3] + hy, y1);
+                if (ry0 >= ry1) continue;
+                runPhase(phase, Math.max(spans[i] - hx, 0), Math.min(spans[i + 1] + hx, width), ry0, ry1);
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class Root extends RecursiveAction {
+        @Override protected void compute() {
+            Strip[] s = strips;
+            final int n = stripCount;
+            for (int phase = 0; phase < PHASE_COUNT; phase++) {
+                for (int i = 0; i < n; i++) {
+                    s[i].reinitialize();
+                    s[i].phase = phase;
+                }
+                // invokeAll() over the first n of the array.
+                for (int i = n - 1; i > 0; i--) s[i].fork();
+                s[0].invoke();
+                for (int i = 1; i < n; i++) s[i].join();
+            }
+            hysteresis();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.edgedetectionapp.proc;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compact forms of a binary edge map.
+ *
+ * Packed: 1 bit per pixel, 8 pixels per byte with pixel x in bit (x & 7),
+ * rows padded to whole bytes ({@link #rowBytes}). This is what the renderer
+ * uploads and unpacks in its shader, 1/8 the size of the byte-per-pixel map.
+ *
+ * Run-length: for storage and transport. The pixels are read row-major
+ * (padding bits excluded) as alternating runs of 0s and 1s, starting with a
+ * run of 0s that may be empty. Each run length is an unsigned LEB128 varint.
+ * A mostly-empty edge map shrinks to a few bytes per edge crossing.
+ */
+public final class EdgePacking {
+    private EdgePacking() {}
+
+    public static int rowBytes(int width) { return (width + 7) >> 3; }
+
+    public static int packedSize(int width, int height) { return rowBytes(width) * height; }
+
+    /** Worst case for {@link #encodeRle}: every run 1 pixel, plus an empty leading run. */
+    public static int rleMaxSize(int width, int height) { return width * height + 1; }
+
+    /** Packs width*height bytes, any non-zero byte becoming a set bit. */
+    public static void pack(byte[] src, int width, int height, byte[] dst) {
+        int rb = rowBytes(width);
+        for (int row = 0; row < height; row++) {
+            int s = row * width, d = row * rb;
+            for (int x = 0; x < width; x += 8, d++) dst[d] = packByte(src, s + x, Math.min(8, width - x));
+        }
+    }
+
+    /** Same as {@link #pack(byte[], int, int, byte[])} into a buffer, from index 0; position untouched. */
+    public static void pack(byte[] src, int width, int height, ByteBuffer dst) {
+        int rb = rowBytes(width);
+        for (int row = 0; row < height; row++) {
+            int s = row * width, d = row * rb;
+            for (int x = 0; x < width; x += 8, d++) dst.put(d, packByte(src, s + x, Math.min(8, width - x)));
+        }
+    }
+
+    private static byte packByte(byte[] src, int i, int n) {
+        int b = 0;
+        if (n == 8) {
+            // (v + 255) >> 8 is 1 for any non-zero v, without a branch.
+            b = ((src[i] & 0xFF) + 0xFF) >> 8
+                    | (((src[i + 1] & 0xFF) + 0xFF) >> 8) << 1
+                    | (((src[i + 2] & 0xFF) + 0xFF) >> 8) << 2
+                    | (((src[i + 3] & 0xFF) + 0xFF) >> 8) << 3
+                    | (((src[i + 4] & 0xFF) + 0xFF) >> 8) << 4
+                    | (((src[i + 5] & 0xFF) + 0xFF) >> 8) << 5
+                    | (((src[i + 6] & 0xFF) + 0xFF) >> 8) << 6
+                    | (((src[i + 7] & 0xFF) + 0xFF) >> 8) << 7;
+        } else {
+            for (int k = 0; k < n; k++) b |= (((src[i + k] & 0xFF) + 0xFF) >> 8) << k;
+        }
+        return (byte) b;
+    }
+
+    /** Expands a packed map to width*height bytes of 0 or 255. */
+    public static void unpack(byte[] packed, int width, int height, byte[] dst) {
+        int rb = rowBytes(width);
+        for (int row = 0; row < height; row++) {
+            int s = row * rb, d = row * width;
+            for (int x = 0; x < width; x++) dst[d + x] = (byte) -((packed[s + (x >> 3)] >> (x & 7)) & 1);
+        }
+    }
+
+    /** Run-length encodes a packed map into {@code dst} (at least {@link #rleMaxSize}); returns the length. */
+    public static int encodeRle(byte[] packed, int width, int height, byte[] dst) {
+        int rb = rowBytes(width);
+        int o = 0, cur = 0, run = 0;
+        for (int row = 0; row < height; row++) {
+            int base = row * rb;
+            int x = 0;
+            while (x < width) {
+                int b = packed[base + (x >> 3)] & 0xFF;
+                if ((x & 7) == 0 && x + 8 <= width && b == (cur == 0 ? 0 : 0xFF)) {
+                    // Eight pixels that continue the current run.
+                    run += 8;
+                    x += 8;
+                    continue;
+                }
+                int bit = (b >> (x & 7)) & 1;
+                if (bit != cur) {
+                    o = putVarint(dst, o, run);
+                    run = 0;
+                    cur = bit;
+                }
+                run++;
+                x++;
+            }
+        }
+        return putVarint(dst, o, run);
+    }
+
+    /**
+     * Decodes {@code length} bytes of run-length data into a packed map of
+     * packedSize(width, height) bytes. Throws if the runs do not cover
+     * exactly width*height pixels.
+     */
+    public static void decodeRle(byte[] rle, int length, int width, int height, byte[] packed) {
+        int rb = rowBytes(width);
+        long total = (long) width * height;
+        Arrays.fill(packed, 0, packedSize(width, height), (byte) 0);
+        long pos = 0;
+        int bit = 0;
+        int i = 0;
+        while (i < length) {
+            long run = 0;
+            int shift = 0, b;
+            do {
+                if (i == length || shift > 28) throw new IllegalArgumentException("bad varint at byte " + i);
+                b = rle[i++];
+                run |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (pos + run > total) throw new IllegalArgumentException("runs overflow " + width + "x" + height);
+            if (bit == 1) setRun(packed, width, rb, (int) pos, (int) run);
+            pos += run;
+            bit ^= 1;
+        }
+        if (pos != total) throw new IllegalArgumentException("runs cover " + pos + " of " + total + " pixels");
+    }
+
+    private static int putVarint(byte[] dst, int o, int v) {
+        while ((v & ~0x7F) != 0) {
+            dst[o++] = (byte) (v | 0x80);
+            v >>>= 7;
+        }
+        dst[o++] = (byte) v;
+        return o;
+    }
+
+    // Sets `len` pixels from pixel index `start`, wrapping across rows.
+    private static void setRun(byte[] packed, int width, int rb, int start, int len) {
+        while (len > 0) {
+            int row = start / width, x = start - row * width;
+            int n = Math.min(len, width - x);
+            int base = row * rb, end = x + n;
+            while (x < end && (x & 7) != 0) packed[base + (x >> 3)] |= (byte) (1 << (x++ & 7));
+            while (x + 8 <= end) {
+                packed[base + (x >> 3)] = (byte) 0xFF;
+                x += 8;
+            }
+            while (x < end) packed[base + (x >> 3)] |= (byte) (1 << (x++ & 7));
+            start += n;
+            len -= n;
+        }
+    }
+}
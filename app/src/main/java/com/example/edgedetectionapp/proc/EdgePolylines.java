@@ -0,0 +1,160 @@
+package com.example.edgedetectionapp.proc;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Edge geometry for one frame: polylines in pixel coordinates, held in
+ * primitive arrays that only grow, so refilling it every frame allocates
+ * nothing in the steady state.
+ *
+ * Wire form (little-endian), also the FORMAT_POLYLINES frame layout: u16
+ * width, u16 height, u32 polyline count, u32 point count, then a u16 point
+ * count per polyline, then every point as u16 x, u16 y. A frame with a few
+ * hundred contours takes kilobytes where the raster takes megabytes.
+ */
+public final class EdgePolylines {
+    public static final int HEADER_BYTES = 12;
+    /** Most points one polyline can hold in the wire form. */
+    public static final int MAX_POINTS = 0xFFFF;
+
+    private int width, height;
+    private int count, points;
+    private int[] lengths = new int[64];
+    private short[] xy = new short[512];
+    private int openStart = -1;
+
+    /** Empties the set for a frame of the given size. */
+    public void reset(int width, int height) {
+        if (width > 0xFFFF || height > 0xFFFF) throw new IllegalArgumentException("frame too large: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        count = points = 0;
+        openStart = -1;
+    }
+
+    public int width() { return width; }
+
+    public int height() { return height; }
+
+    public int count() { return count; }
+
+    /** Points over all polylines. */
+    public int pointCount() { return points; }
+
+    /** Line segments over all polylines (each polyline of n points has n - 1). */
+    public int segmentCount() { return points - count; }
+
+    public int length(int polyline) { return lengths[polyline]; }
+
+    public int x(int point) { return xy[point * 2] & 0xFFFF; }
+
+    public int y(int point) { return xy[point * 2 + 1] & 0xFFFF; }
+
+    /** Starts a polyline; add its points, then {@link #end()} it. */
+    public void begin() {
+        if (openStart >= 0) throw new IllegalStateException("polyline already open");
+        openStart = points;
+    }
+
+    public void add(int x, int y) {
+        if (points - openStart >= MAX_POINTS) throw new IllegalStateException("polyline longer than " + MAX_POINTS);
+        if (xy.length < points * 2 + 2) xy = grow(xy, points * 2 + 2);
+        xy[points * 2] = (short) x;
+        xy[points * 2 + 1] = (short) y;
+        points++;
+    }
+
+    /** Closes the open polyline; one with fewer than two points is dropped. */
+    public void end() {
+        int n = points - openStart;
+        if (n < 2) {
+            points = openStart;
+        } else {
+            if (lengths.length == count) lengths = Arrays.copyOf(lengths, count * 2);
+            lengths[count++] = n;
+        }
+        openStart = -1;
+    }
+
+    /** Bytes {@link #encode} writes. */
+    public int encodedSize() { return encodedSize(count, points); }
+
+    /** Wire size of {@code polylines} polylines holding {@code points} points in total. */
+    public static int encodedSize(int polylines, int points) { return HEADER_BYTES + 2 * polylines + 4 * points; }
+
+    /** Writes the wire form at dst[0..]; returns its length. */
+    public int encode(byte[] dst) {
+        putShort(dst, 0, width);
+        putShort(dst, 2, height);
+        putInt(dst, 4, count);
+        putInt(dst, 8, points);
+        int o = HEADER_BYTES;
+        for (int i = 0; i < count; i++, o += 2) putShort(dst, o, lengths[i]);
+        for (int i = 0; i < points * 2; i++, o += 2) putShort(dst, o, xy[i]);
+        return o;
+    }
+
+    /** Length of the wire form starting at src[0], read from its header. */
+    public static int encodedLength(byte[] src) {
+        return encodedSize(getInt(src, 4), getInt(src, 8));
+    }
+
+    /** Same as above for a buffer, read from index 0. */
+    public static int encodedLength(ByteBuffer src) {
+        return encodedSize(getInt(src, 4), getInt(src, 8));
+    }
+
+    /**
+     * Replaces the contents with the wire form at src[0], reading at most
+     * {@code length} bytes. Throws IllegalArgumentException if it is
+     * truncated or inconsistent.
+     */
+    public void decode(ByteBuffer src, int length) {
+        if (length < HEADER_BYTES) throw new IllegalArgumentException("no header");
+        int n = getInt(src, 4), p = getInt(src, 8);
+        if (n < 0 || p < 0 || (long) encodedSize(n, p) > length)
+            throw new IllegalArgumentException(n + " polylines / " + p + " points do not fit " + length + " bytes");
+        reset(getShort(src, 0), getShort(src, 2));
+        if (lengths.length < n) lengths = new int[n];
+        if (xy.length < p * 2) xy = new short[p * 2];
+        int o = HEADER_BYTES, total = 0;
+        for (int i = 0; i < n; i++, o += 2) {
+            lengths[i] = getShort(src, o);
+            total += lengths[i];
+        }
+        if (total != p) throw new IllegalArgumentException("polyline lengths add up to " + total + ", not " + p);
+        for (int i = 0; i < p * 2; i++, o += 2) xy[i] = (short) getShort(src, o);
+        count = n;
+        points = p;
+    }
+
+    /** Same as above for an array. */
+    public void decode(byte[] src, int length) { decode(ByteBuffer.wrap(src), length); }
+
+    private static short[] grow(short[] a, int min) {
+        return Arrays.copyOf(a, Math.max(min, a.length * 2));
+    }
+
+    private static void putShort(byte[] b, int i, int v) {
+        b[i] = (byte) v;
+        b[i + 1] = (byte) (v >>> 8);
+    }
+
+    private static void putInt(byte[] b, int i, int v) {
+        putShort(b, i, v);
+        putShort(b, i + 2, v >>> 16);
+    }
+
+    private static int getShort(ByteBuffer b, int i) {
+        return (b.get(i) & 0xFF) | (b.get(i + 1) & 0xFF) << 8;
+    }
+
+    private static int getInt(ByteBuffer b, int i) {
+        return getShort(b, i) | getShort(b, i + 2) << 16;
+    }
+
+    private static int getInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+}
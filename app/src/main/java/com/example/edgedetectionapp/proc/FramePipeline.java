@@ -0,0 +1,288 @@
+package com.example.edgedetectionapp.proc;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs a list of {@link FrameProcessor} stages over the luma plane.
+ *
+ * When stages are set, the list is compiled into a plan. Stages that would
+ * not change their input are dropped. Neighbours that have a combined form
+ * are merged, for example Sobel followed by a threshold, or two dilations.
+ * Intermediate frames ping-pong between two arrays owned by the pipeline, and
+ * stages share one {@link Scratch}. Both survive reconfiguration, so swapping
+ * the stage list at runtime does not reallocate frame memory.
+ *
+ * setStages() may be called from any thread; a frame already being processed
+ * finishes with the plan it started with. Processing itself must stay on one
+ * thread.
+ */
+public final class FramePipeline {
+    private static final FrameProcessor[] NO_STAGES = new FrameProcessor[0];
+
+    private volatile FrameProcessor[] plan = NO_STAGES;
+    private volatile int planFormat = FrameProcessor.FORMAT_LUMA;
+    private final byte[][] buffers = { new byte[0], new byte[0] };
+    private final Scratch scratch = new Scratch();
+    private int lastOutW, lastOutH, lastFormat;
+
+    public FramePipeline(FrameProcessor... stages) { setStages(stages); }
+
+    public void setStages(FrameProcessor... stages) {
+        ArrayList<FrameProcessor> kept = new ArrayList<>(stages.length);
+        // formats[i] is the input format of kept[i].
+        int[] formats = new int[stages.length + 1];
+        formats[0] = FrameProcessor.FORMAT_LUMA;
+        for (FrameProcessor stage : stages) {
+            int n = kept.size();
+            if (stage.isIdentity(formats[n])) continue;
+            while (n > 0) {
+                FrameProcessor fused = kept.get(n - 1).fuse(stage);
+                if (fused == null) break;
+                kept.remove(--n);
+                stage = fused;
+            }
+            if (stage.isIdentity(formats[n])) continue;
+            if (formats[n] == FrameProcessor.FORMAT_PACKED || formats[n] == FrameProcessor.FORMAT_POLYLINES)
+                throw new IllegalArgumentException("no stage can follow packed or polyline output");
+            kept.add(stage);
+            formats[n + 1] = stage.outputFormat(formats[n]);
+        }
+        // Publish the format first: a reader that sees the new plan also sees it.
+        planFormat = formats[kept.size()];
+        plan = kept.toArray(NO_STAGES);
+    }
+
+    /** Number of stages that actually run after skipping and fusing. */
+    public int stageCount() { return plan.length; }
+
+    /** Format of the pipeline's output. */
+    public int outputFormat() { return planFormat; }
+
+    /**
+     * Output size of the last processed frame. Unlike outputWidth(), this
+     * cannot disagree with the data if the stages were swapped mid-frame.
+     */
+    public int lastOutputWidth() { return lastOutW; }
+
+    public int lastOutputHeight() { return lastOutH; }
+
+    /** Format of the last processed frame; see {@link #lastOutputWidth()}. */
+    public int lastOutputFormat() { return lastFormat; }
+
+    /**
+     * Bytes of output for a width x height input: outputWidth*outputHeight,
+     * or less when packed. Polyline output may use any part of it.
+     */
+    public int outputBytes(int width, int height) {
+        return frameBytes(planFormat, outputWidth(width), outputHeight(height));
+    }
+
+    /** Bytes a frame of the given format and size occupies (at most, for polylines). */
+    public static int frameBytes(int format, int width, int height) {
+        if (format == FrameProcessor.FORMAT_PACKED) return EdgePacking.packedSize(width, height);
+        if (format == FrameProcessor.FORMAT_POLYLINES) return Math.max(width * height, EdgePolylines.HEADER_BYTES);
+        return width * height;
+    }
+
+    public int outputWidth(int width) {
+        for (FrameProcessor s : plan) width = s.outputWidth(width);
+        return width;
+    }
+
+    public int outputHeight(int height) {
+        for (FrameProcessor s : plan) height = s.outputHeight(height);
+        return height;
+    }
+
+    /**
+     * Packed luma (or NV21, of which only Y is read) in; outputBytes(width, height)
+     * out. Returns false, leaving output untouched, if either array is too small.
+     */
+    public boolean processFrame(byte[] input, int width, int height, byte[] output) {
+        FrameProcessor[] p = plan;
+        int outW = width, outH = height;
+        for (FrameProcessor s : p) { outW = s.outputWidth(outW); outH = s.outputHeight(outH); }
+        int format = formatOf(p);
+        if (input.length < width * height || output.length < frameBytes(format, outW, outH)) return false;
+        lastFormat = format;
+        if (p.length == 0) {
+            System.arraycopy(input, 0, output, 0, width * height);
+            lastOutW = width;
+            lastOutH = height;
+            return true;
+        }
+        run(p, 0, input, width, height, output);
+        return true;
+    }
+
+    private static int formatOf(FrameProcessor[] p) {
+        int format = FrameProcessor.FORMAT_LUMA;
+        for (FrameProcessor s : p) format = s.outputFormat(format);
+        return format;
+    }
+
+    /**
+     * Processes a strided luma plane. Returns false if the buffers are too
+     * small. A plan of exactly one {@link FrameProcessor.Direct} stage reads the
+     * plane in place; otherwise Y is packed once into the pipeline's buffers.
+     */
+    public boolean processPlanes(ByteBuffer y, int yRowStride, int width, int height, ByteBuffer output) {
+        FrameProcessor[] p = plan;
+        int outW = width, outH = height;
+        for (FrameProcessor s : p) { outW = s.outputWidth(outW); outH = s.outputHeight(outH); }
+        int outBytes = frameBytes(lastFormat = formatOf(p), outW, outH);
+        lastOutW = outW;
+        lastOutH = outH;
+        if (p.length == 1 && p[0] instanceof FrameProcessor.Direct)
+            return ((FrameProcessor.Direct) p[0]).processPlanes(y, yRowStride, width, height, output);
+
+        if (yRowStride < width || y.capacity() < yRowStride * (height - 1) + width
+                || output.capacity() < outBytes) {
+            return false;
+        }
+        ByteBuffer src = y.duplicate();
+        ByteBuffer dst = output.duplicate();
+        dst.clear();
+        if (p.length == 0) {
+            for (int row = 0; row < height; row++) {
+                int start = row * yRowStride;
+                src.limit(start + width);
+                src.position(start);
+                dst.put(src);
+            }
+            return true;
+        }
+        byte[] result;
+        if (p[0] instanceof FrameProcessor.PlaneInput) {
+            // Stage 0 reads the plane itself; its output goes into buffers[0] as usual.
+            FrameProcessor first = p[0];
+            int w1 = first.outputWidth(width), h1 = first.outputHeight(height);
+            byte[] firstOut = buffer(0, w1 * h1);
+            ((FrameProcessor.PlaneInput) first).processPlane(y, yRowStride, width, height, firstOut, scratch);
+            result = run(p, 1, firstOut, w1, h1, null);
+        } else {
+            // Packed input goes into buffers[1] so stage 0 can write buffers[0].
+            byte[] packed = buffer(1, width * height);
+            src.clear();
+            for (int row = 0; row < height; row++) {
+                src.position(row * yRowStride);
+                src.get(packed, row * width, width);
+            }
+            result = run(p, 0, packed, width, height, null);
+        }
+        dst.put(result, 0, lastFormat == FrameProcessor.FORMAT_POLYLINES
+                ? EdgePolylines.encodedLength(result) : outBytes);
+        return true;
+    }
+
+    /**
+     * Processes the frame held by {@code pyramid}, with the same output as
+     * processPlanes(). A leading downscale by 2, 4 or 8 is not run but read
+     * from the pyramid level, so pipelines sharing a pyramid share that work;
+     * other plans start from level 0 (a lone {@link FrameProcessor.Direct}
+     * stage still reads the plane in place). Returns false if the output is
+     * too small or a Direct stage refuses the buffers.
+     */
+    public boolean processPyramid(LumaPyramid pyramid, ByteBuffer output) {
+        FrameProcessor[] p = plan;
+        int width = pyramid.width(0), height = pyramid.height(0);
+        int outW = width, outH = height;
+        for (FrameProcessor s : p) { outW = s.outputWidth(outW); outH = s.outputHeight(outH); }
+        int outBytes = frameBytes(lastFormat = formatOf(p), outW, outH);
+        lastOutW = outW;
+        lastOutH = outH;
+        if (p.length == 1 && p[0] instanceof FrameProcessor.Direct && pyramid.plane() != null) {
+            return ((FrameProcessor.Direct) p[0]).processPlanes(pyramid.plane(), pyramid.rowStride(),
+                    width, height, output);
+        }
+        if (output.capacity() < outBytes) return false;
+
+        int start = 0, level = 0;
+        if (p.length > 0 && p[0] instanceof FrameStages.Downscale) {
+            int l = LumaPyramid.levelOf(((FrameStages.Downscale) p[0]).factor);
+            if (l > 0) {
+                start = 1;
+                level = l;
+            }
+        }
+        byte[] src = pyramid.level(level);
+        ByteBuffer dst = output.duplicate();
+        dst.clear();
+        if (start == p.length) {
+            dst.put(src, 0, outBytes);
+            return true;
+        }
+        byte[] result = run(p, start, src, pyramid.width(level), pyramid.height(level), null);
+        dst.put(result, 0, lastFormat == FrameProcessor.FORMAT_POLYLINES
+                ? EdgePolylines.encodedLength(result) : outBytes);
+        return true;
+    }
+
+    // Runs stages from `start` on; the last one writes into `output`, or into
+    // a pipeline buffer when output is null. Returns the array holding the
+    // result. Stage i always writes buffers[i & 1], so it never overwrites its input.
+    private byte[] run(FrameProcessor[] p, int start, byte[] input, int width, int height, byte[] output) {
+        byte[] src = input;
+        int w = width, h = height;
+        for (int i = start; i < p.length; i++) {
+            FrameProcessor s = p[i];
+            int ow = s.outputWidth(w), oh = s.outputHeight(h);
+            byte[] dst = (i == p.length - 1 && output != null) ? output : buffer(i & 1, ow * oh);
+            s.process(src, w, h, dst, scratch);
+            src = dst;
+            w = ow;
+            h = oh;
+        }
+        lastOutW = w;
+        lastOutH = h;
+        return src;
+    }
+
+    private byte[] buffer(int index, int bytes) {
+        if (buffers[index].length < bytes) buffers[index] = new byte[bytes];
+        return buffers[index];
+    }
+
+    /** Collects stages in order; {@link #stages()} can also be fed to {@link #setStages}. */
+    public static final class Builder {
+        private final ArrayList<FrameProcessor> stages = new ArrayList<>();
+
+        public Builder grayscale() { return add(FrameStages.grayscale()); }
+
+        public Builder blur() { return add(FrameStages.blur()); }
+
+        public Builder sobel() { return add(FrameStages.sobel()); }
+
+        public Builder canny(int low, int high) { return add(FrameStages.canny(low, high)); }
+
+        public Builder canny(ForkJoinPool pool, int low, int high) { return add(FrameStages.canny(pool, low, high)); }
+
+        public Builder incrementalCanny(int low, int high, int tileSadThreshold) {
+            return add(FrameStages.incrementalCanny(low, high, tileSadThreshold));
+        }
+
+        public Builder threshold(int level) { return add(FrameStages.threshold(level)); }
+
+        public Builder downscale(int factor) { return add(FrameStages.downscale(factor)); }
+
+        public Builder dilate(int radius) { return add(FrameStages.morphology(FrameStages.MORPH_DILATE, radius)); }
+
+        public Builder erode(int radius) { return add(FrameStages.morphology(FrameStages.MORPH_ERODE, radius)); }
+
+        public Builder pack() { return add(FrameStages.pack()); }
+
+        public Builder contours(float tolerance, int minPixels) { return add(FrameStages.contours(tolerance, minPixels)); }
+
+        public Builder add(FrameProcessor stage) {
+            if (stage == null) throw new IllegalArgumentException("stage == null");
+            stages.add(stage);
+            return this;
+        }
+
+        public FrameProcessor[] stages() { return stages.toArray(NO_STAGES); }
+
+        public FramePipeline build() { return new FramePipeline(stages()); }
+    }
+}
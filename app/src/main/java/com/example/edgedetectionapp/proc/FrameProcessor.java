@@ -0,0 +1,90 @@
+package com.example.edgedetectionapp.proc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One stage of a {@link FramePipeline}: a packed single-channel frame in, a
+ * packed single-channel frame out. Stages describe what they produce so the
+ * pipeline can drop ones that would not change their input and merge
+ * neighbours that have a cheaper combined form.
+ *
+ * Stages may keep working state between frames and are only ever called from
+ * one processing thread at a time.
+ */
+public interface FrameProcessor {
+    /** Continuous-tone 8-bit luma. */
+    int FORMAT_LUMA = 0;
+    /** Binary mask: every pixel is 0 or 255. */
+    int FORMAT_BINARY = 1;
+    /**
+     * Binary mask at 1 bit per pixel in the {@link EdgePacking} layout. Only
+     * the last stage may produce it; no stage takes it as input.
+     */
+    int FORMAT_PACKED = 2;
+    /**
+     * Edge geometry in the {@link EdgePolylines} wire form, at most
+     * width*height bytes (the length is in its header). Only the last stage
+     * may produce it.
+     */
+    int FORMAT_POLYLINES = 3;
+
+    /**
+     * Added to Canny's {@link #halo()} for hysteresis, which follows edges
+     * any distance. An edge that leaves a region's crop and only connects
+     * back from further out can still differ from a full-frame run.
+     */
+    int HYSTERESIS_MARGIN = 8;
+
+    /** Format this stage produces from input of {@code inputFormat}. */
+    int outputFormat(int inputFormat);
+
+    /** True if the stage would return its input unchanged; the pipeline then skips it. */
+    default boolean isIdentity(int inputFormat) { return false; }
+
+    default int outputWidth(int width) { return width; }
+
+    default int outputHeight(int height) { return height; }
+
+    /**
+     * How many input pixels beyond an output pixel can change it (a 5x5
+     * kernel has 2); 0 for pointwise stages. {@link RoiPipeline} crops this
+     * much extra around each region. Stages that reach further than any
+     * fixed distance, like Canny's hysteresis, return their local reach plus
+     * {@link #HYSTERESIS_MARGIN}.
+     */
+    default int halo() { return 0; }
+
+    /**
+     * Returns one stage equivalent to this stage followed by {@code next}, or
+     * null if there is no cheaper combined form.
+     */
+    default FrameProcessor fuse(FrameProcessor next) { return null; }
+
+    /**
+     * {@code in} holds width*height bytes; {@code out} receives
+     * outputWidth(width)*outputHeight(height) bytes (fewer for
+     * FORMAT_PACKED and FORMAT_POLYLINES) and never aliases {@code in}.
+     */
+    void process(byte[] in, int width, int height, byte[] out, Scratch scratch);
+
+    /**
+     * Optional for stages that can take the strided camera plane as their
+     * input. The pipeline then skips packing Y when such a stage runs first.
+     * This matters for stages that read less than the full frame, such as a
+     * downscale.
+     */
+    interface PlaneInput {
+        /** Same contract as process(), but the input is a strided plane; buffers are pre-checked. */
+        void processPlane(ByteBuffer y, int yRowStride, int width, int height, byte[] out, Scratch scratch);
+    }
+
+    /**
+     * Optional for stages that can read a strided plane straight from the
+     * camera buffer. Used when the stage is the only one in the pipeline, so
+     * the Y plane is never packed on the Java side.
+     */
+    interface Direct {
+        /** Returns false if the buffers are unusable (too small, not direct where required). */
+        boolean processPlanes(ByteBuffer y, int yRowStride, int width, int height, ByteBuffer out);
+    }
+}
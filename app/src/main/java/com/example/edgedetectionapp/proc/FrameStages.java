@@ -0,0 +1,356 @@
+package com.example.edgedetectionapp.proc;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The built-in {@link FrameProcessor} stages. Borders replicate the edge
+ * pixel, like the kernels in EdgeEngine.
+ */
+public final class FrameStages {
+    public static final int MORPH_DILATE = 0;
+    public static final int MORPH_ERODE = 1;
+
+    private FrameStages() {}
+
+    /**
+     * Frames reach the pipeline as the Y plane, which already is the gray
+     * image, so this stage is always skipped. It exists so a pipeline can
+     * state its input explicitly without paying for a BGR round trip.
+     */
+    public static FrameProcessor grayscale() { return new Grayscale(); }
+
+    /** 5x5 Gaussian (1-4-6-4-1 separable), same kernel as EdgeEngine's pre-blur. */
+    public static FrameProcessor blur() { return new Blur(); }
+
+    /** Saturated L1 Sobel magnitude, min(255, |gx| + |gy|). */
+    public static FrameProcessor sobel() { return new Sobel(); }
+
+    /** 255 where the pixel is above {@code level}, 0 elsewhere. */
+    public static FrameProcessor threshold(int level) { return new Threshold(level); }
+
+    public static FrameProcessor canny(int low, int high) {
+        return new Canny(ForkJoinPool.commonPool(), low, high);
+    }
+
+    public static FrameProcessor canny(ForkJoinPool pool, int low, int high) {
+        return new Canny(pool, low, high);
+    }
+
+    /**
+     * Canny that only recomputes tiles that changed since the previous frame;
+     * see {@link EdgeEngine#setIncremental(boolean, int)} for the threshold.
+     */
+    public static FrameProcessor incrementalCanny(int low, int high, int tileSadThreshold) {
+        Canny c = new Canny(ForkJoinPool.commonPool(), low, high);
+        c.engine.setIncremental(true, tileSadThreshold);
+        return c;
+    }
+
+    /** Box-filter downscale by an integer factor; trailing rows/columns that do not fill a box are dropped. */
+    public static FrameProcessor downscale(int factor) { return new Downscale(factor); }
+
+    /** Square (2r+1)x(2r+1) dilation or erosion. */
+    public static FrameProcessor morphology(int op, int radius) { return new Morphology(op, radius); }
+
+    /**
+     * Packs a binary map to 1 bit per pixel ({@link EdgePacking}); must be
+     * the last stage. Canny fuses with it and packs its own result.
+     */
+    public static FrameProcessor pack() { return new Pack(); }
+
+    /**
+     * Traces a binary map into polylines ({@link ContourTracer}) and writes
+     * them in the {@link EdgePolylines} wire form; must be the last stage.
+     * Contours that would not fit in width*height bytes are left out.
+     */
+    public static FrameProcessor contours(float tolerance, int minPixels) {
+        return new Contours(tolerance, minPixels);
+    }
+
+    // ---------------------------------------------------------------------
+
+    static final class Grayscale implements FrameProcessor {
+        @Override public int outputFormat(int inputFormat) { return inputFormat; }
+
+        @Override public boolean isIdentity(int inputFormat) { return true; }
+
+        @Override public void process(byte[] in, int width, int height, byte[] out, Scratch scratch) {
+            System.arraycopy(in, 0, out, 0, width * height);
+        }
+    }
+
+    static final class Blur implements FrameProcessor {
+        @Override public int outputFormat(int inputFormat) { return FORMAT_LUMA; }
+
+        @Override public int halo() { return 2; }
+
+        @Override public void process(byte[] in, int w, int h, byte[] out, Scratch scratch) {
+            short[] hs = scratch.shorts(w * h);
+            for (int y = 0; y < h; y++) {
+                int r = y * w;
+                for (int x = 0; x < w; x++) {
+                    int xm2 = x < 2 ? 0 : x - 2;
+                    int xm1 = x < 1 ? 0 : x - 1;
+                    int xp1 = x + 1 >= w ? w - 1 : x + 1;
+                    int xp2 = x + 2 >= w ? w - 1 : x + 2;
+                    hs[r + x] = (short) ((in[r + xm2] & 0xFF) + 4 * (in[r + xm1] & 0xFF)
+                            + 6 * (in[r + x] & 0xFF) + 4 * (in[r + xp1] & 0xFF) + (in[r + xp2] & 0xFF));
+                }
+            }
+            for (int y = 0; y < h; y++) {
+                int r0 = (y < 2 ? 0 : y - 2) * w;
+                int r1 = (y < 1 ? 0 : y - 1) * w;
+                int r2 = y * w;
+                int r3 = (y + 1 >= h ? h - 1 : y + 1) * w;
+                int r4 = (y + 2 >= h ? h - 1 : y + 2) * w;
+                for (int x = 0; x < w; x++) {
+                    int v = hs[r0 + x] + 4 * hs[r1 + x] + 6 * hs[r2 + x] + 4 * hs[r3 + x] + hs[r4 + x];
+                    out[r2 + x] = (byte) ((v + 128) >> 8);
+                }
+            }
+        }
+    }
+
+    static class Sobel implements FrameProcessor {
+        @Override public int outputFormat(int inputFormat) { return FORMAT_LUMA; }
+
+        @Override public int halo() { return 1; }
+
+        @Override public FrameProcessor fuse(FrameProcessor next) {
+            // Threshold the magnitude as it is computed instead of writing it out.
+            if (getClass() == Sobel.class && next instanceof Threshold)
+                return new SobelThreshold(((Threshold) next).level);
+            return null;
+        }
+
+        @Override public void process(byte[] in, int w, int h, byte[] out, Scratch scratch) {
+            for (int y = 0; y < h; y++) {
+                int up = (y < 1 ? 0 : y - 1) * w;
+                int mid = y * w;
+                int dn = (y + 1 >= h ? h - 1 : y + 1) * w;
+                for (int x = 0; x < w; x++) {
+                    int xl = x < 1 ? 0 : x - 1;
+                    int xr = x + 1 >= w ? w - 1 : x + 1;
+                    int gx = (in[up + xr] & 0xFF) + 2 * (in[mid + xr] & 0xFF) + (in[dn + xr] & 0xFF)
+                            - (in[up + xl] & 0xFF) - 2 * (in[mid + xl] & 0xFF) - (in[dn + xl] & 0xFF);
+                    int gy = (in[dn + xl] & 0xFF) + 2 * (in[dn + x] & 0xFF) + (in[dn + xr] & 0xFF)
+                            - (in[up + xl] & 0xFF) - 2 * (in[up + x] & 0xFF) - (in[up + xr] & 0xFF);
+                    int m = (gx < 0 ? -gx : gx) + (gy < 0 ? -gy : gy);
+                    out[mid + x] = map(m > 255 ? 255 : m);
+                }
+            }
+        }
+
+        byte map(int magnitude) { return (byte) magnitude; }
+    }
+
+    static final class SobelThreshold extends Sobel {
+        final int level;
+
+        SobelThreshold(int level) { this.level = level; }
+
+        @Override public int outputFormat(int inputFormat) { return FORMAT_BINARY; }
+
+        @Override byte map(int magnitude) { return magnitude > level ? (byte) 255 : 0; }
+    }
+
+    static final class Threshold implements FrameProcessor {
+        final int level;
+
+        Threshold(int level) {
+            if (level < 0 || level > 255) throw new IllegalArgumentException("level must be 0..255");
+            this.level = level;
+        }
+
+        @Override public int outputFormat(int inputFormat) { return FORMAT_BINARY; }
+
+        // A mask stays the same under any level below 255.
+        @Override public boolean isIdentity(int inputFormat) {
+            return inputFormat == FORMAT_BINARY && level < 255;
+        }
+
+        @Override public void process(byte[] in, int width, int height, byte[] out, Scratch scratch) {
+            final int t = level;
+            for (int i = 0, n = width * height; i < n; i++)
+                out[i] = (in[i] & 0xFF) > t ? (byte) 255 : 0;
+        }
+    }
+
+    static final class Canny implements FrameProcessor, FrameProcessor.Direct {
+        final EdgeEngine engine;
+        private PackedCanny packed;   // fused form, shares the engine
+
+        Canny(ForkJoinPool pool, int low, int high) {
+            engine = new EdgeEngine(pool);
+            engine.setThresholds(low, high);
+        }
+
+        @Override public int outputFormat(int inputFormat) { return FORMAT_BINARY; }
+
+        // Pre-blur 2, Sobel 1, non-maximum suppression 1.
+        @Override public int halo() { return 4 + HYSTERESIS_MARGIN; }
+
+        @Override public FrameProcessor fuse(FrameProcessor next) {
+            if (!(next instanceof Pack)) return null;
+            if (packed == null) packed = new PackedCanny(engine);
+            return packed;
+        }
+
+        @Override public void process(byte[] in, int width, int height, byte[] out, Scratch scratch) {
+            engine.processFrame(in, width, height, out);
+        }
+
+        @Override public boolean processPlanes(ByteBuffer y, int yRowStride, int width, int height, ByteBuffer out) {
+            return engine.processPlanes(y, yRowStride, width, height, out);
+        }
+    }
+
+    // Canny + pack: the byte-per-pixel map never leaves the engine.
+    static final class PackedCanny implements FrameProcessor, FrameProcessor.Direct {
+        final EdgeEngine engine;
+
+        PackedCanny(EdgeEngine engine) { this.engine = engine; }
+
+        @Override public int outputFormat(int inputFormat) { return FORMAT_PACKED; }
+
+        @Override public int halo() { return 4 + HYSTERESIS_MARGIN; }
+
+        @Override public void process(byte[] in, int width, int height, byte[] out, Scratch scratch) {
+            engine.processFramePacked(in, width, height, out);
+        }
+
+        @Override public boolean processPlanes(ByteBuffer y, int yRowStride, int width, int height, ByteBuffer out) {
+            return engine.processPlanesPacked(y, yRowStride, width, height, out);
+        }
+    }
+
+    static final class Pack implements FrameProcessor {
+        @Override public int outputFormat(int inputFormat) { return FORMAT_PACKED; }
+
+        @Override public boolean isIdentity(int inputFormat) { return inputFormat == FORMAT_PACKED; }
+
+        @Override public void process(byte[] in, int width, int height, byte[] out, Scratch scratch) {
+            EdgePacking.pack(in, width, height, out);
+        }
+    }
+
+    static final class Contours implements FrameProcessor {
+        final ContourTracer tracer;
+        final EdgePolylines lines = new EdgePolylines();
+
+        Contours(float tolerance, int minPixels) { tracer = new ContourTracer(tolerance, minPixels); }
+
+        @Override public int outputFormat(int inputFormat) { return FORMAT_POLYLINES; }
+
+        @Override public void process(byte[] in, int width, int height, byte[] out, Scratch scratch) {
+            tracer.trace(in, width, height, lines, Math.min(out.length, width * height));
+            lines.encode(out);
+        }
+    }
+
+    static final class Downscale implements FrameProcessor, FrameProcessor.PlaneInput {
+        final int factor;
+
+        Downscale(int factor) {
+            if (factor < 1) throw new IllegalArgumentException("factor must be >= 1");
+            this.factor = factor;
+        }
+
+        @Override public int outputFormat(int inputFormat) { return factor == 1 ? inputFormat : FORMAT_LUMA; }
+
+        @Override public boolean isIdentity(int inputFormat) { return factor == 1; }
+
+        @Override public int outputWidth(int width) { return width / factor; }
+
+        @Override public int outputHeight(int height) { return height / factor; }
+
+        @Override public void process(byte[] in, int w, int h, byte[] out, Scratch scratch) {
+            for (int oy = 0, oh = h / factor; oy < oh; oy++) boxRow(in, oy * factor * w, w, oy, out);
+        }
+
+        // Only the rows that feed a box are copied out of the plane, one band
+        // of `factor` rows at a time.
+        @Override public void processPlane(ByteBuffer y, int yRowStride, int w, int h, byte[] out, Scratch scratch) {
+            final int f = factor;
+            byte[] band = scratch.bytes(f * w);
+            ByteBuffer src = y.duplicate();
+            src.clear();
+            for (int oy = 0, oh = h / f; oy < oh; oy++) {
+                for (int dy = 0; dy < f; dy++) {
+                    src.position((oy * f + dy) * yRowStride);
+                    src.get(band, dy * w, w);
+                }
+                boxRow(band, 0, w, oy, out);
+            }
+        }
+
+        // Averages the f rows starting at in[base] (stride w) into output row oy.
+        private void boxRow(byte[] in, int base, int w, int oy, byte[] out) {
+            final int f = factor, ow = w / f, area = f * f;
+            for (int ox = 0; ox < ow; ox++) {
+                int sum = 0;
+                for (int dy = 0; dy < f; dy++) {
+                    int r = base + dy * w + ox * f;
+                    for (int dx = 0; dx < f; dx++) sum += in[r + dx] & 0xFF;
+                }
+                out[oy * ow + ox] = (byte) ((sum + area / 2) / area);
+            }
+        }
+    }
+
+    static final class Morphology implements FrameProcessor {
+        final int op, radius;
+
+        Morphology(int op, int radius) {
+            if (op != MORPH_DILATE && op != MORPH_ERODE) throw new IllegalArgumentException("bad op " + op);
+            if (radius < 0) throw new IllegalArgumentException("radius must be >= 0");
+            this.op = op;
+            this.radius = radius;
+        }
+
+        @Override public int outputFormat(int inputFormat) { return inputFormat; }
+
+        @Override public boolean isIdentity(int inputFormat) { return radius == 0; }
+
+        @Override public int halo() { return radius; }
+
+        // Square windows compose: r1 then r2 is the same as r1 + r2.
+        @Override public FrameProcessor fuse(FrameProcessor next) {
+            if (next instanceof Morphology && ((Morphology) next).op == op)
+                return new Morphology(op, radius + ((Morphology) next).radius);
+            return null;
+        }
+
+        @Override public void process(byte[] in, int w, int h, byte[] out, Scratch scratch) {
+            final int r = radius;
+            final boolean dilate = op == MORPH_DILATE;
+            byte[] rows = scratch.bytes(w * h);
+            for (int y = 0; y < h; y++) {
+                int base = y * w;
+                for (int x = 0; x < w; x++) {
+                    int x0 = x - r < 0 ? 0 : x - r;
+                    int x1 = x + r >= w ? w - 1 : x + r;
+                    int best = in[base + x0] & 0xFF;
+                    for (int i = x0 + 1; i <= x1; i++) {
+                        int v = in[base + i] & 0xFF;
+                        if (dilate ? v > best : v < best) best = v;
+                    }
+                    rows[base + x] = (byte) best;
+                }
+            }
+            for (int y = 0; y < h; y++) {
+                int y0 = y - r < 0 ? 0 : y - r;
+                int y1 = y + r >= h ? h - 1 : y + r;
+                for (int x = 0; x < w; x++) {
+                    int best = rows[y0 * w + x] & 0xFF;
+                    for (int i = y0 + 1; i <= y1; i++) {
+                        int v = rows[i * w + x] & 0xFF;
+                        if (dilate ? v > best : v < best) best = v;
+                    }
+                    out[y * w + x] = (byte) best;
+                }
+            }
+        }
+    }
+}
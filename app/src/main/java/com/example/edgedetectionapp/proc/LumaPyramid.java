@@ -0,0 +1,178 @@
+package com.example.edgedetectionapp.proc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One frame's luma at full, 1/2, 1/4 and 1/8 resolution. Levels are built
+ * lazily, the first time a consumer asks for one in a frame, from the level
+ * below, and then shared by every consumer of that frame: pipelines running
+ * at different scales, mode switches, warm-up passes. Buffers are kept
+ * across frames, so the steady state allocates nothing.
+ *
+ * Each level is exactly what {@code FrameStages.downscale(1 << level)} makes
+ * of the frame: boxes are summed, not averaged, from level to level and only
+ * rounded on output, and sizes truncate the same way (width >> level).
+ *
+ * Not thread-safe. Levels are valid until the next setFrame(), and the
+ * frame passed to setFrame() must stay readable until then.
+ */
+public final class LumaPyramid {
+    public static final int LEVELS = 4;
+
+    private final byte[][] levels = new byte[LEVELS][0];
+    // Box sums behind levels 1..3; at most 64 * 255, so shorts suffice.
+    private final short[][] sums = new short[LEVELS][0];
+    private byte[] band = new byte[0];
+    private ByteBuffer plane;
+    // A caller's packed frame, used as level 0 in place.
+    private byte[] packed;
+    private int stride, width, height;
+    private int built;   // bit per level
+    private long builds;
+
+    /**
+     * Starts a frame from a strided luma plane; nothing is read until a level
+     * is asked for. Returns false (and holds no frame) if the plane is too small.
+     */
+    public boolean setFrame(ByteBuffer y, int yRowStride, int width, int height) {
+        built = 0;
+        packed = null;
+        if (yRowStride < width || y.capacity() < yRowStride * (height - 1) + width) {
+            plane = null;
+            this.width = this.height = 0;
+            return false;
+        }
+        plane = y;
+        stride = yRowStride;
+        this.width = width;
+        this.height = height;
+        return true;
+    }
+
+    /** Starts a frame from packed luma (or NV21, of which only Y is read); level 0 is the array itself. */
+    public void setFrame(byte[] luma, int width, int height) {
+        plane = null;
+        packed = luma;
+        stride = width;
+        this.width = width;
+        this.height = height;
+        built = 1;
+    }
+
+    public int width(int level) { return width >> level; }
+
+    public int height(int level) { return height >> level; }
+
+    /** The strided plane given to setFrame(), or null for a packed frame. */
+    public ByteBuffer plane() { return plane; }
+
+    public int rowStride() { return stride; }
+
+    /** Level for a downscale by {@code factor}, or -1 if the pyramid has no such level. */
+    public static int levelOf(int factor) {
+        for (int level = 0; level < LEVELS; level++) {
+            if (factor == 1 << level) return level;
+        }
+        return -1;
+    }
+
+    /**
+     * Packed width(level) x height(level) luma, built on first use in a frame.
+     * The array may be larger than that; it belongs to the pyramid (or to the
+     * caller, for level 0 of a packed frame).
+     */
+    public byte[] level(int level) {
+        if (level < 0 || level >= LEVELS) throw new IllegalArgumentException("no level " + level);
+        if ((built & 1 << level) == 0) build(level);
+        return level == 0 && packed != null ? packed : levels[level];
+    }
+
+    // Levels built since construction; lets tests see what was shared.
+    long builds() { return builds; }
+
+    private void build(int level) {
+        if (level == 0) {
+            packPlane();
+        } else if (level == 1) {
+            half();
+        } else {
+            if ((built & 1 << level - 1) == 0) build(level - 1);
+            reduce(level);
+        }
+        built |= 1 << level;
+        builds++;
+    }
+
+    private void packPlane() {
+        byte[] out = ensure(0, width * height);
+        ByteBuffer src = plane.duplicate();
+        src.clear();
+        for (int row = 0; row < height; row++) {
+            src.position(row * stride);
+            src.get(out, row * width, width);
+        }
+    }
+
+    // Level 1 reads level 0 if something already built it, otherwise only
+    // the plane rows it needs, two at a time.
+    private void half() {
+        final int w = width, ow = w >> 1, oh = height >> 1;
+        byte[] out = ensure(1, ow * oh);
+        short[] sum = ensureSums(1, ow * oh);
+        boolean full = (built & 1) != 0;
+        byte[] src = full ? level(0) : band(2 * w);
+        ByteBuffer y = full ? null : plane.duplicate();
+        for (int oy = 0; oy < oh; oy++) {
+            int r0 = 0;
+            if (full) {
+                r0 = 2 * oy * w;
+            } else {
+                for (int dy = 0; dy < 2; dy++) {
+                    y.clear();
+                    y.position((2 * oy + dy) * stride);
+                    y.get(src, dy * w, w);
+                }
+            }
+            int r1 = r0 + w, o = oy * ow;
+            for (int ox = 0; ox < ow; ox++) {
+                int x = 2 * ox;
+                int s = (src[r0 + x] & 0xFF) + (src[r0 + x + 1] & 0xFF) + (src[r1 + x] & 0xFF) + (src[r1 + x + 1] & 0xFF);
+                sum[o + ox] = (short) s;
+                out[o + ox] = (byte) ((s + 2) >> 2);
+            }
+        }
+    }
+
+    // Sums 2x2 boxes of the level below; a level-k box covers 4^k pixels.
+    private void reduce(int level) {
+        final int pw = width >> level - 1, ow = width >> level, oh = height >> level;
+        final int shift = 2 * level, half = 1 << shift - 1;
+        short[] below = sums[level - 1];
+        byte[] out = ensure(level, ow * oh);
+        short[] sum = ensureSums(level, ow * oh);
+        for (int oy = 0; oy < oh; oy++) {
+            int r0 = 2 * oy * pw, r1 = r0 + pw, o = oy * ow;
+            for (int ox = 0; ox < ow; ox++) {
+                int x = 2 * ox;
+                int s = below[r0 + x] + below[r0 + x + 1] + below[r1 + x] + below[r1 + x + 1];
+                sum[o + ox] = (short) s;
+                out[o + ox] = (byte) ((s + half) >> shift);
+            }
+        }
+    }
+
+    private byte[] ensure(int level, int bytes) {
+        if (levels[level].length < bytes) levels[level] = new byte[bytes];
+        return levels[level];
+    }
+
+    private short[] ensureSums(int level, int count) {
+        if (sums[level].length < count) sums[level] = new short[count];
+        return sums[level];
+    }
+
+    private byte[] band(int bytes) {
+        if (band.length < bytes) band = new byte[bytes];
+        return band;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.edgedetectionapp.proc;
+
+/**
+ * Picks the processing resolution (full, 1/2 or 1/4 per side) from measured
+ * per-frame processing time, so a slow or throttled device keeps its frame
+ * rate and loses detail instead of building up latency.
+ *
+ * Times are smoothed with an exponential moving average. The controller steps
+ * down after a few frames over budget. It steps back up only after a longer
+ * run in which the next level's predicted cost (4x the pixels) would still
+ * leave headroom, so it does not flap around the budget.
+ * Feed it from one processing thread; level() and factor() may be read from any.
+ */
+public final class ResolutionController {
+    /** Downscale factor per level; level 0 is full resolution. */
+    private static final int[] FACTORS = {1, 2, 4};
+    static final int DOWN_AFTER = 3;
+    static final int UP_AFTER = 30;
+    // Step up only if the predicted cost is at most this share of the budget.
+    private static final double UP_HEADROOM = 0.7;
+
+    private final long budgetNs;
+    private volatile int level = 0;   // read by the UI for display
+    private long avgNs = -1;
+    private int over = 0, under = 0;
+
+    public ResolutionController(long budgetNanos) {
+        if (budgetNanos <= 0) throw new IllegalArgumentException("budget must be > 0");
+        budgetNs = budgetNanos;
+    }
+
+    public static int levelCount() { return FACTORS.length; }
+
+    public static int factorOf(int level) { return FACTORS[level]; }
+
+    public int level() { return level; }
+
+    public int factor() { return FACTORS[level]; }
+
+    /**
+     * Feeds the processing time of one frame run at the current level.
+     * @return true if the level changed; the next frame should use {@link #factor()}.
+     */
+    public boolean onFrame(long processNanos) {
+        avgNs = avgNs < 0 ? processNanos : avgNs + ((processNanos - avgNs) >> 3);
+
+        if (avgNs > budgetNs) {
+            under = 0;
+            if (++over >= DOWN_AFTER && level < FACTORS.length - 1) return switchTo(level + 1);
+        } else {
+            over = 0;
+            // Each level up quadruples the pixel count.
+            if (level > 0 && avgNs * 4 <= budgetNs * UP_HEADROOM) {
+                if (++under >= UP_AFTER) return switchTo(level - 1);
+            } else {
+                under = 0;
+            }
+        }
+        return false;
+    }
+
+    private boolean switchTo(int next) {
+        // Rescale the average so it predicts the new level right away.
+        avgNs = next > level ? avgNs / 4 : avgNs * 4;
+        level = next;
+        over = under = 0;
+        return true;
+    }
+}
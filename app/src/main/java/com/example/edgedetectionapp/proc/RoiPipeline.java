@@ -0,0 +1,236 @@
+package com.example.edgedetectionapp.proc;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Runs pipeline stages over regions of interest instead of the whole frame.
+ *
+ * Each region is snapped outwards to the stages' downscale grid, then
+ * cropped from the strided Y plane together with the halo the stages need
+ * ({@link FrameProcessor#halo()}), processed on its own and trimmed back to
+ * the region. Work and output shrink with the regions' share of the frame,
+ * and inside a region the output matches a full-frame run. Canny is the
+ * exception: its hysteresis is only covered up to
+ * {@link FrameProcessor#HYSTERESIS_MARGIN}.
+ *
+ * The output holds the regions back to back, in the order they were set,
+ * each as a tightly packed block of outputs for its own rectangle. The
+ * rectangles, in output pixels of the full frame, are available after each
+ * frame from {@link #lastRegions()}. A trailing pack stage packs each block
+ * to 1 bit per pixel; regions are then also snapped to 8 output pixels
+ * horizontally, so packed rows line up with the full frame's bytes.
+ * Polyline output is not supported.
+ *
+ * setStages() and setRois() may be called from any thread; processing must
+ * stay on one.
+ */
+public final class RoiPipeline {
+    private static final int[] NO_ROIS = new int[0];
+    private static final int PROBE = 1 << 16;
+
+    // Immutable; replaced as a whole so a frame sees a consistent set.
+    private static final class Config {
+        final FrameProcessor[] stages;   // without a trailing pack
+        final boolean packed;
+        final int format, scale, halo;
+
+        Config(FrameProcessor[] stages, boolean packed, int format, int scale, int halo) {
+            this.stages = stages;
+            this.packed = packed;
+            this.format = format;
+            this.scale = scale;
+            this.halo = halo;
+        }
+    }
+
+    private final FramePipeline crop = new FramePipeline();
+    private volatile Config config;
+    private Config applied;
+    private volatile int[] rois = NO_ROIS;
+
+    private byte[] cropIn = new byte[0], cropOut = new byte[0], block = new byte[0];
+    private final int[] rect = new int[4];
+    private int[] regions = new int[16];
+    private int regionCount, lastOutW, lastOutH, lastFormat;
+
+    public RoiPipeline(FrameProcessor... stages) { setStages(stages); }
+
+    public void setStages(FrameProcessor... stages) {
+        int n = stages.length;
+        boolean packed = n > 0 && stages[n - 1] instanceof FrameStages.Pack;
+        if (packed) stages = Arrays.copyOf(stages, --n);
+        int format = FrameProcessor.FORMAT_LUMA, scale = 1, halo = 0;
+        for (FrameProcessor s : stages) {
+            if (s.isIdentity(format)) continue;
+            format = s.outputFormat(format);
+            halo += s.halo() * scale;
+            // Downscales shrink both axes by the same whole factor.
+            scale *= PROBE / s.outputWidth(PROBE);
+        }
+        if (format == FrameProcessor.FORMAT_POLYLINES || format == FrameProcessor.FORMAT_PACKED && !packed)
+            throw new IllegalArgumentException("regions need byte-per-pixel output, or a trailing pack()");
+        if (packed) format = FrameProcessor.FORMAT_PACKED;
+        config = new Config(stages, packed, format, scale, halo);
+    }
+
+    /**
+     * Sets the regions as x, y, width, height quadruples in pixels of the
+     * input frame; none means no regions (and no output).
+     */
+    public void setRois(int... xywh) {
+        if (xywh.length % 4 != 0) throw new IllegalArgumentException("need x, y, width, height per region");
+        for (int i = 0; i < xywh.length; i += 4) {
+            if (xywh[i] < 0 || xywh[i + 1] < 0 || xywh[i + 2] <= 0 || xywh[i + 3] <= 0)
+                throw new IllegalArgumentException("bad region " + i / 4);
+        }
+        rois = xywh.clone();
+    }
+
+    public boolean hasRois() { return rois.length > 0; }
+
+    /** Format of the output blocks: the stages' format, or FORMAT_PACKED after a trailing pack. */
+    public int outputFormat() { return config.format; }
+
+    /** Width of the full output frame that the region rectangles refer to. */
+    public int lastOutputWidth() { return lastOutW; }
+
+    public int lastOutputHeight() { return lastOutH; }
+
+    public int lastOutputFormat() { return lastFormat; }
+
+    /** Regions written by the last frame; regions entirely outside the frame are left out. */
+    public int lastRegionCount() { return regionCount; }
+
+    /**
+     * x, y, width, height per region of the last frame, in output pixels of
+     * the full frame. Owned by the pipeline: read it before the next frame.
+     */
+    public int[] lastRegions() { return regions; }
+
+    /** Bytes the current regions produce for a width x height input. */
+    public int outputBytes(int width, int height) {
+        Config c = config;
+        int[] r = rois;
+        int bytes = 0;
+        for (int i = 0; i < r.length; i += 4) {
+            if (snap(c, r, i, width, height, rect)) bytes += blockBytes(c, rect[2] / c.scale, rect[3] / c.scale);
+        }
+        return bytes;
+    }
+
+    /**
+     * Lays out the regions of a width x height frame without processing it,
+     * as the next frame will: fills in {@link #lastRegions()} and the other
+     * last* values and returns the region count. Lets a caller size and
+     * describe the output (e.g. to the renderer) before the frame is run.
+     */
+    public int layout(int width, int height) {
+        layout(config, width, height);
+        return regionCount;
+    }
+
+    private void layout(Config c, int width, int height) {
+        int[] r = rois;
+        int s = c.scale;
+        lastOutW = width / s;
+        lastOutH = height / s;
+        lastFormat = c.format;
+        regionCount = 0;
+        for (int i = 0; i < r.length; i += 4) {
+            if (!snap(c, r, i, width, height, rect)) continue;
+            if (regions.length < regionCount * 4 + 4) regions = Arrays.copyOf(regions, regions.length * 2);
+            int at = regionCount++ * 4;
+            regions[at] = rect[0] / s;
+            regions[at + 1] = rect[1] / s;
+            regions[at + 2] = rect[2] / s;
+            regions[at + 3] = rect[3] / s;
+        }
+    }
+
+    /** Packed luma (or NV21, of which only Y is read) in; outputBytes(width, height) out. */
+    public boolean processFrame(byte[] input, int width, int height, byte[] output) {
+        return processPlanes(ByteBuffer.wrap(input), width, width, height, ByteBuffer.wrap(output));
+    }
+
+    /**
+     * Processes the regions of a strided luma plane into {@code output} from
+     * index 0. Returns false if the buffers are too small.
+     */
+    public boolean processPlanes(ByteBuffer y, int yRowStride, int width, int height, ByteBuffer output) {
+        Config c = config;
+        if (c != applied) {
+            crop.setStages(c.stages);
+            applied = c;
+        }
+        layout(c, width, height);
+        int s = c.scale;
+        int bytes = 0;
+        for (int i = 0; i < regionCount; i++) bytes += blockBytes(c, regions[i * 4 + 2], regions[i * 4 + 3]);
+        if (yRowStride < width || y.capacity() < yRowStride * (height - 1) + width || output.capacity() < bytes) {
+            regionCount = 0;
+            return false;
+        }
+        // The halo in whole boxes of the downscale grid.
+        int margin = ceil(c.halo, s);
+        ByteBuffer src = y.duplicate();
+        int offset = 0;
+        for (int i = 0; i < regionCount; i++) {
+            int bw = regions[i * 4 + 2], bh = regions[i * 4 + 3];
+            int x0 = regions[i * 4] * s, y0 = regions[i * 4 + 1] * s, x1 = x0 + bw * s, y1 = y0 + bh * s;
+            // Past the last whole box the crop runs to the frame edge, so
+            // borders are replicated where a full-frame run replicates them.
+            int cx0 = Math.max(0, x0 - margin), cy0 = Math.max(0, y0 - margin);
+            int cx1 = x1 + margin >= width / s * s ? width : x1 + margin;
+            int cy1 = y1 + margin >= height / s * s ? height : y1 + margin;
+            int cw = cx1 - cx0, ch = cy1 - cy0;
+            if (cropIn.length < cw * ch) cropIn = new byte[cw * ch];
+            for (int row = 0; row < ch; row++) {
+                src.clear();
+                src.position((cy0 + row) * yRowStride + cx0);
+                src.get(cropIn, row * cw, cw);
+            }
+            int ow = crop.outputWidth(cw), oh = crop.outputHeight(ch);
+            if (cropOut.length < ow * oh) cropOut = new byte[ow * oh];
+            crop.processFrame(cropIn, cw, ch, cropOut);
+
+            // Trim the halo: the region starts (x0 - cx0) / s boxes into the crop.
+            int bx = (x0 - cx0) / s, by = (y0 - cy0) / s;
+            if (block.length < bw * bh) block = new byte[bw * bh];
+            for (int row = 0; row < bh; row++)
+                System.arraycopy(cropOut, (by + row) * ow + bx, block, row * bw, bw);
+            ByteBuffer dst = output.duplicate();
+            dst.clear();
+            dst.position(offset);
+            if (c.packed) {
+                dst = dst.slice();
+                EdgePacking.pack(block, bw, bh, dst);
+            } else {
+                dst.put(block, 0, bw * bh);
+            }
+            offset += blockBytes(c, bw, bh);
+        }
+        return true;
+    }
+
+    private static int blockBytes(Config c, int w, int h) {
+        return c.packed ? EdgePacking.packedSize(w, h) : w * h;
+    }
+
+    // Region i snapped outwards to the grid, clipped to the whole boxes of
+    // the frame, into rect (input pixels). False if nothing is left.
+    private static boolean snap(Config c, int[] r, int i, int width, int height, int[] rect) {
+        int s = c.scale, ux = c.packed ? s * 8 : s;
+        int limitX = width / s * s, limitY = height / s * s;
+        int x0 = r[i] / ux * ux, y0 = r[i + 1] / s * s;
+        int x1 = Math.min(limitX, ceil(r[i] + r[i + 2], ux)), y1 = Math.min(limitY, ceil(r[i + 1] + r[i + 3], s));
+        if (x1 <= x0 || y1 <= y0) return false;
+        rect[0] = x0;
+        rect[1] = y0;
+        rect[2] = x1 - x0;
+        rect[3] = y1 - y0;
+        return true;
+    }
+
+    private static int ceil(int v, int unit) { return (v + unit - 1) / unit * unit; }
+}
@@ -0,0 +1,21 @@
+package com.example.edgedetectionapp.proc;
+
+/**
+ * Temporary arrays shared by all stages of a pipeline. Stages run one after
+ * another, so a stage may use any of these freely during process() but must
+ * not expect the contents to survive until the next call. Arrays only grow.
+ */
+public final class Scratch {
+    private byte[] bytes = new byte[0];
+    private short[] shorts = new short[0];
+
+    public byte[] bytes(int n) {
+        if (bytes.length < n) bytes = new byte[n];
+        return bytes;
+    }
+
+    public short[] shorts(int n) {
+        if (shorts.length < n) shorts = new short[n];
+        return shorts;
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.edgedetectionapp.stream;
+
+import com.example.edgedetectionapp.exec.BoundedQueue;
+import com.example.edgedetectionapp.proc.EdgePacking;
+import com.example.edgedetectionapp.proc.EdgePolylines;
+import com.example.edgedetectionapp.proc.FramePipeline;
+import com.example.edgedetectionapp.proc.FrameProcessor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pushes processed frames to browsers over a WebSocket at /stream; any other
+ * HTTP request gets a plain-text status page. Plain sockets, no dependencies.
+ *
+ * publish() encodes a frame once and drops it into every client's one-slot
+ * mailbox, replacing a frame the client has not sent yet. Each client has
+ * its own sender thread, so a slow client only blocks itself: it gets the
+ * newest frame when it catches up, skipping the rest, and nothing queues up.
+ * publish() never waits on the network. Encoded frames are pooled and
+ * reference counted; each client holds at most two, the one being written
+ * and the one waiting.
+ *
+ * Clients may only send control frames: pings are answered, a close is
+ * echoed and drops the client, as does the peer going away. A dropped
+ * client's mailbox is emptied, so its frames go back to the pool.
+ *
+ * The server listens on loopback only and has no authentication; reach it
+ * from a computer through {@code adb forward}.
+ *
+ * Messages are binary, little-endian: u8 version, u8 encoding, u16 rotation,
+ * u32 sequence, u32 width, u32 height, u32 latency in microseconds (capture
+ * to publish), then the payload. Edge maps use {@link EdgePacking}'s
+ * run-length form, polylines their {@link EdgePolylines} wire form; luma
+ * goes raw.
+ */
+public final class EdgeStreamServer implements Closeable {
+    public static final int ENCODING_LUMA = 0;
+    public static final int ENCODING_EDGES_RLE = 1;
+    public static final int ENCODING_POLYLINES = 2;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 20;
+
+    private static final int MAX_REQUEST = 8192;
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    private static final long IDLE_PARK_NS = 50_000_000L;
+    private static final int POOL = 16;
+    // Control frames carry at most 125 bytes; data frames from clients are
+    // not expected and anything longer drops the client.
+    private static final int MAX_CLIENT_PAYLOAD = 125;
+
+    private final ServerSocket server;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final BoundedQueue<Message> pool = new BoundedQueue<>(POOL);
+    private volatile boolean running = true;
+    private Thread acceptor;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    // Publisher only.
+    private int sequence;
+    private byte[] staging = new byte[0];
+
+    /** Binds to {@code port} on the loopback interface; 0 picks a free port. */
+    public EdgeStreamServer(int port) throws IOException {
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public int port() { return server.getLocalPort(); }
+
+    public void start() {
+        acceptor = new Thread(this::acceptLoop, "stream-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /** Clients past the handshake. publish() is close to free when this is 0. */
+    public int clientCount() { return clients.size(); }
+
+    /** Frames written to clients. */
+    public long sent() { return sent.get(); }
+
+    /** Frames replaced in a mailbox before their client got to them. */
+    public long skipped() { return skipped.get(); }
+
+    /**
+     * Offers a processed frame to every connected client. {@code format} is
+     * a FrameProcessor.FORMAT_*; binary maps are packed first. Calls must
+     * not overlap (one frame thread, or a serialized sink); never blocks.
+     */
+    public void publish(byte[] data, int format, int width, int height, int rotation, long captureNs) {
+        if (clients.isEmpty()) return;
+        Message m = encode(data, format, width, height, rotation, captureNs);
+        for (Client c : clients) {
+            m.refs.incrementAndGet();
+            Message old = c.mailbox.getAndSet(m);
+            if (old != null) {
+                skipped.incrementAndGet();
+                release(old);
+            }
+            // The client may have been dropped after the snapshot; whoever
+            // of us sees the other takes the message back out.
+            if (c.closed) {
+                Message back = c.mailbox.getAndSet(null);
+                if (back != null) release(back);
+            }
+            LockSupport.unpark(c.thread);
+        }
+        release(m);
+    }
+
+    /** Same as above for a frame in a buffer, read from index 0. */
+    public void publish(ByteBuffer data, int format, int width, int height, int rotation, long captureNs) {
+        if (clients.isEmpty()) return;
+        int bytes = format == FrameProcessor.FORMAT_POLYLINES
+                ? EdgePolylines.encodedLength(data) : FramePipeline.frameBytes(format, width, height);
+        if (staging.length < bytes) staging = new byte[bytes];
+        ByteBuffer src = data.duplicate();
+        src.clear();
+        src.get(staging, 0, bytes);
+        publish(staging, format, width, height, rotation, captureNs);
+    }
+
+    private Message encode(byte[] data, int format, int width, int height, int rotation, long captureNs) {
+        Message m = pool.poll();
+        if (m == null) m = new Message();
+        m.refs.set(1);
+        int payload = WebSockets.MAX_HEADER + HEADER_BYTES;
+        int length;
+        int encoding;
+        if (format == FrameProcessor.FORMAT_LUMA) {
+            encoding = ENCODING_LUMA;
+            length = width * height;
+            byte[] b = m.ensure(payload + length);
+            System.arraycopy(data, 0, b, payload, length);
+        } else if (format == FrameProcessor.FORMAT_POLYLINES) {
+            // Already compact; sent as is.
+            encoding = ENCODING_POLYLINES;
+            length = EdgePolylines.encodedLength(data);
+            System.arraycopy(data, 0, m.ensure(payload + length), payload, length);
+        } else {
+            encoding = ENCODING_EDGES_RLE;
+            byte[] packed = data;
+            if (format == FrameProcessor.FORMAT_BINARY) {
+                packed = m.packed = grow(m.packed, EdgePacking.packedSize(width, height));
+                EdgePacking.pack(data, width, height, packed);
+            }
+            // encodeRle writes from index 0, hence the scratch array and one copy.
+            m.rle = grow(m.rle, EdgePacking.rleMaxSize(width, height));
+            length = EdgePacking.encodeRle(packed, width, height, m.rle);
+            System.arraycopy(m.rle, 0, m.ensure(payload + length), payload, length);
+        }
+        byte[] b = m.bytes;
+        int h = WebSockets.MAX_HEADER;
+        long latencyUs = Math.max(0, (System.nanoTime() - captureNs) / 1000);
+        b[h] = VERSION;
+        b[h + 1] = (byte) encoding;
+        putShort(b, h + 2, rotation);
+        putInt(b, h + 4, ++sequence);
+        putInt(b, h + 8, width);
+        putInt(b, h + 12, height);
+        putInt(b, h + 16, (int) Math.min(latencyUs, Integer.MAX_VALUE));
+        // The WebSocket header goes right before the message, so one write sends it all.
+        int total = HEADER_BYTES + length;
+        int wsLen = total < 126 ? 2 : total <= 0xFFFF ? 4 : 10;
+        m.start = h - wsLen;
+        WebSockets.writeHeader(b, m.start, WebSockets.OP_BINARY, total);
+        m.end = h + total;
+        return m;
+    }
+
+    private static byte[] grow(byte[] b, int n) {
+        return b.length < n ? new byte[n] : b;
+    }
+
+    private static void putShort(byte[] b, int i, int v) {
+        b[i] = (byte) v;
+        b[i + 1] = (byte) (v >>> 8);
+    }
+
+    private static void putInt(byte[] b, int i, int v) {
+        b[i] = (byte) v;
+        b[i + 1] = (byte) (v >>> 8);
+        b[i + 2] = (byte) (v >>> 16);
+        b[i + 3] = (byte) (v >>> 24);
+    }
+
+    // Messages waiting for reuse; lets tests check nothing leaked.
+    int pooledMessages() { return pool.size(); }
+
+    private void release(Message m) {
+        if (m.refs.decrementAndGet() == 0) pool.offer(m);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket s = server.accept();
+                Client c = new Client(s);
+                c.thread = new Thread(c, "stream-client");
+                c.thread.setDaemon(true);
+                c.thread.start();
+            } catch (IOException e) {
+                if (!running) return;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        for (Client c : clients) c.close();
+    }
+
+    /** An encoded frame shared by all mailboxes it was put in. */
+    private static final class Message {
+        final AtomicInteger refs = new AtomicInteger();
+        byte[] bytes = new byte[0];
+        byte[] packed = new byte[0];
+        byte[] rle = new byte[0];
+        int start, end;
+
+        byte[] ensure(int n) {
+            return bytes = grow(bytes, n);
+        }
+
+    }
+
+    private final class Client implements Runnable {
+        final Socket socket;
+        final AtomicReference<Message> mailbox = new AtomicReference<>();
+        // A pong or close reply from the reader, written by the sender.
+        final AtomicReference<byte[]> control = new AtomicReference<>();
+        volatile Thread thread;
+        // Set by the reader once the client sent a close; the sender then
+        // writes the reply and stops.
+        volatile boolean closing;
+        // Set once the client is out of `clients`; see publish().
+        volatile boolean closed;
+
+        Client(Socket socket) { this.socket = socket; }
+
+        @Override
+        public void run() {
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+                if (!handshake()) return;
+                socket.setSoTimeout(0);
+                OutputStream out = socket.getOutputStream();
+                clients.add(this);
+                Thread reader = new Thread(this::readLoop, "stream-client-read");
+                reader.setDaemon(true);
+                reader.start();
+                while (running && !socket.isClosed()) {
+                    // Read closing first: a reply set before it is then seen below.
+                    boolean last = closing;
+                    byte[] reply = control.getAndSet(null);
+                    if (reply != null) {
+                        out.write(reply);
+                        out.flush();
+                    }
+                    if (last) break;
+                    Message m = mailbox.getAndSet(null);
+                    if (m == null) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NS);
+                        continue;
+                    }
+                    try {
+                        out.write(m.bytes, m.start, m.end - m.start);
+                        out.flush();
+                        sent.incrementAndGet();
+                    } finally {
+                        release(m);
+                    }
+                }
+            } catch (IOException ignored) {
+                // Client went away; drop it.
+            } finally {
+                clients.remove(this);
+                closed = true;
+                Message m = mailbox.getAndSet(null);
+                if (m != null) release(m);
+                close();
+            }
+        }
+
+        // Answers what the viewer sends. End of stream or a bad frame closes
+        // the socket, which also stops the sender.
+        private void readLoop() {
+            WebSockets.Frame f = new WebSockets.Frame(MAX_CLIENT_PAYLOAD);
+            try {
+                InputStream in = socket.getInputStream();
+                while (WebSockets.readFrame(in, f)) {
+                    if (f.opcode == WebSockets.OP_PING) {
+                        control.set(WebSockets.controlFrame(WebSockets.OP_PONG, f.payload, f.length));
+                        LockSupport.unpark(thread);
+                    } else if (f.opcode == WebSockets.OP_CLOSE) {
+                        // Echo the status code, then let the sender finish.
+                        control.set(WebSockets.controlFrame(WebSockets.OP_CLOSE, f.payload, Math.min(2, f.length)));
+                        closing = true;
+                        LockSupport.unpark(thread);
+                        // A sender stuck writing to a stalled peer never gets
+                        // there; the close below then cuts it off.
+                        try {
+                            thread.join(HANDSHAKE_TIMEOUT_MS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        break;
+                    }
+                }
+            } catch (IOException ignored) {
+                // Gone or misbehaving; either way it is dropped.
+            }
+            close();
+        }
+
+        // Reads the HTTP request; upgrades /stream, answers anything else
+        // with the status page. Returns true once the socket speaks WebSocket.
+        private boolean handshake() throws IOException {
+            String request;
+            try {
+                request = readRequest(socket.getInputStream());
+            } catch (SocketTimeoutException e) {
+                return false;
+            }
+            if (request == null) return false;
+            String[] lines = request.split("\r\n");
+            String[] start = lines[0].split(" ");
+            String key = null;
+            boolean upgrade = false;
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon < 0) continue;
+                String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = lines[i].substring(colon + 1).trim();
+                if (name.equals("sec-websocket-key")) key = value;
+                if (name.equals("upgrade") && value.equalsIgnoreCase("websocket")) upgrade = true;
+            }
+            OutputStream out = socket.getOutputStream();
+            String path = start.length > 1 ? start[1] : "/";
+            if (upgrade && key != null && path.equals("/stream")) {
+                out.write(("HTTP/1.1 101 Switching Protocols\r\n"
+                        + "Upgrade: websocket\r\n"
+                        + "Connection: Upgrade\r\n"
+                        + "Sec-WebSocket-Accept: " + WebSockets.acceptKey(key) + "\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                return true;
+            }
+            String body = "EdgeViewer stream\nclients: " + clients.size() + "\nsent: " + sent.get()
+                    + "\nskipped: " + skipped.get() + "\n";
+            String status = upgrade ? "404 Not Found" : "200 OK";
+            out.write(("HTTP/1.1 " + status + "\r\n"
+                    + "Content-Type: text/plain\r\n"
+                    + "Access-Control-Allow-Origin: *\r\n"
+                    + "Content-Length: " + body.length() + "\r\n"
+                    + "Connection: close\r\n\r\n" + body).getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            return false;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // Headers up to the blank line, or null if the peer closed or sent too much.
+    private static String readRequest(InputStream in) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(512);
+        int state = 0;   // how much of "\r\n\r\n" has been seen
+        while (buf.size() < MAX_REQUEST) {
+            int c = in.read();
+            if (c < 0) return null;
+            buf.write(c);
+            if (c == (state % 2 == 0 ? '\r' : '\n')) {
+                if (++state == 4) return buf.toString("US-ASCII");
+            } else {
+                state = c == '\r' ? 1 : 0;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.edgedetectionapp.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The server side of RFC 6455 that a frame push stream needs: the handshake
+ * accept key, unmasked frame headers and reading the (masked) frames a
+ * client sends back, which are only ever control frames here. Base64 is written out by hand
+ * because java.util.Base64 needs API 26.
+ */
+final class WebSockets {
+    static final int OP_BINARY = 0x2;
+    static final int OP_CLOSE = 0x8;
+    static final int OP_PING = 0x9;
+    static final int OP_PONG = 0xA;
+    /** Largest header writeHeader() produces. */
+    static final int MAX_HEADER = 10;
+    /** Control frames carry at most this much and are never fragmented (RFC 6455 5.5). */
+    static final int MAX_CONTROL_PAYLOAD = 125;
+
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final char[] B64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private WebSockets() {}
+
+    /** A frame read from a client; the payload array is reused. */
+    static final class Frame {
+        int opcode;
+        int length;
+        final byte[] payload;
+
+        Frame(int maxPayload) { payload = new byte[maxPayload]; }
+    }
+
+    /** Sec-WebSocket-Accept for a client's Sec-WebSocket-Key. */
+    static String acceptKey(String clientKey) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return base64(sha1.digest((clientKey.trim() + GUID).getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 unavailable", e);
+        }
+    }
+
+    static String base64(byte[] data) {
+        StringBuilder sb = new StringBuilder((data.length + 2) / 3 * 4);
+        int i = 0;
+        for (; i + 3 <= data.length; i += 3) {
+            int v = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+            sb.append(B64[v >>> 18]).append(B64[(v >>> 12) & 63]).append(B64[(v >>> 6) & 63]).append(B64[v & 63]);
+        }
+        int left = data.length - i;
+        if (left > 0) {
+            int v = (data[i] & 0xFF) << 16 | (left == 2 ? (data[i + 1] & 0xFF) << 8 : 0);
+            sb.append(B64[v >>> 18]).append(B64[(v >>> 12) & 63]);
+            sb.append(left == 2 ? B64[(v >>> 6) & 63] : '=').append('=');
+        }
+        return sb.toString();
+    }
+
+    /** Writes a final, unmasked frame header at {@code off}; returns its length. */
+    static int writeHeader(byte[] dst, int off, int opcode, long payloadLength) {
+        dst[off] = (byte) (0x80 | opcode);
+        if (payloadLength < 126) {
+            dst[off + 1] = (byte) payloadLength;
+            return 2;
+        }
+        if (payloadLength <= 0xFFFF) {
+            dst[off + 1] = 126;
+            dst[off + 2] = (byte) (payloadLength >>> 8);
+            dst[off + 3] = (byte) payloadLength;
+            return 4;
+        }
+        dst[off + 1] = 127;
+        for (int k = 0; k < 8; k++) dst[off + 2 + k] = (byte) (payloadLength >>> (56 - 8 * k));
+        return 10;
+    }
+
+    /** A complete control frame (header and payload) ready to write. */
+    static byte[] controlFrame(int opcode, byte[] payload, int length) {
+        byte[] b = new byte[2 + length];
+        writeHeader(b, 0, opcode, length);
+        System.arraycopy(payload, 0, b, 2, length);
+        return b;
+    }
+
+    /**
+     * Reads one frame into {@code f}, unmasking the payload. Returns false
+     * at end of stream before a frame starts. A payload larger than f's
+     * buffer (or negative, from a 64-bit length with the top bit set), a
+     * fragmented or oversized control frame, or a truncated frame is an
+     * IOException.
+     */
+    static boolean readFrame(InputStream in, Frame f) throws IOException {
+        int b0 = in.read();
+        if (b0 < 0) return false;
+        int b1 = read(in);
+        long length = b1 & 0x7F;
+        if (length == 126) {
+            length = read(in) << 8 | read(in);
+        } else if (length == 127) {
+            length = 0;
+            for (int k = 0; k < 8; k++) length = length << 8 | read(in);
+        }
+        if (length < 0 || length > f.payload.length) throw new IOException("client frame of " + length + " bytes");
+        if ((b0 & 0x08) != 0 && ((b0 & 0x80) == 0 || length > MAX_CONTROL_PAYLOAD))
+            throw new IOException("fragmented or oversized control frame");
+        boolean masked = (b1 & 0x80) != 0;
+        int m0 = 0, m1 = 0, m2 = 0, m3 = 0;
+        if (masked) {
+            m0 = read(in);
+            m1 = read(in);
+            m2 = read(in);
+            m3 = read(in);
+        }
+        int n = (int) length;
+        for (int off = 0; off < n; ) {
+            int got = in.read(f.payload, off, n - off);
+            if (got < 0) throw new EOFException();
+            off += got;
+        }
+        if (masked) {
+            for (int i = 0; i < n; i++) {
+                int m = (i & 3) == 0 ? m0 : (i & 3) == 1 ? m1 : (i & 3) == 2 ? m2 : m3;
+                f.payload[i] ^= (byte) m;
+            }
+        }
+        f.opcode = b0 & 0x0F;
+        f.length = n;
+        return true;
+    }
+
+    private static int read(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException();
+        return b;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.edgedetectionapp.exec;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class BoundedQueueTest {
+
+    @Test
+    public void fifoAndBounded() {
+        BoundedQueue<Integer> q = new BoundedQueue<>(3);
+        assertEquals(4, q.capacity());
+        for (int i = 0; i < 4; i++) assertTrue(q.offer(i));
+        assertFalse("full", q.offer(99));
+        for (int i = 0; i < 4; i++) assertEquals(Integer.valueOf(i), q.poll());
+        assertNull(q.poll());
+    }
+
+    @Test(timeout = 30_000)
+    public void concurrentProducersAndConsumersLoseNothing() throws Exception {
+        final BoundedQueue<Long> q = new BoundedQueue<>(64);
+        final int producers = 3, consumers = 3, perProducer = 100_000;
+        final AtomicLong sum = new AtomicLong(), count = new AtomicLong();
+        Thread[] threads = new Thread[producers + consumers];
+        for (int p = 0; p < producers; p++) {
+            final long base = (long) p * perProducer;
+            threads[p] = new Thread(() -> {
+                for (long i = 1; i <= perProducer; i++) {
+                    Long v = base + i;
+                    while (!q.offer(v)) Thread.yield();
+                }
+            });
+        }
+        final long total = (long) producers * perProducer;
+        for (int c = 0; c < consumers; c++) {
+            threads[producers + c] = new Thread(() -> {
+                while (count.get() < total) {
+                    Long v = q.poll();
+                    if (v == null) { Thread.yield(); continue; }
+                    sum.addAndGet(v);
+                    count.incrementAndGet();
+                }
+            });
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+        long n = total;
+        assertEquals(n, count.get());
+        assertEquals(n * (n + 1) / 2, sum.get());
+        assertNull(q.poll());
+    }
+}
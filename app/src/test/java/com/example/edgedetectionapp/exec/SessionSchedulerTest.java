@@ -0,0 +1,227 @@
+package com.example.edgedetectionapp.exec;
+
+import com.example.edgedetectionapp.metrics.FrameMetrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class SessionSchedulerTest {
+    private static final int W = 16, H = 4;
+
+    private SessionScheduler scheduler;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (scheduler != null) scheduler.shutdown();
+    }
+
+    // Y plane whose first byte carries a marker, with row padding.
+    private static ByteBuffer plane(int marker) {
+        ByteBuffer y = ByteBuffer.allocateDirect((W + 4) * H);
+        y.put(0, (byte) marker);
+        return y;
+    }
+
+    private static boolean copyFirstByte(FrameJob job) {
+        job.ensureOutput(1)[0] = job.input[0];
+        job.outWidth = job.outHeight = 1;
+        return true;
+    }
+
+    private static void await(StreamSession s, long processed) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (s.processed() + s.failed() < processed && System.nanoTime() < deadline) Thread.sleep(1);
+    }
+
+    @Test(timeout = 30_000)
+    public void sessionsKeepTheirOwnFrames() throws Exception {
+        scheduler = new SessionScheduler(3, 4);
+        int sessions = 3, frames = 50;
+        List<List<Integer>> seen = new ArrayList<>();
+        StreamSession[] s = new StreamSession[sessions];
+        for (int i = 0; i < sessions; i++) {
+            List<Integer> out = new ArrayList<>();
+            seen.add(out);
+            s[i] = scheduler.open("feed-" + i, SessionSchedulerTest::copyFirstByte,
+                    (session, job) -> out.add(job.output[0] & 0xFF));
+        }
+        // Wait for each round so no frame is overwritten.
+        for (int f = 0; f < frames; f++) {
+            for (int i = 0; i < sessions; i++) s[i].submit(plane(i * 64 + f), W + 4, W, H, 0, System.nanoTime());
+            for (int i = 0; i < sessions; i++) await(s[i], f + 1);
+        }
+        for (int i = 0; i < sessions; i++) {
+            List<Integer> out = seen.get(i);
+            assertEquals(frames, out.size());
+            for (int f = 0; f < frames; f++) assertEquals(i * 64 + f, (int) out.get(f));
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void newerFrameReplacesWaitingOne() throws Exception {
+        scheduler = new SessionScheduler(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> out = new ArrayList<>();
+        StreamSession s = scheduler.open("feed", job -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                return false;
+            }
+            return copyFirstByte(job);
+        }, (session, job) -> out.add(job.output[0] & 0xFF));
+
+        s.submit(plane(1), W + 4, W, H, 0, 0);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int f = 2; f <= 4; f++) assertTrue(s.submit(plane(f), W + 4, W, H, 0, 0));
+        release.countDown();
+        await(s, 2);
+
+        assertEquals(2, s.dropped());
+        assertEquals(2, s.metrics().dropped(FrameMetrics.DROP_OVERWRITTEN));
+        assertEquals(Arrays.asList(1, 4), out);
+    }
+
+    @Test(timeout = 30_000)
+    public void busySessionsTakeTurns() throws Exception {
+        scheduler = new SessionScheduler(1, 2);
+        List<String> order = new ArrayList<>();
+        StagedExecutor.Processor slow = job -> {
+            try {
+                Thread.sleep(3);
+            } catch (InterruptedException e) {
+                return false;
+            }
+            return copyFirstByte(job);
+        };
+        StreamSession.Sink sink = (session, job) -> {
+            synchronized (order) {
+                order.add(session.name());
+            }
+        };
+        StreamSession a = scheduler.open("a", slow, sink);
+        StreamSession b = scheduler.open("b", slow, sink);
+
+        // Both feeds offer frames far faster than one worker can process them.
+        Thread[] feeders = new Thread[2];
+        StreamSession[] both = {a, b};
+        for (int i = 0; i < 2; i++) {
+            StreamSession s = both[i];
+            feeders[i] = new Thread(() -> {
+                ByteBuffer y = plane(0);
+                while (!Thread.currentThread().isInterrupted() && s.processed() < 40) {
+                    s.submit(y, W + 4, W, H, 0, 0);
+                    LockSupport.parkNanos(100_000L);
+                }
+            });
+            feeders[i].start();
+        }
+        for (Thread t : feeders) t.join();
+
+        List<String> snapshot;
+        synchronized (order) {
+            snapshot = new ArrayList<>(order);
+        }
+        int run = 1, longest = 1;
+        for (int i = 1; i < snapshot.size(); i++) {
+            run = snapshot.get(i).equals(snapshot.get(i - 1)) ? run + 1 : 1;
+            longest = Math.max(longest, run);
+        }
+        assertTrue("a feed ran " + longest + " frames in a row: " + snapshot, longest <= 2);
+        assertTrue(a.dropped() > 0 && b.dropped() > 0);
+    }
+
+    @Test(timeout = 30_000)
+    public void throwingSinkFailsTheFrameAndKeepsTheSession() throws Exception {
+        scheduler = new SessionScheduler(1, 1);
+        List<Integer> out = new ArrayList<>();
+        StreamSession s = scheduler.open("feed", SessionSchedulerTest::copyFirstByte, (session, job) -> {
+            int marker = job.output[0] & 0xFF;
+            if (marker % 2 == 1) throw new IllegalArgumentException("renderer rejected the frame");
+            out.add(marker);
+        });
+        int frames = 10;
+        for (int f = 0; f < frames; f++) {
+            assertTrue(s.submit(plane(f), W + 4, W, H, 0, 0));
+            await(s, f + 1);
+        }
+        assertEquals(frames / 2, s.failed());
+        assertEquals(frames / 2, s.processed());
+        assertEquals(Arrays.asList(0, 2, 4, 6, 8), out);
+    }
+
+    @Test(timeout = 30_000)
+    public void sessionIsRetriedWhenTheRunQueueIsFull() throws Exception {
+        scheduler = new SessionScheduler(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StreamSession blocker = scheduler.open("blocker", job -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                return false;
+            }
+            return copyFirstByte(job);
+        }, (session, job) -> { });
+        blocker.submit(plane(0), W + 4, W, H, 0, 0);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        blocker.close();
+        // Closed sessions fill the run queue (room for 2) while the worker is busy.
+        for (int i = 0; i < 2; i++) {
+            StreamSession s = scheduler.open("closed-" + i, SessionSchedulerTest::copyFirstByte, (session, job) -> { });
+            s.submit(plane(i), W + 4, W, H, 0, 0);
+            s.close();
+        }
+        StreamSession late = scheduler.open("late", SessionSchedulerTest::copyFirstByte, (session, job) -> { });
+        assertTrue(late.submit(plane(1), W + 4, W, H, 0, 0));
+        release.countDown();
+        // The first frame found the queue full. Once the worker has popped the
+        // closed sessions, a later frame must still get the session a turn.
+        while (late.processed() == 0) {
+            late.submit(plane(2), W + 4, W, H, 0, 0);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void idleWorkersWaitWithoutPolling() throws Exception {
+        scheduler = new SessionScheduler(2, 1);
+        StreamSession s = scheduler.open("feed", SessionSchedulerTest::copyFirstByte, (session, job) -> { });
+        s.submit(plane(1), W + 4, W, H, 0, 0);
+        await(s, 1);
+        assertTrue(StagedExecutorTest.awaitWorkers("session-worker-", 2, Thread.State.WAITING));
+        scheduler.shutdown();
+        scheduler = null;
+        assertTrue(StagedExecutorTest.awaitWorkers("session-worker-", 0, null));
+    }
+
+    @Test
+    public void closedSessionRejectsFrames() {
+        scheduler = new SessionScheduler(1, 2);
+        StreamSession s = scheduler.open("feed", SessionSchedulerTest::copyFirstByte, (session, job) -> { });
+        assertEquals(1, scheduler.sessions().size());
+        s.close();
+        assertFalse(s.submit(plane(0), W + 4, W, H, 0, 0));
+        assertEquals(0, scheduler.sessions().size());
+        scheduler.open("a", SessionSchedulerTest::copyFirstByte, (session, job) -> { });
+        scheduler.open("b", SessionSchedulerTest::copyFirstByte, (session, job) -> { });
+        try {
+            scheduler.open("c", SessionSchedulerTest::copyFirstByte, (session, job) -> { });
+            fail("opened more sessions than allowed");
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
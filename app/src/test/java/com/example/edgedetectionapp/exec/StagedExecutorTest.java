@@ -0,0 +1,176 @@
+package com.example.edgedetectionapp.exec;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StagedExecutorTest {
+    private static final int W = 32, H = 8;
+
+    // Y plane whose first byte carries the frame number, with row padding.
+    private static ByteBuffer plane(int frame) {
+        int stride = W + 8;
+        ByteBuffer y = ByteBuffer.allocateDirect(stride * H);
+        y.put(0, (byte) frame);
+        return y;
+    }
+
+    private static final class Recorder implements StagedExecutor.Sink {
+        final List<Long> sequences = new ArrayList<>();
+        final List<Integer> frames = new ArrayList<>();
+
+        @Override public synchronized void deliver(FrameJob job) {
+            sequences.add(job.sequence);
+            frames.add(job.output[0] & 0xFF);
+        }
+
+        synchronized int size() { return frames.size(); }
+    }
+
+    // Copies the first byte through, taking a pseudo-random amount of time so
+    // workers finish out of order.
+    private static StagedExecutor.Processor slowCopy(int worker) {
+        return job -> {
+            try {
+                Thread.sleep((job.sequence * 7 + worker) % 4);
+            } catch (InterruptedException e) {
+                return false;
+            }
+            job.ensureOutput(1)[0] = job.input[0];
+            job.outWidth = job.outHeight = 1;
+            return true;
+        };
+    }
+
+    private static void awaitDelivered(StagedExecutor ex, long n) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (ex.delivered() + ex.failed() + ex.dropped() < n && System.nanoTime() < deadline)
+            Thread.sleep(1);
+    }
+
+    @Test(timeout = 30_000)
+    public void blockPolicy_deliversEverythingInOrder() throws Exception {
+        Recorder sink = new Recorder();
+        StagedExecutor ex = new StagedExecutor(4, 2, StagedExecutor.BLOCK, StagedExecutorTest::slowCopy, sink);
+        for (int f = 0; f < 200; f++) assertTrue(ex.submit(plane(f), W + 8, W, H, 0, 0));
+        awaitDelivered(ex, 200);
+        ex.shutdown();
+        assertEquals(0, ex.dropped());
+        assertEquals(200, sink.size());
+        for (int f = 0; f < 200; f++) {
+            assertEquals(Long.valueOf(f), sink.sequences.get(f));
+            assertEquals(Integer.valueOf(f), sink.frames.get(f));
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void dropPolicies_keepOrderAndBoundInFlight() throws Exception {
+        for (int policy : new int[] {StagedExecutor.DROP_OLDEST, StagedExecutor.DROP_NEWEST}) {
+            Recorder sink = new Recorder();
+            StagedExecutor ex = new StagedExecutor(2, 2, policy, StagedExecutorTest::slowCopy, sink);
+            int accepted = 0;
+            for (int f = 0; f < 300; f++) if (ex.submit(plane(f % 256), W + 8, W, H, 0, 0)) accepted++;
+            awaitDelivered(ex, 300);
+            ex.shutdown();
+            assertTrue("policy " + policy + " should drop under a burst", ex.dropped() > 0);
+            assertEquals(300, ex.delivered() + ex.dropped());
+            for (int i = 1; i < sink.sequences.size(); i++)
+                assertTrue("out of order", sink.sequences.get(i) > sink.sequences.get(i - 1));
+            if (policy == StagedExecutor.DROP_NEWEST) assertEquals(accepted, sink.size());
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void dropOldest_keepsTheLatestFrame() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Recorder sink = new Recorder();
+        // One worker stuck on frame 0 while frames pile up behind it.
+        StagedExecutor ex = new StagedExecutor(1, 2, StagedExecutor.DROP_OLDEST, w -> job -> {
+            try {
+                if (job.sequence == 0) release.await();
+            } catch (InterruptedException e) {
+                return false;
+            }
+            job.ensureOutput(1)[0] = job.input[0];
+            return true;
+        }, sink);
+        ex.submit(plane(0), W + 8, W, H, 0, 0);
+        Thread.sleep(50);   // let the worker pick up frame 0
+        for (int f = 1; f <= 10; f++) ex.submit(plane(f), W + 8, W, H, 0, 0);
+        release.countDown();
+        awaitDelivered(ex, 11);
+        ex.shutdown();
+        assertEquals(Integer.valueOf(0), sink.frames.get(0));
+        assertEquals("newest frame survives", Integer.valueOf(10), sink.frames.get(sink.size() - 1));
+        assertEquals(11, sink.size() + ex.dropped());
+    }
+
+    @Test(timeout = 30_000)
+    public void failedFramesAreSkipped() throws Exception {
+        Recorder sink = new Recorder();
+        StagedExecutor ex = new StagedExecutor(3, 4, StagedExecutor.BLOCK, w -> job -> {
+            if (job.sequence % 3 == 1) return false;
+            job.ensureOutput(1)[0] = job.input[0];
+            return true;
+        }, sink);
+        for (int f = 0; f < 30; f++) ex.submit(plane(f), W + 8, W, H, 0, 0);
+        awaitDelivered(ex, 30);
+        ex.shutdown();
+        assertEquals(10, ex.failed());
+        assertEquals(20, sink.size());
+        for (int i = 1; i < sink.size(); i++)
+            assertTrue(sink.sequences.get(i) > sink.sequences.get(i - 1));
+    }
+
+    @Test(timeout = 30_000)
+    public void throwingSinkFailsTheFrameAndKeepsDelivering() throws Exception {
+        Recorder recorder = new Recorder();
+        StagedExecutor ex = new StagedExecutor(2, 4, StagedExecutor.BLOCK, StagedExecutorTest::slowCopy, job -> {
+            if (job.sequence % 4 == 2) throw new IllegalStateException("writer failed");
+            recorder.deliver(job);
+        });
+        for (int f = 0; f < 40; f++) ex.submit(plane(f), W + 8, W, H, 0, 0);
+        ex.drain();
+        ex.shutdown();
+        assertEquals(10, ex.failed());
+        assertEquals(30, ex.delivered());
+        assertEquals(30, recorder.size());
+    }
+
+    @Test(timeout = 30_000)
+    public void idleWorkersWaitWithoutPolling() throws Exception {
+        Recorder sink = new Recorder();
+        StagedExecutor ex = new StagedExecutor(3, 2, StagedExecutor.BLOCK, StagedExecutorTest::slowCopy, sink);
+        for (int f = 0; f < 10; f++) ex.submit(plane(f), W + 8, W, H, 0, 0);
+        ex.drain();
+        // Untimed WAITING, not the TIMED_WAITING of a polling loop.
+        assertTrue(awaitWorkers("frame-worker-", 3, Thread.State.WAITING));
+        ex.submit(plane(10), W + 8, W, H, 0, 0);
+        ex.drain();
+        ex.shutdown();
+        assertEquals(11, sink.size());
+        assertTrue(awaitWorkers("frame-worker-", 0, null));
+    }
+
+    // Waits until exactly `count` live threads named prefix* exist, all in `state`.
+    static boolean awaitWorkers(String prefix, int count, Thread.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            int matching = 0, total = 0;
+            for (Thread t : Thread.getAllStackTraces().keySet()) {
+                if (!t.getName().startsWith(prefix)) continue;
+                total++;
+                if (t.getState() == state) matching++;
+            }
+            if (total == count && matching == count) return true;
+            Thread.sleep(1);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.edgedetectionapp.frame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void releasedBufferIsReusedForSameSize() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer a = pool.acquire(1024);
+        assertTrue(a.isDirect());
+        pool.release(a);
+        assertSame(a, pool.acquire(1024));
+        assertEquals(1L, pool.allocations());
+    }
+
+    @Test
+    public void sizesAreKeptApart() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer small = pool.acquire(16);
+        pool.release(small);
+        ByteBuffer big = pool.acquire(32);
+        assertNotSame(small, big);
+        assertEquals(32, big.capacity());
+    }
+
+    @Test
+    public void steadyStateDoesNotAllocate() {
+        BufferPool pool = new BufferPool();
+        FrameSlot slot = new FrameSlot();
+        ByteBuffer scratch = null;
+        for (int frame = 0; frame < 1000; frame++) {
+            slot.ensureCapacity(pool, 640 * 480);
+            scratch = pool.ensure(scratch, 640 * 480 * 3 / 2);
+        }
+        assertEquals(2L, pool.allocations());
+    }
+
+    @Test
+    public void ensureSwapsBufferOnResize() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer vga = pool.ensure(null, 640 * 480);
+        ByteBuffer hd = pool.ensure(vga, 1280 * 720);
+        assertEquals(1280 * 720, hd.capacity());
+        // the old buffer went back to the pool
+        assertSame(vga, pool.acquire(640 * 480));
+    }
+
+    @Test
+    public void ensureKeepsALargerBufferAndLimitsIt() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer hd = pool.ensure(null, 1280 * 720);
+        hd.position(100);
+        ByteBuffer roi = pool.ensure(hd, 320 * 240);
+        assertSame(hd, roi);
+        assertEquals(0, roi.position());
+        assertEquals(320 * 240, roi.limit());
+        assertSame(hd, pool.ensure(roi, 1280 * 720));
+        assertEquals(1280 * 720, hd.limit());
+        assertEquals(1L, pool.allocations());
+    }
+}
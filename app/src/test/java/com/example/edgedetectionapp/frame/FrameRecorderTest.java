@@ -0,0 +1,157 @@
+package com.example.edgedetectionapp.frame;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameRecorderTest {
+    private static final int W = 64, H = 48;
+    private static final int Y_STRIDE = W + 16;
+    private static final int UV_STRIDE = W + 16;
+    // Like CameraX, the last chroma row stops at the last sample.
+    private static final int UV_LENGTH = UV_STRIDE * (H / 2 - 1) + W - 1;
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final Random rnd = new Random(7);
+
+    private ByteBuffer randomPlane(int size) {
+        byte[] b = new byte[size];
+        rnd.nextBytes(b);
+        ByteBuffer buf = ByteBuffer.allocateDirect(size);
+        buf.put(b).clear();
+        return buf;
+    }
+
+    private static void assertPlane(ByteBuffer expected, ByteBuffer actual) {
+        assertEquals(expected.remaining(), actual.remaining());
+        assertEquals(0, expected.compareTo(actual));
+    }
+
+    @Test
+    public void asyncRecorder_writesTheFramesOnItsOwnThread() throws Exception {
+        File file = tmp.newFile("async.edgerec");
+        ByteBuffer[] planes = {randomPlane(Y_STRIDE * H), randomPlane(UV_LENGTH), randomPlane(UV_LENGTH)};
+        AsyncFrameRecorder rec = new AsyncFrameRecorder(new FrameRecorder(file, Long.MAX_VALUE), 4);
+        // Record at the writer's pace; a full queue would leave frames out.
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rec.record(i, W, H, 270, planes[0], Y_STRIDE, planes[1], UV_STRIDE, 2, planes[2], UV_STRIDE, 2));
+            while (rec.frames() < i + 1) Thread.sleep(1);
+        }
+        assertTrue(rec.record(3, W, H, 270, planes[0], Y_STRIDE));
+        rec.close();
+        assertEquals(4 - rec.dropped(), rec.frames());
+        assertEquals(0, planes[1].position());
+
+        try (ReplaySource src = new ReplaySource(file, false)) {
+            FrameSource.Frame f = new FrameSource.Frame();
+            for (int i = 0; i < 3; i++) {
+                assertTrue(src.next(f));
+                assertEquals(i, f.timestampNs);
+                assertEquals(270, f.rotation);
+                assertEquals(2, f.vPixelStride);
+                assertPlane(planes[0], f.y);
+                assertPlane(planes[1], f.u);
+                assertPlane(planes[2], f.v);
+            }
+            assertTrue(src.next(f));
+            assertNull(f.u);
+        }
+    }
+
+    @Test
+    public void replay_returnsRecordedFramesUnchanged() throws Exception {
+        File file = tmp.newFile("capture.edgerec");
+        ByteBuffer[][] planes = new ByteBuffer[3][];
+        try (FrameRecorder rec = new FrameRecorder(file, Long.MAX_VALUE)) {
+            for (int i = 0; i < 3; i++) {
+                planes[i] = new ByteBuffer[]{
+                        randomPlane(Y_STRIDE * H), randomPlane(UV_LENGTH), randomPlane(UV_LENGTH)};
+                assertTrue(rec.record(1_000_000L * i, W, H, 90, planes[i][0], Y_STRIDE,
+                        planes[i][1], UV_STRIDE, 2, planes[i][2], UV_STRIDE, 2));
+                assertEquals("plane positions untouched", 0, planes[i][0].position());
+            }
+            assertTrue(rec.record(3_000_000L, W, H, 0, planes[0][0], Y_STRIDE));
+            assertEquals(4, rec.frames());
+            assertEquals(file.length(), rec.bytesWritten());
+        }
+
+        try (ReplaySource src = new ReplaySource(file, false)) {
+            FrameSource.Frame f = new FrameSource.Frame();
+            for (int i = 0; i < 3; i++) {
+                assertTrue(src.next(f));
+                assertEquals(1_000_000L * i, f.timestampNs);
+                assertEquals(W, f.width);
+                assertEquals(H, f.height);
+                assertEquals(90, f.rotation);
+                assertEquals(Y_STRIDE, f.yRowStride);
+                assertEquals(UV_STRIDE, f.vRowStride);
+                assertEquals(2, f.uPixelStride);
+                assertPlane(planes[i][0], f.y);
+                assertPlane(planes[i][1], f.u);
+                assertPlane(planes[i][2], f.v);
+            }
+            assertTrue(src.next(f));
+            assertNull("luma-only frame", f.u);
+            assertPlane(planes[0][0], f.y);
+            assertFalse(src.next(f));
+
+            src.rewind();
+            assertTrue(src.next(f));
+            assertPlane(planes[0][0], f.y);
+        }
+    }
+
+    @Test
+    public void replay_stopsBeforeTruncatedRecord() throws Exception {
+        File file = tmp.newFile("cut.edgerec");
+        ByteBuffer y = randomPlane(W * H);
+        try (FrameRecorder rec = new FrameRecorder(file, Long.MAX_VALUE)) {
+            rec.record(0, W, H, 0, y, W);
+            rec.record(1, W, H, 0, y, W);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        try (ReplaySource src = new ReplaySource(file, false)) {
+            FrameSource.Frame f = new FrameSource.Frame();
+            assertTrue(src.next(f));
+            assertFalse(src.next(f));
+        }
+    }
+
+    @Test
+    public void recorder_stopsAtSizeLimit() throws Exception {
+        File file = tmp.newFile("small.edgerec");
+        ByteBuffer y = randomPlane(W * H);
+        try (FrameRecorder rec = new FrameRecorder(file, 2L * W * H + 200)) {
+            assertTrue(rec.record(0, W, H, 0, y, W));
+            assertTrue(rec.record(1, W, H, 0, y, W));
+            assertFalse(rec.record(2, W, H, 0, y, W));
+            assertEquals(2, rec.frames());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void realTimeReplay_keepsRecordedSpacing() throws Exception {
+        File file = tmp.newFile("paced.edgerec");
+        ByteBuffer y = randomPlane(W * H);
+        try (FrameRecorder rec = new FrameRecorder(file, Long.MAX_VALUE)) {
+            for (int i = 0; i < 4; i++) rec.record(5_000_000_000L + i * 20_000_000L, W, H, 0, y, W);
+        }
+        try (ReplaySource src = new ReplaySource(file, true)) {
+            FrameSource.Frame f = new FrameSource.Frame();
+            long t0 = System.nanoTime();
+            while (src.next(f)) { }
+            assertTrue(System.nanoTime() - t0 >= 60_000_000L);
+            assertEquals(4, src.frames());
+        }
+    }
+}
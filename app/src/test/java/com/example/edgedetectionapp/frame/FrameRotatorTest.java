@@ -0,0 +1,95 @@
+package com.example.edgedetectionapp.frame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameRotatorTest {
+    // Sizes that are not multiples of the tile, plus one smaller than a tile.
+    private static final int[][] SIZES = {{200, 131}, {64, 64}, {17, 5}, {640, 480}};
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    // The per-pixel mapping EdgeRenderer used before the rotator existed.
+    static byte[] reference(byte[] src, int w, int h, int rotation) {
+        int dstW = FrameRotator.rotatedWidth(w, h, rotation);
+        byte[] dst = new byte[w * h];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int dx, dy;
+                switch (rotation) {
+                    case 90: dx = h - 1 - y; dy = x; break;
+                    case 180: dx = w - 1 - x; dy = h - 1 - y; break;
+                    case 270: dx = y; dy = w - 1 - x; break;
+                    default: dx = x; dy = y; break;
+                }
+                dst[dy * dstW + dx] = src[y * w + x];
+            }
+        }
+        return dst;
+    }
+
+    private static byte[] random(int n, long seed) {
+        byte[] b = new byte[n];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+
+    private static ByteBuffer strided(byte[] img, int w, int h, int stride) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(stride * h);
+        for (int row = 0; row < h; row++) {
+            buf.position(row * stride);
+            buf.put(img, row * w, w);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    @Test
+    public void matchesReference_allOrientations() {
+        FrameRotator rotator = new FrameRotator();
+        for (int[] size : SIZES) {
+            int w = size[0], h = size[1];
+            byte[] img = random(w * h, w * 31L + h);
+            for (int rot : ROTATIONS) {
+                ByteBuffer dst = ByteBuffer.allocateDirect(w * h);
+                rotator.rotate(strided(img, w, h, w), w, w, h, rot, dst);
+                byte[] got = new byte[w * h];
+                dst.get(got);
+                assertArrayEquals(w + "x" + h + " @" + rot, reference(img, w, h, rot), got);
+            }
+        }
+    }
+
+    @Test
+    public void handlesPaddedSourceRows() {
+        FrameRotator rotator = new FrameRotator();
+        int w = 150, h = 97, stride = 192;
+        byte[] img = random(w * h, 7);
+        for (int rot : ROTATIONS) {
+            ByteBuffer dst = ByteBuffer.allocateDirect(w * h);
+            rotator.rotate(strided(img, w, h, stride), stride, w, h, rot, dst);
+            byte[] got = new byte[w * h];
+            dst.get(got);
+            assertArrayEquals("@" + rot, reference(img, w, h, rot), got);
+        }
+    }
+
+    @Test
+    public void reusableDestination_leavesBufferPositionsAlone() {
+        FrameRotator rotator = new FrameRotator();
+        ByteBuffer src = strided(random(40 * 30, 3), 40, 30, 40);
+        ByteBuffer dst = ByteBuffer.allocateDirect(40 * 30);
+        for (int i = 0; i < 3; i++) rotator.rotate(src, 40, 40, 30, 90, dst);
+        assertEquals(0, src.position());
+        assertEquals(0, dst.position());
+        assertEquals(dst.capacity(), dst.limit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOddAngles() {
+        new FrameRotator().rotate(ByteBuffer.allocateDirect(4), 2, 2, 2, 45, ByteBuffer.allocateDirect(4));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.edgedetectionapp.frame;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Nv21PackerTest {
+    private static final int W = 64, H = 48;
+    private static final int Y_STRIDE = W + 16;       // padded luma rows
+    private static final int UV_STRIDE = W + 16;      // semi-planar chroma rows
+    private static final int UV_PIXEL_STRIDE = 2;
+
+    private final Random rnd = new Random(42);
+
+    private ByteBuffer randomPlane(int size) {
+        byte[] b = new byte[size];
+        rnd.nextBytes(b);
+        ByteBuffer buf = ByteBuffer.allocateDirect(size);
+        buf.put(b).clear();
+        return buf;
+    }
+
+    // The per-byte loop MainActivity used before the packer existed.
+    private static byte[] reference(ByteBuffer y, ByteBuffer u, ByteBuffer v) {
+        byte[] out = new byte[Nv21Packer.nv21Size(W, H)];
+        for (int row = 0; row < H; row++)
+            for (int col = 0; col < W; col++)
+                out[row * W + col] = y.get(row * Y_STRIDE + col);
+        int pos = W * H;
+        for (int row = 0; row < H / 2; row++) {
+            for (int col = 0; col < W / 2; col++) {
+                out[pos++] = v.get(row * UV_STRIDE + col * UV_PIXEL_STRIDE);
+                out[pos++] = u.get(row * UV_STRIDE + col * UV_PIXEL_STRIDE);
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void packIntoArray_matchesPerByteLoop() {
+        ByteBuffer y = randomPlane(Y_STRIDE * H);
+        ByteBuffer u = randomPlane(UV_STRIDE * (H / 2));
+        ByteBuffer v = randomPlane(UV_STRIDE * (H / 2));
+        byte[] dst = new byte[Nv21Packer.nv21Size(W, H)];
+        Nv21Packer.pack(y, Y_STRIDE, u, UV_STRIDE, UV_PIXEL_STRIDE, v, UV_STRIDE, UV_PIXEL_STRIDE, W, H, dst);
+        assertArrayEquals(reference(y, u, v), dst);
+    }
+
+    @Test
+    public void packIntoBuffer_matchesPerByteLoop() {
+        ByteBuffer y = randomPlane(Y_STRIDE * H);
+        ByteBuffer u = randomPlane(UV_STRIDE * (H / 2));
+        ByteBuffer v = randomPlane(UV_STRIDE * (H / 2));
+        ByteBuffer dst = ByteBuffer.allocateDirect(Nv21Packer.nv21Size(W, H));
+        Nv21Packer.pack(y, Y_STRIDE, u, UV_STRIDE, UV_PIXEL_STRIDE, v, UV_STRIDE, UV_PIXEL_STRIDE, W, H, dst);
+        byte[] got = new byte[dst.capacity()];
+        dst.get(got);
+        assertArrayEquals(reference(y, u, v), got);
+        assertEquals("source positions untouched", 0, y.position());
+    }
+}
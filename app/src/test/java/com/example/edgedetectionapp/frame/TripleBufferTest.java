@@ -0,0 +1,94 @@
+package com.example.edgedetectionapp.frame;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/** Concurrency stress for the SPSC frame exchange; runs on a plain JVM. */
+public class TripleBufferTest {
+
+    // Stand-in for a frame: every element carries the same sequence number,
+    // so a torn read shows up as mixed values.
+    private static final class Frame {
+        final long[] pixels = new long[4096];
+    }
+
+    @Test
+    public void acquireWithoutPublish_returnsFalse() {
+        TripleBuffer<Frame> tb = new TripleBuffer<>(new Frame(), new Frame(), new Frame());
+        assertFalse(tb.hasFresh());
+        assertFalse(tb.acquire());
+    }
+
+    @Test
+    public void consumerSeesLatestPublish() {
+        TripleBuffer<Frame> tb = new TripleBuffer<>(new Frame(), new Frame(), new Frame());
+        for (long seq = 1; seq <= 3; seq++) {
+            tb.back().pixels[0] = seq;
+            tb.publish();
+        }
+        assertTrue(tb.acquire());
+        assertEquals(3L, tb.front().pixels[0]);
+        assertFalse(tb.acquire());
+    }
+
+    @Test
+    public void publishReportsOverwrittenFrames() {
+        TripleBuffer<Frame> tb = new TripleBuffer<>(new Frame(), new Frame(), new Frame());
+        assertFalse(tb.publish());
+        assertTrue("second publish replaced an unread frame", tb.publish());
+        tb.acquire();
+        assertFalse(tb.publish());
+    }
+
+    @Test
+    public void producerAndConsumerNeverShareASlot() {
+        TripleBuffer<Frame> tb = new TripleBuffer<>(new Frame(), new Frame(), new Frame());
+        for (int i = 0; i < 100; i++) {
+            tb.publish();
+            if ((i & 1) == 0) tb.acquire();
+            assertNotSame(tb.back(), tb.front());
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void stress_noTornFramesAndMonotonicSequence() throws Exception {
+        final TripleBuffer<Frame> tb = new TripleBuffer<>(new Frame(), new Frame(), new Frame());
+        final long frames = 200_000;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread producer = new Thread(() -> {
+            for (long seq = 1; seq <= frames; seq++) {
+                long[] px = tb.back().pixels;
+                for (int i = 0; i < px.length; i++) px[i] = seq;
+                tb.publish();
+            }
+        }, "producer");
+
+        Thread consumer = new Thread(() -> {
+            try {
+                long last = 0;
+                while (last < frames) {
+                    if (!tb.acquire()) continue;
+                    long[] px = tb.front().pixels;
+                    long seq = px[0];
+                    for (int i = 1; i < px.length; i++) {
+                        if (px[i] != seq) throw new AssertionError("torn frame: " + seq + " vs " + px[i]);
+                    }
+                    if (seq <= last) throw new AssertionError("sequence went backwards: " + last + " -> " + seq);
+                    last = seq;
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "consumer");
+
+        consumer.start();
+        producer.start();
+        producer.join();
+        consumer.join();
+        if (failure.get() != null) throw new AssertionError(failure.get());
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.edgedetectionapp.gl;
+
+import com.example.edgedetectionapp.proc.EdgePolylines;
+import com.example.edgedetectionapp.proc.FrameProcessor;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how many bytes EdgeRenderer copies per frame on the byte[] path
+ * versus the direct-ByteBuffer path.
+ */
+public class EdgeRendererCopyTest {
+    private static final int W = 1920, H = 1080;
+
+    @Test
+    public void byteArrayPath_copiesWholeFrame() {
+        EdgeRenderer r = new EdgeRenderer();
+        r.setFrameInfo(W, H, 0);
+        for (int i = 0; i < 3; i++) r.updateFrame(new byte[W * H], W, H);
+        assertEquals(3L * W * H, r.getCopiedBytes());
+    }
+
+    @Test
+    public void directPath_copiesNothing() {
+        EdgeRenderer r = new EdgeRenderer();
+        r.setFrameInfo(W, H, 0);
+        for (int i = 0; i < 3; i++) {
+            ByteBuffer slot = r.beginFrame();
+            assertTrue(slot.isDirect());
+            assertEquals(W * H, slot.limit());
+            r.commitFrame();
+        }
+        assertEquals(0L, r.getCopiedBytes());
+    }
+
+    @Test
+    public void directPath_savesOneFrameCopyPerFrame() {
+        EdgeRenderer heap = new EdgeRenderer();
+        EdgeRenderer direct = new EdgeRenderer();
+        heap.setFrameInfo(W, H, 0);
+        direct.setFrameInfo(W, H, 0);
+        byte[] arr = new byte[W * H];
+        int frames = 10;
+        for (int i = 0; i < frames; i++) {
+            heap.updateFrame(arr, W, H);
+            direct.beginFrame();
+            direct.commitFrame();
+        }
+        long saved = heap.getCopiedBytes() - direct.getCopiedBytes();
+        assertEquals((long) frames * W * H, saved);
+    }
+
+    @Test
+    public void directPath_slotsRotateThroughTripleBuffer() {
+        EdgeRenderer r = new EdgeRenderer();
+        r.setFrameInfo(W, H, 0);
+        ByteBuffer first = r.beginFrame();
+        r.commitFrame();
+        ByteBuffer second = r.beginFrame();
+        assertNotSame("a published slot must not be handed out again", first, second);
+    }
+
+    @Test
+    public void packedFrames_useAnEighthOfTheSlotAndSkipCpuRotation() {
+        EdgeRenderer r = new EdgeRenderer();
+        r.setPackedInput(true);
+        r.setFrameInfo(W, H, 90);
+        assertFalse(r.isRotatingInput());
+        assertEquals(W * H / 8, r.beginFrame().limit());
+        r.commitFrame();
+        r.updateFrame(new byte[W * H / 8], W, H);
+        assertEquals((long) W * H / 8, r.getCopiedBytes());
+    }
+
+    @Test
+    public void vectorFrames_copyOnlyTheEncodedPolylines() {
+        EdgePolylines lines = new EdgePolylines();
+        lines.reset(W, H);
+        lines.begin();
+        lines.add(0, 0);
+        lines.add(W - 1, H - 1);
+        lines.end();
+        byte[] wire = new byte[W * H];
+        int length = lines.encode(wire);
+
+        EdgeRenderer r = new EdgeRenderer();
+        r.setInputFormat(FrameProcessor.FORMAT_POLYLINES);
+        r.setFrameInfo(W, H, 90);
+        assertFalse(r.isRotatingInput());
+        r.updateFrame(wire, W, H);
+        assertEquals(length, r.getCopiedBytes());
+    }
+
+    @Test
+    public void regionFrames_holdOnlyTheRegionsAndSkipCpuRotation() {
+        EdgeRenderer r = new EdgeRenderer();
+        r.setPackedInput(true);
+        r.setRegions(new int[] {0, 0, W / 4, H / 4, W / 2, H / 2, 64, 10}, 2);
+        r.setFrameInfo(W, H, 90);
+        assertFalse(r.isRotatingInput());
+        int bytes = W / 4 * H / 4 / 8 + 8 * 10;
+        assertEquals(bytes, r.beginFrame().limit());
+        r.commitFrame();
+        r.setRegions(new int[0], 0);
+        r.setFrameInfo(W, H, 0);
+        assertEquals(W * H / 8, r.beginFrame().limit());
+    }
+
+    @Test
+    public void directPath_stillCopiesWhenRotating() {
+        EdgeRenderer r = new EdgeRenderer();
+        r.setFrameInfo(W, H, 90);
+        ByteBuffer frame = ByteBuffer.allocateDirect(W * H);
+        r.updateFrame(frame, W, H);
+        assertEquals((long) W * H, r.getCopiedBytes());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.edgedetectionapp.gl;
+
+import com.example.edgedetectionapp.frame.FrameRotator;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that sampling the unrotated texture through uTexXform (the GPU
+ * rotation path) shows exactly what the CPU path uploads after FrameRotator.
+ */
+public class TexTransformTest {
+    private static final int W = 48, H = 30;
+
+    // What the fragment shader does: t = uTexXform * (u, v, 1) with GL's
+    // column-major layout, then a NEAREST texel fetch.
+    private static int sample(float[] colMajor, byte[] tex, int tw, int th, float u, float v) {
+        float tu = colMajor[0] * u + colMajor[3] * v + colMajor[6];
+        float tv = colMajor[1] * u + colMajor[4] * v + colMajor[7];
+        int x = Math.min(tw - 1, (int) Math.floor(tu * tw));
+        int y = Math.min(th - 1, (int) Math.floor(tv * th));
+        return tex[y * tw + x] & 0xFF;
+    }
+
+    @Test
+    public void gpuRotationMatchesCpuRotation() {
+        byte[] img = new byte[W * H];
+        new Random(11).nextBytes(img);
+        float[] m = new float[9], scratch = new float[9];
+        FrameRotator rotator = new FrameRotator();
+
+        for (int rot : new int[] {0, 90, 180, 270}) {
+            int rw = FrameRotator.rotatedWidth(W, H, rot), rh = FrameRotator.rotatedHeight(W, H, rot);
+            ByteBuffer src = ByteBuffer.allocateDirect(W * H);
+            src.put(img).clear();
+            ByteBuffer dst = ByteBuffer.allocateDirect(W * H);
+            rotator.rotate(src, W, W, H, rot, dst);
+            byte[] cpu = new byte[W * H];
+            dst.get(cpu);
+
+            TexTransform.build(rot, false, scratch, m);
+            for (int y = 0; y < rh; y++) {
+                for (int x = 0; x < rw; x++) {
+                    float u = (x + 0.5f) / rw, v = (y + 0.5f) / rh;
+                    assertEquals("rot " + rot + " at " + x + "," + y,
+                            cpu[y * rw + x] & 0xFF, sample(m, img, W, H, u, v));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void verticalFlipFlipsTheDisplayedImage() {
+        float[] m = new float[9], scratch = new float[9];
+        TexTransform.build(90, true, scratch, m);
+        // With the flip, the top output row samples what the bottom row shows without it.
+        float[] plain = new float[9];
+        TexTransform.build(90, false, scratch, plain);
+        float u = 0.3f, v = 0.1f;
+        assertEquals(plain[0] * u + plain[3] * (1 - v) + plain[6], m[0] * u + m[3] * v + m[6], 1e-6);
+        assertEquals(plain[1] * u + plain[4] * (1 - v) + plain[7], m[1] * u + m[4] * v + m[7], 1e-6);
+    }
+
+    @Test
+    public void uniformIsColumnMajor() {
+        float[] m = new float[9];
+        TexTransform.build(180, false, new float[9], m);
+        // (u, v) -> (1-u, 1-v): translation lives in the third column
+        assertArrayEquals(new float[] {-1f,0f,0f, 0f,-1f,0f, 1f,1f,1f}, m, 0f);
+    }
+
+    @Test
+    public void croppedTransformZoomsIntoTheRectangle() {
+        float[] full = new float[9], crop = new float[9], scratch = new float[9];
+        float x = 0.25f, y = 0.5f, w = 0.5f, h = 0.25f;
+        for (int rot : new int[] {0, 90, 180, 270}) {
+            TexTransform.build(rot, true, scratch, full);
+            TexTransform.buildCropped(rot, true, x, y, w, h, scratch, crop);
+            for (float u = 0f; u <= 1f; u += 0.25f) {
+                for (float v = 0f; v <= 1f; v += 0.25f) {
+                    float tu = full[0] * u + full[3] * v + full[6], tv = full[1] * u + full[4] * v + full[7];
+                    assertEquals(x + w * tu, crop[0] * u + crop[3] * v + crop[6], 1e-6);
+                    assertEquals(y + h * tv, crop[1] * u + crop[4] * v + crop[7], 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void inverseMapsTexelsBackToWhereTheyAreShown() {
+        float[] m = new float[9], inv = new float[9], scratch = new float[9];
+        for (int rot : new int[] {0, 90, 180, 270}) {
+            for (boolean flip : new boolean[] {false, true}) {
+                TexTransform.build(rot, flip, scratch, m);
+                TexTransform.buildInverse(rot, flip, scratch, inv);
+                float u = 0.2f, v = 0.7f;
+                float su = inv[0] * u + inv[3] * v + inv[6];
+                float sv = inv[1] * u + inv[4] * v + inv[7];
+                assertEquals(u, m[0] * su + m[3] * sv + m[6], 1e-6f);
+                assertEquals(v, m[1] * su + m[4] * sv + m[7], 1e-6f);
+            }
+        }
+    }
+}
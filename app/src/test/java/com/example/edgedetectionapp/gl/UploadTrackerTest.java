@@ -0,0 +1,74 @@
+package com.example.edgedetectionapp.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UploadTrackerTest {
+
+    @Test
+    public void firstFrameAllocates() {
+        UploadTracker t = new UploadTracker();
+        assertEquals(UploadTracker.ALLOCATE, t.plan(1, 640, 480));
+    }
+
+    @Test
+    public void sameSizeNewSequenceUsesSubImage() {
+        UploadTracker t = new UploadTracker();
+        t.uploaded(1, 640, 480);
+        assertEquals(UploadTracker.SUB_IMAGE, t.plan(2, 640, 480));
+    }
+
+    @Test
+    public void redrawOfSameFrameSkipsUpload() {
+        UploadTracker t = new UploadTracker();
+        t.uploaded(7, 640, 480);
+        assertEquals(UploadTracker.SKIP, t.plan(7, 640, 480));
+    }
+
+    @Test
+    public void sizeChangeReallocates() {
+        UploadTracker t = new UploadTracker();
+        t.uploaded(1, 640, 480);
+        assertEquals(UploadTracker.ALLOCATE, t.plan(2, 480, 640));
+        assertEquals(UploadTracker.ALLOCATE, t.plan(1, 1280, 720));
+    }
+
+    @Test
+    public void lostContextReallocates() {
+        UploadTracker t = new UploadTracker();
+        t.uploaded(3, 640, 480);
+        t.invalidate();
+        assertEquals(UploadTracker.ALLOCATE, t.plan(3, 640, 480));
+    }
+
+    @Test
+    public void steadyStreamAllocatesOnce() {
+        UploadTracker t = new UploadTracker();
+        int allocs = 0, subs = 0;
+        for (long seq = 1; seq <= 100; seq++) {
+            // Every frame drawn twice, as happens when the surface is redrawn.
+            for (int draw = 0; draw < 2; draw++) {
+                int p = t.plan(seq, 1280, 720);
+                if (p == UploadTracker.ALLOCATE) allocs++;
+                if (p == UploadTracker.SUB_IMAGE) subs++;
+                if (p != UploadTracker.SKIP) t.uploaded(seq, 1280, 720);
+            }
+        }
+        assertEquals(1, allocs);
+        assertEquals(99, subs);
+    }
+
+    @Test
+    public void regionLayoutChangesAreDetected() {
+        UploadTracker t = new UploadTracker();
+        int[] a = {0, 0, 16, 16}, b = {8, 0, 16, 16};
+        assertTrue(t.sameRegions(a, 0));
+        t.uploaded(1, 640, 480, a, 1);
+        assertTrue(t.sameRegions(a, 1));
+        assertFalse(t.sameRegions(b, 1));
+        assertFalse(t.sameRegions(a, 0));
+        t.uploaded(2, 640, 480);
+        assertFalse("a full frame replaces the regions", t.sameRegions(a, 1));
+    }
+}
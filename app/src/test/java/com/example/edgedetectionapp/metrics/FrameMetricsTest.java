@@ -0,0 +1,45 @@
+package com.example.edgedetectionapp.metrics;
+
+import com.example.edgedetectionapp.gl.EdgeRenderer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameMetricsTest {
+
+    @Test
+    public void rendererCountsFramesReplacedBeforeDraw() {
+        FrameMetrics m = new FrameMetrics();
+        EdgeRenderer r = new EdgeRenderer();
+        r.setMetrics(m);
+        r.setFrameInfo(64, 48, 0);
+        // No GL thread draws in between, so every commit after the first
+        // replaces a frame nobody saw.
+        for (int i = 0; i < 5; i++) r.updateFrame(new byte[64 * 48], 64, 48);
+        assertEquals(4, m.dropped(FrameMetrics.DROP_OVERWRITTEN));
+        assertEquals(5, m.histogram(FrameMetrics.ROTATE).count());
+    }
+
+    @Test
+    public void percentileTextForOverlay() {
+        FrameMetrics m = new FrameMetrics();
+        StringBuilder sb = new StringBuilder();
+        m.appendPercentiles(sb, FrameMetrics.PROCESS);
+        assertEquals("process -", sb.toString());
+        m.record(FrameMetrics.PROCESS, 2_000_000L);
+        sb.setLength(0);
+        m.appendPercentiles(sb, FrameMetrics.PROCESS);
+        assertTrue(sb.toString(), sb.toString().matches("process 2\\.\\d/2\\.\\d/2\\.\\d ms"));
+    }
+
+    @Test
+    public void onlyTheFirstFrameAfterStartupIsRecorded() {
+        FrameMetrics m = new FrameMetrics();
+        assertEquals(-1, m.firstFrameNanos());
+        assertTrue(m.recordFirstFrame(120_000_000L));
+        assertFalse(m.recordFirstFrame(150_000_000L));
+        m.reset();
+        assertEquals(120_000_000L, m.firstFrameNanos());
+    }
+}
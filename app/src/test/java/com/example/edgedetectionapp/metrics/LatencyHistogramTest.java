@@ -0,0 +1,67 @@
+package com.example.edgedetectionapp.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private static void assertWithinBucketError(long expectedNs, long actualNs) {
+        assertTrue("expected ~" + expectedNs + " got " + actualNs,
+                actualNs >= expectedNs && actualNs <= expectedNs * 1.125 + 1000);
+    }
+
+    @Test
+    public void bucketsAreContiguousAndOrdered() {
+        long expectedLower = 0;
+        for (int b = 0; b < LatencyHistogram.BUCKETS; b++) {
+            assertEquals(b, LatencyHistogram.bucket(expectedLower));
+            long upper = LatencyHistogram.upperBoundUs(b);
+            assertEquals(b, LatencyHistogram.bucket(upper));
+            expectedLower = upper + 1;
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformSpread() {
+        LatencyHistogram h = new LatencyHistogram();
+        // 1..1000 ms, one sample each.
+        for (int ms = 1; ms <= 1000; ms++) h.record(ms * 1_000_000L);
+        assertEquals(1000, h.count());
+        assertWithinBucketError(500_000_000L, h.percentileNanos(50));
+        assertWithinBucketError(950_000_000L, h.percentileNanos(95));
+        assertWithinBucketError(990_000_000L, h.percentileNanos(99));
+        assertEquals(1_000_000_000L, h.maxNanos());
+    }
+
+    @Test
+    public void tailShowsUpOnlyInHighPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 980; i++) h.record(5_000_000L);
+        for (int i = 0; i < 20; i++) h.record(80_000_000L);
+        assertWithinBucketError(5_000_000L, h.percentileNanos(50));
+        assertWithinBucketError(5_000_000L, h.percentileNanos(95));
+        assertWithinBucketError(80_000_000L, h.percentileNanos(99));
+    }
+
+    @Test
+    public void emptyAndResetReportZero() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentileNanos(99));
+        h.record(3_000_000L);
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentileNanos(50));
+        assertEquals(0, h.maxNanos());
+    }
+
+    @Test
+    public void negativeAndHugeValuesAreClamped() {
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(-5);
+        h.record(Long.MAX_VALUE);
+        assertEquals(2, h.count());
+        assertEquals(0, h.percentileNanos(50));
+        assertTrue(h.percentileNanos(100) > 0);
+    }
+}
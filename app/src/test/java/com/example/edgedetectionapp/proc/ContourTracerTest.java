@@ -0,0 +1,148 @@
+package com.example.edgedetectionapp.proc;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class ContourTracerTest {
+    private static void line(byte[] map, int w, int x0, int y0, int x1, int y1) {
+        int n = Math.max(Math.abs(x1 - x0), Math.abs(y1 - y0));
+        for (int i = 0; i <= n; i++) {
+            int x = x0 + Math.round((float) (x1 - x0) * i / n);
+            int y = y0 + Math.round((float) (y1 - y0) * i / n);
+            map[y * w + x] = (byte) 255;
+        }
+    }
+
+    @Test
+    public void straightLinesSimplifyToTheirEndpoints() {
+        int w = 64, h = 32;
+        byte[] map = new byte[w * h];
+        line(map, w, 40, 2, 50, 12);
+        line(map, w, 5, 20, 35, 20);
+        EdgePolylines out = new EdgePolylines();
+        new ContourTracer(1f, 2).trace(map, w, h, out, Integer.MAX_VALUE);
+        assertEquals(2, out.count());
+        assertEquals(4, out.pointCount());
+        assertEquals(2, out.segmentCount());
+    }
+
+    @Test
+    public void chainStartedInTheMiddleIsOnePolyline() {
+        int w = 32, h = 32;
+        byte[] map = new byte[w * h];
+        // An inverted "V": the raster scan meets the apex first and has to
+        // walk both ways from it.
+        line(map, w, 4, 12, 12, 4);
+        line(map, w, 12, 4, 20, 12);
+        EdgePolylines out = new EdgePolylines();
+        new ContourTracer(1f, 2).trace(map, w, h, out, Integer.MAX_VALUE);
+        assertEquals(1, out.count());
+        assertEquals(3, out.pointCount());
+        assertEquals(12, out.x(1));
+        assertEquals(4, out.y(1));
+    }
+
+    @Test
+    public void toleranceControlsHowMuchOfACurveSurvives() {
+        int w = 128, h = 128;
+        byte[] map = new byte[w * h];
+        for (int a = 0; a < 720; a++) {
+            double t = Math.toRadians(a / 2.0);
+            map[(int) Math.round(64 + 50 * Math.sin(t)) * w + (int) Math.round(64 + 50 * Math.cos(t))] = (byte) 255;
+        }
+        EdgePolylines fine = new EdgePolylines(), coarse = new EdgePolylines();
+        new ContourTracer(0.5f, 2).trace(map, w, h, fine, Integer.MAX_VALUE);
+        new ContourTracer(4f, 2).trace(map, w, h, coarse, Integer.MAX_VALUE);
+        assertTrue(coarse.pointCount() < fine.pointCount());
+        assertTrue("circle of ~314 pixels: " + fine.pointCount(), fine.pointCount() < 200);
+        for (int i = 0; i < coarse.pointCount(); i++) {
+            double r = Math.hypot(coarse.x(i) - 64, coarse.y(i) - 64);
+            assertEquals(50, r, 1.5);
+        }
+    }
+
+    @Test
+    public void specklesBelowMinPixelsAreDropped() {
+        int w = 16, h = 16;
+        byte[] map = new byte[w * h];
+        map[3 * w + 3] = map[3 * w + 4] = (byte) 255;
+        line(map, w, 2, 10, 12, 10);
+        EdgePolylines out = new EdgePolylines();
+        new ContourTracer(1f, 5).trace(map, w, h, out, Integer.MAX_VALUE);
+        assertEquals(1, out.count());
+        assertEquals(10, out.y(0));
+    }
+
+    @Test
+    public void traceStopsAtTheSizeLimit() {
+        int w = 64, h = 64;
+        byte[] map = new byte[w * h];
+        for (int y = 2; y < h; y += 4) line(map, w, 2, y, 60, y);
+        EdgePolylines out = new EdgePolylines();
+        ContourTracer tracer = new ContourTracer(1f, 2);
+        int limit = EdgePolylines.encodedSize(3, 6);
+        tracer.trace(map, w, h, out, limit);
+        assertTrue(tracer.truncated());
+        assertEquals(3, out.count());
+        assertTrue(out.encodedSize() <= limit);
+    }
+
+    @Test
+    public void wireFormRoundTrips() {
+        EdgePolylines a = new EdgePolylines();
+        a.reset(1920, 1080);
+        a.begin();
+        a.add(0, 0);
+        a.add(1919, 1079);
+        a.add(1000, 7);
+        a.end();
+        a.begin();
+        a.add(5, 5);   // single point: dropped
+        a.end();
+        a.begin();
+        a.add(9, 9);
+        a.add(10, 9);
+        a.end();
+        byte[] wire = new byte[a.encodedSize()];
+        assertEquals(wire.length, a.encode(wire));
+        assertEquals(wire.length, EdgePolylines.encodedLength(wire));
+
+        EdgePolylines b = new EdgePolylines();
+        b.decode(ByteBuffer.wrap(wire), wire.length);
+        assertEquals(1920, b.width());
+        assertEquals(1080, b.height());
+        assertEquals(2, b.count());
+        assertEquals(3, b.length(0));
+        assertEquals(2, b.length(1));
+        assertEquals(1919, b.x(1));
+        assertEquals(1079, b.y(1));
+        assertEquals(10, b.x(4));
+    }
+
+    @Test
+    public void decodeRejectsTruncatedOrInconsistentInput() {
+        EdgePolylines a = new EdgePolylines();
+        a.reset(8, 8);
+        a.begin();
+        a.add(1, 1);
+        a.add(2, 2);
+        a.end();
+        byte[] wire = new byte[a.encodedSize()];
+        a.encode(wire);
+        EdgePolylines b = new EdgePolylines();
+        try {
+            b.decode(wire, wire.length - 1);
+            fail("truncated input accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        wire[EdgePolylines.HEADER_BYTES] = 3;   // polyline length no longer matches the point count
+        try {
+            b.decode(wire, wire.length);
+            fail("inconsistent lengths accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.edgedetectionapp.proc;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class EdgeEngineTest {
+    private static final int W = 160, H = 120;
+
+    // Bright disc and rectangle on a dark, slightly noisy background.
+    static byte[] scene(int w, int h) {
+        byte[] img = new byte[w * h];
+        long seed = 1234;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int v = 40;
+                int dx = x - w / 3, dy = y - h / 2;
+                if (dx * dx + dy * dy < (h / 4) * (h / 4)) v = 200;
+                if (x > w * 3 / 5 && x < w * 9 / 10 && y > h / 5 && y < h * 4 / 5) v = 150;
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                v += (int) ((seed >>> 60) & 7) - 3;
+                img[y * w + x] = (byte) v;
+            }
+        }
+        return img;
+    }
+
+    @Test
+    public void verticalStep_producesVerticalEdge() {
+        byte[] img = new byte[W * H];
+        for (int y = 0; y < H; y++)
+            for (int x = W / 2; x < W; x++) img[y * W + x] = (byte) 255;
+        byte[] out = new byte[W * H];
+        new EdgeEngine(new ForkJoinPool(2)).processFrame(img, W, H, out);
+
+        for (int y = 2; y < H - 2; y++) {
+            int edgesInRow = 0;
+            for (int x = 0; x < W; x++) {
+                if (out[y * W + x] != 0) {
+                    edgesInRow++;
+                    assertTrue("edge far from the step at x=" + x, Math.abs(x - W / 2) <= 1);
+                }
+            }
+            assertTrue("row " + y + " has no edge", edgesInRow > 0);
+        }
+    }
+
+    @Test
+    public void flatImage_hasNoEdges() {
+        byte[] img = new byte[W * H];
+        java.util.Arrays.fill(img, (byte) 90);
+        byte[] out = new byte[W * H];
+        new EdgeEngine(new ForkJoinPool(2)).processFrame(img, W, H, out);
+        for (byte b : out) assertEquals(0, b);
+    }
+
+    @Test
+    public void resultDoesNotDependOnParallelism() {
+        byte[] img = scene(W, H);
+        byte[] single = new byte[W * H];
+        byte[] multi = new byte[W * H];
+        new EdgeEngine(new ForkJoinPool(1)).processFrame(img, W, H, single);
+        new EdgeEngine(new ForkJoinPool(8)).processFrame(img, W, H, multi);
+        assertArrayEquals(single, multi);
+    }
+
+    @Test
+    public void repeatedFramesGiveSameResult() {
+        EdgeEngine engine = new EdgeEngine(new ForkJoinPool(4));
+        byte[] img = scene(W, H);
+        byte[] first = new byte[W * H];
+        byte[] again = new byte[W * H];
+        engine.processFrame(img, W, H, first);
+        engine.processFrame(img, W, H, again);
+        assertArrayEquals(first, again);
+    }
+
+    @Test
+    public void alternatingSizesMatchFreshEngines() {
+        // Fewer strips for the small frame; the kept tasks must be re-ranged.
+        EdgeEngine engine = new EdgeEngine(new ForkJoinPool(4));
+        int[][] sizes = { { W, H }, { 40, 18 }, { W, H }, { 64, 200 } };
+        for (int[] s : sizes) {
+            byte[] img = scene(s[0], s[1]);
+            byte[] got = new byte[img.length];
+            byte[] expected = new byte[img.length];
+            engine.processFrame(img, s[0], s[1], got);
+            new EdgeEngine(new ForkJoinPool(4)).processFrame(img, s[0], s[1], expected);
+            assertArrayEquals(s[0] + "x" + s[1], expected, got);
+        }
+    }
+
+    @Test
+    public void stridedPlanes_matchPackedFrame() {
+        int stride = W + 32;
+        byte[] img = scene(W, H);
+        ByteBuffer y = ByteBuffer.allocateDirect(stride * H);
+        for (int row = 0; row < H; row++) {
+            y.position(row * stride);
+            y.put(img, row * W, W);
+        }
+        y.clear();
+        ByteBuffer out = ByteBuffer.allocateDirect(W * H);
+
+        EdgeEngine engine = new EdgeEngine(new ForkJoinPool(2));
+        assertTrue(engine.processPlanes(y, stride, W, H, out));
+        byte[] viaPlanes = new byte[W * H];
+        out.get(viaPlanes);
+
+        byte[] viaArray = new byte[W * H];
+        engine.processFrame(img, W, H, viaArray);
+        assertArrayEquals(viaArray, viaPlanes);
+    }
+
+    @Test
+    public void grayMode_copiesLuma() {
+        EdgeEngine engine = new EdgeEngine(new ForkJoinPool(1));
+        engine.setMode(EdgeEngine.MODE_GRAY);
+        byte[] img = scene(W, H);
+        byte[] out = new byte[W * H];
+        engine.processFrame(img, W, H, out);
+        assertArrayEquals(img, out);
+    }
+
+    @Test
+    public void undersizedBuffers_areRejected() {
+        EdgeEngine engine = new EdgeEngine(new ForkJoinPool(1));
+        assertFalse(engine.processPlanes(ByteBuffer.allocateDirect(10), W, W, H, ByteBuffer.allocateDirect(W * H)));
+    }
+
+    // Static scene with a small bright square that moves a few pixels per frame.
+    private static byte[] movingSquare(int w, int h, int frame) {
+        byte[] img = scene(w, h);
+        int x0 = 40 + frame * 3, y0 = 50 + frame;
+        for (int y = y0; y < y0 + 20; y++)
+            for (int x = x0; x < x0 + 20; x++) img[y * w + x] = (byte) 230;
+        return img;
+    }
+
+    @Test
+    public void incremental_matchesFullRecompute() {
+        int w = 320, h = 240;
+        ForkJoinPool pool = new ForkJoinPool(3);
+        EdgeEngine full = new EdgeEngine(pool);
+        EdgeEngine inc = new EdgeEngine(pool);
+        inc.setIncremental(true, 0);
+        byte[] expected = new byte[w * h];
+        byte[] actual = new byte[w * h];
+        for (int f = 0; f < 12; f++) {
+            byte[] img = movingSquare(w, h, f);
+            full.processFrame(img, w, h, expected);
+            inc.processFrame(img, w, h, actual);
+            assertArrayEquals("frame " + f, expected, actual);
+            if (f > 0) {
+                assertTrue("frame " + f + " recomputed " + inc.changedTiles() + " tiles",
+                        inc.changedTiles() > 0 && inc.changedTiles() <= 6);
+            }
+        }
+        assertEquals(80, inc.tileCount());
+    }
+
+    @Test
+    public void incremental_unchangedFrameRecomputesNothing() {
+        EdgeEngine inc = new EdgeEngine(new ForkJoinPool(2));
+        inc.setIncremental(true, 0);
+        byte[] img = scene(W, H);
+        byte[] first = new byte[W * H];
+        byte[] second = new byte[W * H];
+        inc.processFrame(img, W, H, first);
+        assertEquals(inc.tileCount(), inc.changedTiles());
+        inc.processFrame(img, W, H, second);
+        assertEquals(0, inc.changedTiles());
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    public void incremental_thresholdChangeForcesFullPass() {
+        int w = 320, h = 240;
+        ForkJoinPool pool = new ForkJoinPool(2);
+        EdgeEngine full = new EdgeEngine(pool);
+        EdgeEngine inc = new EdgeEngine(pool);
+        inc.setIncremental(true, 0);
+        byte[] img = movingSquare(w, h, 0);
+        byte[] expected = new byte[w * h];
+        byte[] actual = new byte[w * h];
+        inc.processFrame(img, w, h, actual);
+        inc.setThresholds(20, 60);
+        full.setThresholds(20, 60);
+        inc.processFrame(img, w, h, actual);
+        full.processFrame(img, w, h, expected);
+        assertEquals(inc.tileCount(), inc.changedTiles());
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void incremental_stridedPlanesMatchFullRecompute() {
+        int w = 320, h = 240, stride = w + 16;
+        ForkJoinPool pool = new ForkJoinPool(2);
+        EdgeEngine full = new EdgeEngine(pool);
+        EdgeEngine inc = new EdgeEngine(pool);
+        inc.setIncremental(true, 0);
+        ByteBuffer y = ByteBuffer.allocateDirect(stride * h);
+        ByteBuffer out = ByteBuffer.allocateDirect(w * h);
+        byte[] expected = new byte[w * h];
+        byte[] actual = new byte[w * h];
+        for (int f = 0; f < 5; f++) {
+            byte[] img = movingSquare(w, h, f);
+            for (int row = 0; row < h; row++) {
+                y.position(row * stride);
+                y.put(img, row * w, w);
+            }
+            y.clear();
+            assertTrue(inc.processPlanes(y, stride, w, h, out));
+            out.clear();
+            out.get(actual);
+            out.clear();
+            full.processFrame(img, w, h, expected);
+            assertArrayEquals("frame " + f, expected, actual);
+        }
+    }
+}
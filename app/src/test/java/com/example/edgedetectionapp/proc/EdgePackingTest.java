@@ -0,0 +1,134 @@
+package com.example.edgedetectionapp.proc;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EdgePackingTest {
+    // Sparse 0/255 map, roughly what Canny produces.
+    private static byte[] edges(int w, int h, double density, long seed) {
+        Random rnd = new Random(seed);
+        byte[] b = new byte[w * h];
+        for (int i = 0; i < b.length; i++) if (rnd.nextDouble() < density) b[i] = (byte) 255;
+        return b;
+    }
+
+    @Test
+    public void packUnpackRoundTripsAtAnyWidth() {
+        for (int w : new int[]{1, 7, 8, 13, 64, 161}) {
+            byte[] in = edges(w, 9, 0.3, w);
+            byte[] packed = new byte[EdgePacking.packedSize(w, 9)];
+            EdgePacking.pack(in, w, 9, packed);
+            byte[] out = new byte[w * 9];
+            EdgePacking.unpack(packed, w, 9, out);
+            assertArrayEquals("width " + w, in, out);
+        }
+    }
+
+    @Test
+    public void packedLayoutIsLsbFirstWithPaddedRows() {
+        byte[] in = new byte[10 * 2];
+        in[0] = (byte) 255;   // row 0, x 0 -> byte 0 bit 0
+        in[9] = (byte) 255;   // row 0, x 9 -> byte 1 bit 1
+        in[13] = 1;           // row 1, x 3 -> byte 2 bit 3; any non-zero counts
+        byte[] packed = new byte[EdgePacking.packedSize(10, 2)];
+        EdgePacking.pack(in, 10, 2, packed);
+        assertArrayEquals(new byte[]{0x01, 0x02, 0x08, 0x00}, packed);
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(packed.length);
+        EdgePacking.pack(in, 10, 2, buf);
+        byte[] viaBuffer = new byte[packed.length];
+        buf.get(viaBuffer);
+        assertArrayEquals(packed, viaBuffer);
+    }
+
+    @Test
+    public void rleRoundTripsAndShrinksSparseMaps() {
+        int w = 157, h = 60;
+        for (double density : new double[]{0, 0.01, 0.5, 1}) {
+            byte[] in = edges(w, h, density, 3);
+            byte[] packed = new byte[EdgePacking.packedSize(w, h)];
+            EdgePacking.pack(in, w, h, packed);
+            byte[] rle = new byte[EdgePacking.rleMaxSize(w, h)];
+            int n = EdgePacking.encodeRle(packed, w, h, rle);
+            if (density == 0 || density == 1) assertTrue("uniform map: " + n + " bytes", n <= 4);
+            if (density == 0.01) assertTrue("sparse map: " + n + " bytes", n < packed.length / 2);
+
+            byte[] decoded = new byte[packed.length];
+            EdgePacking.decodeRle(rle, n, w, h, decoded);
+            assertArrayEquals("density " + density, packed, decoded);
+        }
+    }
+
+    @Test
+    public void rleWorstCaseFitsTheBound() {
+        int w = 33, h = 5;
+        byte[] in = new byte[w * h];
+        for (int i = 0; i < in.length; i += 2) in[i] = (byte) 255;   // leading run of 0s is empty
+        byte[] packed = new byte[EdgePacking.packedSize(w, h)];
+        EdgePacking.pack(in, w, h, packed);
+        byte[] rle = new byte[EdgePacking.rleMaxSize(w, h)];
+        assertEquals(w * h + 1, EdgePacking.encodeRle(packed, w, h, rle));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeRejectsRunsThatDoNotCoverTheFrame() {
+        byte[] rle = {5, 3};
+        EdgePacking.decodeRle(rle, rle.length, 4, 4, new byte[EdgePacking.packedSize(4, 4)]);
+    }
+
+    @Test
+    public void cannyFusesWithPackAndMatchesPackingItsOutput() {
+        int w = 157, h = 120;
+        byte[] in = EdgeEngineTest.scene(w, h);
+        FramePipeline plain = new FramePipeline.Builder().canny(100, 200).build();
+        byte[] expected = new byte[w * h];
+        plain.processFrame(in, w, h, expected);
+        byte[] expectedPacked = new byte[EdgePacking.packedSize(w, h)];
+        EdgePacking.pack(expected, w, h, expectedPacked);
+
+        FramePipeline packed = new FramePipeline.Builder().canny(100, 200).pack().build();
+        assertEquals("canny + pack fuse", 1, packed.stageCount());
+        assertEquals(FrameProcessor.FORMAT_PACKED, packed.outputFormat());
+        assertEquals(expectedPacked.length, packed.outputBytes(w, h));
+        byte[] out = new byte[expectedPacked.length];
+        packed.processFrame(in, w, h, out);
+        assertArrayEquals(expectedPacked, out);
+
+        // Strided plane straight into a direct buffer takes the fused Direct path.
+        int stride = w + 11;
+        ByteBuffer y = ByteBuffer.allocateDirect(stride * h);
+        for (int row = 0; row < h; row++) {
+            y.position(row * stride);
+            y.put(in, row * w, w);
+        }
+        ByteBuffer dst = ByteBuffer.allocateDirect(expectedPacked.length);
+        assertTrue(packed.processPlanes(y, stride, w, h, dst));
+        byte[] direct = new byte[expectedPacked.length];
+        dst.get(direct);
+        assertArrayEquals(expectedPacked, direct);
+        assertEquals(FrameProcessor.FORMAT_PACKED, packed.lastOutputFormat());
+    }
+
+    @Test
+    public void packAfterOtherStagesRunsAsItsOwnStage() {
+        int w = 64, h = 48;
+        byte[] in = EdgeEngineTest.scene(w, h);
+        FramePipeline p = new FramePipeline.Builder().downscale(2).sobel().threshold(80).pack().build();
+        byte[] unpacked = new byte[(w / 2) * (h / 2)];
+        new FramePipeline.Builder().downscale(2).sobel().threshold(80).build().processFrame(in, w, h, unpacked);
+        byte[] out = new byte[p.outputBytes(w, h)];
+        p.processFrame(in, w, h, out);
+        byte[] back = new byte[unpacked.length];
+        EdgePacking.unpack(out, w / 2, h / 2, back);
+        assertArrayEquals(unpacked, back);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stagesAfterPackAreRejected() {
+        new FramePipeline.Builder().canny(100, 200).pack().dilate(1).build();
+    }
+}
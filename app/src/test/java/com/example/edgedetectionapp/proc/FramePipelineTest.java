@@ -0,0 +1,174 @@
+package com.example.edgedetectionapp.proc;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class FramePipelineTest {
+    private static final int W = 160, H = 120;
+
+    private static byte[] run(FramePipeline p, byte[] in) {
+        byte[] out = new byte[p.outputWidth(W) * p.outputHeight(H)];
+        assertTrue(p.processFrame(in, W, H, out));
+        return out;
+    }
+
+    // Runs each stage by hand, with no skipping or fusing.
+    private static byte[] runUnfused(byte[] in, FrameProcessor... stages) {
+        Scratch scratch = new Scratch();
+        byte[] cur = in;
+        int w = W, h = H;
+        for (FrameProcessor s : stages) {
+            byte[] next = new byte[s.outputWidth(w) * s.outputHeight(h)];
+            s.process(cur, w, h, next, scratch);
+            cur = next;
+            w = s.outputWidth(w);
+            h = s.outputHeight(h);
+        }
+        return cur;
+    }
+
+    @Test
+    public void emptyAndGrayscalePipelinesPassLumaThrough() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        FramePipeline p = new FramePipeline.Builder().grayscale().build();
+        assertEquals(0, p.stageCount());
+        assertArrayEquals(in, run(p, in));
+    }
+
+    @Test
+    public void cannyStageMatchesEdgeEngine() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        byte[] expected = new byte[W * H];
+        new EdgeEngine(pool).processFrame(in, W, H, expected);
+        FramePipeline p = new FramePipeline.Builder().grayscale().canny(pool, 100, 200).build();
+        assertEquals(1, p.stageCount());
+        assertArrayEquals(expected, run(p, in));
+    }
+
+    @Test
+    public void undersizedArraysAreRejected() {
+        FramePipeline p = new FramePipeline.Builder().downscale(2).canny(50, 100).build();
+        byte[] in = EdgeEngineTest.scene(W, H);
+        assertFalse(p.processFrame(in, W, H, new byte[W / 2 * H / 2 - 1]));
+        assertFalse(p.processFrame(new byte[W * H - 1], W, H, new byte[W * H]));
+        assertFalse(new FramePipeline().processFrame(in, W, H, new byte[W]));
+        assertTrue(p.processFrame(in, W, H, new byte[W / 2 * H / 2]));
+    }
+
+    @Test
+    public void thresholdAfterCannyIsSkipped() {
+        FramePipeline p = new FramePipeline.Builder().canny(50, 100).threshold(128).build();
+        assertEquals(1, p.stageCount());
+        assertEquals(FrameProcessor.FORMAT_BINARY, p.outputFormat());
+    }
+
+    @Test
+    public void sobelThresholdFusionMatchesSeparateStages() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        FramePipeline p = new FramePipeline.Builder().blur().sobel().threshold(60).build();
+        assertEquals(2, p.stageCount());
+        byte[] expected = runUnfused(in, FrameStages.blur(), FrameStages.sobel(), FrameStages.threshold(60));
+        assertArrayEquals(expected, run(p, in));
+    }
+
+    @Test
+    public void repeatedDilationsFuseIntoOneWiderDilation() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        FramePipeline p = new FramePipeline.Builder().dilate(1).dilate(2).erode(1).build();
+        assertEquals(2, p.stageCount());
+        FrameProcessor d1 = FrameStages.morphology(FrameStages.MORPH_DILATE, 1);
+        FrameProcessor d2 = FrameStages.morphology(FrameStages.MORPH_DILATE, 2);
+        FrameProcessor e1 = FrameStages.morphology(FrameStages.MORPH_ERODE, 1);
+        assertArrayEquals(runUnfused(in, d1, d2, e1), run(p, in));
+    }
+
+    @Test
+    public void downscaleShrinksOutput() {
+        byte[] in = new byte[W * H];
+        java.util.Arrays.fill(in, (byte) 77);
+        FramePipeline p = new FramePipeline.Builder().downscale(2).build();
+        assertEquals(W / 2, p.outputWidth(W));
+        assertEquals(H / 2, p.outputHeight(H));
+        byte[] out = run(p, in);
+        assertEquals(W / 2 * (H / 2), out.length);
+        for (byte b : out) assertEquals(77, b);
+    }
+
+    @Test
+    public void stridedPlanesMatchPackedFrame() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        int stride = W + 24;
+        ByteBuffer y = ByteBuffer.allocateDirect(stride * H);
+        for (int row = 0; row < H; row++) {
+            y.position(row * stride);
+            y.put(in, row * W, W);
+        }
+        y.clear();
+        FramePipeline p = new FramePipeline.Builder().blur().sobel().downscale(2).build();
+        ByteBuffer out = ByteBuffer.allocateDirect(p.outputWidth(W) * p.outputHeight(H));
+        assertTrue(p.processPlanes(y, stride, W, H, out));
+        byte[] got = new byte[out.capacity()];
+        out.get(got);
+        assertArrayEquals(run(p, in), got);
+    }
+
+    @Test
+    public void downscaleReadsStridedPlaneDirectly() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        int stride = W + 40;
+        ByteBuffer y = ByteBuffer.allocateDirect(stride * H);
+        for (int row = 0; row < H; row++) {
+            y.position(row * stride);
+            y.put(in, row * W, W);
+        }
+        y.clear();
+        FramePipeline p = new FramePipeline.Builder().downscale(4).canny(30, 60).build();
+        ByteBuffer out = ByteBuffer.allocateDirect(p.outputWidth(W) * p.outputHeight(H));
+        assertTrue(p.processPlanes(y, stride, W, H, out));
+        byte[] got = new byte[out.capacity()];
+        out.get(got);
+        assertArrayEquals(run(p, in), got);
+    }
+
+    @Test
+    public void contourStageEmitsPolylinesFarSmallerThanTheMap() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        FramePipeline p = new FramePipeline.Builder().canny(50, 100).contours(1.5f, 4).build();
+        assertEquals(FrameProcessor.FORMAT_POLYLINES, p.outputFormat());
+        ByteBuffer out = ByteBuffer.allocateDirect(p.outputBytes(W, H));
+        assertTrue(p.processPlanes(ByteBuffer.wrap(in), W, W, H, out));
+        int length = EdgePolylines.encodedLength(out);
+        assertTrue("encoded " + length + " bytes", length > EdgePolylines.HEADER_BYTES && length < W * H / 8);
+
+        EdgePolylines lines = new EdgePolylines();
+        lines.decode(out, length);
+        assertEquals(W, lines.width());
+        assertTrue(lines.count() > 0);
+        byte[] edges = run(new FramePipeline.Builder().canny(50, 100).build(), in);
+        for (int i = 0; i < lines.pointCount(); i++)
+            assertNotEquals("vertex off the edge map", 0, edges[lines.y(i) * W + lines.x(i)]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nothingFollowsContours() {
+        new FramePipeline.Builder().canny(50, 100).contours(1f, 2).dilate(1).build();
+    }
+
+    @Test
+    public void reconfiguringDoesNotChangeResultsOfEitherPlan() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        FrameProcessor[] edges = new FramePipeline.Builder().blur().sobel().threshold(80).stages();
+        FrameProcessor[] gray = new FramePipeline.Builder().grayscale().stages();
+        FramePipeline p = new FramePipeline(edges);
+        byte[] first = run(p, in);
+        p.setStages(gray);
+        assertArrayEquals(in, run(p, in));
+        p.setStages(edges);
+        assertArrayEquals(first, run(p, in));
+    }
+}
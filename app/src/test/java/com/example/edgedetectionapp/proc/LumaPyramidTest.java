@@ -0,0 +1,90 @@
+package com.example.edgedetectionapp.proc;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LumaPyramidTest {
+    // Odd sizes, so every level truncates.
+    private static final int W = 203, H = 117, STRIDE = 224;
+
+    private static byte[] noise() {
+        byte[] img = new byte[W * H];
+        new Random(5).nextBytes(img);
+        return img;
+    }
+
+    private static ByteBuffer strided(byte[] img) {
+        ByteBuffer y = ByteBuffer.allocateDirect(STRIDE * H);
+        for (int row = 0; row < H; row++) {
+            y.position(row * STRIDE);
+            y.put(img, row * W, W);
+        }
+        y.clear();
+        return y;
+    }
+
+    @Test
+    public void levelsMatchTheDownscaleStage() {
+        byte[] img = noise();
+        LumaPyramid fromPlane = new LumaPyramid(), fromArray = new LumaPyramid();
+        assertTrue(fromPlane.setFrame(strided(img), STRIDE, W, H));
+        fromArray.setFrame(img, W, H);
+        for (int level = 1; level < LumaPyramid.LEVELS; level++) {
+            FramePipeline down = new FramePipeline(FrameStages.downscale(1 << level));
+            byte[] expected = new byte[down.outputBytes(W, H)];
+            down.processFrame(img, W, H, expected);
+            assertEquals(W >> level, fromPlane.width(level));
+            assertArrayEquals("level " + level, expected, Arrays.copyOf(fromPlane.level(level), expected.length));
+            assertArrayEquals("level " + level, expected, Arrays.copyOf(fromArray.level(level), expected.length));
+        }
+        assertArrayEquals(img, Arrays.copyOf(fromPlane.level(0), W * H));
+        assertSame(img, fromArray.level(0));
+    }
+
+    @Test
+    public void levelsAreBuiltOnDemandAndOncePerFrame() {
+        LumaPyramid pyramid = new LumaPyramid();
+        pyramid.setFrame(strided(noise()), STRIDE, W, H);
+        pyramid.level(2);
+        assertEquals("1/2 and 1/4, not the full level", 2, pyramid.builds());
+        pyramid.level(2);
+        pyramid.level(1);
+        assertEquals(2, pyramid.builds());
+        pyramid.level(0);
+        assertEquals(3, pyramid.builds());
+        pyramid.setFrame(strided(noise()), STRIDE, W, H);
+        pyramid.level(1);
+        assertEquals(4, pyramid.builds());
+        assertFalse(pyramid.setFrame(ByteBuffer.allocateDirect(W), W, W, H));
+    }
+
+    @Test
+    public void pipelinesReadTheirScaleFromTheSharedPyramid() {
+        byte[] img = EdgeEngineTest.scene(W, H);
+        ByteBuffer plane = strided(img);
+        FramePipeline[] pipelines = {
+                new FramePipeline.Builder().downscale(4).canny(50, 100).pack().build(),
+                new FramePipeline.Builder().downscale(2).grayscale().build(),
+                new FramePipeline.Builder().downscale(3).blur().sobel().build(),
+                new FramePipeline.Builder().canny(50, 100).build(),
+                new FramePipeline(),
+        };
+        LumaPyramid pyramid = new LumaPyramid();
+        pyramid.setFrame(plane, STRIDE, W, H);
+        for (FramePipeline p : pipelines) {
+            ByteBuffer expected = ByteBuffer.allocate(p.outputBytes(W, H));
+            assertTrue(p.processPlanes(plane, STRIDE, W, H, expected));
+            ByteBuffer got = ByteBuffer.allocate(p.outputBytes(W, H));
+            assertTrue(p.processPyramid(pyramid, got));
+            assertArrayEquals(expected.array(), got.array());
+            assertEquals(p.outputWidth(W), p.lastOutputWidth());
+        }
+        // 1/2 and 1/4 for the power-of-two downscales, the full level for the rest.
+        assertEquals(3, pyramid.builds());
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.edgedetectionapp.proc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResolutionControllerTest {
+    private static final long BUDGET = 33_000_000L;
+
+    // Simulates a device whose full-resolution cost is fullNs; each level
+    // quarters the pixel count and so the cost.
+    private static void feed(ResolutionController c, long fullNs, int frames) {
+        for (int i = 0; i < frames; i++) {
+            int f = c.factor();
+            c.onFrame(fullNs / ((long) f * f));
+        }
+    }
+
+    @Test
+    public void staysAtFullResolutionWithinBudget() {
+        ResolutionController c = new ResolutionController(BUDGET);
+        feed(c, 20_000_000L, 200);
+        assertEquals(1, c.factor());
+    }
+
+    @Test
+    public void stepsDownUnderSustainedOverload() {
+        ResolutionController c = new ResolutionController(BUDGET);
+        feed(c, 60_000_000L, 50);
+        assertEquals(2, c.factor());
+        feed(c, 400_000_000L, 50);
+        assertEquals(4, c.factor());
+        feed(c, 4_000_000_000L, 50);
+        assertEquals("never below the last level", 4, c.factor());
+    }
+
+    @Test
+    public void singleSpikeDoesNotSwitch() {
+        ResolutionController c = new ResolutionController(BUDGET);
+        feed(c, 20_000_000L, 20);
+        c.onFrame(90_000_000L);
+        feed(c, 20_000_000L, 20);
+        assertEquals(1, c.factor());
+    }
+
+    @Test
+    public void doesNotFlapAroundTheBudget() {
+        ResolutionController c = new ResolutionController(BUDGET);
+        // 40 ms at full res is over budget, 10 ms at half res is cheap, but
+        // stepping back up would predict 40 ms again, so it must stay down.
+        int switches = 0;
+        for (int i = 0; i < 1000; i++) {
+            int f = c.factor();
+            if (c.onFrame(40_000_000L / ((long) f * f))) switches++;
+        }
+        assertEquals(1, switches);
+        assertEquals(2, c.factor());
+    }
+
+    @Test
+    public void recoversWhenLoadGoesAway() {
+        ResolutionController c = new ResolutionController(BUDGET);
+        feed(c, 200_000_000L, 100);
+        assertEquals(4, c.factor());
+        feed(c, 8_000_000L, ResolutionController.UP_AFTER * 4);
+        assertEquals(1, c.factor());
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.edgedetectionapp.proc;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RoiPipelineTest {
+    private static final int W = 160, H = 120;
+
+    private static byte[] full(FrameProcessor[] stages, byte[] in) {
+        FramePipeline p = new FramePipeline(stages);
+        byte[] out = new byte[p.outputBytes(W, H)];
+        p.processFrame(in, W, H, out);
+        return out;
+    }
+
+    // Every region block must equal the same rectangle of the full-frame output.
+    private static void assertRegionsMatch(RoiPipeline roi, byte[] regionsOut, byte[] fullOut) {
+        int[] r = roi.lastRegions();
+        int ow = roi.lastOutputWidth();
+        int offset = 0;
+        for (int i = 0; i < roi.lastRegionCount(); i++) {
+            int x = r[i * 4], y = r[i * 4 + 1], w = r[i * 4 + 2], h = r[i * 4 + 3];
+            for (int row = 0; row < h; row++)
+                for (int col = 0; col < w; col++)
+                    assertEquals("region " + i + " at " + (x + col) + "," + (y + row),
+                            fullOut[(y + row) * ow + x + col], regionsOut[offset + row * w + col]);
+            offset += w * h;
+        }
+    }
+
+    @Test
+    public void localStagesMatchTheFullFrameInsideEachRegion() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        FrameProcessor[] stages = new FramePipeline.Builder().blur().sobel().threshold(60).dilate(1).stages();
+        RoiPipeline roi = new RoiPipeline(stages);
+        // Interior, touching the top-left corner, and running off the bottom-right.
+        roi.setRois(40, 30, 33, 21, 0, 0, 20, 12, 130, 100, 50, 50);
+        byte[] out = new byte[roi.outputBytes(W, H)];
+        assertTrue(roi.processFrame(in, W, H, out));
+        assertEquals(3, roi.lastRegionCount());
+        assertEquals(33 * 21 + 20 * 12 + 30 * 20, out.length);
+        assertRegionsMatch(roi, out, full(stages, in));
+    }
+
+    @Test
+    public void regionsSnapToTheDownscaleGrid() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        FrameProcessor[] stages = new FramePipeline.Builder().downscale(2).blur().sobel().stages();
+        RoiPipeline roi = new RoiPipeline(stages);
+        roi.setRois(41, 31, 30, 20);
+        assertEquals(1, roi.layout(W, H));
+        assertArrayEquals(new int[] {20, 15, 16, 11}, Arrays.copyOf(roi.lastRegions(), 4));
+        byte[] out = new byte[roi.outputBytes(W, H)];
+        assertTrue(roi.processFrame(in, W, H, out));
+        assertArrayEquals(new int[] {20, 15, 16, 11}, Arrays.copyOf(roi.lastRegions(), 4));
+        assertEquals(W / 2, roi.lastOutputWidth());
+        assertRegionsMatch(roi, out, full(stages, in));
+    }
+
+    @Test
+    public void cannyMatchesTheFullFrameOnAStridedPlane() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        FrameProcessor[] stages = new FramePipeline.Builder().canny(50, 100).stages();
+        int stride = W + 16;
+        ByteBuffer y = ByteBuffer.allocateDirect(stride * H);
+        for (int row = 0; row < H; row++) {
+            y.position(row * stride);
+            y.put(in, row * W, W);
+        }
+        y.clear();
+        RoiPipeline roi = new RoiPipeline(stages);
+        roi.setRois(24, 16, 64, 48);
+        ByteBuffer out = ByteBuffer.allocateDirect(roi.outputBytes(W, H));
+        assertTrue(roi.processPlanes(y, stride, W, H, out));
+        byte[] got = new byte[out.capacity()];
+        out.get(got);
+        assertRegionsMatch(roi, got, full(stages, in));
+    }
+
+    @Test
+    public void packedRegionsAlignToWholeBytes() {
+        byte[] in = EdgeEngineTest.scene(W, H);
+        RoiPipeline roi = new RoiPipeline(new FramePipeline.Builder().blur().sobel().threshold(60).pack().stages());
+        assertEquals(FrameProcessor.FORMAT_PACKED, roi.outputFormat());
+        roi.setRois(13, 10, 20, 9);
+        byte[] out = new byte[roi.outputBytes(W, H)];
+        assertTrue(roi.processFrame(in, W, H, out));
+        int[] r = roi.lastRegions();
+        assertEquals(8, r[0]);
+        assertEquals(32, r[2]);
+        assertEquals(EdgePacking.packedSize(32, 9), out.length);
+
+        byte[] unpacked = new byte[32 * 9];
+        EdgePacking.unpack(out, 32, 9, unpacked);
+        byte[] fullOut = full(new FramePipeline.Builder().blur().sobel().threshold(60).stages(), in);
+        for (int row = 0; row < 9; row++)
+            for (int col = 0; col < 32; col++)
+                assertEquals(fullOut[(10 + row) * W + 8 + col], unpacked[row * 32 + col]);
+    }
+
+    @Test
+    public void workAndOutputScaleWithTheRegions() {
+        RoiPipeline roi = new RoiPipeline(new FramePipeline.Builder().canny(50, 100).pack().stages());
+        roi.setRois(0, 0, 1920 / 4, 1080 / 4);
+        int quarter = roi.outputBytes(1920, 1080);
+        assertEquals(EdgePacking.packedSize(1920, 1080) / 16, quarter);
+        roi.setRois();
+        assertFalse(roi.hasRois());
+        assertEquals(0, roi.outputBytes(1920, 1080));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void polylinesAreRejected() {
+        new RoiPipeline(new FramePipeline.Builder().canny(50, 100).contours(1f, 2).stages());
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.edgedetectionapp.stream;
+
+import com.example.edgedetectionapp.proc.EdgePacking;
+import com.example.edgedetectionapp.proc.EdgePolylines;
+import com.example.edgedetectionapp.proc.FrameProcessor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EdgeStreamServerTest {
+    private static final int W = 64, H = 48;
+
+    private EdgeStreamServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new EdgeStreamServer(0);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void acceptKey_matchesRfcExample() {
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", WebSockets.acceptKey("dGhlIHNhbXBsZSBub25jZQ=="));
+    }
+
+    @Test
+    public void plainGet_returnsStatusPage() throws IOException {
+        try (Socket s = new Socket("127.0.0.1", server.port())) {
+            s.getOutputStream().write("GET / HTTP/1.1\r\nHost: x\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            String response = readAll(s.getInputStream());
+            assertTrue(response, response.startsWith("HTTP/1.1 200"));
+            assertTrue(response, response.contains("clients: 0"));
+        }
+    }
+
+    @Test
+    public void polylineFrames_arriveAsTheirWireForm() throws Exception {
+        EdgePolylines lines = new EdgePolylines();
+        lines.reset(W, H);
+        lines.begin();
+        lines.add(1, 2);
+        lines.add(40, 30);
+        lines.add(63, 0);
+        lines.end();
+        ByteBuffer frame = ByteBuffer.allocateDirect(W * H);
+        byte[] wire = new byte[lines.encodedSize()];
+        lines.encode(wire);
+        frame.put(wire).clear();
+
+        try (Socket s = connect()) {
+            server.publish(frame, FrameProcessor.FORMAT_POLYLINES, W, H, 0, System.nanoTime());
+            byte[] msg = readMessage(new DataInputStream(s.getInputStream()));
+            assertEquals(EdgeStreamServer.ENCODING_POLYLINES, msg[1]);
+            assertEquals(EdgeStreamServer.HEADER_BYTES + wire.length, msg.length);
+            EdgePolylines got = new EdgePolylines();
+            got.decode(ByteBuffer.wrap(msg, EdgeStreamServer.HEADER_BYTES, wire.length).slice(), wire.length);
+            assertEquals(3, got.pointCount());
+            assertEquals(40, got.x(1));
+        }
+    }
+
+    @Test
+    public void edgeFrames_arriveAsDecodableRle() throws Exception {
+        byte[] binary = new byte[W * H];
+        Random rnd = new Random(7);
+        for (int i = 0; i < binary.length; i++) binary[i] = (byte) (rnd.nextInt(10) == 0 ? 255 : 0);
+
+        try (Socket s = connect()) {
+            long captured = System.nanoTime();
+            server.publish(binary, FrameProcessor.FORMAT_BINARY, W, H, 90, captured);
+            byte[] msg = readMessage(new DataInputStream(s.getInputStream()));
+
+            assertEquals(EdgeStreamServer.VERSION, msg[0]);
+            assertEquals(EdgeStreamServer.ENCODING_EDGES_RLE, msg[1]);
+            assertEquals(90, le(msg, 2, 2));
+            assertEquals(1, le(msg, 4, 4));
+            assertEquals(W, le(msg, 8, 4));
+            assertEquals(H, le(msg, 12, 4));
+
+            byte[] packed = new byte[EdgePacking.packedSize(W, H)];
+            int rleLength = msg.length - EdgeStreamServer.HEADER_BYTES;
+            byte[] rle = new byte[rleLength];
+            System.arraycopy(msg, EdgeStreamServer.HEADER_BYTES, rle, 0, rleLength);
+            EdgePacking.decodeRle(rle, rleLength, W, H, packed);
+            byte[] unpacked = new byte[W * H];
+            EdgePacking.unpack(packed, W, H, unpacked);
+            assertArrayEquals(binary, unpacked);
+        }
+    }
+
+    @Test
+    public void lumaFrames_arriveRaw() throws Exception {
+        byte[] luma = new byte[W * H];
+        for (int i = 0; i < luma.length; i++) luma[i] = (byte) i;
+        try (Socket s = connect()) {
+            server.publish(luma, FrameProcessor.FORMAT_LUMA, W, H, 0, System.nanoTime());
+            byte[] msg = readMessage(new DataInputStream(s.getInputStream()));
+            assertEquals(EdgeStreamServer.ENCODING_LUMA, msg[1]);
+            assertEquals(EdgeStreamServer.HEADER_BYTES + W * H, msg.length);
+            assertEquals(luma[100], msg[EdgeStreamServer.HEADER_BYTES + 100]);
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void stalledClient_neverBlocksPublish() throws Exception {
+        int w = 640, h = 480;
+        byte[] luma = new byte[w * h];
+        try (Socket stalled = connect(); Socket live = connect()) {
+            // The stalled client never reads, so its socket buffers fill up
+            // and its sender thread blocks in write().
+            assertTrue(stalled.isConnected());
+            DataInputStream in = new DataInputStream(live.getInputStream());
+            long start = System.nanoTime();
+            for (int i = 0; i < 500; i++) {
+                server.publish(luma, FrameProcessor.FORMAT_LUMA, w, h, 0, System.nanoTime());
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            assertTrue("publish took " + elapsedMs + " ms", elapsedMs < 5000);
+            assertTrue(server.skipped() > 0);
+
+            // The reading client still gets frames, ending on the newest.
+            int last = 0;
+            while (last < 500) last = le(readMessage(in), 4, 4);
+            assertEquals(500, last);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void pingIsAnsweredWithPong() throws Exception {
+        try (Socket s = connect()) {
+            writeMasked(s.getOutputStream(), WebSockets.OP_PING, new byte[] {1, 2, 3});
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            assertEquals(0x80 | WebSockets.OP_PONG, in.readUnsignedByte());
+            assertEquals(3, in.readUnsignedByte());
+            byte[] payload = new byte[3];
+            in.readFully(payload);
+            assertArrayEquals(new byte[] {1, 2, 3}, payload);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void closeIsEchoedAndDropsTheClient() throws Exception {
+        try (Socket s = connect()) {
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            server.publish(new byte[W * H], FrameProcessor.FORMAT_LUMA, W, H, 0, System.nanoTime());
+            readMessage(in);
+            writeMasked(s.getOutputStream(), WebSockets.OP_CLOSE, new byte[] {0x03, (byte) 0xE8});
+            assertEquals(0x80 | WebSockets.OP_CLOSE, in.readUnsignedByte());
+            assertEquals(2, in.readUnsignedByte());
+            assertEquals(1000, in.readUnsignedShort());
+            assertEquals(-1, in.read());
+            while (server.clientCount() > 0) Thread.sleep(1);
+            assertEquals("the frame went back to the pool", 1, server.pooledMessages());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void disconnectedClientIsDropped() throws Exception {
+        Socket s = connect();
+        s.close();
+        while (server.clientCount() > 0) Thread.sleep(1);
+    }
+
+    @Test
+    public void readFrame_rejectsBadLengthsAndFragmentedControlFrames() throws IOException {
+        WebSockets.Frame f = new WebSockets.Frame(4096);
+        byte[][] bad = {
+                // PING with a 64-bit length of 2^63: negative as a long.
+                {(byte) 0x89, (byte) 0xFF, (byte) 0x80, 0, 0, 0, 0, 0, 0, 0},
+                // PING with 126 bytes, over the control frame limit.
+                {(byte) 0x89, 0x7E, 0, 126},
+                // CLOSE without FIN.
+                {0x08, 0x00},
+        };
+        for (byte[] frame : bad) {
+            try {
+                WebSockets.readFrame(new ByteArrayInputStream(frame), f);
+                fail("accepted " + Arrays.toString(frame));
+            } catch (IOException expected) {
+            }
+        }
+        assertTrue(WebSockets.readFrame(new ByteArrayInputStream(new byte[] {(byte) 0x89, 1, 7}), f));
+        assertEquals(WebSockets.OP_PING, f.opcode);
+        assertEquals(1, f.length);
+    }
+
+    @Test(timeout = 10000)
+    public void malformedFrameDropsOnlyThatClient() throws Exception {
+        Socket bad = connect();
+        OutputStream out = bad.getOutputStream();
+        out.write(new byte[] {(byte) 0x89, (byte) 0xFF, (byte) 0x80, 0, 0, 0, 0, 0, 0, 0});
+        out.flush();
+        assertEquals(-1, bad.getInputStream().read());
+        bad.close();
+        while (server.clientCount() > 0) Thread.sleep(1);
+        try (Socket s = connect()) {
+            writeMasked(s.getOutputStream(), WebSockets.OP_PING, new byte[0]);
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            assertEquals(0x80 | WebSockets.OP_PONG, in.readUnsignedByte());
+            assertEquals(0, in.readUnsignedByte());
+        }
+    }
+
+    // Client frames are masked (RFC 6455 5.3).
+    private static void writeMasked(OutputStream out, int opcode, byte[] payload) throws IOException {
+        byte[] mask = {0x37, (byte) 0xFA, 0x21, 0x3D};
+        out.write(0x80 | opcode);
+        out.write(0x80 | payload.length);
+        out.write(mask);
+        for (int i = 0; i < payload.length; i++) out.write(payload[i] ^ mask[i & 3]);
+        out.flush();
+    }
+
+    private Socket connect() throws Exception {
+        int before = server.clientCount();
+        Socket s = new Socket("127.0.0.1", server.port());
+        OutputStream out = s.getOutputStream();
+        out.write(("GET /stream HTTP/1.1\r\nHost: x\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        String headers = readHeaders(s.getInputStream());
+        assertTrue(headers, headers.startsWith("HTTP/1.1 101"));
+        assertTrue(headers, headers.contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo="));
+        while (server.clientCount() == before) Thread.sleep(1);
+        return s;
+    }
+
+    private static byte[] readMessage(DataInputStream in) throws IOException {
+        int b0 = in.readUnsignedByte();
+        assertEquals(0x80 | WebSockets.OP_BINARY, b0);
+        long len = in.readUnsignedByte();
+        if (len == 126) len = in.readUnsignedShort();
+        else if (len == 127) len = in.readLong();
+        byte[] msg = new byte[(int) len];
+        in.readFully(msg);
+        return msg;
+    }
+
+    private static int le(byte[] b, int off, int n) {
+        int v = 0;
+        for (int i = n - 1; i >= 0; i--) v = v << 8 | (b[off + i] & 0xFF);
+        return v;
+    }
+
+    private static String readHeaders(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (!sb.toString().endsWith("\r\n\r\n")) {
+            int c = in.read();
+            if (c < 0) break;
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        for (int n; (n = in.read(buf)) > 0; ) out.write(buf, 0, n);
+        return out.toString("US-ASCII");
+    }
+}
@@ -0,0 +1,38 @@
+// Headless batch runner: edge maps for image directories and raw YUV files.
+//
+// Like :benchmarks, it compiles the Android-free packages of :app (frame/,
+// proc/, metrics/, exec/) straight from the app's source tree, so offline
+// results come from exactly the code the app ships.
+//
+//   ./gradlew :batch:run --args="--out edges/ photos/"
+//   ./gradlew :batch:run --args="--out edges/ --size 1920x1080 capture.nv21"
+plugins {
+    java
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("src/main/java", "../app/src/main/java"))
+            include("com/example/edgedetectionapp/batch/**")
+            include("com/example/edgedetectionapp/frame/**")
+            include("com/example/edgedetectionapp/proc/**")
+            include("com/example/edgedetectionapp/metrics/**")
+            include("com/example/edgedetectionapp/exec/**")
+        }
+    }
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+application {
+    mainClass.set("com.example.edgedetectionapp.batch.BatchRunner")
+}
@@ -0,0 +1,278 @@
+package com.example.edgedetectionapp.batch;
+
+import com.example.edgedetectionapp.exec.StagedExecutor;
+import com.example.edgedetectionapp.proc.FramePipeline;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Headless edge detection over files, using the app's pipeline.
+ *
+ * Inputs are JPEG/PNG images, raw NV21 dumps (.nv21/.yuv, size from --size
+ * or a "1920x1080" in the file name), Y4M videos and the app's own frame
+ * recordings (.edgerec, replayed at full speed); directories are walked.
+ * Raw files are memory-mapped, so the reader only touches the Y plane of
+ * each frame. Frames go through a {@link StagedExecutor} with one pipeline
+ * per worker and the BLOCK policy, which keeps at most queue + threads
+ * frames in memory however large the inputs are. Images come out as
+ * {@code <name>_edges.png}, videos as a mono {@code <name>_edges.y4m} in the
+ * original frame order.
+ */
+public final class BatchRunner {
+    static final String USAGE = "usage: BatchRunner --out DIR [--threads N] [--queue N] [--size WxH]"
+            + " [--low N] [--high N] [--downscale N] INPUT...";
+
+    static final int IMAGE = 0;
+    static final int NV21 = 1;
+    static final int Y4M = 2;
+    static final int RECORDING = 3;
+
+    private static final Pattern SIZE = Pattern.compile("(\\d+)x(\\d+)");
+
+    static final class Options {
+        Path out;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queue = -1;   // defaults to threads
+        int width, height;
+        int low = 100, high = 200;
+        int downscale = 1;
+        final List<Path> inputs = new ArrayList<>();
+
+        static Options parse(String... args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                if (!a.startsWith("--")) {
+                    o.inputs.add(Paths.get(a));
+                    continue;
+                }
+                if (i + 1 == args.length) throw new IllegalArgumentException(a + " needs a value");
+                String v = args[++i];
+                switch (a) {
+                    case "--out": o.out = Paths.get(v); break;
+                    case "--threads": o.threads = positive(a, v); break;
+                    case "--queue": o.queue = positive(a, v); break;
+                    case "--low": o.low = positive(a, v); break;
+                    case "--high": o.high = positive(a, v); break;
+                    case "--downscale": o.downscale = positive(a, v); break;
+                    case "--size": {
+                        Matcher m = SIZE.matcher(v);
+                        if (!m.matches()) throw new IllegalArgumentException("--size wants WxH, got " + v);
+                        o.width = Integer.parseInt(m.group(1));
+                        o.height = Integer.parseInt(m.group(2));
+                        break;
+                    }
+                    default: throw new IllegalArgumentException("unknown option " + a);
+                }
+            }
+            if (o.out == null) throw new IllegalArgumentException("--out is required");
+            if (o.inputs.isEmpty()) throw new IllegalArgumentException("no inputs");
+            if (o.queue < 0) o.queue = o.threads;
+            return o;
+        }
+
+        private static int positive(String name, String value) {
+            try {
+                int n = Integer.parseInt(value);
+                if (n > 0) return n;
+            } catch (NumberFormatException ignored) {
+            }
+            throw new IllegalArgumentException(name + " wants a positive number, got " + value);
+        }
+    }
+
+    /** One input file and where its edges go. */
+    static final class Task {
+        final Path input, output;
+        final int kind;
+        String rate = "30:1";
+        EdgeMapWriter video;   // opened on the first delivered frame
+        volatile IOException error;
+
+        Task(Path input, Path output, int kind) {
+            this.input = input;
+            this.output = output;
+            this.kind = kind;
+        }
+    }
+
+    static final class Report {
+        final long frames, failed, pixels, nanos;
+
+        Report(long frames, long failed, long pixels, long nanos) {
+            this.frames = frames;
+            this.failed = failed;
+            this.pixels = pixels;
+            this.nanos = nanos;
+        }
+
+        double fps() { return nanos == 0 ? 0 : frames * 1e9 / nanos; }
+
+        @Override
+        public String toString() {
+            double s = nanos / 1e9;
+            return String.format(Locale.US, "%d frames, %d failed in %.2f s: %.1f fps, %.1f Mpixel/s",
+                    frames, failed, s, fps(), s == 0 ? 0 : pixels / s / 1e6);
+        }
+    }
+
+    private BatchRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        Options o;
+        try {
+            o = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        Report r = run(o);
+        System.out.println(r);
+        if (r.failed > 0) System.exit(1);
+    }
+
+    static Report run(Options o) throws IOException, InterruptedException {
+        List<Task> tasks = collect(o);
+        AtomicLong errors = new AtomicLong();
+        // The factory runs inside the constructor, on this thread.
+        List<ForkJoinPool> pools = new ArrayList<>();
+        StagedExecutor ex = new StagedExecutor(o.threads, o.queue, StagedExecutor.BLOCK, worker -> {
+            // Frames already run in parallel, so each worker's Canny stays on one thread.
+            ForkJoinPool pool = new ForkJoinPool(1);
+            pools.add(pool);
+            FramePipeline.Builder b = new FramePipeline.Builder();
+            if (o.downscale > 1) b.downscale(o.downscale);
+            FramePipeline pipeline = b.canny(pool, o.low, o.high).build();
+            return job -> {
+                // A rejected frame counts as failed and is never written.
+                if (!pipeline.processFrame(job.input, job.width, job.height,
+                        job.ensureOutput(job.width * job.height))) {
+                    return false;
+                }
+                job.outWidth = pipeline.lastOutputWidth();
+                job.outHeight = pipeline.lastOutputHeight();
+                Task t = (Task) job.tag;
+                if (t.kind != IMAGE) return true;
+                try {
+                    EdgeMapWriter.writePng(t.output, job.output, job.outWidth, job.outHeight);
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+        }, job -> {
+            // In submission order, so video frames stay in sequence.
+            Task t = (Task) job.tag;
+            if (t.kind == IMAGE || t.error != null) return;
+            try {
+                if (t.video == null) t.video = new EdgeMapWriter(t.output, job.outWidth, job.outHeight, t.rate);
+                t.video.writeFrame(job.output, job.outWidth * job.outHeight);
+            } catch (IOException e) {
+                t.error = e;
+                errors.incrementAndGet();
+            }
+        });
+
+        long pixels = 0;
+        long t0 = System.nanoTime();
+        try {
+            for (Task t : tasks) {
+                Files.createDirectories(t.output.getParent());
+                try (LumaSource src = open(t, o)) {
+                    ByteBuffer y;
+                    while ((y = src.next()) != null) {
+                        int w = src.width(), h = src.height();
+                        ex.submit(y, src.rowStride(), w, h, 0, 0, t);
+                        pixels += (long) w * h;
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println(t.input + ": " + e.getMessage());
+                    errors.incrementAndGet();
+                }
+            }
+            ex.drain();
+        } finally {
+            ex.shutdown();
+            for (ForkJoinPool pool : pools) pool.shutdown();
+            for (Task t : tasks) {
+                if (t.video != null) t.video.close();
+                if (t.error != null) System.err.println(t.output + ": " + t.error.getMessage());
+            }
+        }
+        long nanos = System.nanoTime() - t0;
+        return new Report(ex.delivered(), ex.failed() + errors.get(), pixels, nanos);
+    }
+
+    static List<Task> collect(Options o) throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        for (Path in : o.inputs) {
+            if (Files.isDirectory(in)) {
+                try (Stream<Path> files = Files.walk(in)) {
+                    files.filter(Files::isRegularFile).sorted().forEach(p -> {
+                        int kind = kindOf(p);
+                        if (kind >= 0) tasks.add(new Task(p, outputFor(o.out.resolve(in.relativize(p)), kind), kind));
+                    });
+                }
+            } else {
+                int kind = kindOf(in);
+                if (kind < 0) throw new IllegalArgumentException("unknown input type: " + in);
+                tasks.add(new Task(in, outputFor(o.out.resolve(in.getFileName()), kind), kind));
+            }
+        }
+        return tasks;
+    }
+
+    static int kindOf(Path p) {
+        String name = p.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png")) return IMAGE;
+        if (name.endsWith(".nv21") || name.endsWith(".yuv")) return NV21;
+        if (name.endsWith(".y4m")) return Y4M;
+        if (name.endsWith(".edgerec")) return RECORDING;
+        return -1;
+    }
+
+    private static Path outputFor(Path p, int kind) {
+        String name = p.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return p.resolveSibling(name.substring(0, dot) + (kind == IMAGE ? "_edges.png" : "_edges.y4m"));
+    }
+
+    private static LumaSource open(Task t, Options o) throws IOException {
+        switch (t.kind) {
+            case IMAGE:
+                return new ImageSource(t.input);
+            case RECORDING:
+                return new RecordingSource(t.input);
+            case Y4M: {
+                Y4mSource s = new Y4mSource(t.input);
+                t.rate = s.rate();
+                return s;
+            }
+            default: {
+                int w = o.width, h = o.height;
+                Matcher m = SIZE.matcher(t.input.getFileName().toString());
+                if (w == 0 && m.find()) {
+                    w = Integer.parseInt(m.group(1));
+                    h = Integer.parseInt(m.group(2));
+                }
+                if (w == 0) throw new IllegalArgumentException("raw NV21 needs --size WxH or the size in its name");
+                return new Nv21Source(t.input, w, h);
+            }
+        }
+    }
+}
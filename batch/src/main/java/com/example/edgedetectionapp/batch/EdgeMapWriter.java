@@ -0,0 +1,49 @@
+package com.example.edgedetectionapp.batch;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** Writes edge maps: one grayscale PNG per image, or a mono Y4M stream per video. */
+final class EdgeMapWriter implements Closeable {
+    private static final byte[] FRAME = "FRAME\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel out;
+    private final ByteBuffer marker = ByteBuffer.wrap(FRAME);
+    private final int frameBytes;
+
+    /** Starts a Y4M stream of {@code width}x{@code height} mono frames at {@code rate} (e.g. "30:1"). */
+    EdgeMapWriter(Path path, int width, int height, String rate) throws IOException {
+        out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        frameBytes = width * height;
+        String header = "YUV4MPEG2 W" + width + " H" + height + " F" + rate + " Ip A1:1 Cmono\n";
+        writeFully(ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    void writeFrame(byte[] luma, int length) throws IOException {
+        if (length != frameBytes) throw new IOException("frame size changed mid-stream");
+        marker.clear();
+        writeFully(marker);
+        writeFully(ByteBuffer.wrap(luma, 0, length));
+    }
+
+    private void writeFully(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) out.write(b);
+    }
+
+    @Override
+    public void close() throws IOException { out.close(); }
+
+    static void writePng(Path path, byte[] luma, int width, int height) throws IOException {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        img.getRaster().setDataElements(0, 0, width, height, luma);
+        if (!ImageIO.write(img, "png", path.toFile())) throw new IOException("no PNG writer");
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.edgedetectionapp.batch;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/** A single JPEG or PNG decoded with ImageIO and reduced to 8-bit luma. */
+final class ImageSource implements LumaSource {
+    private final int width, height;
+    private byte[] luma;
+
+    ImageSource(Path path) throws IOException {
+        BufferedImage img = ImageIO.read(path.toFile());
+        if (img == null) throw new IOException(path + ": no ImageIO reader for this file");
+        width = img.getWidth();
+        height = img.getHeight();
+        luma = toLuma(img);
+    }
+
+    /** Gray images are taken as-is; colour uses BT.601 weights on the sRGB values. */
+    static byte[] toLuma(BufferedImage img) {
+        int w = img.getWidth(), h = img.getHeight();
+        byte[] out = new byte[w * h];
+        Raster raster = img.getRaster();
+        if (img.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            raster.getDataElements(0, 0, w, h, out);
+            return out;
+        }
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            img.getRGB(0, y, w, 1, row, 0, w);
+            int o = y * w;
+            for (int x = 0; x < w; x++) {
+                int p = row[x];
+                int r = (p >> 16) & 0xFF, g = (p >> 8) & 0xFF, b = p & 0xFF;
+                out[o + x] = (byte) ((77 * r + 150 * g + 29 * b + 128) >> 8);
+            }
+        }
+        return out;
+    }
+
+    @Override public int width() { return width; }
+
+    @Override public int height() { return height; }
+
+    @Override
+    public ByteBuffer next() {
+        if (luma == null) return null;
+        ByteBuffer b = ByteBuffer.wrap(luma);
+        luma = null;
+        return b;
+    }
+
+    @Override
+    public void close() { luma = null; }
+}
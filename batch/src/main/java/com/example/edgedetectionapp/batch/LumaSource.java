@@ -0,0 +1,21 @@
+package com.example.edgedetectionapp.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/** The luma planes of one input file, in order. */
+interface LumaSource extends Closeable {
+    int width();
+
+    int height();
+
+    /**
+     * Luma plane of the next frame, starting at index 0, or null after the
+     * last frame. Valid until the next call.
+     */
+    ByteBuffer next() throws IOException;
+
+    /** Row stride of the plane last returned by next(). */
+    default int rowStride() { return width(); }
+}
@@ -0,0 +1,42 @@
+package com.example.edgedetectionapp.batch;
+
+import com.example.edgedetectionapp.frame.MappedWindow;
+import com.example.edgedetectionapp.frame.Nv21Packer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/** Headerless NV21 frames back to back, as dumped from the camera; the size comes from the caller. */
+final class Nv21Source implements LumaSource {
+    private final MappedWindow file;
+    private final int width, height, frameBytes;
+    private final long frames;
+    private long index;
+
+    Nv21Source(Path path, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("bad size " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        frameBytes = Nv21Packer.nv21Size(width, height);
+        file = new MappedWindow(path.toFile());
+        if (file.size() % frameBytes != 0) {
+            file.close();
+            throw new IOException(path + " is not a whole number of " + width + "x" + height + " NV21 frames");
+        }
+        frames = file.size() / frameBytes;
+    }
+
+    @Override public int width() { return width; }
+
+    @Override public int height() { return height; }
+
+    @Override
+    public ByteBuffer next() throws IOException {
+        if (index == frames) return null;
+        return file.slice(index++ * frameBytes, width * height);
+    }
+
+    @Override
+    public void close() throws IOException { file.close(); }
+}
@@ -0,0 +1,33 @@
+package com.example.edgedetectionapp.batch;
+
+import com.example.edgedetectionapp.frame.FrameSource;
+import com.example.edgedetectionapp.frame.ReplaySource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/** Y planes of a recording made by the app's FrameRecorder, replayed without pacing. */
+final class RecordingSource implements LumaSource {
+    private final ReplaySource replay;
+    private final FrameSource.Frame frame = new FrameSource.Frame();
+
+    RecordingSource(Path path) throws IOException {
+        replay = new ReplaySource(path.toFile(), false);
+    }
+
+    /** Size of the frame last returned by next(); recordings may change size midway. */
+    @Override public int width() { return frame.width; }
+
+    @Override public int height() { return frame.height; }
+
+    @Override public int rowStride() { return frame.yRowStride; }
+
+    @Override
+    public ByteBuffer next() throws IOException {
+        return replay.next(frame) ? frame.y : null;
+    }
+
+    @Override
+    public void close() throws IOException { replay.close(); }
+}
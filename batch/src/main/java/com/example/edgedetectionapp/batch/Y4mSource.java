@@ -0,0 +1,103 @@
+package com.example.edgedetectionapp.batch;
+
+import com.example.edgedetectionapp.frame.MappedWindow;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * YUV4MPEG2 stream: a text header line, then per frame a "FRAME" line and the
+ * planar Y, U, V data. Only the Y plane is read; chroma is skipped by size.
+ */
+final class Y4mSource implements LumaSource {
+    private static final int MAX_LINE = 1024;
+
+    private final MappedWindow file;
+    private final int width, height;
+    private final long chromaBytes;
+    private final String rate;
+    private long pos;
+
+    Y4mSource(Path path) throws IOException {
+        file = new MappedWindow(path.toFile());
+        try {
+            String header = line(0);
+            String[] tokens = header.split(" ");
+            if (!tokens[0].equals("YUV4MPEG2")) throw new IOException(path + ": not a Y4M file");
+            int w = 0, h = 0;
+            String f = "30:1", c = "420";
+            for (int i = 1; i < tokens.length; i++) {
+                String t = tokens[i];
+                if (t.isEmpty()) continue;
+                String v = t.substring(1);
+                switch (t.charAt(0)) {
+                    case 'W': w = Integer.parseInt(v); break;
+                    case 'H': h = Integer.parseInt(v); break;
+                    case 'F': f = v; break;
+                    case 'C': c = v; break;
+                    default: break;   // interlacing, aspect, X comments
+                }
+            }
+            if (w <= 0 || h <= 0) throw new IOException(path + ": missing W/H in Y4M header");
+            width = w;
+            height = h;
+            rate = f;
+            chromaBytes = chromaBytes(c, w, h);
+            pos = header.length() + 1;
+        } catch (NumberFormatException e) {
+            file.close();
+            throw new IOException(path + ": bad Y4M header", e);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /** Bytes of U plus V (plus alpha) per frame for a Y4M colour space tag. */
+    static long chromaBytes(String colorSpace, int w, int h) throws IOException {
+        long cw = (w + 1) / 2, ch = (h + 1) / 2;
+        if (colorSpace.startsWith("420")) return 2 * cw * ch;
+        if (colorSpace.equals("422")) return 2 * cw * h;
+        if (colorSpace.equals("444")) return 2L * w * h;
+        if (colorSpace.equals("444alpha")) return 3L * w * h;
+        if (colorSpace.equals("mono")) return 0;
+        throw new IOException("unsupported Y4M colour space " + colorSpace);
+    }
+
+    @Override public int width() { return width; }
+
+    @Override public int height() { return height; }
+
+    /** Frame rate as written in the header, e.g. "30000:1001". */
+    String rate() { return rate; }
+
+    @Override
+    public ByteBuffer next() throws IOException {
+        if (pos == file.size()) return null;
+        String marker = line(pos);
+        if (!marker.startsWith("FRAME")) throw new IOException("expected FRAME at offset " + pos);
+        long y = pos + marker.length() + 1;
+        ByteBuffer plane = file.slice(y, width * height);
+        pos = y + (long) width * height + chromaBytes;
+        if (pos > file.size()) throw new IOException("truncated frame at offset " + y);
+        return plane;
+    }
+
+    // The ASCII line starting at offset, without its '\n'.
+    private String line(long offset) throws IOException {
+        ByteBuffer b = file.slice(offset, (int) Math.min(MAX_LINE, file.size() - offset));
+        for (int i = 0; i < b.limit(); i++) {
+            if (b.get(i) == '\n') {
+                byte[] text = new byte[i];
+                b.get(text);
+                return new String(text, StandardCharsets.US_ASCII);
+            }
+        }
+        throw new IOException("no line end within " + MAX_LINE + " bytes at offset " + offset);
+    }
+
+    @Override
+    public void close() throws IOException { file.close(); }
+}
@@ -0,0 +1,112 @@
+package com.example.edgedetectionapp.batch;
+
+import com.example.edgedetectionapp.proc.FramePipeline;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BatchRunnerTest {
+    private static final int W = 64, H = 48;
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    // Dark background with a bright square whose corner moves with the frame number.
+    private static byte[] scene(int frame) {
+        byte[] y = new byte[W * H];
+        Arrays.fill(y, (byte) 20);
+        for (int r = 8; r < 28; r++)
+            for (int c = 8 + frame * 4; c < 28 + frame * 4; c++) y[r * W + c] = (byte) 220;
+        return y;
+    }
+
+    private static byte[] edges(byte[] luma) {
+        FramePipeline p = new FramePipeline.Builder().canny(100, 200).build();
+        byte[] out = new byte[W * H];
+        p.processFrame(luma, W, H, out);
+        return out;
+    }
+
+    private static byte[] ascii(String s) { return s.getBytes(StandardCharsets.US_ASCII); }
+
+    private static Path y4m(Path path, String header, String... frameMarkers) throws Exception {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        b.write(ascii(header));
+        for (int i = 0; i < frameMarkers.length; i++) {
+            b.write(ascii(frameMarkers[i]));
+            b.write(scene(i));
+            b.write(new byte[2 * (W / 2) * (H / 2)]);   // 4:2:0 chroma
+        }
+        return Files.write(path, b.toByteArray());
+    }
+
+    private static byte[] bytes(ByteBuffer b) {
+        byte[] a = new byte[b.remaining()];
+        b.get(a);
+        return a;
+    }
+
+    @Test
+    public void y4mSource_readsLumaAndSkipsChromaAndFrameParameters() throws Exception {
+        Path file = y4m(tmp.getRoot().toPath().resolve("clip.y4m"),
+                "YUV4MPEG2 W64 H48 F25:1 Ip C420jpeg XCOLORRANGE=FULL\n", "FRAME\n", "FRAME Ip\n");
+        try (Y4mSource src = new Y4mSource(file)) {
+            assertEquals(W, src.width());
+            assertEquals(H, src.height());
+            assertEquals("25:1", src.rate());
+            assertArrayEquals(scene(0), bytes(src.next()));
+            assertArrayEquals(scene(1), bytes(src.next()));
+            assertNull(src.next());
+        }
+    }
+
+    @Test
+    public void nv21Source_readsLumaOfEachFrame() throws Exception {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            b.write(scene(i));
+            b.write(new byte[W * H / 2]);
+        }
+        Path file = Files.write(tmp.getRoot().toPath().resolve("cam.nv21"), b.toByteArray());
+        try (Nv21Source src = new Nv21Source(file, W, H)) {
+            for (int i = 0; i < 3; i++) assertArrayEquals(scene(i), bytes(src.next()));
+            assertNull(src.next());
+        }
+    }
+
+    @Test
+    public void run_writesEdgeMapsMatchingThePipeline() throws Exception {
+        File in = tmp.newFolder("in");
+        BufferedImage img = new BufferedImage(W, H, BufferedImage.TYPE_BYTE_GRAY);
+        img.getRaster().setDataElements(0, 0, W, H, scene(0));
+        ImageIO.write(img, "png", new File(in, "still.png"));
+        y4m(in.toPath().resolve("clip.y4m"), "YUV4MPEG2 W64 H48 F30:1\n", "FRAME\n", "FRAME\n", "FRAME\n");
+        Path out = tmp.getRoot().toPath().resolve("out");
+
+        BatchRunner.Report r = BatchRunner.run(BatchRunner.Options.parse(
+                "--out", out.toString(), "--threads", "3", "--queue", "1", in.toString()));
+        assertEquals(4, r.frames);
+        assertEquals(0, r.failed);
+
+        BufferedImage png = ImageIO.read(out.resolve("still_edges.png").toFile());
+        byte[] got = new byte[W * H];
+        png.getRaster().getDataElements(0, 0, W, H, got);
+        assertArrayEquals(edges(scene(0)), got);
+
+        try (Y4mSource video = new Y4mSource(out.resolve("clip_edges.y4m"))) {
+            for (int i = 0; i < 3; i++) assertArrayEquals("frame " + i, edges(scene(i)), bytes(video.next()));
+            assertNull(video.next());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+// JVM-only JMH benchmarks for the frame hot paths.
+//
+// The Android-free packages of :app (frame/, proc/, exec/, metrics/) are
+// compiled straight from the app's source tree so the benchmarks measure
+// exactly the code the app ships, without needing an Android SDK or a device.
+//
+//   ./gradlew :benchmarks:jmh
+//   ./gradlew :benchmarks:jmh -Pjmh.includes=RotationBenchmark
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include("com/example/edgedetectionapp/frame/**")
+            include("com/example/edgedetectionapp/proc/**")
+            include("com/example/edgedetectionapp/exec/**")
+            include("com/example/edgedetectionapp/metrics/**")
+        }
+    }
+}
+
+dependencies {
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // Allocation rate per operation (gc.alloc.rate.norm) next to throughput.
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    findProperty("jmh.includes")?.let { includes.add(it.toString()) }
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+}
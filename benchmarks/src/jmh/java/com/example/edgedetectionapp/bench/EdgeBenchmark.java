@@ -0,0 +1,72 @@
+package com.example.edgedetectionapp.bench;
+
+import com.example.edgedetectionapp.proc.EdgeEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/** Pure-Java edge kernels (EdgeEngine), single-threaded and across all cores. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EdgeBenchmark {
+    @Param({"VGA", "720p", "1080p", "4K"})
+    public String resolution;
+
+    /** Worker threads; 0 means one per available core. */
+    @Param({"1", "0"})
+    public int threads;
+
+    @Param({"0", "64"})
+    public int stridePadding;
+
+    private int w, h, stride;
+    private ForkJoinPool pool;
+    private EdgeEngine engine;
+    private byte[] frame;
+    private byte[] out;
+    private ByteBuffer plane;
+    private ByteBuffer outDirect;
+
+    @Setup
+    public void setup() {
+        w = Frames.width(resolution);
+        h = Frames.height(resolution);
+        stride = w + stridePadding;
+        int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(n);
+        engine = new EdgeEngine(pool);
+        frame = Frames.scene(w, h);
+        out = new byte[w * h];
+        plane = Frames.strided(frame, w, h, stride);
+        outDirect = ByteBuffer.allocateDirect(w * h);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public byte[] cannyArray() {
+        engine.processFrame(frame, w, h, out);
+        return out;
+    }
+
+    @Benchmark
+    public ByteBuffer cannyStridedPlane() {
+        engine.processPlanes(plane, stride, w, h, outDirect);
+        return outDirect;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.edgedetectionapp.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/** Gray -> RGBA expansion that EdgeRenderer.onDrawFrame ran on every vsync. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExpansionBenchmark {
+    @Param({"VGA", "720p", "1080p", "4K"})
+    public String resolution;
+
+    private int pixels;
+    private byte[] gray;
+    private ByteBuffer rgba;
+
+    @Setup
+    public void setup() {
+        int w = Frames.width(resolution), h = Frames.height(resolution);
+        pixels = w * h;
+        gray = Frames.scene(w, h);
+        rgba = ByteBuffer.allocateDirect(pixels * 4).order(ByteOrder.nativeOrder());
+    }
+
+    @Benchmark
+    public ByteBuffer relativePuts() {
+        rgba.position(0);
+        for (int i = 0; i < pixels; i++) {
+            byte g = gray[i];
+            rgba.put(g).put(g).put(g).put((byte) 255);
+        }
+        rgba.position(0);
+        return rgba;
+    }
+}
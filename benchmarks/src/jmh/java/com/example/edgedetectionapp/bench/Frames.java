@@ -0,0 +1,53 @@
+package com.example.edgedetectionapp.bench;
+
+import java.nio.ByteBuffer;
+
+/** Resolutions and synthetic frame content shared by the benchmarks. */
+final class Frames {
+    private Frames() {}
+
+    static int width(String resolution) {
+        switch (resolution) {
+            case "VGA": return 640;
+            case "720p": return 1280;
+            case "1080p": return 1920;
+            case "4K": return 3840;
+            default: throw new IllegalArgumentException("unknown resolution " + resolution);
+        }
+    }
+
+    static int height(String resolution) {
+        switch (resolution) {
+            case "VGA": return 480;
+            case "720p": return 720;
+            case "1080p": return 1080;
+            case "4K": return 2160;
+            default: throw new IllegalArgumentException("unknown resolution " + resolution);
+        }
+    }
+
+    /** Gradient background with a few hard-edged shapes, so edge kernels have work to do. */
+    static byte[] scene(int w, int h) {
+        byte[] img = new byte[w * h];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int v = (x * 255 / w + y * 64 / h) & 0xFF;
+                int cx = x % 160 - 80, cy = y % 120 - 60;
+                if (cx * cx + cy * cy < 40 * 40) v = 255 - v;
+                img[y * w + x] = (byte) v;
+            }
+        }
+        return img;
+    }
+
+    /** Copies a packed image into a direct buffer with {@code stride}-byte rows. */
+    static ByteBuffer strided(byte[] img, int w, int h, int stride) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(stride * h);
+        for (int row = 0; row < h; row++) {
+            buf.position(row * stride);
+            buf.put(img, row * w, w);
+        }
+        buf.clear();
+        return buf;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.edgedetectionapp.bench;
+
+import com.example.edgedetectionapp.proc.EdgeEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental vs full Canny on a mostly static scene. Two frames alternate
+ * that differ in {@code changedPercent} of the tiles, so every call sees that
+ * share of the frame change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IncrementalBenchmark {
+    @Param({"720p", "1080p"})
+    public String resolution;
+
+    @Param({"100", "50", "25", "10", "1", "0"})
+    public int changedPercent;
+
+    @Param({"false", "true"})
+    public boolean incremental;
+
+    private int w, h;
+    private ForkJoinPool pool;
+    private EdgeEngine engine;
+    private byte[][] frames;
+    private byte[] out;
+    private int next;
+
+    @Setup
+    public void setup() {
+        w = Frames.width(resolution);
+        h = Frames.height(resolution);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        engine = new EdgeEngine(pool);
+        engine.setIncremental(incremental, 0);
+        byte[] a = Frames.scene(w, h);
+        byte[] b = a.clone();
+        // Invert a deterministic, evenly spread subset of tiles.
+        int t = EdgeEngine.TILE, tilesX = (w + t - 1) / t, tilesY = (h + t - 1) / t;
+        int tiles = tilesX * tilesY, changed = tiles * changedPercent / 100;
+        for (int k = 0; k < changed; k++) {
+            int tile = (int) ((long) k * tiles / Math.max(changed, 1));
+            int tx = (tile % tilesX) * t, ty = (tile / tilesX) * t;
+            for (int y = ty; y < Math.min(ty + t, h); y++)
+                for (int x = tx; x < Math.min(tx + t, w); x++) b[y * w + x] = (byte) ~b[y * w + x];
+        }
+        frames = new byte[][] {a, b};
+        out = new byte[w * h];
+        // Prime the cache so the measurement starts in steady state.
+        engine.processFrame(a, w, h, out);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public byte[] canny() {
+        next ^= 1;
+        engine.processFrame(frames[next], w, h, out);
+        return out;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.edgedetectionapp.bench;
+
+import com.example.edgedetectionapp.frame.Nv21Packer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * YUV_420_888 -> NV21 repack as done by MainActivity.analyzeFrame.
+ * Chroma is laid out like most camera HALs deliver it: one interleaved VU
+ * buffer with U and V as views one byte apart (pixel stride 2).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RepackBenchmark {
+    @Param({"VGA", "720p", "1080p", "4K"})
+    public String resolution;
+
+    @Param({"0", "64"})
+    public int stridePadding;
+
+    private int w, h, yStride, uvStride;
+    private ByteBuffer y, u, v;
+    private byte[] nv21;
+    private ByteBuffer nv21Direct;
+
+    @Setup
+    public void setup() {
+        w = Frames.width(resolution);
+        h = Frames.height(resolution);
+        yStride = w + stridePadding;
+        uvStride = w + stridePadding;
+        y = Frames.strided(Frames.scene(w, h), w, h, yStride);
+        ByteBuffer vu = ByteBuffer.allocateDirect(uvStride * (h / 2));
+        for (int i = 0; i < vu.capacity(); i++) vu.put(i, (byte) (128 + (i & 15)));
+        v = vu.duplicate();
+        vu.position(1);
+        u = vu.slice();
+        nv21 = new byte[Nv21Packer.nv21Size(w, h)];
+        nv21Direct = ByteBuffer.allocateDirect(nv21.length);
+    }
+
+    /** The original per-pixel yBuf.get() loop from analyzeFrame. */
+    @Benchmark
+    public byte[] perPixelLoop() {
+        for (int row = 0; row < h; row++) {
+            int yRowStart = row * yStride;
+            int dstRowStart = row * w;
+            for (int col = 0; col < w; col++) {
+                nv21[dstRowStart + col] = y.get(yRowStart + col);
+            }
+        }
+        int pos = w * h;
+        for (int row = 0; row < h / 2; row++) {
+            int rowStart = row * uvStride;
+            for (int col = 0; col < w / 2; col++) {
+                nv21[pos++] = v.get(rowStart + col * 2);
+                nv21[pos++] = u.get(rowStart + col * 2);
+            }
+        }
+        return nv21;
+    }
+
+    @Benchmark
+    public byte[] packerToArray() {
+        Nv21Packer.pack(y, yStride, u, uvStride, 2, v, uvStride, 2, w, h, nv21);
+        return nv21;
+    }
+
+    @Benchmark
+    public ByteBuffer packerToDirect() {
+        Nv21Packer.pack(y, yStride, u, uvStride, 2, v, uvStride, 2, w, h, nv21Direct);
+        return nv21Direct;
+    }
+
+    /** Luma only: all the edge/gray modes actually read. */
+    @Benchmark
+    public byte[] lumaOnly() {
+        Nv21Packer.copyLuma(y, yStride, w, h, nv21);
+        return nv21;
+    }
+}
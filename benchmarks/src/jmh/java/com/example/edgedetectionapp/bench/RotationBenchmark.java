@@ -0,0 +1,73 @@
+package com.example.edgedetectionapp.bench;
+
+import com.example.edgedetectionapp.frame.FrameRotator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU frame rotation: the original scalar loops from EdgeRenderer.updateFrame
+ * against the cache-blocked FrameRotator that replaced them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RotationBenchmark {
+    @Param({"VGA", "720p", "1080p", "4K"})
+    public String resolution;
+
+    @Param({"0", "90", "180", "270"})
+    public int rotation;
+
+    private int w, h;
+    private ByteBuffer src;
+    private ByteBuffer dst;
+    private final FrameRotator rotator = new FrameRotator();
+
+    @Setup
+    public void setup() {
+        w = Frames.width(resolution);
+        h = Frames.height(resolution);
+        src = Frames.strided(Frames.scene(w, h), w, h, w);
+        dst = ByteBuffer.allocateDirect(w * h);
+    }
+
+    /** The scalar nested loops with one absolute put per pixel. */
+    @Benchmark
+    public ByteBuffer scalarLoop() {
+        int dstW = (rotation % 180) != 0 ? h : w;
+        if (rotation == 90) {
+            for (int y = 0; y < h; y++)
+                for (int x = 0; x < w; x++)
+                    dst.put(x * dstW + (h - 1 - y), src.get(y * w + x));
+        } else if (rotation == 270) {
+            for (int y = 0; y < h; y++)
+                for (int x = 0; x < w; x++)
+                    dst.put((w - 1 - x) * dstW + y, src.get(y * w + x));
+        } else if (rotation == 180) {
+            for (int y = 0; y < h; y++)
+                for (int x = 0; x < w; x++)
+                    dst.put((h - 1 - y) * dstW + (w - 1 - x), src.get(y * w + x));
+        } else {
+            ByteBuffer s = src.duplicate();
+            dst.clear();
+            dst.put(s);
+        }
+        return dst;
+    }
+
+    @Benchmark
+    public ByteBuffer blocked() {
+        rotator.rotate(src, w, w, h, rotation, dst);
+        return dst;
+    }
+}
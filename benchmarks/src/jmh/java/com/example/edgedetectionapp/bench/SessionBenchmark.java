@@ -0,0 +1,99 @@
+package com.example.edgedetectionapp.bench;
+
+import com.example.edgedetectionapp.exec.SessionScheduler;
+import com.example.edgedetectionapp.exec.StreamSession;
+import com.example.edgedetectionapp.proc.FramePipeline;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Several feeds sharing one SessionScheduler. Each round submits a frame to
+ * every session and waits for all of them, and the {@code frames} counter
+ * gives total frames per second. It should grow with the stream count until
+ * streams reach the worker count, then stay flat.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SessionBenchmark {
+    @Param({"VGA", "720p"})
+    public String resolution;
+
+    @Param({"1", "2", "4", "8"})
+    public int streams;
+
+    /** Worker threads; 0 means one per available core. */
+    @Param({"0"})
+    public int workers;
+
+    /** Frames processed, reported per second next to rounds per second. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long frames;
+
+        @Setup(Level.Iteration)
+        public void reset() { frames = 0; }
+    }
+
+    private int w, h;
+    private ByteBuffer plane;
+    private SessionScheduler scheduler;
+    private StreamSession[] sessions;
+    private ForkJoinPool[] pools;
+    private final AtomicInteger remaining = new AtomicInteger();
+    private volatile Thread waiter;
+
+    @Setup
+    public void setup() {
+        w = Frames.width(resolution);
+        h = Frames.height(resolution);
+        plane = Frames.strided(Frames.scene(w, h), w, h, w);
+        int n = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        scheduler = new SessionScheduler(n, streams);
+        sessions = new StreamSession[streams];
+        pools = new ForkJoinPool[streams];
+        for (int i = 0; i < streams; i++) {
+            // The scheduler already runs feeds in parallel; each Canny stays on one thread.
+            pools[i] = new ForkJoinPool(1);
+            FramePipeline pipeline = new FramePipeline.Builder().canny(pools[i], 100, 200).build();
+            sessions[i] = scheduler.open("feed-" + i, job -> {
+                pipeline.processFrame(job.input, job.width, job.height, job.ensureOutput(job.width * job.height));
+                return true;
+            }, (session, job) -> {
+                if (remaining.decrementAndGet() == 0) LockSupport.unpark(waiter);
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        scheduler.shutdown();
+        for (ForkJoinPool p : pools) p.shutdown();
+    }
+
+    @Benchmark
+    public void round(Counters counters) {
+        waiter = Thread.currentThread();
+        remaining.set(streams);
+        for (StreamSession s : sessions) s.submit(plane, w, w, h, 0, System.nanoTime());
+        while (remaining.get() > 0) LockSupport.park(this);
+        counters.frames += streams;
+    }
+}
@@ -21,3 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "EdgeViewer"
 include(":app")
+include(":benchmarks")
+include(":batch")
@@ -1,6 +1,10 @@
 const preview = document.getElementById("preview") as HTMLImageElement;
 const grayBtn = document.getElementById("grayBtn") as HTMLButtonElement;
 const edgeBtn = document.getElementById("edgeBtn") as HTMLButtonElement;
+const streamUrl = document.getElementById("streamUrl") as HTMLInputElement;
+const connectBtn = document.getElementById("connectBtn") as HTMLButtonElement;
+const live = document.getElementById("live") as HTMLCanvasElement;
+const stats = document.getElementById("stats") as HTMLDivElement;
 
 grayBtn.onclick = () => {
     preview.src = "images/sample_gray.jpg";
@@ -9,3 +13,152 @@ grayBtn.onclick = () => {
 edgeBtn.onclick = () => {
     preview.src = "images/sample_edges.jpg";
 };
+
+// Live stream from the app (started with --ei stream_port <port>).
+// Each binary message is a 20-byte little-endian header followed by the
+// frame: raw luma, an edge map as alternating 0/1 pixel runs (LEB128), or
+// edge polylines (--ez vector_edges true).
+const HEADER_BYTES = 20;
+const ENCODING_LUMA = 0;
+const ENCODING_EDGES_RLE = 1;
+const ENCODING_POLYLINES = 2;
+
+const frameCanvas = document.createElement("canvas");
+const frameCtx = frameCanvas.getContext("2d")!;
+const liveCtx = live.getContext("2d")!;
+let image: ImageData | null = null;
+let socket: WebSocket | null = null;
+
+let frames = 0;
+let skipped = 0;
+let lastSeq = 0;
+let latencySum = 0;
+let windowStart = performance.now();
+
+streamUrl.value = `ws://${location.hostname || "localhost"}:8080/stream`;
+
+connectBtn.onclick = () => {
+    if (socket) {
+        socket.close();
+        return;
+    }
+    const ws = new WebSocket(streamUrl.value);
+    ws.binaryType = "arraybuffer";
+    ws.onopen = () => {
+        connectBtn.textContent = "Disconnect";
+        stats.textContent = "connected";
+        live.hidden = false;
+        lastSeq = 0;
+    };
+    ws.onclose = () => {
+        socket = null;
+        connectBtn.textContent = "Connect";
+        stats.textContent = "disconnected";
+    };
+    ws.onmessage = (e) => onFrame(e.data as ArrayBuffer);
+    socket = ws;
+};
+
+function onFrame(buffer: ArrayBuffer) {
+    const view = new DataView(buffer);
+    const encoding = view.getUint8(1);
+    const rotation = view.getUint16(2, true);
+    const seq = view.getUint32(4, true);
+    const width = view.getUint32(8, true);
+    const height = view.getUint32(12, true);
+    const latencyUs = view.getUint32(16, true);
+    const payload = new Uint8Array(buffer, HEADER_BYTES);
+
+    if (!image || image.width !== width || image.height !== height) {
+        image = new ImageData(width, height);
+        frameCanvas.width = width;
+        frameCanvas.height = height;
+    }
+    const px = image.data;
+    if (encoding === ENCODING_LUMA) {
+        for (let i = 0, o = 0; i < width * height; i++, o += 4) {
+            px[o] = px[o + 1] = px[o + 2] = payload[i]!;
+            px[o + 3] = 255;
+        }
+    } else if (encoding === ENCODING_EDGES_RLE) {
+        decodeRuns(payload, px, width * height);
+    } else if (encoding !== ENCODING_POLYLINES) {
+        return;
+    }
+    if (encoding === ENCODING_POLYLINES) drawPolylines(new DataView(buffer, HEADER_BYTES));
+    else frameCtx.putImageData(image, 0, 0);
+    draw(rotation, width, height);
+
+    // Gaps in the sequence are frames the server skipped for us.
+    if (lastSeq !== 0 && seq > lastSeq + 1) skipped += seq - lastSeq - 1;
+    lastSeq = seq;
+    frames++;
+    latencySum += latencyUs;
+    const now = performance.now();
+    if (now - windowStart >= 1000) {
+        const fps = (frames * 1000) / (now - windowStart);
+        stats.textContent = `${width}x${height}  ${fps.toFixed(1)} fps  `
+            + `latency ${(latencySum / frames / 1000).toFixed(1)} ms  skipped ${skipped}`;
+        frames = 0;
+        skipped = 0;
+        latencySum = 0;
+        windowStart = now;
+    }
+}
+
+// Runs alternate starting with background, each a LEB128 pixel count.
+function decodeRuns(rle: Uint8Array, px: Uint8ClampedArray, total: number) {
+    let pos = 0;
+    let value = 0;
+    let i = 0;
+    while (i < rle.length && pos < total) {
+        let run = 0;
+        let shift = 0;
+        let b: number;
+        do {
+            b = rle[i++]!;
+            run += (b & 0x7f) * 2 ** shift;
+            shift += 7;
+        } while (b & 0x80);
+        const end = Math.min(total, pos + run);
+        for (let o = pos * 4; pos < end; pos++, o += 4) {
+            px[o] = px[o + 1] = px[o + 2] = value;
+            px[o + 3] = 255;
+        }
+        value ^= 255;
+    }
+}
+
+// u16 width, u16 height, u32 polylines, u32 points, u16 length per
+// polyline, then u16 x, y per point; pixel coordinates of the frame.
+function drawPolylines(wire: DataView) {
+    const count = wire.getUint32(4, true);
+    let p = 12 + 2 * count;
+    frameCtx.fillStyle = "black";
+    frameCtx.fillRect(0, 0, frameCanvas.width, frameCanvas.height);
+    frameCtx.strokeStyle = "white";
+    frameCtx.lineWidth = 1;
+    frameCtx.beginPath();
+    for (let i = 0; i < count; i++) {
+        const n = wire.getUint16(12 + 2 * i, true);
+        for (let k = 0; k < n; k++, p += 4) {
+            const x = wire.getUint16(p, true) + 0.5;
+            const y = wire.getUint16(p + 2, true) + 0.5;
+            if (k === 0) frameCtx.moveTo(x, y);
+            else frameCtx.lineTo(x, y);
+        }
+    }
+    frameCtx.stroke();
+}
+
+// Frames arrive in sensor orientation; turn them upright like the app does.
+function draw(rotation: number, width: number, height: number) {
+    const sideways = rotation === 90 || rotation === 270;
+    live.width = sideways ? height : width;
+    live.height = sideways ? width : height;
+    liveCtx.save();
+    liveCtx.translate(live.width / 2, live.height / 2);
+    liveCtx.rotate((rotation * Math.PI) / 180);
+    liveCtx.drawImage(frameCanvas, -width / 2, -height / 2);
+    liveCtx.restore();
+}